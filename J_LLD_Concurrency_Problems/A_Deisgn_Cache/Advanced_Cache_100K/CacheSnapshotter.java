@@ -0,0 +1,365 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_100K;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.EvictionAlgorithms.EvictionAlgorithm;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces.CacheStorage;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces.Codec;
+
+/**
+ * Periodic snapshot of a cache (contents + eviction order) and warm start
+ * from it.
+ *
+ * Problem: after a deploy every cache starts empty and the whole hot set is
+ * read from the database again, minutes of extra DB load.
+ *
+ * Snapshot (writeSnapshot, optionally every intervalMs):
+ * 1. EvictionAlgorithm.snapshotKeys() copies the key order, coldest first.
+ * That copy is the only moment a lock is held (ShardedLRU: one shard at a
+ * time), reads and writes continue during everything else.
+ * 2. Values are looked up one by one while the cache keeps serving. A key
+ * evicted meanwhile is skipped, a key written meanwhile is saved with its
+ * newer value: not a point-in-time image, but every saved value was the
+ * cached value at some moment during the snapshot.
+ * 3. Records are streamed through a FileChannel into a temp file, forced and
+ * atomically renamed over the previous snapshot, so a crash mid-snapshot
+ * leaves the last complete one.
+ *
+ * File format:
+ *
+ * [ MAGIC : int ][ VERSION : int ]
+ * [ keyLength : int ][ valueLength : int ][ key ][ value ] ... coldest first
+ * footer: [ partitions : int ] ( [ offset : long ][ bytes : long ][ firstEntry : long ][ entries : int ] )*
+ * trailer: [ totalEntries : long ][ footerOffset : long ][ MAGIC : int ]
+ *
+ * Records are grouped in partitions of at most PARTITION_BYTES /
+ * PARTITION_ENTRIES, recorded in the footer.
+ *
+ * Warm start (warmStart / load), before the cache takes traffic:
+ * 1. Every partition is memory-mapped on its own (no 2GB limit for the
+ * file) and decoded in parallel straight into the CacheStorage. If the
+ * snapshot holds more entries than the storage's capacity, the coldest ones
+ * are skipped.
+ * 2. Recency is then replayed with keyAccessed in file order on one thread:
+ * LRU order only comes out right if the calls are ordered, and they are cheap
+ * compared to decoding.
+ * Values are put into the storage directly, the database is not written. A
+ * snapshot is only safe to load if nobody else wrote to the database since it
+ * was taken (or if slightly stale entries are acceptable until they expire).
+ */
+public class CacheSnapshotter<K, V> implements AutoCloseable {
+
+    private static final int MAGIC = 0x43534E50; // "CSNP"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int TRAILER_BYTES = 20;
+    private static final int PARTITION_FOOTER_BYTES = 28;
+    private static final long PARTITION_BYTES = 32L * 1024 * 1024;
+    private static final int PARTITION_ENTRIES = 65_536;
+    private static final int WRITE_BUFFER_BYTES = 1024 * 1024;
+
+    private final CacheStorage<K, V> cacheStorage;
+    private final EvictionAlgorithm<K> evictionAlgorithm;
+    private final Codec<K> keyCodec;
+    private final Codec<V> valueCodec;
+    private final Path snapshotFile;
+
+    private ScheduledExecutorService scheduler;
+
+    private final AtomicLong snapshotsWritten = new AtomicLong();
+    private final AtomicLong snapshotsFailed = new AtomicLong();
+    private volatile long lastSnapshotEntries;
+    private volatile long lastSnapshotMillis;
+
+    /**
+     * @param cacheStorage      The storage the cache was built with
+     * @param evictionAlgorithm The algorithm the cache was built with (must
+     *                          implement snapshotKeys, all built-in ones do)
+     */
+    public CacheSnapshotter(CacheStorage<K, V> cacheStorage, EvictionAlgorithm<K> evictionAlgorithm,
+            Codec<K> keyCodec, Codec<V> valueCodec, Path snapshotFile) {
+        this.cacheStorage = cacheStorage;
+        this.evictionAlgorithm = evictionAlgorithm;
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.snapshotFile = snapshotFile;
+    }
+
+    /**
+     * Write a snapshot every intervalMs on a background daemon thread. A
+     * failed snapshot keeps the previous file and is counted.
+     */
+    public synchronized void startPeriodic(long intervalMs) {
+        if (scheduler != null) {
+            throw new IllegalStateException("Periodic snapshots already started");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cache-snapshotter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                writeSnapshot();
+            } catch (Exception e) {
+                snapshotsFailed.incrementAndGet();
+            }
+        }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Write one snapshot now (also safe while the periodic one runs: calls are
+     * serialized).
+     *
+     * @return number of entries written
+     */
+    public synchronized long writeSnapshot() throws Exception {
+        long start = System.nanoTime();
+        List<K> keys = evictionAlgorithm.snapshotKeys();
+        Path tempFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        List<long[]> partitions = new ArrayList<>(); // offset, bytes, firstEntry, entries
+        long written = 0;
+
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES);
+            buffer.putInt(MAGIC).putInt(VERSION);
+            long position = HEADER_BYTES;
+            long[] partition = null;
+
+            for (K key : keys) {
+                V value;
+                try {
+                    if (!cacheStorage.containsKey(key)) {
+                        continue;
+                    }
+                    value = cacheStorage.get(key);
+                } catch (Exception e) {
+                    continue; // evicted between containsKey and get
+                }
+                byte[] keyBytes = keyCodec.encode(key);
+                byte[] valueBytes = valueCodec.encode(value);
+                int recordBytes = RECORD_HEADER_BYTES + keyBytes.length + valueBytes.length;
+
+                if (partition == null || partition[1] >= PARTITION_BYTES || partition[3] >= PARTITION_ENTRIES) {
+                    partition = new long[] { position, 0, written, 0 };
+                    partitions.add(partition);
+                }
+                if (buffer.remaining() < recordBytes) {
+                    drain(channel, buffer);
+                }
+                if (buffer.remaining() < recordBytes) {
+                    // Larger than the whole buffer: write it on its own
+                    ByteBuffer large = ByteBuffer.allocate(recordBytes);
+                    large.putInt(keyBytes.length).putInt(valueBytes.length).put(keyBytes).put(valueBytes);
+                    drain(channel, large);
+                } else {
+                    buffer.putInt(keyBytes.length).putInt(valueBytes.length).put(keyBytes).put(valueBytes);
+                }
+                position += recordBytes;
+                partition[1] += recordBytes;
+                partition[3]++;
+                written++;
+            }
+
+            long footerOffset = position;
+            int footerBytes = 4 + partitions.size() * PARTITION_FOOTER_BYTES + TRAILER_BYTES;
+            if (buffer.remaining() < footerBytes) {
+                drain(channel, buffer);
+            }
+            ByteBuffer footer = buffer.remaining() >= footerBytes ? buffer : ByteBuffer.allocate(footerBytes);
+            footer.putInt(partitions.size());
+            for (long[] p : partitions) {
+                footer.putLong(p[0]).putLong(p[1]).putLong(p[2]).putInt((int) p[3]);
+            }
+            footer.putLong(written).putLong(footerOffset).putInt(MAGIC);
+            drain(channel, buffer);
+            if (footer != buffer) {
+                drain(channel, footer);
+            }
+            channel.force(true);
+        }
+        Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        snapshotsWritten.incrementAndGet();
+        lastSnapshotEntries = written;
+        lastSnapshotMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        return written;
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Load this snapshotter's file into its storage and eviction algorithm.
+     * Call before the cache takes traffic.
+     *
+     * @return number of entries loaded, 0 if there is no snapshot
+     */
+    public long warmStart(int parallelism) throws Exception {
+        return load(snapshotFile, cacheStorage, evictionAlgorithm, keyCodec, valueCodec, parallelism);
+    }
+
+    /**
+     * Load a snapshot: partitions are mapped and decoded in parallel into the
+     * storage, then recency is replayed in order into the eviction algorithm.
+     *
+     * @return number of entries loaded, 0 if the file does not exist
+     */
+    public static <K, V> long load(Path snapshotFile, CacheStorage<K, V> cacheStorage,
+            EvictionAlgorithm<K> evictionAlgorithm, Codec<K> keyCodec, Codec<V> valueCodec, int parallelism)
+            throws Exception {
+        if (!Files.exists(snapshotFile)) {
+            return 0;
+        }
+        try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_BYTES + 4 + TRAILER_BYTES) {
+                throw new IOException("Snapshot too short: " + snapshotFile);
+            }
+            ByteBuffer header = readFully(channel, 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not a cache snapshot (or unsupported version): " + snapshotFile);
+            }
+            ByteBuffer trailer = readFully(channel, fileSize - TRAILER_BYTES, TRAILER_BYTES);
+            long totalEntries = trailer.getLong();
+            long footerOffset = trailer.getLong();
+            if (trailer.getInt() != MAGIC) {
+                throw new IOException("Snapshot trailer corrupt: " + snapshotFile);
+            }
+            ByteBuffer footer = readFully(channel, footerOffset, (int) (fileSize - TRAILER_BYTES - footerOffset));
+            int partitionCount = footer.getInt();
+
+            // Only the hottest `capacity` entries are loaded, they are at the end of the file
+            long skip = Math.max(0, totalEntries - cacheStorage.getCapacity());
+            Object[] loadedKeys = new Object[(int) (totalEntries - skip)];
+
+            ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, parallelism));
+            try {
+                List<Future<?>> tasks = new ArrayList<>();
+                for (int i = 0; i < partitionCount; i++) {
+                    long offset = footer.getLong();
+                    long bytes = footer.getLong();
+                    long firstEntry = footer.getLong();
+                    int entries = footer.getInt();
+                    if (firstEntry + entries <= skip) {
+                        continue; // entirely too cold to fit
+                    }
+                    tasks.add(pool.submit(() -> {
+                        MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, offset, bytes);
+                        for (long entry = firstEntry; entry < firstEntry + entries; entry++) {
+                            int keyLength = region.getInt();
+                            int valueLength = region.getInt();
+                            if (entry < skip) {
+                                region.position(region.position() + keyLength + valueLength);
+                                continue;
+                            }
+                            byte[] keyBytes = new byte[keyLength];
+                            byte[] valueBytes = new byte[valueLength];
+                            region.get(keyBytes).get(valueBytes);
+                            K key = keyCodec.decode(keyBytes);
+                            cacheStorage.put(key, valueCodec.decode(valueBytes));
+                            loadedKeys[(int) (entry - skip)] = key;
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> task : tasks) {
+                    task.get();
+                }
+            } finally {
+                pool.shutdown();
+            }
+
+            long loaded = replayRecency(loadedKeys, evictionAlgorithm);
+            // A weighted storage has no entry limit, the cut above keeps everything: evict the coldest until the weight fits
+            while (cacheStorage.weight() > cacheStorage.maxWeight()) {
+                K victim = evictionAlgorithm.evictKey();
+                if (victim == null) {
+                    break;
+                }
+                if (cacheStorage.containsKey(victim)) {
+                    cacheStorage.remove(victim);
+                    loaded--;
+                }
+            }
+            return loaded;
+        }
+    }
+
+    // Coldest first, so the last key replayed ends up most recently used
+    @SuppressWarnings("unchecked")
+    private static <K> long replayRecency(Object[] keys, EvictionAlgorithm<K> evictionAlgorithm) throws Exception {
+        long loaded = 0;
+        for (Object key : keys) {
+            if (key != null) {
+                evictionAlgorithm.keyAccessed((K) key);
+                loaded++;
+            }
+        }
+        return loaded;
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of snapshot");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    public long getSnapshotsWritten() {
+        return snapshotsWritten.get();
+    }
+
+    public long getSnapshotsFailed() {
+        return snapshotsFailed.get();
+    }
+
+    public long getLastSnapshotEntries() {
+        return lastSnapshotEntries;
+    }
+
+    public long getLastSnapshotMillis() {
+        return lastSnapshotMillis;
+    }
+
+    public Path getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    /**
+     * Stop periodic snapshots (a snapshot in progress completes).
+     */
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler = null;
+        }
+    }
+}
@@ -1,89 +1,121 @@
 package J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_100K;
 
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
 
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.ConcreteStorages.ConcreteCodecs.SerializableCodec;
 import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces.CacheStorage;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces.Codec;
 import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces.DBStorage;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.WritePolicies.WriteBehindEngine;
 import J_LLD_Concurrency_Problems.A_Deisgn_Cache.WritePolicies.WritePolicy;
 
 /**
  * Durable write-behind policy with Write-Ahead Log (WAL) for crash recovery.
- * 
+ *
  * Problem with basic write-behind: Queue is in-memory, lost on crash.
- * 
+ *
  * Solution:
- * 1. Append to WAL before acknowledging write (durability)
- * 2. Bounded queue with backpressure (prevents OOM)
- * 3. Async batch flush to database
+ * 1. Append to WAL before acknowledging write (durability). The cache is
+ *    updated only once the record is on disk
+ * 2. Bounded buffer with backpressure (prevents OOM)
+ * 3. Async batch flush to database (WriteBehindEngine: per-key coalescing,
+ *    one writeAll per batch, retry with backoff)
  * 4. Recovery from WAL on startup
- * 
- * Trade-off: Disk I/O on every write. Can be mitigated with:
- * - Group commit (batch WAL writes)
- * - Memory-mapped files
- * - SSD storage
+ *
+ * Trade-off: Disk I/O on every write. Mitigated with group commit
+ * (GroupCommitWAL): concurrent writers share one write + force per batch
+ * instead of one flush each.
+ *
+ * WAL records are binary (see GroupCommitWAL for the framing), the payload is
+ * [ key length : int ][ key bytes ][ value bytes ] encoded with pluggable
+ * codecs (Java serialization by default).
+ *
+ * Checkpointing: every write gets an LSN (log sequence number). LSNs that are
+ * in the WAL but not yet in the database are "outstanding". After each
+ * successful DB batch the policy writes a checkpoint record with
+ * (smallest outstanding LSN - 1): everything up to it is in the database.
+ * Closed WAL segments below the checkpoint are then deleted, and recovery
+ * only replays records above the last checkpoint.
  */
 public class DurableWriteBehindPolicy<K, V> implements WritePolicy<K, V> {
 
-    private final BlockingQueue<Map.Entry<K, V>> writeQueue;
-    private final BufferedWriter walWriter;
-    private final Path walPath;
-    private final ScheduledExecutorService flushExecutor;
-    private final int batchSize;
-    private final long flushIntervalMs;
+    private final GroupCommitWAL wal;
+    private final Codec<K> keyCodec;
+    private final Codec<V> valueCodec;
+    private final WriteBehindEngine<K, V> engine;
+    private final long backpressureTimeoutMs;
     private final AtomicBoolean isShutdown;
 
+    // LSN allocation and checkpoint computation share this lock, so a checkpoint never passes an LSN
+    // that was handed out but not yet registered as outstanding
+    private final ReentrantLock lsnLock = new ReentrantLock();
+    private final ConcurrentSkipListSet<Long> outstandingLsns = new ConcurrentSkipListSet<>();
+    private long nextLsn; // guarded by lsnLock
+    private long lastCheckpoint = -1; // guarded by this
+
     /**
-     * @param walDirectory    Directory for WAL file
-     * @param queueCapacity   Max items in write queue (backpressure threshold)
-     * @param batchSize       Number of items to flush at once
-     * @param flushIntervalMs Max time between flushes
+     * @param walDirectory    Directory for WAL segments
+     * @param queueCapacity   Max keys waiting for the DB (backpressure threshold)
+     * @param batchSize       Max keys per DB batch
+     * @param flushIntervalMs Max time a write waits before its batch is flushed
      */
     public DurableWriteBehindPolicy(String walDirectory, int queueCapacity, int batchSize, long flushIntervalMs)
             throws IOException {
-        this.writeQueue = new ArrayBlockingQueue<>(queueCapacity);
-        this.batchSize = batchSize;
-        this.flushIntervalMs = flushIntervalMs;
+        this(new GroupCommitWAL(Path.of(walDirectory)), queueCapacity, batchSize, flushIntervalMs,
+                new SerializableCodec<>(), new SerializableCodec<>());
+    }
+
+    /**
+     * @param wal        WAL to use (segment size and group commit policy are
+     *                   configured there). Run recoverFromWAL on its directory
+     *                   before creating the policy.
+     * @param keyCodec   Encodes keys into WAL records
+     * @param valueCodec Encodes values into WAL records
+     */
+    public DurableWriteBehindPolicy(GroupCommitWAL wal, int queueCapacity, int batchSize, long flushIntervalMs,
+            Codec<K> keyCodec, Codec<V> valueCodec) {
+        this.wal = wal;
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.backpressureTimeoutMs = Math.max(100, flushIntervalMs * 10);
         this.isShutdown = new AtomicBoolean(false);
+        this.nextLsn = wal.getMaxLsnOnOpen() + 1; // LSNs keep growing across restarts
 
-        // Ensure WAL directory exists
-        File walDir = new File(walDirectory);
-        if (!walDir.exists()) {
-            walDir.mkdirs();
-        }
+        // Coalescing buffer + batched, retried DB flushes. Its callbacks drive the WAL checkpoint.
+        this.engine = new WriteBehindEngine<>(batchSize, flushIntervalMs, queueCapacity, 100, 30_000,
+                new WriteBehindEngine.FlushListener() {
+                    @Override
+                    public void onFlushed(long[] lsns) {
+                        for (long lsn : lsns) {
+                            outstandingLsns.remove(lsn);
+                        }
+                        checkpoint();
+                    }
 
-        // Create WAL file
-        this.walPath = Path.of(walDirectory, "cache_wal_" + System.currentTimeMillis() + ".log");
-        this.walWriter = new BufferedWriter(new FileWriter(walPath.toFile(), true));
-
-        // Start background flush thread
-        this.flushExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
-            Thread t = new Thread(r, "wal-flush-thread");
-            t.setDaemon(true);
-            return t;
-        });
-
-        flushExecutor.scheduleAtFixedRate(
-                this::flushBatch,
-                flushIntervalMs,
-                flushIntervalMs,
-                TimeUnit.MILLISECONDS);
+                    @Override
+                    public void onSuperseded(long lsn) {
+                        // Safe to forget: the newer record of the same key has a higher LSN and stays outstanding
+                        // until it is in the DB, so recovery would replay that one
+                        outstandingLsns.remove(lsn);
+                    }
+                });
     }
 
     public DurableWriteBehindPolicy(String walDirectory) throws IOException {
-        this(walDirectory, 10000, 100, 1000); // Defaults: 10K queue, 100 batch, 1s interval
+        this(walDirectory, 10000, 100, 1000); // Defaults: 10K pending keys, 100 per batch, 1s max delay
     }
 
     @Override
@@ -92,98 +124,204 @@ public class DurableWriteBehindPolicy<K, V> implements WritePolicy<K, V> {
             throw new Exception("Write policy is shut down");
         }
 
-        // Step 1: Write to cache immediately
-        cacheStorage.put(key, value);
+        // Step 1: Backpressure before anything is logged, so a rejected write leaves no WAL record
+        engine.awaitCapacity(backpressureTimeoutMs);
 
-        // Step 2: Append to WAL (synchronous for durability)
-        synchronized (walWriter) {
-            walWriter.write(serializeEntry(key, value));
-            walWriter.newLine();
-            walWriter.flush(); // Ensure durability
+        // Step 2: Append to WAL. Returns once the record is forced to disk, the force is shared with concurrent writers
+        long lsn = allocateLsn();
+        try {
+            wal.append(lsn, encodeEntry(key, value, keyCodec, valueCodec));
+        } catch (Exception e) {
+            outstandingLsns.remove(lsn); // never made it to the log
+            throw e;
         }
 
-        // Step 3: Queue for async DB write with backpressure
-        boolean accepted = writeQueue.offer(Map.entry(key, value), 100, TimeUnit.MILLISECONDS);
-        if (!accepted) {
-            // Queue full - trigger immediate flush
-            flushBatch();
-            // Retry
-            if (!writeQueue.offer(Map.entry(key, value), 100, TimeUnit.MILLISECONDS)) {
-                // Still can't queue - write directly to DB
-                dbStorage.write(key, value);
-            }
+        // Step 3: Only a durable write becomes visible in the cache. Cached first, a failed append would leave readers
+        // a value that neither the WAL nor the DB has (and that a crash loses)
+        cacheStorage.put(key, value);
+
+        // Step 4: Buffer for the async DB batch (coalesced with pending writes of the same key)
+        engine.submit(key, value, lsn, dbStorage);
+    }
+
+    private long allocateLsn() {
+        lsnLock.lock();
+        try {
+            long lsn = nextLsn++;
+            outstandingLsns.add(lsn);
+            return lsn;
+        } finally {
+            lsnLock.unlock();
         }
     }
 
-    private void flushBatch() {
-        if (writeQueue.isEmpty()) {
+    /**
+     * Write a checkpoint record and delete the WAL segments it covers. Called
+     * after every successful DB batch.
+     */
+    private synchronized void checkpoint() {
+        long checkpointLsn;
+        lsnLock.lock();
+        try {
+            checkpointLsn = outstandingLsns.isEmpty() ? nextLsn - 1 : outstandingLsns.first() - 1;
+        } finally {
+            lsnLock.unlock();
+        }
+        if (checkpointLsn <= lastCheckpoint) {
             return;
         }
-
-        // Note: We'd need access to dbStorage here. This is a design limitation.
-        // In production, you'd store dbStorage as a field or use a callback pattern.
-        // For this example, we're demonstrating the WAL and queue mechanics.
-
-        int flushed = 0;
-        while (flushed < batchSize && !writeQueue.isEmpty()) {
-            Map.Entry<K, V> entry = writeQueue.poll();
-            if (entry != null) {
-                // In real implementation: dbStorage.write(entry.getKey(), entry.getValue());
-                flushed++;
-            }
+        try {
+            wal.checkpoint(checkpointLsn);
+            lastCheckpoint = checkpointLsn;
+            wal.deleteSegmentsUpTo(checkpointLsn);
+        } catch (IOException e) {
+            // A missed checkpoint only means more replay work after a crash
         }
     }
 
-    private String serializeEntry(K key, V value) {
-        // Simple serialization - in production, use proper serialization (JSON,
-        // Protobuf, etc.)
-        return key.toString() + "=" + value.toString();
+    static <K, V> byte[] encodeEntry(K key, V value, Codec<K> keyCodec, Codec<V> valueCodec) throws Exception {
+        byte[] keyBytes = keyCodec.encode(key);
+        byte[] valueBytes = valueCodec.encode(value);
+        return ByteBuffer.allocate(4 + keyBytes.length + valueBytes.length)
+                .putInt(keyBytes.length)
+                .put(keyBytes)
+                .put(valueBytes)
+                .array();
+    }
+
+    static <K, V> Map.Entry<K, V> decodeEntry(byte[] payload, Codec<K> keyCodec, Codec<V> valueCodec)
+            throws Exception {
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        byte[] keyBytes = new byte[buffer.getInt()];
+        buffer.get(keyBytes);
+        byte[] valueBytes = new byte[buffer.remaining()];
+        buffer.get(valueBytes);
+        return Map.entry(keyCodec.decode(keyBytes), valueCodec.decode(valueBytes));
     }
 
     /**
-     * Graceful shutdown - flush remaining entries.
+     * Graceful shutdown - flush remaining entries. Anything the DB still
+     * rejects after 30s stays in the WAL for recovery.
      */
     public void shutdown() throws IOException {
         isShutdown.set(true);
-        flushExecutor.shutdown();
+        engine.shutdown(30_000);
+
+        // Close WAL (commits anything still pending)
+        wal.close();
+    }
 
+    /**
+     * Crash recovery: replay every write that is in the WAL but not covered by
+     * the last checkpoint into the database. Call on startup, before creating
+     * the policy on the same directory.
+     *
+     * 1. Every remaining segment is memory-mapped and scanned in parallel. Only
+     * headers are read for records at or below the checkpoint.
+     * 2. Un-checkpointed records are split into key partitions (hash of the key
+     * bytes), so all writes of a key land in the same partition.
+     * 3. Partitions are replayed in parallel: sorted by LSN, the last value of a
+     * key wins, one writeAll per partition.
+     *
+     * Fully flushed segments were deleted at runtime, so the work is
+     * proportional to the un-flushed data, not to the total history.
+     *
+     * @return number of keys written to the database
+     */
+    public static <K, V> int recoverFromWAL(Path walDirectory, Codec<K> keyCodec, Codec<V> valueCodec,
+            DBStorage<K, V> dbStorage, int parallelism) throws Exception {
+        List<Path> segments = GroupCommitWAL.listSegments(walDirectory);
+        if (segments.isEmpty()) {
+            return 0;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism);
         try {
-            flushExecutor.awaitTermination(30, TimeUnit.SECONDS);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+            // Pass 1: latest checkpoint (headers only)
+            long checkpoint = -1;
+            for (List<GroupCommitWAL.Record> records : readAll(pool, segments, Long.MAX_VALUE)) {
+                for (GroupCommitWAL.Record record : records) {
+                    if (record.type == GroupCommitWAL.TYPE_CHECKPOINT) {
+                        checkpoint = Math.max(checkpoint, record.lsn);
+                    }
+                }
+            }
+
+            // Pass 2: payloads above the checkpoint, partitioned by key
+            List<List<GroupCommitWAL.Record>> partitions = new ArrayList<>();
+            for (int i = 0; i < parallelism; i++) {
+                partitions.add(new ArrayList<>());
+            }
+            for (List<GroupCommitWAL.Record> records : readAll(pool, segments, checkpoint)) {
+                for (GroupCommitWAL.Record record : records) {
+                    if (record.type == GroupCommitWAL.TYPE_DATA && record.lsn > checkpoint) {
+                        partitions.get(Math.floorMod(keyHash(record.payload), parallelism)).add(record);
+                    }
+                }
+            }
+
+            List<Future<Integer>> replays = new ArrayList<>();
+            for (List<GroupCommitWAL.Record> partition : partitions) {
+                replays.add(pool.submit(() -> {
+                    partition.sort(Comparator.comparingLong(record -> record.lsn));
+                    Map<K, V> latest = new LinkedHashMap<>();
+                    for (GroupCommitWAL.Record record : partition) {
+                        Map.Entry<K, V> entry = decodeEntry(record.payload, keyCodec, valueCodec);
+                        latest.put(entry.getKey(), entry.getValue());
+                    }
+                    if (!latest.isEmpty()) {
+                        dbStorage.writeAll(latest);
+                    }
+                    return latest.size();
+                }));
+            }
+            int replayed = 0;
+            for (Future<Integer> replay : replays) {
+                replayed += replay.get();
+            }
+            return replayed;
+        } finally {
+            pool.shutdown();
         }
+    }
 
-        // Flush remaining queue
-        while (!writeQueue.isEmpty()) {
-            flushBatch();
+    private static List<List<GroupCommitWAL.Record>> readAll(ExecutorService pool, List<Path> segments,
+            long skipPayloadUpTo) throws Exception {
+        List<Future<List<GroupCommitWAL.Record>>> reads = new ArrayList<>();
+        for (Path segment : segments) {
+            reads.add(pool.submit(() -> GroupCommitWAL.readRecords(segment, skipPayloadUpTo)));
+        }
+        List<List<GroupCommitWAL.Record>> result = new ArrayList<>();
+        for (Future<List<GroupCommitWAL.Record>> read : reads) {
+            result.add(read.get());
         }
+        return result;
+    }
 
-        // Close WAL
-        synchronized (walWriter) {
-            walWriter.close();
+    // Hash of the encoded key bytes: partitions without decoding, equal keys always hash the same
+    private static int keyHash(byte[] payload) {
+        int keyLength = ByteBuffer.wrap(payload).getInt();
+        int h = 1;
+        for (int i = 4; i < 4 + keyLength; i++) {
+            h = 31 * h + payload[i];
         }
+        return h;
+    }
+
+    public Path getWalDirectory() {
+        return wal.getDirectory();
     }
 
     /**
-     * Recover uncommitted entries from WAL.
-     * Call this on startup before accepting new writes.
+     * Force a checkpoint now and delete the fully flushed WAL segments.
      */
-    public static java.util.List<String> recoverFromWAL(Path walPath) throws IOException {
-        if (!Files.exists(walPath)) {
-            return java.util.Collections.emptyList();
-        }
-        return Files.readAllLines(walPath);
+    public void compactWAL() throws IOException {
+        checkpoint();
     }
 
     /**
-     * Compact WAL after recovery (remove processed entries).
+     * Write-behind metrics: pending keys, coalescing ratio, flush lag, failed batches.
      */
-    public void compactWAL() throws IOException {
-        // In production:
-        // 1. Create new WAL file
-        // 2. Write only pending entries
-        // 3. Atomically swap files
-        // 4. Delete old WAL
-        Files.deleteIfExists(walPath);
+    public WriteBehindEngine<K, V> getEngine() {
+        return engine;
     }
 }
@@ -0,0 +1,468 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_100K;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Segmented, append-only write-ahead log with group commit.
+ *
+ * Problem with "write + flush per record under one monitor": every writer pays
+ * for a full flush to disk, and writers are serialized behind each other's
+ * I/O. Throughput is capped at roughly 1 / (flush latency).
+ *
+ * Group commit (same idea as database redo logs):
+ * 1. append() copies the record into a shared in-memory buffer, takes a commit
+ * ticket and parks until that ticket is durable.
+ * 2. A single committer thread takes everything accumulated so far, does ONE
+ * FileChannel.write + force for the whole batch, and releases every writer
+ * whose ticket is covered.
+ * 3. While the committer is busy forcing one batch, the next batch accumulates
+ * in a second buffer, so the disk never idles under load.
+ *
+ * Batch policy: the committer starts a commit as soon as maxBatchRecords are
+ * pending, or when the oldest pending record has waited maxLatencyMicros. A
+ * latency of 0 commits immediately (batches still form naturally while a
+ * force is in progress).
+ *
+ * Segments: the log is a directory of files wal-<sequence>.log. When the
+ * active segment reaches segmentBytes a new one is started. Every segment
+ * remembers the highest data LSN it holds, so once a checkpoint says "all
+ * LSNs <= X reached the database", closed segments with maxLsn <= X are
+ * deleted (deleteSegmentsUpTo). Disk usage and recovery time then follow the
+ * un-flushed data, not the total history.
+ *
+ * Record format (binary, detects torn writes):
+ *
+ * [ length : int ][ crc32c : int ][ type : byte ][ lsn : long ][ payload ]
+ *
+ * length is the payload length, the CRC covers type + lsn + payload. LSNs are
+ * chosen by the caller (see DurableWriteBehindPolicy), a CHECKPOINT record
+ * carries the checkpoint LSN and no payload. Reading a segment stops at the
+ * first truncated or corrupt record: that is the tail a crash interrupted, and
+ * no writer was acknowledged for it.
+ */
+public class GroupCommitWAL implements AutoCloseable {
+
+    public static final byte TYPE_DATA = 1;
+    public static final byte TYPE_CHECKPOINT = 2;
+    public static final int HEADER_SIZE = 17;
+
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final int maxBatchRecords;
+    private final long maxLatencyNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition recordsPending = lock.newCondition(); // committer waits here
+    private final Condition committed = lock.newCondition(); // writers wait here
+    private ByteBuffer pending; // guarded by lock
+    private ByteBuffer inFlight; // only touched by the committer thread
+    private int pendingRecords;
+    private long pendingMaxLsn = -1;
+    private long oldestPendingNanos;
+    private long appendedTicket;
+    private long committedTicket;
+    private IOException failure;
+    private boolean closed;
+
+    // Closed segments followed by the active one (last). Written by the committer, read by deleteSegmentsUpTo.
+    private final CopyOnWriteArrayList<Segment> segments = new CopyOnWriteArrayList<>();
+    private FileChannel activeChannel; // only touched by the committer thread after construction
+    private final long maxLsnOnOpen;
+
+    private final Thread committer;
+
+    /**
+     * @param directory        WAL directory, existing segments are kept (recover
+     *                         them first) and new records go to a new segment
+     * @param segmentBytes     Size after which the active segment is rolled
+     * @param maxBatchRecords  Commit as soon as this many records are pending
+     * @param maxLatencyMicros Longest time a record waits for more records
+     *                         before its batch is committed
+     */
+    public GroupCommitWAL(Path directory, long segmentBytes, int maxBatchRecords, long maxLatencyMicros)
+            throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxBatchRecords = maxBatchRecords;
+        this.maxLatencyNanos = TimeUnit.MICROSECONDS.toNanos(maxLatencyMicros);
+        this.pending = ByteBuffer.allocate(64 * 1024);
+        this.inFlight = ByteBuffer.allocate(64 * 1024);
+
+        Files.createDirectories(directory);
+        long maxLsn = -1;
+        long lastSequence = -1;
+        for (Path path : listSegments(directory)) {
+            Segment segment = new Segment(path, sequenceOf(path));
+            // Older segments stay deletable by checkpoints: remember their highest LSN
+            for (Record record : readRecords(path, Long.MAX_VALUE)) { // headers only
+                maxLsn = Math.max(maxLsn, record.lsn);
+                if (record.type == TYPE_DATA) {
+                    segment.maxDataLsn = Math.max(segment.maxDataLsn, record.lsn);
+                }
+            }
+            segments.add(segment);
+            lastSequence = segment.sequence;
+        }
+        this.maxLsnOnOpen = maxLsn;
+        openSegment(lastSequence + 1);
+
+        this.committer = new Thread(this::commitLoop, "wal-group-commit");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    public GroupCommitWAL(Path directory) throws IOException {
+        this(directory, 64L * 1024 * 1024, 256, 200); // Defaults: 64 MB segments, 256 records or 200us per batch
+    }
+
+    /**
+     * Append a data record and wait until it is on disk.
+     */
+    public void append(long lsn, byte[] payload) throws IOException {
+        append(TYPE_DATA, lsn, payload);
+    }
+
+    /**
+     * Durably record that every LSN <= checkpointLsn has reached the database.
+     */
+    public void checkpoint(long checkpointLsn) throws IOException {
+        append(TYPE_CHECKPOINT, checkpointLsn, new byte[0]);
+    }
+
+    private void append(byte type, long lsn, byte[] payload) throws IOException {
+        int crc = crc(type, lsn, payload); // outside the lock
+        long ticket;
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IOException("WAL is closed: " + directory);
+            }
+            if (failure != null) {
+                throw new IOException("WAL failed earlier", failure);
+            }
+            ensureCapacity(HEADER_SIZE + payload.length);
+            pending.putInt(payload.length);
+            pending.putInt(crc);
+            pending.put(type);
+            pending.putLong(lsn);
+            pending.put(payload);
+            if (type == TYPE_DATA) {
+                pendingMaxLsn = Math.max(pendingMaxLsn, lsn);
+            }
+            if (pendingRecords++ == 0) {
+                oldestPendingNanos = System.nanoTime();
+                recordsPending.signal();
+            } else if (pendingRecords >= maxBatchRecords) {
+                recordsPending.signal(); // batch full, don't wait for the latency timer
+            }
+            ticket = ++appendedTicket;
+
+            // Park on the ticket until the committer has forced it
+            while (committedTicket < ticket) {
+                if (failure != null) {
+                    throw new IOException("WAL commit failed", failure);
+                }
+                committed.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Delete closed segments whose records are all covered by the checkpoint.
+     * The active segment is never deleted.
+     *
+     * @return number of deleted segments
+     */
+    public int deleteSegmentsUpTo(long checkpointLsn) throws IOException {
+        int deleted = 0;
+        Iterator<Segment> it = segments.iterator(); // snapshot
+        while (it.hasNext()) {
+            Segment segment = it.next();
+            if (segment.active || segment.maxDataLsn > checkpointLsn) {
+                continue;
+            }
+            segments.remove(segment);
+            Files.deleteIfExists(segment.path);
+            deleted++;
+        }
+        return deleted;
+    }
+
+    /**
+     * Highest LSN found in the segments that existed when the WAL was opened
+     * (-1 if none). New LSNs must be greater.
+     */
+    public long getMaxLsnOnOpen() {
+        return maxLsnOnOpen;
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Commit whatever is pending, stop the committer and close the file.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            recordsPending.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        activeChannel.close();
+    }
+
+    private void commitLoop() {
+        while (true) {
+            long batchTicket;
+            long batchMaxLsn;
+            lock.lock();
+            try {
+                // Wait for the batch to be full, for the oldest record to reach maxLatency, or for close()
+                while (!closed) {
+                    if (pendingRecords == 0) {
+                        recordsPending.awaitUninterruptibly();
+                        continue;
+                    }
+                    if (pendingRecords >= maxBatchRecords) {
+                        break;
+                    }
+                    long waitNanos = oldestPendingNanos + maxLatencyNanos - System.nanoTime();
+                    if (waitNanos <= 0) {
+                        break;
+                    }
+                    try {
+                        recordsPending.awaitNanos(waitNanos);
+                    } catch (InterruptedException ignored) {
+                        // Only close() stops the committer
+                    }
+                }
+                if (pendingRecords == 0) {
+                    return; // closed and nothing left
+                }
+                // Swap buffers: writers keep appending into the other one while we do I/O
+                ByteBuffer batch = pending;
+                pending = inFlight;
+                pending.clear();
+                inFlight = batch;
+                pendingRecords = 0;
+                batchTicket = appendedTicket;
+                batchMaxLsn = pendingMaxLsn;
+                pendingMaxLsn = -1;
+            } finally {
+                lock.unlock();
+            }
+
+            IOException error = null;
+            try {
+                inFlight.flip();
+                Segment active = segments.get(segments.size() - 1);
+                if (active.size > 0 && active.size + inFlight.remaining() > segmentBytes) {
+                    rollSegment(active);
+                    active = segments.get(segments.size() - 1);
+                }
+                active.size += inFlight.remaining();
+                while (inFlight.hasRemaining()) {
+                    activeChannel.write(inFlight);
+                }
+                activeChannel.force(false); // data only, file metadata (mtime) is not needed for recovery
+                active.maxDataLsn = Math.max(active.maxDataLsn, batchMaxLsn);
+            } catch (IOException e) {
+                error = e;
+            }
+
+            lock.lock();
+            try {
+                if (error != null) {
+                    failure = error; // fail this batch and every later append, the log may have a hole now
+                } else {
+                    committedTicket = batchTicket;
+                }
+                committed.signalAll();
+                if (error != null) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // Committer thread only. Batches never span two segments, so a segment may exceed segmentBytes by one batch.
+    private void rollSegment(Segment active) throws IOException {
+        activeChannel.close();
+        active.active = false;
+        openSegment(active.sequence + 1);
+    }
+
+    private void openSegment(long sequence) throws IOException {
+        Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+        activeChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        Segment segment = new Segment(path, sequence);
+        segment.active = true;
+        segment.size = activeChannel.size();
+        segments.add(segment);
+    }
+
+    // Must be called while holding lock
+    private void ensureCapacity(int bytes) {
+        if (pending.remaining() >= bytes) {
+            return;
+        }
+        int newCapacity = Math.max(pending.capacity() * 2, pending.position() + bytes);
+        ByteBuffer grown = ByteBuffer.allocate(newCapacity);
+        pending.flip();
+        grown.put(pending);
+        pending = grown;
+    }
+
+    static int crc(byte type, long lsn, byte[] payload) {
+        return crc(type, lsn, ByteBuffer.wrap(payload));
+    }
+
+    /**
+     * CRC of a payload still in the (mapped) segment, without copying it onto
+     * the heap. Consumes the buffer's remaining bytes.
+     */
+    static int crc(byte type, long lsn, ByteBuffer payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(type);
+        crc.update(ByteBuffer.allocate(8).putLong(0, lsn));
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Segment files of a WAL directory, oldest first.
+     */
+    public static List<Path> listSegments(Path directory) throws IOException {
+        List<Path> paths = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return paths;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                paths.add(path);
+            }
+        }
+        paths.sort(null); // zero padded sequence -> lexical order is creation order
+        return paths;
+    }
+
+    private static long sequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Read every intact record of one segment, in file order, through a
+     * read-only memory mapping (no copy of the whole file onto the heap).
+     * Stops at the first truncated or corrupt record.
+     */
+    public static List<Record> readRecords(Path segment) throws IOException {
+        return readRecords(segment, Long.MIN_VALUE);
+    }
+
+    /**
+     * Like readRecords(segment), but data records with lsn <= skipPayloadUpTo
+     * are returned without payload: recovery only copies the records a
+     * checkpoint doesn't cover. Every record is still CRC-checked (in place,
+     * on the mapping), so a corrupt header can't pass as a skipped record.
+     */
+    public static List<Record> readRecords(Path segment, long skipPayloadUpTo) throws IOException {
+        List<Record> records = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            if (channel.size() == 0) {
+                return records;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            while (buffer.remaining() >= HEADER_SIZE) {
+                int length = buffer.getInt();
+                int expectedCrc = buffer.getInt();
+                byte type = buffer.get();
+                long lsn = buffer.getLong();
+                if (length < 0 || length > buffer.remaining()) {
+                    break; // torn write
+                }
+                ByteBuffer payloadView = buffer.slice(buffer.position(), length);
+                if (crc(type, lsn, payloadView) != expectedCrc) {
+                    break; // corrupt record
+                }
+                if (type == TYPE_DATA && lsn <= skipPayloadUpTo) {
+                    buffer.position(buffer.position() + length);
+                    records.add(new Record(type, lsn, null));
+                    continue;
+                }
+                byte[] payload = new byte[length];
+                buffer.get(payload);
+                records.add(new Record(type, lsn, payload));
+            }
+        }
+        return records;
+    }
+
+    /**
+     * One decoded WAL record (payload is null when it was skipped).
+     */
+    public static final class Record {
+        public final byte type;
+        public final long lsn;
+        public final byte[] payload;
+
+        Record(byte type, long lsn, byte[] payload) {
+            this.type = type;
+            this.lsn = lsn;
+            this.payload = payload;
+        }
+    }
+
+    private static final class Segment {
+        final Path path;
+        final long sequence;
+        volatile long maxDataLsn = -1;
+        volatile boolean active;
+        long size; // committer thread only
+
+        Segment(Path path, long sequence) {
+            this.path = path;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_100K;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces.CacheStorage;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces.DBStorage;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.WritePolicies.WritePolicy;
+
+/**
+ * Cache specialized for primitive long keys, with an allocation-free hit path.
+ *
+ * Problem with Cache<Long, V>: every access boxes the key into a Long, the
+ * ConcurrentHashMap lookup walks Node objects, the LRU list allocates a
+ * DoublyLinkedListNode per key and each access returns a CompletableFuture.
+ * At 100K+ lookups per second this is a steady stream of garbage on the
+ * hottest path.
+ *
+ * Here, per segment, everything is stored in primitive arrays:
+ * - Entries live in slots 0..capacity-1: long[] keys, Object[] values and
+ * int[] prev / next as an intrusive LRU list (array indexes, no node objects).
+ * Free slots are chained through next[] (free list).
+ * - Lookup is an open addressing (linear probing) int[] table holding slot + 1,
+ * keyed by the raw long. Backward shift deletion keeps probes short after
+ * evictions.
+ * - A hit is: lock, probe, relink two indexes, unlock. No boxing, no future,
+ * no node (the lock only allocates when contended).
+ *
+ * Misses load from DBStorage on the caller thread (only the miss boxes the
+ * key). Writes go through the usual WritePolicy, which sees this cache as a
+ * CacheStorage<Long, V> (asCacheStorage()), so write-through / write-back /
+ * durable write-behind all work unchanged.
+ *
+ * Trade-off: LRU and capacity are per segment (like
+ * ShardedLRUEvictionAlgorithm): each segment holds capacity / segments
+ * entries, so a key set close to the capacity that hashes unevenly starts
+ * evicting slightly before the cache is full. Null values are not cached
+ * (null means miss). Two concurrent misses of the same key may both read the
+ * DB (use StampedeProtectedCache in front if loads are expensive).
+ */
+public class LongKeyCache<V> {
+
+    private final Segment<V>[] segments;
+    private final int segmentMask;
+    private final int capacity;
+    private final DBStorage<Long, V> dbStorage;
+    private final WritePolicy<Long, V> writePolicy;
+    private final CacheStorage<Long, V> storageView = new StorageView();
+
+    public LongKeyCache(int capacity, DBStorage<Long, V> dbStorage, WritePolicy<Long, V> writePolicy) {
+        this(capacity, dbStorage, writePolicy, 16);
+    }
+
+    public LongKeyCache(int capacity, DBStorage<Long, V> dbStorage, WritePolicy<Long, V> writePolicy, int numSegments) {
+        int segmentCount = numSegments <= 1 ? 1 : Integer.highestOneBit(numSegments - 1) << 1;
+        segmentCount = Math.min(segmentCount, Integer.highestOneBit(Math.max(1, capacity))); // at least one entry per segment
+        this.segments = newSegments(segmentCount);
+        for (int i = 0; i < segmentCount; i++) {
+            // Spread the remainder so the segment capacities add up to capacity
+            segments[i] = new Segment<>(capacity / segmentCount + (i < capacity % segmentCount ? 1 : 0));
+        }
+        this.segmentMask = segmentCount - 1;
+        this.capacity = capacity;
+        this.dbStorage = dbStorage;
+        this.writePolicy = writePolicy;
+    }
+
+    /**
+     * Generic array creation: every element is a Segment<V> created by the
+     * constructor, and the array never escapes.
+     */
+    @SuppressWarnings("unchecked")
+    private static <V> Segment<V>[] newSegments(int count) {
+        return (Segment<V>[]) new Segment<?>[count];
+    }
+
+    /**
+     * Cached value, loaded from the DB on a miss. Throws if the DB doesn't have
+     * the key either.
+     */
+    public V get(long key) throws Exception {
+        int hash = hash(key);
+        Segment<V> segment = segmentFor(hash);
+        V value = segment.get(key, hash);
+        if (value != null) {
+            return value;
+        }
+        value = dbStorage.read(key);
+        segment.put(key, hash, value);
+        return value;
+    }
+
+    /**
+     * Cached value or null, never touches the DB. Counts as an access for LRU.
+     */
+    public V getIfPresent(long key) {
+        int hash = hash(key);
+        return segmentFor(hash).get(key, hash);
+    }
+
+    public void put(long key, V value) throws Exception {
+        writePolicy.write(key, value, storageView, dbStorage);
+    }
+
+    public void invalidate(long key) {
+        int hash = hash(key);
+        segmentFor(hash).remove(key, hash);
+    }
+
+    public boolean containsKey(long key) {
+        int hash = hash(key);
+        return segmentFor(hash).contains(key, hash);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<V> segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getHitCount() {
+        long hits = 0;
+        for (Segment<V> segment : segments) {
+            hits += segment.hits;
+        }
+        return hits;
+    }
+
+    public long getMissCount() {
+        long misses = 0;
+        for (Segment<V> segment : segments) {
+            misses += segment.misses;
+        }
+        return misses;
+    }
+
+    public long getEvictionCount() {
+        long evictions = 0;
+        for (Segment<V> segment : segments) {
+            evictions += segment.evictions;
+        }
+        return evictions;
+    }
+
+    /**
+     * This cache seen as a CacheStorage (boxed keys), for WritePolicy and any
+     * other code written against the storage interface.
+     */
+    public CacheStorage<Long, V> asCacheStorage() {
+        return storageView;
+    }
+
+    private Segment<V> segmentFor(int hash) {
+        return segments[(hash >>> 24) & segmentMask]; // high bits pick the segment, low bits the table slot
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L; // Fibonacci hashing: sequential IDs spread over the table
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private final class StorageView implements CacheStorage<Long, V> {
+        @Override
+        public void put(Long key, V value) {
+            int hash = hash(key);
+            segmentFor(hash).put(key, hash, value);
+        }
+
+        @Override
+        public V get(Long key) throws Exception {
+            V value = getIfPresent(key);
+            if (value == null) {
+                throw new Exception("Key not found in cache");
+            }
+            return value;
+        }
+
+        @Override
+        public V getIfPresent(Long key) {
+            return LongKeyCache.this.getIfPresent(key);
+        }
+
+        @Override
+        public void remove(Long key) throws Exception {
+            int hash = hash(key);
+            if (!segmentFor(hash).remove(key, hash)) {
+                throw new Exception("Key not found in cache");
+            }
+        }
+
+        @Override
+        public boolean containsKey(Long key) {
+            return LongKeyCache.this.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return LongKeyCache.this.size();
+        }
+
+        @Override
+        public int getCapacity() {
+            return capacity;
+        }
+    }
+
+    /**
+     * One lock, one fixed-size entry pool, one probe table, one LRU list.
+     * Arrays are allocated once in the constructor.
+     */
+    private static final class Segment<V> {
+        private static final int NONE = -1;
+
+        final ReentrantLock lock = new ReentrantLock();
+        final int capacity;
+        final long[] keys;
+        final Object[] values;
+        final int[] prev;
+        final int[] next; // LRU successor, or next free slot for free entries
+        final int[] table; // slot + 1, 0 = empty
+        final int tableMask;
+        int head = NONE; // most recently used
+        int tail = NONE; // least recently used
+        int freeHead;
+        int size;
+        long hits;
+        long misses;
+        long evictions;
+
+        Segment(int capacity) {
+            this.capacity = Math.max(1, capacity);
+            keys = new long[this.capacity];
+            values = new Object[this.capacity];
+            prev = new int[this.capacity];
+            next = new int[this.capacity];
+            for (int i = 0; i < this.capacity; i++) {
+                next[i] = i + 1 < this.capacity ? i + 1 : NONE;
+            }
+            freeHead = 0;
+            int tableSize = Integer.highestOneBit(this.capacity * 2 - 1) << 1; // load factor <= 0.5
+            table = new int[Math.max(2, tableSize)];
+            tableMask = table.length - 1;
+        }
+
+        @SuppressWarnings("unchecked")
+        V get(long key, int hash) {
+            lock.lock();
+            try {
+                int entry = table[probe(key, hash)] - 1;
+                if (entry < 0) {
+                    misses++;
+                    return null;
+                }
+                hits++;
+                moveToHead(entry);
+                return (V) values[entry];
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        boolean contains(long key, int hash) {
+            lock.lock();
+            try {
+                return table[probe(key, hash)] != 0;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void put(long key, int hash, V value) {
+            lock.lock();
+            try {
+                int slot = probe(key, hash);
+                int entry = table[slot] - 1;
+                if (entry >= 0) {
+                    values[entry] = value;
+                    moveToHead(entry);
+                    return;
+                }
+                if (freeHead == NONE) {
+                    evictTail();
+                    slot = probe(key, hash); // the backward shift may have moved the empty slot
+                }
+                entry = freeHead;
+                freeHead = next[entry];
+                keys[entry] = key;
+                values[entry] = value;
+                table[slot] = entry + 1;
+                linkAtHead(entry);
+                size++;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        boolean remove(long key, int hash) {
+            lock.lock();
+            try {
+                int slot = probe(key, hash);
+                int entry = table[slot] - 1;
+                if (entry < 0) {
+                    return false;
+                }
+                deleteSlot(slot);
+                unlink(entry);
+                release(entry);
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int size() {
+            lock.lock();
+            try {
+                return size;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Table slot holding key, or the empty slot where it would go
+        private int probe(long key, int hash) {
+            int slot = hash & tableMask;
+            while (table[slot] != 0 && keys[table[slot] - 1] != key) {
+                slot = (slot + 1) & tableMask;
+            }
+            return slot;
+        }
+
+        private void evictTail() {
+            int victim = tail;
+            deleteSlot(probe(keys[victim], hash(keys[victim])));
+            unlink(victim);
+            release(victim);
+            evictions++;
+        }
+
+        private void release(int entry) {
+            values[entry] = null; // let the value be collected
+            next[entry] = freeHead;
+            freeHead = entry;
+            size--;
+        }
+
+        // Backward shift deletion (see OffHeapCacheStorage.Segment.delete)
+        private void deleteSlot(int slot) {
+            int hole = slot;
+            int nextSlot = (hole + 1) & tableMask;
+            while (table[nextSlot] != 0) {
+                int home = hash(keys[table[nextSlot] - 1]) & tableMask;
+                if (((nextSlot - home) & tableMask) >= ((nextSlot - hole) & tableMask)) {
+                    table[hole] = table[nextSlot];
+                    hole = nextSlot;
+                }
+                nextSlot = (nextSlot + 1) & tableMask;
+            }
+            table[hole] = 0;
+        }
+
+        private void moveToHead(int entry) {
+            if (entry != head) {
+                unlink(entry);
+                linkAtHead(entry);
+            }
+        }
+
+        private void linkAtHead(int entry) {
+            prev[entry] = NONE;
+            next[entry] = head;
+            if (head != NONE) {
+                prev[head] = entry;
+            }
+            head = entry;
+            if (tail == NONE) {
+                tail = entry;
+            }
+        }
+
+        private void unlink(int entry) {
+            int p = prev[entry];
+            int n = next[entry];
+            if (p != NONE) {
+                next[p] = n;
+            } else {
+                head = n;
+            }
+            if (n != NONE) {
+                prev[n] = p;
+            } else {
+                tail = p;
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_100K;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CompletableFuture;
+
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.EvictionAlgorithms.ConcreteEvictionAlgorithm.LRUEvictionAlgorithm;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.MainCache.Cache;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.ConcreteStorages.ConcreteCacheStorage.InMemoryCacheStorage;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.ConcreteStorages.ConcreteDBStorage.SimpleDBStorage;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.WritePolicies.ConcreteWritePolicies.WriteThroughPolicy;
+
+/**
+ * Bytes allocated per cache hit: Cache<Long, String> vs LongKeyCache<String>.
+ *
+ * Uses the per-thread allocation counter of the HotSpot ThreadMXBean (exact
+ * TLAB accounting, no profiler needed). The hit loop runs on one thread after
+ * warm-up, so JIT-compiled code is measured. The expected result for
+ * LongKeyCache is 0 bytes per hit.
+ *
+ * Usage: java ...Advanced_Cache_100K.LongKeyCacheAllocationBenchmark [keys] [hits]
+ */
+public class LongKeyCacheAllocationBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int keys = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int hits = args.length > 1 ? Integer.parseInt(args[1]) : 5_000_000;
+
+        SimpleDBStorage<Long, String> db = new SimpleDBStorage<>();
+        for (long key = 0; key < keys; key++) {
+            db.write(key, "value-" + key);
+        }
+
+        // 25% headroom: LongKeyCache bounds every segment, an uneven hash split would otherwise evict (and miss) a few keys
+        int capacity = keys + keys / 4;
+        LongKeyCache<String> longKeyCache = new LongKeyCache<>(capacity, db, new WriteThroughPolicy<>());
+        Cache<Long, String> cache = new Cache<>(new InMemoryCacheStorage<>(capacity), db, new WriteThroughPolicy<>(),
+                new LRUEvictionAlgorithm<>(), 4);
+        CompletableFuture<?>[] loads = new CompletableFuture<?>[keys];
+        for (long key = 0; key < keys; key++) {
+            longKeyCache.get(key);
+            loads[(int) key] = cache.updateData(key, "value-" + key);
+        }
+        CompletableFuture.allOf(loads).join();
+
+        for (int round = 0; round < 3; round++) { // rounds 0-1 warm up the JIT
+            long[] sink = new long[1];
+            double cacheBytes = bytesPerHit(hits, keys, key -> sink[0] += cache.accessData(key).join().length());
+            double longKeyBytes = bytesPerHit(hits, keys, key -> sink[0] += longKeyCache.get(key).length());
+            if (round == 2) {
+                System.out.printf("%d hits over %d keys%n", hits, keys);
+                System.out.printf("  Cache<Long, String>     : %8.1f bytes/hit%n", cacheBytes);
+                System.out.printf("  LongKeyCache<String>    : %8.1f bytes/hit%n", longKeyBytes);
+                System.out.printf("  (checksum %d, LongKeyCache misses %d)%n", sink[0], longKeyCache.getMissCount());
+            }
+        }
+        cache.shutDown();
+    }
+
+    interface HitLoop {
+        void hit(long key) throws Exception;
+    }
+
+    private static double bytesPerHit(int hits, int keys, HitLoop loop) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < hits; i++) {
+            loop.hit((i * 31L) % keys);
+        }
+        long after = threads.getThreadAllocatedBytes(threadId);
+        return (double) (after - before) / hits;
+    }
+}
@@ -0,0 +1,341 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_100K;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces.Codec;
+
+/**
+ * Second cache tier: a log-structured store in memory-mapped files.
+ *
+ * Layout: a directory of fixed-size segment files l2-<id>.seg, each mapped
+ * READ_WRITE once. Entries are only ever appended to the newest (active)
+ * segment:
+ *
+ * [ keyLength : int ][ valueLength : int ][ key bytes ][ value bytes ]
+ *
+ * The on-heap part is just the offset index (key -> segment, offset, length).
+ * Overwrites and removes only update the index, the old record becomes
+ * garbage in its segment. Every segment counts its live bytes, so:
+ * - Compaction: when a sealed segment's live ratio drops below
+ * compactionThreshold, its live records are re-appended to the active segment
+ * and the file is deleted.
+ * - Capacity: when more than maxSegments segments exist, the oldest one is
+ * dropped as a whole (FIFO, like the region eviction of flash caches). This
+ * tier sits below an LRU tier, so what reaches it is already cold.
+ *
+ * Reads need no lock: a reader resolves the index entry and copies the bytes
+ * out of the mapping. A segment deleted meanwhile stays mapped until its
+ * buffer is garbage collected, so the copy is still valid; the reader then
+ * re-checks the index and retries if the entry moved.
+ *
+ * The content does not survive a restart (the index only lives in memory),
+ * old segment files in the directory are deleted when the tier is opened.
+ */
+public class MappedFileTier<K, V> implements AutoCloseable {
+
+    private static final int HEADER_BYTES = 8;
+    private static final String SEGMENT_PREFIX = "l2-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final int maxSegments;
+    private final double compactionThreshold;
+    private final Codec<K> keyCodec;
+    private final Codec<V> valueCodec;
+
+    private final ConcurrentHashMap<K, Location> index = new ConcurrentHashMap<>();
+    // Appends, segment rolls, compaction and FIFO drops are serialized by this lock. Only the oldest-first order matters.
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private Segment active;
+    private long nextSegmentId;
+
+    private final LongAdder compactedSegments = new LongAdder();
+    private final LongAdder droppedSegments = new LongAdder();
+    private final LongAdder droppedEntries = new LongAdder();
+
+    public MappedFileTier(Path directory, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        this(directory, keyCodec, valueCodec, 64 * 1024 * 1024, 16, 0.5);
+    }
+
+    /**
+     * @param segmentBytes        Size of one mapped segment file (max 2GB, one
+     *                            mapping per file)
+     * @param maxSegments         Disk budget in segments, the oldest segment is
+     *                            dropped beyond it
+     * @param compactionThreshold A sealed segment with less than this share of
+     *                            live bytes is compacted
+     */
+    public MappedFileTier(Path directory, Codec<K> keyCodec, Codec<V> valueCodec,
+            int segmentBytes, int maxSegments, double compactionThreshold) throws IOException {
+        if (segmentBytes <= HEADER_BYTES || maxSegments < 2) {
+            throw new IllegalArgumentException("Need segments larger than a record header and at least 2 segments");
+        }
+        this.directory = directory;
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = maxSegments;
+        this.compactionThreshold = compactionThreshold;
+        Files.createDirectories(directory);
+        deleteOldSegments();
+        appendLock.lock();
+        try {
+            this.active = openSegment();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Value of the key, or null when this tier does not hold it.
+     */
+    public V get(K key) throws Exception {
+        while (true) {
+            Location location = index.get(key);
+            if (location == null) {
+                return null;
+            }
+            byte[] bytes = new byte[location.valueLength];
+            location.segment.buffer.get(location.offset + HEADER_BYTES + location.keyLength, bytes);
+            if (index.get(key) == location) {
+                return valueCodec.decode(bytes);
+            }
+            // Overwritten or moved by compaction while copying: read the new location
+        }
+    }
+
+    public boolean containsKey(K key) {
+        return index.containsKey(key);
+    }
+
+    public void put(K key, V value) throws Exception {
+        byte[] keyBytes = keyCodec.encode(key);
+        byte[] valueBytes = valueCodec.encode(value);
+        int recordLength = HEADER_BYTES + keyBytes.length + valueBytes.length;
+        if (recordLength > segmentBytes) {
+            throw new Exception("Entry larger than an L2 segment: " + recordLength + " bytes");
+        }
+        appendLock.lock();
+        try {
+            Location location = append(keyBytes, valueBytes);
+            release(index.put(key, location));
+            maintain();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * @return true if the key was present
+     */
+    public boolean remove(K key) {
+        Location removed = index.remove(key);
+        release(removed);
+        return removed != null;
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    // Caller holds appendLock
+    private Location append(byte[] keyBytes, byte[] valueBytes) throws IOException {
+        int recordLength = HEADER_BYTES + keyBytes.length + valueBytes.length;
+        if (active.writePosition + recordLength > segmentBytes) {
+            active = openSegment();
+        }
+        int offset = active.writePosition;
+        MappedByteBuffer buffer = active.buffer;
+        buffer.putInt(offset, keyBytes.length);
+        buffer.putInt(offset + 4, valueBytes.length);
+        buffer.put(offset + HEADER_BYTES, keyBytes);
+        buffer.put(offset + HEADER_BYTES + keyBytes.length, valueBytes);
+        active.writePosition += recordLength;
+        active.liveBytes.addAndGet(recordLength);
+        return new Location(active, offset, keyBytes.length, valueBytes.length);
+    }
+
+    private static void release(Location old) {
+        if (old != null) {
+            old.segment.liveBytes.addAndGet(-old.recordLength());
+        }
+    }
+
+    // Caller holds appendLock. Compact mostly-dead segments first, then enforce the disk budget.
+    private void maintain() throws Exception {
+        for (Segment segment : new ArrayList<>(segments)) {
+            if (segment != active && segment.liveBytes.get() < segment.writePosition * compactionThreshold) {
+                compact(segment);
+            }
+        }
+        while (segments.size() > maxSegments) {
+            dropOldest();
+        }
+    }
+
+    // Re-append the records the index still points at, then delete the file
+    private void compact(Segment segment) throws Exception {
+        List<Location> live = liveRecords(segment);
+        for (Location location : live) {
+            byte[] keyBytes = new byte[location.keyLength];
+            byte[] valueBytes = new byte[location.valueLength];
+            segment.buffer.get(location.offset + HEADER_BYTES, keyBytes);
+            segment.buffer.get(location.offset + HEADER_BYTES + location.keyLength, valueBytes);
+            K key = keyCodec.decode(keyBytes);
+            Location moved = append(keyBytes, valueBytes);
+            // Only move it if nobody overwrote or removed the key meanwhile (those don't take appendLock)
+            if (!index.replace(key, location, moved)) {
+                release(moved);
+            }
+        }
+        delete(segment);
+        compactedSegments.increment();
+    }
+
+    private void dropOldest() throws Exception {
+        Segment oldest = segments.peekFirst();
+        for (Location location : liveRecords(oldest)) {
+            byte[] keyBytes = new byte[location.keyLength];
+            oldest.buffer.get(location.offset + HEADER_BYTES, keyBytes);
+            if (index.remove(keyCodec.decode(keyBytes), location)) {
+                droppedEntries.increment();
+            }
+        }
+        delete(oldest);
+        droppedSegments.increment();
+    }
+
+    // Walk the records of a segment and keep those the index still points at
+    private List<Location> liveRecords(Segment segment) throws Exception {
+        List<Location> live = new ArrayList<>();
+        int offset = 0;
+        while (offset + HEADER_BYTES <= segment.writePosition) {
+            int keyLength = segment.buffer.getInt(offset);
+            int valueLength = segment.buffer.getInt(offset + 4);
+            byte[] keyBytes = new byte[keyLength];
+            segment.buffer.get(offset + HEADER_BYTES, keyBytes);
+            Location location = index.get(keyCodec.decode(keyBytes));
+            if (location != null && location.segment == segment && location.offset == offset) {
+                live.add(location);
+            }
+            offset += HEADER_BYTES + keyLength + valueLength;
+        }
+        return live;
+    }
+
+    // Caller holds appendLock
+    private Segment openSegment() throws IOException {
+        Path path = directory.resolve(SEGMENT_PREFIX + (nextSegmentId++) + SEGMENT_SUFFIX);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The mapping stays valid after the channel is closed
+            Segment segment = new Segment(path, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes));
+            segments.addLast(segment);
+            return segment;
+        }
+    }
+
+    private void delete(Segment segment) throws IOException {
+        segments.remove(segment);
+        Files.deleteIfExists(segment.path);
+    }
+
+    private void deleteOldSegments() throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    public long getCompactedSegments() {
+        return compactedSegments.sum();
+    }
+
+    public long getDroppedSegments() {
+        return droppedSegments.sum();
+    }
+
+    /**
+     * Live entries lost because their segment was the oldest when the disk
+     * budget was exceeded.
+     */
+    public long getDroppedEntries() {
+        return droppedEntries.sum();
+    }
+
+    public int getSegmentCount() {
+        appendLock.lock();
+        try {
+            return segments.size();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    public long getDiskBytes() {
+        return (long) getSegmentCount() * segmentBytes;
+    }
+
+    /**
+     * Drops every entry and deletes the segment files.
+     */
+    @Override
+    public void close() throws IOException {
+        appendLock.lock();
+        try {
+            index.clear();
+            while (!segments.isEmpty()) {
+                delete(segments.peekFirst());
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private static final class Segment {
+        final Path path;
+        final MappedByteBuffer buffer;
+        final AtomicLong liveBytes = new AtomicLong(); // bytes of records the index still points at
+        int writePosition; // only changed under appendLock
+
+        Segment(Path path, MappedByteBuffer buffer) {
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+
+    // Immutable, compared by identity: a newer record of the same key is always a new Location
+    private static final class Location {
+        final Segment segment;
+        final int offset;
+        final int keyLength;
+        final int valueLength;
+
+        Location(Segment segment, int offset, int keyLength, int valueLength) {
+            this.segment = segment;
+            this.offset = offset;
+            this.keyLength = keyLength;
+            this.valueLength = valueLength;
+        }
+
+        int recordLength() {
+            return HEADER_BYTES + keyLength + valueLength;
+        }
+    }
+}
@@ -4,6 +4,8 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.Map;
 
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.UtilityClasses.LatencyHistogram;
+
 /**
  * Production-grade metrics compatible with monitoring systems like Prometheus.
  * 
@@ -13,12 +15,32 @@ import java.util.Map;
  * 
  * Key metrics for cache monitoring:
  * - Hit rate: Primary indicator of cache effectiveness
- * - Latency histograms: P50, P95, P99 for SLA monitoring
+ * - Latency histograms: P50, P95, P99 for SLA monitoring, per operation
  * - Eviction rate: Indicates capacity issues
  * - Size gauge: For capacity planning
+ *
+ * Two kinds of latency data:
+ * - recordLatency(ms): fixed millisecond buckets, exported as a Prometheus
+ * histogram. Coarse, but buckets can be summed across instances.
+ * - recordLatency(Operation, nanos): one LatencyHistogram per code path (hit,
+ * miss, load, write, eviction), ~1.6% precision from nanoseconds to minutes,
+ * exported as a summary with p50 / p90 / p99 / p99.9 and max. Sub-millisecond
+ * hits and the real tail of loads become visible. Recording takes no lock and
+ * allocates nothing, so it can stay on in production.
  */
 public class PrometheusMetrics {
 
+    /**
+     * Code paths with their own latency histogram.
+     */
+    public enum Operation {
+        HIT, MISS, LOAD, WRITE, EVICTION;
+
+        private final String label = name().toLowerCase();
+    }
+
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
     // Counters (monotonically increasing)
     private final LongAdder cacheHitsTotal = new LongAdder();
     private final LongAdder cacheMissesTotal = new LongAdder();
@@ -32,6 +54,9 @@ public class PrometheusMetrics {
     private final LongAdder latencySum = new LongAdder();
     private final LongAdder latencyCount = new LongAdder();
 
+    // Indexed by Operation.ordinal()
+    private final LatencyHistogram[] operationLatency = new LatencyHistogram[Operation.values().length];
+
     // Gauges (current value)
     private volatile long currentCacheSize = 0;
     private volatile long currentCacheCapacity = 0;
@@ -49,6 +74,9 @@ public class PrometheusMetrics {
         for (int i = 0; i < latencyBuckets.length; i++) {
             latencyBuckets[i] = new LongAdder();
         }
+        for (int i = 0; i < operationLatency.length; i++) {
+            operationLatency[i] = new LatencyHistogram();
+        }
     }
 
     // Counter increments
@@ -92,6 +120,16 @@ public class PrometheusMetrics {
         latencyBuckets[LATENCY_BUCKETS.length].increment();
     }
 
+    /**
+     * Record the latency of one operation into its histogram. Lock-free and
+     * allocation-free, safe on the hot path.
+     *
+     * @param nanos Latency in nanoseconds (System.nanoTime() difference)
+     */
+    public void recordLatency(Operation operation, long nanos) {
+        operationLatency[operation.ordinal()].record(nanos);
+    }
+
     // Gauge updates
     public void setCacheSize(long size) {
         this.currentCacheSize = size;
@@ -147,6 +185,21 @@ public class PrometheusMetrics {
         return count == 0 ? 0 : latencySum.sum() / 1000.0 / count;
     }
 
+    /**
+     * Cumulative latency distribution of one operation. Use
+     * snapshot.since(previousSnapshot) for a reporting interval.
+     */
+    public LatencyHistogram.Snapshot getLatencySnapshot(Operation operation) {
+        return operationLatency[operation.ordinal()].snapshot();
+    }
+
+    /**
+     * Latency percentile (0 - 100) of one operation in milliseconds.
+     */
+    public double getLatencyPercentileMs(Operation operation, double percentile) {
+        return getLatencySnapshot(operation).valueAtPercentile(percentile) / 1_000_000.0;
+    }
+
     /**
      * Export metrics in Prometheus format.
      * Can be exposed via HTTP endpoint for scraping.
@@ -206,6 +259,35 @@ public class PrometheusMetrics {
         sb.append(String.format("%slatency_ms_count{cache_name=\"%s\"} %d%n",
                 prefix, cacheName, latencyCount.sum()));
 
+        // Per operation: summary with quantiles (ms with ns digits, hits are sub-microsecond)
+        LatencyHistogram.Snapshot[] snapshots = new LatencyHistogram.Snapshot[operationLatency.length];
+        for (Operation operation : Operation.values()) {
+            snapshots[operation.ordinal()] = getLatencySnapshot(operation);
+        }
+        sb.append(String.format("# HELP %soperation_latency_ms Latency per operation since start%n", prefix));
+        sb.append(String.format("# TYPE %soperation_latency_ms summary%n", prefix));
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram.Snapshot snapshot = snapshots[operation.ordinal()];
+            for (double quantile : QUANTILES) {
+                // NaN for an operation that never happened, as Prometheus client libraries do
+                double value = snapshot.getCount() == 0 ? Double.NaN
+                        : snapshot.valueAtPercentile(quantile * 100) / 1_000_000.0;
+                sb.append(String.format("%soperation_latency_ms{cache_name=\"%s\",operation=\"%s\",quantile=\"%s\"} %s%n",
+                        prefix, cacheName, operation.label, quantile,
+                        Double.isNaN(value) ? "NaN" : String.format("%.6f", value)));
+            }
+            sb.append(String.format("%soperation_latency_ms_sum{cache_name=\"%s\",operation=\"%s\"} %.6f%n",
+                    prefix, cacheName, operation.label, snapshot.getSum() / 1_000_000.0));
+            sb.append(String.format("%soperation_latency_ms_count{cache_name=\"%s\",operation=\"%s\"} %d%n",
+                    prefix, cacheName, operation.label, snapshot.getCount()));
+        }
+        sb.append(String.format("# HELP %soperation_latency_max_ms Slowest operation since start%n", prefix));
+        sb.append(String.format("# TYPE %soperation_latency_max_ms gauge%n", prefix));
+        for (Operation operation : Operation.values()) {
+            sb.append(String.format("%soperation_latency_max_ms{cache_name=\"%s\",operation=\"%s\"} %.6f%n",
+                    prefix, cacheName, operation.label, snapshots[operation.ordinal()].getMax() / 1_000_000.0));
+        }
+
         return sb.toString();
     }
 
@@ -0,0 +1,169 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_100K;
+
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.EvictionAlgorithms.EvictionAlgorithm;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.UtilityClasses.StripedReadBuffer;
+
+/**
+ * Decorator that batches read (cache hit) notifications in front of any
+ * EvictionAlgorithm.
+ *
+ * Problem: Every LRU variant mutates its linked list under a lock on every
+ * single read. Even ShardedLRUEvictionAlgorithm only divides that cost, so
+ * read throughput flat-lines at "one lock holder per shard" no matter how many
+ * cores are added.
+ *
+ * Solution (same idea as Caffeine's read buffer):
+ * 1. A read is recorded into a small ring buffer instead of touching the
+ * policy. Threads are spread over several buffers (stripes) by thread id, so
+ * readers rarely share a buffer.
+ * 2. Buffers are lossy: if a buffer is full the event is dropped. Recency is
+ * only a hint, losing a few events barely changes the hit rate.
+ * 3. When a buffer fills up, the reader tries (tryLock, never waits) to drain
+ * all buffers into the wrapped policy in one batch.
+ * 4. Writes (keyAccessed) and evictions take the lock, drain pending reads
+ * first and then apply the change, so the policy stays consistent.
+ *
+ * Trade-off: Recency is slightly delayed and approximate. Reads are replayed
+ * through keyRead, so a read of a key evicted meanwhile is ignored by the LRU
+ * variants instead of re-adding it.
+ *
+ * For caches that report every hit straight to the policy (EnhancedCache).
+ * Don't wrap the policy of a MainCache Cache: Cache already records its hits
+ * in the same StripedReadBuffer, a second buffer would only delay reordering
+ * twice and hold every event twice.
+ */
+public class ReadBufferedEvictionAlgorithm<K> implements EvictionAlgorithm<K> {
+
+    private static final int DEFAULT_BUFFER_SIZE = 16; // per stripe, must be power of two
+
+    private final EvictionAlgorithm<K> delegate;
+    private final StripedReadBuffer<K> readBuffer;
+    private final ReentrantLock evictionLock;
+
+    public ReadBufferedEvictionAlgorithm(EvictionAlgorithm<K> delegate) {
+        // One stripe per core is enough: more stripes than running threads only wastes memory
+        this(delegate, Runtime.getRuntime().availableProcessors(), DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param delegate   Policy that receives the replayed events
+     * @param numStripes Number of read buffers (rounded up to a power of two)
+     * @param bufferSize Events per buffer before a drain is attempted (rounded
+     *                   up to a power of two)
+     */
+    public ReadBufferedEvictionAlgorithm(EvictionAlgorithm<K> delegate, int numStripes, int bufferSize) {
+        this.delegate = delegate;
+        this.readBuffer = new StripedReadBuffer<>(numStripes, bufferSize);
+        this.evictionLock = new ReentrantLock();
+    }
+
+    /**
+     * Cache hit: buffered, never blocks.
+     */
+    @Override
+    public void keyRead(K key) throws Exception {
+        // A full stripe drops this event (lossy) and helps drain
+        if (readBuffer.record(key)) {
+            tryDrain();
+        }
+    }
+
+    /**
+     * Insert or update: must not be lost, so it is applied immediately after
+     * replaying pending reads.
+     */
+    @Override
+    public void keyAccessed(K key) throws Exception {
+        evictionLock.lock();
+        try {
+            drainBuffers();
+            delegate.keyAccessed(key);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public K evictKey() throws Exception {
+        evictionLock.lock();
+        try {
+            drainBuffers();
+            return delegate.evictKey();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public K evictKeyFor(K incomingKey) throws Exception {
+        evictionLock.lock();
+        try {
+            drainBuffers();
+            return delegate.evictKeyFor(incomingKey);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public void keyRemoved(K key) throws Exception {
+        evictionLock.lock();
+        try {
+            drainBuffers();
+            delegate.keyRemoved(key);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public List<K> snapshotKeys() throws Exception {
+        evictionLock.lock();
+        try {
+            drainBuffers();
+            return delegate.snapshotKeys();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Drain all pending reads now (e.g. before shutdown or in tests).
+     */
+    public void flush() {
+        evictionLock.lock();
+        try {
+            drainBuffers();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public EvictionAlgorithm<K> getDelegate() {
+        return delegate;
+    }
+
+    private void tryDrain() {
+        if (evictionLock.tryLock()) {
+            try {
+                drainBuffers();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    // Must be called while holding evictionLock
+    private void drainBuffers() {
+        readBuffer.drainTo(key -> {
+            try {
+                delegate.keyRead(key);
+            } catch (Exception ignored) {
+                // A lost recency update is acceptable
+            }
+        });
+    }
+}
@@ -1,23 +1,22 @@
 package J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_100K;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.locks.ReentrantLock;
 
 import J_LLD_Concurrency_Problems.A_Deisgn_Cache.EvictionAlgorithms.EvictionAlgorithm;
-import J_LLD_Concurrency_Problems.A_Deisgn_Cache.UtilityClasses.DoublyLinkedList;
-import J_LLD_Concurrency_Problems.A_Deisgn_Cache.UtilityClasses.DoublyLinkedListNode;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.UtilityClasses.IndexedLinkedList;
 
 /**
  * Sharded LRU eviction algorithm for high-concurrency environments (100K+
  * users).
- * 
+ *
  * Key insight: Instead of one global LRU with one lock, we maintain N
  * independent
  * LRU structures, each with its own lock. This reduces contention by N times.
- * 
+ *
  * Trade-off: Not a perfect global LRU. Each shard evicts its own
  * least-recently-used
  * key, which may not be the globally least-recently-used. This is acceptable
@@ -25,18 +24,49 @@ import J_LLD_Concurrency_Problems.A_Deisgn_Cache.UtilityClasses.DoublyLinkedList
  * 1. At 100K scale, strict LRU is less important than performance
  * 2. The approximation is still very good (hot keys stay, cold keys evict)
  * 3. Many production caches (memcached, Redis cluster) use similar approaches
+ *
+ * Choosing the shard to evict from (EvictionMode):
+ * - FULL_SCAN: the shard whose head is the oldest. Every shard publishes its
+ * head access time in a volatile field, so the scan takes no locks, but it
+ * still reads all N shards per eviction.
+ * - SAMPLED: power-of-k-choices. Compare the heads of k random shards and evict
+ * the oldest. O(k) regardless of N; the victim is old but not always the
+ * oldest.
+ * - LOCAL: evict from the shard the incoming key goes to (evictKeyFor), so
+ * every shard keeps its own share of the capacity and eviction touches exactly
+ * one lock. Falls back to SAMPLED when that shard is empty or the incoming key
+ * is unknown (evictKey()).
+ *
+ * ShardedLRUEvictionBenchmark reports hit ratio (vs exact LRU) and eviction
+ * throughput for each mode.
  */
 public class ShardedLRUEvictionAlgorithm<K> implements EvictionAlgorithm<K> {
 
+    public enum EvictionMode {
+        FULL_SCAN, SAMPLED, LOCAL
+    }
+
     private final int numShards;
     private final List<LRUShard<K>> shards;
+    private final EvictionMode mode;
+    private final int sampleSize;
 
     public ShardedLRUEvictionAlgorithm() {
         this(16); // Default 16 shards - good balance for most workloads
     }
 
     public ShardedLRUEvictionAlgorithm(int numShards) {
+        this(numShards, EvictionMode.FULL_SCAN, 4);
+    }
+
+    /**
+     * @param sampleSize shards compared per eviction in SAMPLED / LOCAL
+     *                   fallback (2-4 is usually enough)
+     */
+    public ShardedLRUEvictionAlgorithm(int numShards, EvictionMode mode, int sampleSize) {
         this.numShards = numShards;
+        this.mode = mode;
+        this.sampleSize = Math.max(1, Math.min(sampleSize, numShards));
         this.shards = new ArrayList<>(numShards);
         for (int i = 0; i < numShards; i++) {
             shards.add(new LRUShard<>());
@@ -54,25 +84,108 @@ public class ShardedLRUEvictionAlgorithm<K> implements EvictionAlgorithm<K> {
         shard.keyAccessed(key);
     }
 
+    @Override
+    public void keyRead(K key) throws Exception {
+        LRUShard<K> shard = getShardForKey(key);
+        shard.keyRead(key);
+    }
+
+    @Override
+    public void keyRemoved(K key) throws Exception {
+        LRUShard<K> shard = getShardForKey(key);
+        shard.keyRemoved(key);
+    }
+
     @Override
     public K evictKey() throws Exception {
-        // Round-robin eviction across shards
-        // This ensures no single shard is always evicted from
-        LRUShard<K> shardWithOldest = null;
-        long oldestAccessTime = Long.MAX_VALUE;
+        return mode == EvictionMode.FULL_SCAN ? evictOldest() : evictSampled();
+    }
 
-        for (LRUShard<K> shard : shards) {
-            long headTime = shard.getHeadAccessTime();
-            if (headTime < oldestAccessTime && headTime != -1) {
-                oldestAccessTime = headTime;
-                shardWithOldest = shard;
+    @Override
+    public K evictKeyFor(K incomingKey) throws Exception {
+        if (mode == EvictionMode.LOCAL) {
+            K evicted = getShardForKey(incomingKey).evictKey();
+            if (evicted != null) {
+                return evicted;
+            }
+        }
+        return evictKey();
+    }
+
+    // Oldest head over all shards. The chosen shard can be emptied concurrently, then look again.
+    private K evictOldest() {
+        while (true) {
+            LRUShard<K> shardWithOldest = null;
+            long oldestAccessTime = Long.MAX_VALUE;
+            for (LRUShard<K> shard : shards) {
+                long headTime = shard.headAccessTime; // volatile read, no lock
+                if (headTime < oldestAccessTime) {
+                    oldestAccessTime = headTime;
+                    shardWithOldest = shard;
+                }
+            }
+            if (shardWithOldest == null) {
+                return null; // every shard is empty
+            }
+            K evicted = shardWithOldest.evictKey();
+            if (evicted != null) {
+                return evicted;
+            }
+        }
+    }
+
+    private K evictSampled() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int attempt = 0; attempt < 4; attempt++) {
+            LRUShard<K> best = null;
+            long bestTime = Long.MAX_VALUE;
+            for (int i = 0; i < sampleSize; i++) {
+                LRUShard<K> shard = shards.get(random.nextInt(numShards));
+                long headTime = shard.headAccessTime;
+                if (headTime < bestTime) {
+                    bestTime = headTime;
+                    best = shard;
+                }
+            }
+            if (best != null) {
+                K evicted = best.evictKey();
+                if (evicted != null) {
+                    return evicted;
+                }
             }
         }
+        // Samples kept hitting empty shards (nearly empty cache): scan them all
+        return evictOldest();
+    }
 
-        if (shardWithOldest != null) {
-            return shardWithOldest.evictKey();
+    /**
+     * Keys of all shards from oldest to newest access time. Each shard is
+     * copied under its own lock (never all locks at once), then the per-shard
+     * lists, already sorted, are merged by access time.
+     */
+    @Override
+    public List<K> snapshotKeys() throws Exception {
+        List<ShardSnapshot<K>> snapshots = new ArrayList<>(numShards);
+        int total = 0;
+        for (LRUShard<K> shard : shards) {
+            ShardSnapshot<K> snapshot = shard.snapshot();
+            if (snapshot.keys.length > 0) {
+                snapshots.add(snapshot);
+                total += snapshot.keys.length;
+            }
         }
-        return null;
+        List<K> keys = new ArrayList<>(total);
+        PriorityQueue<ShardSnapshot<K>> merge = new PriorityQueue<>(
+                Math.max(1, snapshots.size()), (a, b) -> Long.compare(a.currentStamp(), b.currentStamp()));
+        merge.addAll(snapshots);
+        while (!merge.isEmpty()) {
+            ShardSnapshot<K> next = merge.poll();
+            keys.add(next.currentKey());
+            if (next.advance()) {
+                merge.add(next);
+            }
+        }
+        return keys;
     }
 
     /**
@@ -86,67 +199,100 @@ public class ShardedLRUEvictionAlgorithm<K> implements EvictionAlgorithm<K> {
         return total;
     }
 
+    public EvictionMode getEvictionMode() {
+        return mode;
+    }
+
     /**
-     * Individual LRU shard with its own lock.
+     * Individual LRU shard with its own lock. The access time of a key is kept
+     * in the list's stamp array, next to its links.
      */
     private static class LRUShard<K> {
-        private final DoublyLinkedList<K> dll;
-        private final Map<K, DoublyLinkedListNode<K>> keyToNodeMap;
-        private final Map<K, Long> keyAccessTimes; // For eviction ordering across shards
+        private final IndexedLinkedList<K> lru;
         private final ReentrantLock lock;
+        // Access time of the head (oldest key), Long.MAX_VALUE when empty. Written under the lock, read without it.
+        volatile long headAccessTime = Long.MAX_VALUE;
 
         LRUShard() {
-            this.dll = new DoublyLinkedList<>();
-            this.keyToNodeMap = new HashMap<>();
-            this.keyAccessTimes = new HashMap<>();
+            this.lru = new IndexedLinkedList<>();
             this.lock = new ReentrantLock();
         }
 
         void keyAccessed(K key) {
             lock.lock();
             try {
-                long now = System.nanoTime();
-                if (keyToNodeMap.containsKey(key)) {
-                    DoublyLinkedListNode<K> node = keyToNodeMap.get(key);
-                    dll.detatchNode(node);
-                    dll.addNodeAtTail(node);
+                int slot = lru.indexOf(key);
+                if (slot != IndexedLinkedList.NONE) {
+                    lru.moveToTail(slot);
                 } else {
-                    DoublyLinkedListNode<K> newNode = new DoublyLinkedListNode<>(key);
-                    dll.addNodeAtTail(newNode);
-                    keyToNodeMap.put(key, newNode);
+                    slot = lru.addAtTail(0, key);
                 }
-                keyAccessTimes.put(key, now);
+                lru.setStamp(slot, System.nanoTime()); // For eviction ordering across shards
+                publishHead();
             } finally {
                 lock.unlock();
             }
         }
 
-        K evictKey() {
+        // Refresh recency only if the key is still tracked by this shard
+        void keyRead(K key) {
+            lock.lock();
+            try {
+                int slot = lru.indexOf(key);
+                if (slot != IndexedLinkedList.NONE) {
+                    lru.moveToTail(slot);
+                    lru.setStamp(slot, System.nanoTime());
+                    publishHead();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void keyRemoved(K key) {
             lock.lock();
             try {
-                DoublyLinkedListNode<K> nodeToEvict = dll.getHead();
-                if (nodeToEvict == null) {
-                    return null;
+                int slot = lru.indexOf(key);
+                if (slot != IndexedLinkedList.NONE) {
+                    lru.remove(slot);
+                    publishHead();
                 }
+            } finally {
+                lock.unlock();
+            }
+        }
 
-                K evictKey = nodeToEvict.getValue();
-                dll.removeHead();
-                keyToNodeMap.remove(evictKey);
-                keyAccessTimes.remove(evictKey);
-                return evictKey;
+        K evictKey() {
+            lock.lock();
+            try {
+                K evicted = lru.removeHead(0);
+                publishHead();
+                return evicted;
             } finally {
                 lock.unlock();
             }
         }
 
-        long getHeadAccessTime() {
+        // Caller holds the lock
+        private void publishHead() {
+            int head = lru.head(0);
+            long time = head == IndexedLinkedList.NONE ? Long.MAX_VALUE : lru.stampAt(head);
+            if (time != headAccessTime) { // skip the volatile write when a hit didn't change the head
+                headAccessTime = time;
+            }
+        }
+
+        ShardSnapshot<K> snapshot() {
             lock.lock();
             try {
-                DoublyLinkedListNode<K> head = dll.getHead();
-                if (head == null)
-                    return -1;
-                Long time = keyAccessTimes.get(head.getValue());
-                return time != null ? time : -1;
+                Object[] keys = new Object[lru.size()];
+                long[] stamps = new long[keys.length];
+                int i = 0;
+                for (int slot = lru.head(0); slot != IndexedLinkedList.NONE; slot = lru.next(slot)) {
+                    keys[i] = lru.keyAt(slot);
+                    stamps[i++] = lru.stampAt(slot);
+                }
+                return new ShardSnapshot<>(keys, stamps);
             } finally {
                 lock.unlock();
             }
@@ -155,10 +301,35 @@ public class ShardedLRUEvictionAlgorithm<K> implements EvictionAlgorithm<K> {
         int size() {
             lock.lock();
             try {
-                return keyToNodeMap.size();
+                return lru.size();
             } finally {
                 lock.unlock();
             }
         }
     }
+
+    // Keys of one shard in LRU order with their access times, plus a merge cursor
+    private static final class ShardSnapshot<K> {
+        final Object[] keys;
+        final long[] stamps;
+        int position;
+
+        ShardSnapshot(Object[] keys, long[] stamps) {
+            this.keys = keys;
+            this.stamps = stamps;
+        }
+
+        long currentStamp() {
+            return stamps[position];
+        }
+
+        @SuppressWarnings("unchecked")
+        K currentKey() {
+            return (K) keys[position];
+        }
+
+        boolean advance() {
+            return ++position < keys.length;
+        }
+    }
 }
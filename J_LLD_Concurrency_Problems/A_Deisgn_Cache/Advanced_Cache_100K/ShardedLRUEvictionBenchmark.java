@@ -0,0 +1,156 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_100K;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.EvictionAlgorithms.EvictionAlgorithm;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.EvictionAlgorithms.ConcreteEvictionAlgorithm.LRUEvictionAlgorithm;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_100K.ShardedLRUEvictionAlgorithm.EvictionMode;
+
+/**
+ * Accuracy vs throughput of the ShardedLRU eviction modes.
+ *
+ * 1. Accuracy: one thread replays a Zipf trace (hit -> keyRead, miss ->
+ * evictKeyFor + keyAccessed, like Cache.updateData) and reports the hit ratio
+ * next to an exact global LRU.
+ * 2. Throughput: N threads hammer a full cache with a miss-heavy mix (every
+ * miss evicts), reporting operations per second. This is where FULL_SCAN's
+ * O(shards) eviction shows.
+ *
+ * Usage: java ...Advanced_Cache_100K.ShardedLRUEvictionBenchmark [threads] [shards]
+ */
+public class ShardedLRUEvictionBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int numShards = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int capacity = 10_000;
+
+        Map<String, Supplier<EvictionAlgorithm<Integer>>> algorithms = new LinkedHashMap<>();
+        algorithms.put("exact LRU (global lock)", LRUEvictionAlgorithm::new);
+        algorithms.put("FULL_SCAN", () -> new ShardedLRUEvictionAlgorithm<>(numShards, EvictionMode.FULL_SCAN, 4));
+        algorithms.put("SAMPLED k=2", () -> new ShardedLRUEvictionAlgorithm<>(numShards, EvictionMode.SAMPLED, 2));
+        algorithms.put("SAMPLED k=4", () -> new ShardedLRUEvictionAlgorithm<>(numShards, EvictionMode.SAMPLED, 4));
+        algorithms.put("LOCAL", () -> new ShardedLRUEvictionAlgorithm<>(numShards, EvictionMode.LOCAL, 4));
+
+        int[] trace = zipfTrace(200_000, 0.9, 1_000_000, 42);
+        System.out.printf("Capacity %d, %d shards, %d threads%n", capacity, numShards, threads);
+        System.out.printf("%-26s %10s %16s%n", "mode", "hit ratio", "ops/s (full)");
+        for (Map.Entry<String, Supplier<EvictionAlgorithm<Integer>>> algorithm : algorithms.entrySet()) {
+            double hitRatio = simulate(algorithm.getValue().get(), trace, capacity);
+            throughput(algorithm.getValue().get(), capacity, threads, 500); // warm-up
+            double opsPerSecond = throughput(algorithm.getValue().get(), capacity, threads, 2000);
+            System.out.printf("%-26s %9.2f%% %16.0f%n", algorithm.getKey(), hitRatio * 100, opsPerSecond);
+        }
+    }
+
+    // Single thread replay, the resident set is tracked here the way CacheStorage would
+    private static double simulate(EvictionAlgorithm<Integer> policy, int[] trace, int capacity) throws Exception {
+        boolean[] resident = new boolean[maxKey(trace) + 1];
+        int size = 0;
+        int hits = 0;
+        for (int key : trace) {
+            if (resident[key]) {
+                hits++;
+                policy.keyRead(key);
+                continue;
+            }
+            if (size >= capacity) {
+                Integer evicted = policy.evictKeyFor(key);
+                resident[evicted] = false;
+                size--;
+            }
+            policy.keyAccessed(key);
+            resident[key] = true;
+            size++;
+        }
+        return (double) hits / trace.length;
+    }
+
+    // Full cache, 70% reads of recently inserted keys, 30% inserts of brand new keys that each evict one (size stays at capacity)
+    private static double throughput(EvictionAlgorithm<Integer> policy, int capacity, int threads, long durationMs)
+            throws Exception {
+        for (int key = 0; key < capacity; key++) {
+            policy.keyAccessed(key);
+        }
+        LongAdder ops = new LongAdder();
+        AtomicBoolean stop = new AtomicBoolean();
+        Thread[] workers = new Thread[threads];
+        int window = Math.max(1, capacity / threads);
+        for (int t = 0; t < threads; t++) {
+            int threadId = t;
+            workers[t] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                int next = 0; // keys of this thread: capacity + threadId + n * threads, never reused
+                long done = 0;
+                try {
+                    while (!stop.get()) {
+                        if (random.nextInt(10) < 7 && next > 0) {
+                            int n = Math.max(0, next - 1 - random.nextInt(window));
+                            policy.keyRead(capacity + threadId + n * threads);
+                        } else {
+                            int key = capacity + threadId + next++ * threads;
+                            policy.evictKeyFor(key);
+                            policy.keyAccessed(key);
+                        }
+                        done++;
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+                ops.add(done);
+            });
+            workers[t].start();
+        }
+        Thread.sleep(durationMs);
+        stop.set(true);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return ops.sum() / (durationMs / 1000.0);
+    }
+
+    private static int[] zipfTrace(int numKeys, double exponent, int length, long seed) {
+        double[] cdf = new double[numKeys];
+        double sum = 0;
+        for (int i = 0; i < numKeys; i++) {
+            sum += 1.0 / Math.pow(i + 1, exponent);
+            cdf[i] = sum;
+        }
+        Random random = new Random(seed);
+        int[] trace = new int[length];
+        for (int i = 0; i < length; i++) {
+            int index = Arrays.binarySearch(cdf, random.nextDouble() * sum);
+            trace[i] = index >= 0 ? index : -index - 1;
+        }
+        // Scramble ranks so the hottest keys don't all land in the same few shards by key order
+        int[] permutation = new int[numKeys];
+        for (int i = 0; i < numKeys; i++) {
+            permutation[i] = i;
+        }
+        for (int i = numKeys - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = permutation[i];
+            permutation[i] = permutation[j];
+            permutation[j] = tmp;
+        }
+        for (int i = 0; i < length; i++) {
+            trace[i] = permutation[trace[i]];
+        }
+        return trace;
+    }
+
+    private static int maxKey(int[] trace) {
+        int max = 0;
+        for (int key : trace) {
+            max = Math.max(max, key);
+        }
+        return max;
+    }
+}
@@ -1,13 +1,24 @@
 package J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_100K;
 
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Supplier;
 
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_100K.PrometheusMetrics.Operation;
 import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces.CacheStorage;
 import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces.DBStorage;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.UtilityClasses.BloomFilter;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.UtilityClasses.NegativeCache;
 
 /**
  * Cache wrapper that prevents cache stampede (thundering herd) problem.
@@ -24,6 +35,37 @@ import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces.DB
  * - Don't allocate one lock per key (unbounded memory)
  * - Instead, hash keys to a fixed pool of locks (bounded memory, slight
  * collision risk)
+ *
+ * Refresh-ahead mode (optional, see the second constructor):
+ * Even with one loader, everyone waits while a popular key is reloaded. In
+ * refresh-ahead mode every loaded entry gets two deadlines:
+ * - soft (refreshAfterMs): the first read after it starts a reload on a small
+ * bounded loader pool and returns the current value right away. Every reader
+ * keeps getting this stale value until the new one lands - nobody waits.
+ * - hard (expireAfterMs): past it the value is too old to serve, readers wait
+ * for the load like on a normal miss.
+ * Loads of the same key are deduplicated with a map of in-flight futures
+ * instead of locks: the first reader installs the future, the others reuse it.
+ * A hot key is reloaded before it ever reaches its hard deadline, so its
+ * latency spike disappears.
+ * Deadlines are kept next to the storage, one per cached key. When the storage
+ * drops a key on its own (eviction, TTL expiry) tell the cache through
+ * keyRemoved, e.g. offHeapStorage.addEvictionListener(cache::keyRemoved), so
+ * the deadlines of keys that are never read again don't pile up.
+ *
+ * Missing keys (optional, both modes):
+ * - find() returns null for a key the DB doesn't have, get() keeps throwing.
+ * The DB is asked with readIfPresent, so a miss costs no exception. Only
+ * that definite "not found" is remembered as absent, a failing DB read
+ * fails the lookup (and every reader waiting on the same load).
+ * - enableNegativeCaching: a "not found" answer is remembered for a short
+ * TTL, repeated lookups of the key don't reach the stripe lock or the DB.
+ * - enableBloomFilter: keys the filter (built from the DB key set) has never
+ * seen are rejected right away. put() adds its key.
+ *
+ * Metrics (optional): enableMetrics records hits, misses, errors and writes
+ * with their latency (hit / miss / write histograms) and the duration of every
+ * DB read (load histogram) into a PrometheusMetrics.
  */
 public class StampedeProtectedCache<K, V> {
 
@@ -33,6 +75,22 @@ public class StampedeProtectedCache<K, V> {
     private final int numStripes;
     private final long loadTimeoutMs;
 
+    // Refresh-ahead mode, disabled when loaderPool is null
+    private static final int LOADER_QUEUE_SIZE = 1024;
+    private final long refreshAfterMs;
+    private final long expireAfterMs;
+    private final ThreadPoolExecutor loaderPool;
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlightLoads;
+    private final ConcurrentHashMap<K, Deadlines> deadlines;
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder rejectedRefreshes = new LongAdder();
+
+    private volatile NegativeCache<K> negativeCache;
+    private volatile BloomFilter<K> bloomFilter;
+    private final LongAdder shortCircuitedMisses = new LongAdder();
+
+    private volatile PrometheusMetrics metrics;
+
     /**
      * @param cacheStorage  Underlying cache storage
      * @param dbStorage     Database to fetch on miss
@@ -50,6 +108,54 @@ public class StampedeProtectedCache<K, V> {
         this.stripedLocks = new ConcurrentHashMap<>();
         this.numStripes = numStripes;
         this.loadTimeoutMs = loadTimeoutMs;
+        this.refreshAfterMs = 0;
+        this.expireAfterMs = 0;
+        this.loaderPool = null;
+        this.inFlightLoads = null;
+        this.deadlines = null;
+    }
+
+    /**
+     * Refresh-ahead mode.
+     *
+     * @param numStripes     Number of lock stripes for getOrLoad (loads of
+     *                       get/find are deduplicated without locks)
+     * @param loadTimeoutMs  Maximum time a reader waits for a load on a hard miss
+     * @param refreshAfterMs Soft deadline: age after which a read triggers a
+     *                       background reload (stale value is still served)
+     * @param expireAfterMs  Hard deadline: age after which the value is not
+     *                       served anymore, must be greater than refreshAfterMs
+     * @param loaderThreads  Size of the loader pool. Its queue is bounded, when
+     *                       it is full the refresh is skipped and retried by a
+     *                       later read
+     */
+    public StampedeProtectedCache(
+            CacheStorage<K, V> cacheStorage,
+            DBStorage<K, V> dbStorage,
+            int numStripes,
+            long loadTimeoutMs,
+            long refreshAfterMs,
+            long expireAfterMs,
+            int loaderThreads) {
+        if (refreshAfterMs <= 0 || expireAfterMs <= refreshAfterMs) {
+            throw new IllegalArgumentException("Require 0 < refreshAfterMs < expireAfterMs");
+        }
+        this.cacheStorage = cacheStorage;
+        this.dbStorage = dbStorage;
+        this.stripedLocks = new ConcurrentHashMap<>();
+        this.numStripes = numStripes;
+        this.loadTimeoutMs = loadTimeoutMs;
+        this.refreshAfterMs = refreshAfterMs;
+        this.expireAfterMs = expireAfterMs;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.loaderPool = new ThreadPoolExecutor(loaderThreads, loaderThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(LOADER_QUEUE_SIZE), r -> {
+                    Thread t = new Thread(r, "cache-refresh-" + threadCount.getAndIncrement());
+                    t.setDaemon(true); // a pending refresh must not keep the JVM alive
+                    return t;
+                });
+        this.inFlightLoads = new ConcurrentHashMap<>();
+        this.deadlines = new ConcurrentHashMap<>();
     }
 
     public StampedeProtectedCache(CacheStorage<K, V> cacheStorage, DBStorage<K, V> dbStorage) {
@@ -61,6 +167,31 @@ public class StampedeProtectedCache<K, V> {
         return stripedLocks.computeIfAbsent(stripeIndex, k -> new ReentrantLock());
     }
 
+    /**
+     * Remember "not found" answers of the DB. Call before the cache takes
+     * traffic.
+     */
+    public void enableNegativeCaching(NegativeCache<K> negativeCache) {
+        this.negativeCache = negativeCache;
+    }
+
+    /**
+     * Reject keys the DB has never had. The filter must contain every key of
+     * the DB (e.g. BloomFilter.of(dbStorage, ...)) and every later
+     * write must go through put(). Call before the cache takes traffic.
+     */
+    public void enableBloomFilter(BloomFilter<K> bloomFilter) {
+        this.bloomFilter = bloomFilter;
+    }
+
+    /**
+     * Record hits, misses, loads and writes with their latency. Call before the
+     * cache takes traffic.
+     */
+    public void enableMetrics(PrometheusMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     /**
      * Get value from cache, loading from DB on miss with stampede protection.
      * 
@@ -69,9 +200,50 @@ public class StampedeProtectedCache<K, V> {
      * @throws Exception if key not found in DB or timeout waiting for load
      */
     public V get(K key) throws Exception {
+        V value = find(key);
+        if (value == null) {
+            throw new Exception("Key not found in DBStorage: " + key);
+        }
+        return value;
+    }
+
+    /**
+     * Same as get, but a key the DB doesn't have is answered with null instead
+     * of an exception.
+     *
+     * @throws Exception on timeout waiting for load or a failing DB
+     */
+    public V find(K key) throws Exception {
+        PrometheusMetrics m = metrics;
+        long start = m != null ? System.nanoTime() : 0;
+        try {
+            return loaderPool != null ? findWithRefreshAhead(key, m, start) : findWithLock(key, m, start);
+        } catch (Exception e) {
+            if (m != null) {
+                m.recordError();
+            }
+            throw e;
+        }
+    }
+
+    private V findWithLock(K key, PrometheusMetrics m, long start) throws Exception {
         // Fast path: cache hit (no locking needed)
-        if (cacheStorage.containsKey(key)) {
-            return cacheStorage.get(key);
+        V cached = cacheStorage.getIfPresent(key);
+        if (cached != null) {
+            recordHit(m, start);
+            return cached;
+        }
+        try {
+            return loadWithLock(key);
+        } finally {
+            recordMiss(m, start);
+        }
+    }
+
+    private V loadWithLock(K key) throws Exception {
+        V cached;
+        if (isKnownAbsent(key)) {
+            return null;
         }
 
         // Slow path: cache miss - need to load from DB
@@ -84,21 +256,36 @@ public class StampedeProtectedCache<K, V> {
 
             if (!acquired) {
                 // Timeout waiting for another thread's load - try cache one more time
-                if (cacheStorage.containsKey(key)) {
-                    return cacheStorage.get(key);
+                cached = cacheStorage.getIfPresent(key);
+                if (cached != null) {
+                    return cached;
                 }
                 throw new Exception("Timeout waiting for cache load: " + key);
             }
 
-            // Double-check: another thread might have loaded it while we waited
-            if (cacheStorage.containsKey(key)) {
-                return cacheStorage.get(key);
+            // Double-check: another thread might have loaded it (or found it missing) while we waited
+            cached = cacheStorage.getIfPresent(key);
+            if (cached != null) {
+                return cached;
+            }
+            NegativeCache<K> negatives = negativeCache;
+            if (negatives != null && negatives.isKnownAbsent(key)) {
+                shortCircuitedMisses.increment();
+                return null;
             }
 
             // We're the chosen one - load from DB and populate cache
-            V value = dbStorage.read(key);
-            cacheStorage.put(key, value);
-            return value;
+            long generation = negatives != null ? negatives.generation() : 0;
+            V value = readFromDb(key);
+            if (value == null) {
+                if (negatives != null) {
+                    negatives.markAbsent(key, generation);
+                }
+                return null;
+            }
+            // Not put(): a put() that ran during the DB read wrote a newer value, the loaded one must not overwrite it
+            V raced = cacheStorage.putIfAbsent(key, value);
+            return raced != null ? raced : value;
 
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
@@ -110,12 +297,214 @@ public class StampedeProtectedCache<K, V> {
         }
     }
 
+    /**
+     * Null only if the DB definitely doesn't have the key, a failing read
+     * throws.
+     */
+    private V readFromDb(K key) throws Exception {
+        PrometheusMetrics m = metrics;
+        if (m == null) {
+            return dbStorage.readIfPresent(key).orElse(null);
+        }
+        long start = System.nanoTime();
+        try {
+            return dbStorage.readIfPresent(key).orElse(null);
+        } finally {
+            m.recordLatency(Operation.LOAD, System.nanoTime() - start);
+        }
+    }
+
+    private static void recordHit(PrometheusMetrics m, long start) {
+        if (m != null) {
+            m.recordHit();
+            m.recordLatency(Operation.HIT, System.nanoTime() - start);
+        }
+    }
+
+    // Includes waiting for the load: the latency a reader sees on a miss
+    private static void recordMiss(PrometheusMetrics m, long start) {
+        if (m != null) {
+            m.recordMiss();
+            m.recordLatency(Operation.MISS, System.nanoTime() - start);
+        }
+    }
+
+    private boolean isKnownAbsent(K key) {
+        BloomFilter<K> filter = bloomFilter;
+        NegativeCache<K> negatives = negativeCache;
+        if ((filter != null && !filter.mightContain(key)) || (negatives != null && negatives.isKnownAbsent(key))) {
+            shortCircuitedMisses.increment();
+            return true;
+        }
+        return false;
+    }
+
+    // Before the DB write (readers after put() must not be short-circuited) and again after it (see NegativeCache)
+    private void markPresent(K key) {
+        BloomFilter<K> filter = bloomFilter;
+        if (filter != null) {
+            filter.put(key);
+        }
+        NegativeCache<K> negatives = negativeCache;
+        if (negatives != null) {
+            negatives.invalidate(key);
+        }
+    }
+
+    private V findWithRefreshAhead(K key, PrometheusMetrics m, long start) throws Exception {
+        long now = System.currentTimeMillis();
+        Deadlines entryDeadlines = deadlines.get(key);
+        if (entryDeadlines != null && now < entryDeadlines.expireAt) {
+            V value = cacheStorage.getIfPresent(key); // null: evicted from the storage, treat as a miss
+            if (value != null) {
+                if (now >= entryDeadlines.refreshAt) {
+                    // Soft deadline passed: reload in the background, this reader doesn't wait
+                    startLoad(key, entryDeadlines, true);
+                }
+                recordHit(m, start);
+                return value;
+            }
+        }
+        try {
+            return awaitLoad(key, entryDeadlines);
+        } finally {
+            recordMiss(m, start);
+        }
+    }
+
+    private V awaitLoad(K key, Deadlines entryDeadlines) throws Exception {
+        if (isKnownAbsent(key)) {
+            if (entryDeadlines != null) {
+                keyRemoved(key); // the key is gone from the DB, drop its deadlines unless it is still cached
+            }
+            return null;
+        }
+
+        // Hard miss (never loaded, evicted or older than the hard deadline): wait for the single load of this key
+        CompletableFuture<V> load = startLoad(key, entryDeadlines, false);
+        try {
+            return load.get(loadTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new Exception("Timeout waiting for cache load: " + key);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new Exception("Interrupted while waiting for cache load: " + key);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Start loading a key unless a load is already in flight, in which case the
+     * existing future is returned. A background load runs on the loader pool, a
+     * foreground load runs on the caller thread (a blocked reader may as well
+     * do the work, and a full pool must not fail a miss).
+     */
+    private CompletableFuture<V> startLoad(K key, Deadlines expected, boolean background) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlightLoads.putIfAbsent(key, future);
+        if (existing != null) {
+            return existing;
+        }
+        Runnable load = () -> {
+            try {
+                NegativeCache<K> negatives = negativeCache;
+                long generation = negatives != null ? negatives.generation() : 0;
+                V value = readFromDb(key);
+                if (value == null && negatives != null) {
+                    negatives.markAbsent(key, generation);
+                }
+                install(key, value, expected);
+                inFlightLoads.remove(key, future);
+                future.complete(value);
+            } catch (Exception e) {
+                inFlightLoads.remove(key, future);
+                future.completeExceptionally(e);
+            }
+        };
+        if (!background) {
+            load.run();
+            return future;
+        }
+        try {
+            loaderPool.execute(load);
+            refreshes.increment();
+        } catch (RejectedExecutionException e) {
+            // Loader pool saturated (or shut down): keep serving the stale value, a later read retries
+            rejectedRefreshes.increment();
+            inFlightLoads.remove(key, future);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Publish a loaded value with fresh deadlines. If a put() happened while the
+     * DB read was running, the deadlines object was replaced and the loaded
+     * (older) value is dropped instead of overwriting the newer one. A null
+     * value (deleted from the DB) removes the entry.
+     */
+    private void install(K key, V value, Deadlines expected) throws Exception {
+        try {
+            deadlines.compute(key, (k, current) -> {
+                if (current != expected) {
+                    return current;
+                }
+                try {
+                    if (value == null) {
+                        cacheStorage.compute(key, (ignoredKey, old) -> null); // remove if present, in one step
+                        return null;
+                    }
+                    cacheStorage.put(key, value);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+                return new Deadlines(System.currentTimeMillis(), refreshAfterMs, expireAfterMs);
+            });
+        } catch (CompletionException e) {
+            throw (Exception) e.getCause();
+        }
+    }
+
+    /**
+     * The storage dropped the key (eviction, TTL expiry): forget its deadlines
+     * (refresh-ahead mode, no-op otherwise). Register it as the storage's
+     * eviction / expiration listener. A key that is back in the storage by the
+     * time this runs (a load or put raced with the removal) keeps its
+     * deadlines: the check runs inside the same compute as install().
+     */
+    public void keyRemoved(K key) throws Exception {
+        if (deadlines == null) {
+            return;
+        }
+        try {
+            deadlines.computeIfPresent(key, (k, current) -> {
+                try {
+                    return cacheStorage.containsKey(k) ? current : null;
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            });
+        } catch (CompletionException e) {
+            throw (Exception) e.getCause();
+        }
+    }
+
+    /**
+     * Deadlines tracked right now (refresh-ahead mode, 0 otherwise). Should
+     * stay at or below size() when keyRemoved is wired to the storage.
+     */
+    public int getTrackedDeadlineCount() {
+        return deadlines == null ? 0 : deadlines.size();
+    }
+
     /**
      * Get value with custom loader function (for when DB isn't the source).
      */
     public V getOrLoad(K key, Supplier<V> loader) throws Exception {
-        if (cacheStorage.containsKey(key)) {
-            return cacheStorage.get(key);
+        V cached = cacheStorage.getIfPresent(key);
+        if (cached != null) {
+            return cached;
         }
 
         ReentrantLock lock = getLockForKey(key);
@@ -125,21 +514,24 @@ public class StampedeProtectedCache<K, V> {
             acquired = lock.tryLock(loadTimeoutMs, TimeUnit.MILLISECONDS);
 
             if (!acquired) {
-                if (cacheStorage.containsKey(key)) {
-                    return cacheStorage.get(key);
+                cached = cacheStorage.getIfPresent(key);
+                if (cached != null) {
+                    return cached;
                 }
                 throw new Exception("Timeout waiting for cache load: " + key);
             }
 
-            if (cacheStorage.containsKey(key)) {
-                return cacheStorage.get(key);
+            cached = cacheStorage.getIfPresent(key);
+            if (cached != null) {
+                return cached;
             }
 
             V value = loader.get();
-            if (value != null) {
-                cacheStorage.put(key, value);
+            if (value == null) {
+                return null;
             }
-            return value;
+            V raced = cacheStorage.putIfAbsent(key, value);
+            return raced != null ? raced : value;
 
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
@@ -168,7 +560,115 @@ public class StampedeProtectedCache<K, V> {
      * Direct put bypasses stampede protection (writes don't stampede).
      */
     public void put(K key, V value) throws Exception {
+        PrometheusMetrics m = metrics;
+        if (m == null) {
+            write(key, value);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            write(key, value);
+            m.recordWrite();
+        } catch (Exception e) {
+            m.recordError();
+            throw e;
+        } finally {
+            m.recordLatency(Operation.WRITE, System.nanoTime() - start);
+        }
+    }
+
+    private void write(K key, V value) throws Exception {
+        markPresent(key);
+        if (loaderPool != null) {
+            // DB first: a load that starts after this reads the new value, one that started before is dropped by install()
+            dbStorage.write(key, value);
+            install(key, value, deadlines.get(key));
+            markPresent(key);
+            return;
+        }
         cacheStorage.put(key, value);
         dbStorage.write(key, value);
+        markPresent(key);
+    }
+
+    /**
+     * Number of background reloads started / skipped because the loader pool
+     * was full (refresh-ahead mode only).
+     */
+    public long getRefreshCount() {
+        return refreshes.sum();
+    }
+
+    public long getRejectedRefreshCount() {
+        return rejectedRefreshes.sum();
+    }
+
+    /**
+     * Lookups answered "absent" by the Bloom filter or the negative cache,
+     * without the DB.
+     */
+    public long getShortCircuitedMisses() {
+        return shortCircuitedMisses.sum();
+    }
+
+    /**
+     * Entries in the underlying storage.
+     */
+    public long size() throws Exception {
+        return cacheStorage.size();
+    }
+
+    public long getCapacity() {
+        return cacheStorage.maxWeight();
+    }
+
+    /**
+     * Refreshes waiting for a loader thread (refresh-ahead mode, 0 otherwise).
+     * Close to LOADER_QUEUE_SIZE means refreshes are about to be rejected.
+     */
+    public int getLoaderQueueDepth() {
+        return loaderPool == null ? 0 : loaderPool.getQueue().size();
+    }
+
+    /**
+     * Loader threads running a refresh right now, out of getLoaderThreads().
+     */
+    public int getActiveLoaderCount() {
+        return loaderPool == null ? 0 : loaderPool.getActiveCount();
+    }
+
+    public int getLoaderThreads() {
+        return loaderPool == null ? 0 : loaderPool.getMaximumPoolSize();
+    }
+
+    /**
+     * Keys being loaded right now (refresh-ahead mode, 0 otherwise).
+     */
+    public int getInFlightLoadCount() {
+        return inFlightLoads == null ? 0 : inFlightLoads.size();
+    }
+
+    /**
+     * Stop the loader pool (refresh-ahead mode). Pending refreshes are dropped,
+     * readers then simply keep the stale value until the hard deadline.
+     */
+    public void shutdown() {
+        if (loaderPool != null) {
+            loaderPool.shutdownNow();
+        }
+    }
+
+    /**
+     * Soft and hard deadline of a loaded value. A new object is created on every
+     * load/put, so identity tells whether the entry changed during a load.
+     */
+    private static final class Deadlines {
+        final long refreshAt;
+        final long expireAt;
+
+        Deadlines(long loadedAt, long refreshAfterMs, long expireAfterMs) {
+            this.refreshAt = loadedAt + refreshAfterMs;
+            this.expireAt = loadedAt + expireAfterMs;
+        }
     }
 }
@@ -0,0 +1,343 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_100K;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.EvictionAlgorithms.EvictionAlgorithm;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces.CacheStorage;
+
+/**
+ * Two-tier CacheStorage: an L1 CacheStorage (usually InMemoryCacheStorage)
+ * in front of an L2 MappedFileTier.
+ *
+ * Problem: when the hot set is bigger than the heap, every key the LRU pushes
+ * out of InMemoryCacheStorage costs a DB read the next time it is needed.
+ *
+ * Solution: eviction becomes demotion.
+ * 1. The cache is built with getEvictionAlgorithm(), a wrapper around the
+ * real policy. Every key it hands out as a victim is marked.
+ * 2. When the cache then removes a marked key, the value is written to L2
+ * instead of being dropped. Any other remove (invalidation) drops the key
+ * from both tiers, and keyRemoved (TTL expiry, invalidation) also clears L2.
+ * 3. containsKey answers for both tiers, so an L2 entry is a cache hit. get()
+ * of an L2 entry promotes it back to L1, starts tracking it in the policy
+ * and, if L1 is now over capacity, demotes the policy's next victim.
+ *
+ * size(), getCapacity() and the weights are those of L1: the Cache's eviction
+ * bookkeeping only manages L1, L2 bounds itself by its disk budget.
+ *
+ * A key moves between tiers under a striped lock, so a demotion never races
+ * with a write of the same key (the write would land in L1 and the stale
+ * value in L2).
+ *
+ * Hit ratios: get() / getIfPresent() count an L1 or an L2 hit, a
+ * getIfPresent() that finds the key in neither tier counts as a miss. Both
+ * caches read through getIfPresent, containsKey (also used before inserts) is
+ * not counted.
+ */
+public class TieredCacheStorage<K, V> implements CacheStorage<K, V> {
+
+    private static final int NUM_STRIPES = 64;
+
+    private final CacheStorage<K, V> l1;
+    private final MappedFileTier<K, V> l2;
+    private final EvictionAlgorithm<K> policy;
+    private final EvictionAlgorithm<K> demotingPolicy;
+    // Victims handed to the cache that were not removed yet: their removal is a demotion
+    private final Set<K> pendingDemotion = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock[] stripes = new ReentrantLock[NUM_STRIPES];
+
+    private final LongAdder l1Hits = new LongAdder();
+    private final LongAdder l2Hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder demotions = new LongAdder();
+    private final LongAdder promotions = new LongAdder();
+
+    /**
+     * @param evictionAlgorithm The policy for L1. Pass getEvictionAlgorithm()
+     *                          (not this one) to the Cache.
+     */
+    public TieredCacheStorage(CacheStorage<K, V> l1, MappedFileTier<K, V> l2, EvictionAlgorithm<K> evictionAlgorithm) {
+        this.l1 = l1;
+        this.l2 = l2;
+        this.policy = evictionAlgorithm;
+        this.demotingPolicy = new DemotingEvictionAlgorithm();
+        for (int i = 0; i < NUM_STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * The eviction algorithm to build the Cache / EnhancedCache with.
+     */
+    public EvictionAlgorithm<K> getEvictionAlgorithm() {
+        return demotingPolicy;
+    }
+
+    @Override
+    public void put(K key, V value) throws Exception {
+        boolean promoted;
+        ReentrantLock lock = lockFor(key);
+        lock.lock();
+        try {
+            boolean inL1 = l1.containsKey(key);
+            l1.put(key, value);
+            promoted = l2.remove(key); // the L2 copy is stale now
+            if (!inL1 && !promoted) {
+                pendingDemotion.remove(key); // left over from a victim the cache skipped
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (promoted) {
+            // The cache saw an existing key and didn't make room for it
+            enforceCapacity();
+        }
+    }
+
+    @Override
+    public V get(K key) throws Exception {
+        V value = lookup(key);
+        if (value == null) {
+            throw new Exception("Key not found in cache");
+        }
+        return value;
+    }
+
+    @Override
+    public V getIfPresent(K key) throws Exception {
+        V value = lookup(key);
+        if (value == null) {
+            misses.increment();
+        }
+        return value;
+    }
+
+    // L1, then L2 with promotion. Null if neither tier has the key.
+    private V lookup(K key) throws Exception {
+        V value = l1.getIfPresent(key);
+        if (value != null) {
+            l1Hits.increment();
+            return value;
+        }
+        if (!l2.containsKey(key)) {
+            return null;
+        }
+        ReentrantLock lock = lockFor(key);
+        lock.lock();
+        try {
+            value = l1.getIfPresent(key); // promoted by another reader meanwhile
+            if (value == null) {
+                value = l2.get(key);
+                if (value == null) {
+                    return null; // removed or dropped from L2 meanwhile
+                }
+                l1.put(key, value);
+                l2.remove(key);
+                promotions.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+        l2Hits.increment();
+        // The policy forgot the key when it was demoted
+        policy.keyAccessed(key);
+        enforceCapacity();
+        return value;
+    }
+
+    @Override
+    public void remove(K key) throws Exception {
+        ReentrantLock lock = lockFor(key);
+        lock.lock();
+        try {
+            if (pendingDemotion.remove(key) && l1.containsKey(key)) {
+                demoteLocked(key);
+                return;
+            }
+            boolean inL1 = l1.containsKey(key);
+            if (inL1) {
+                l1.remove(key);
+            }
+            if (!l2.remove(key) && !inL1) {
+                throw new Exception("Key not found in cache");
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean containsKey(K key) throws Exception {
+        return l1.containsKey(key) || l2.containsKey(key);
+    }
+
+    /**
+     * Entries in L1, the tier the eviction algorithm manages.
+     */
+    @Override
+    public int size() throws Exception {
+        return l1.size();
+    }
+
+    @Override
+    public int getCapacity() {
+        return l1.getCapacity();
+    }
+
+    /**
+     * Weights are those of L1 too: an L2 entry costs disk, not heap.
+     */
+    @Override
+    public long weigh(K key, V value) {
+        return l1.weigh(key, value);
+    }
+
+    @Override
+    public long weightOf(K key) throws Exception {
+        return l1.weightOf(key);
+    }
+
+    @Override
+    public long weight() throws Exception {
+        return l1.weight();
+    }
+
+    @Override
+    public long maxWeight() {
+        return l1.maxWeight();
+    }
+
+    // Promotions (and writes of L2 keys) grow L1 without the cache making room first
+    private void enforceCapacity() throws Exception {
+        while (l1.weight() > l1.maxWeight()) {
+            K victim = policy.evictKey();
+            if (victim == null) {
+                return;
+            }
+            ReentrantLock lock = lockFor(victim);
+            lock.lock();
+            try {
+                if (l1.containsKey(victim)) {
+                    demoteLocked(victim);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // Caller holds the key's stripe lock and checked that L1 has the key
+    private void demoteLocked(K key) throws Exception {
+        V value = l1.get(key);
+        try {
+            l2.put(key, value);
+            demotions.increment();
+        } catch (Exception e) {
+            // Entry too large for L2 or disk error: the key is simply evicted, the DB still has it
+        }
+        l1.remove(key);
+    }
+
+    private ReentrantLock lockFor(K key) {
+        int h = key.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (NUM_STRIPES - 1)];
+    }
+
+    public long getL1Hits() {
+        return l1Hits.sum();
+    }
+
+    public long getL2Hits() {
+        return l2Hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Share of all lookups served by L1.
+     */
+    public double getL1HitRatio() {
+        long l1 = l1Hits.sum();
+        long total = l1 + l2Hits.sum() + misses.sum();
+        return total == 0 ? 0.0 : (double) l1 / total;
+    }
+
+    /**
+     * Share of the L1 misses that L2 served.
+     */
+    public double getL2HitRatio() {
+        long l2 = l2Hits.sum();
+        long total = l2 + misses.sum();
+        return total == 0 ? 0.0 : (double) l2 / total;
+    }
+
+    public long getDemotions() {
+        return demotions.sum();
+    }
+
+    public long getPromotions() {
+        return promotions.sum();
+    }
+
+    public int getL2Size() {
+        return l2.size();
+    }
+
+    public MappedFileTier<K, V> getL2() {
+        return l2;
+    }
+
+    /**
+     * Forwards everything to the wrapped policy and marks the victims it
+     * hands out, so that removing them demotes instead of dropping.
+     */
+    private final class DemotingEvictionAlgorithm implements EvictionAlgorithm<K> {
+
+        @Override
+        public void keyAccessed(K key) throws Exception {
+            policy.keyAccessed(key);
+        }
+
+        @Override
+        public void keyRead(K key) throws Exception {
+            policy.keyRead(key);
+        }
+
+        @Override
+        public K evictKey() throws Exception {
+            return mark(policy.evictKey());
+        }
+
+        @Override
+        public K evictKeyFor(K incomingKey) throws Exception {
+            return mark(policy.evictKeyFor(incomingKey));
+        }
+
+        // L1 only: L2 content does not survive a restart anyway
+        @Override
+        public List<K> snapshotKeys() throws Exception {
+            return policy.snapshotKeys();
+        }
+
+        // Left the cache for good (TTL expiry, invalidation): no copy may survive in L2 either
+        @Override
+        public void keyRemoved(K key) throws Exception {
+            pendingDemotion.remove(key);
+            policy.keyRemoved(key);
+            l2.remove(key);
+        }
+
+        private K mark(K victim) {
+            if (victim != null) {
+                pendingDemotion.add(victim);
+            }
+            return victim;
+        }
+    }
+}
@@ -2,10 +2,16 @@ package J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_10K;
 
 import java.util.concurrent.atomic.LongAdder;
 
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces.CacheStorage;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.UtilityClasses.LatencyHistogram;
+
 /**
  * Thread-safe cache metrics using LongAdder for high-throughput environments.
  * LongAdder is preferred over AtomicLong when contention is expected because
  * it maintains internal cells that reduce CAS contention.
+ *
+ * Latencies also go into a LatencyHistogram, so percentiles (p99, p99.9) are
+ * available next to the average, which hides tails.
  */
 public class CacheMetrics {
 
@@ -15,6 +21,19 @@ public class CacheMetrics {
     private final LongAdder writes = new LongAdder();
     private final LongAdder totalLatencyNanos = new LongAdder();
     private final LongAdder operationCount = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    // The histogram is cumulative: reset() remembers where the current window starts
+    private volatile LatencyHistogram.Snapshot latencyWindowStart;
+
+    // Gauges (size, weight) are read from the storage when asked, not counted here
+    private volatile CacheStorage<?, ?> storage;
+
+    /**
+     * Storage whose current size and weight these metrics report.
+     */
+    public void bindStorage(CacheStorage<?, ?> storage) {
+        this.storage = storage;
+    }
 
     public void recordHit() {
         hits.increment();
@@ -35,6 +54,7 @@ public class CacheMetrics {
     public void recordLatency(long nanos) {
         totalLatencyNanos.add(nanos);
         operationCount.increment();
+        latency.record(nanos);
     }
 
     // Getters for monitoring
@@ -54,6 +74,36 @@ public class CacheMetrics {
         return writes.sum();
     }
 
+    /**
+     * Entries currently cached, 0 if no storage is bound.
+     */
+    public long getSize() {
+        CacheStorage<?, ?> bound = storage;
+        try {
+            return bound == null ? 0 : bound.size();
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Summed weight of the cached entries (equal to getSize() unless the
+     * storage has a Weigher), 0 if no storage is bound.
+     */
+    public long getWeight() {
+        CacheStorage<?, ?> bound = storage;
+        try {
+            return bound == null ? 0 : bound.weight();
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    public long getMaxWeight() {
+        CacheStorage<?, ?> bound = storage;
+        return bound == null ? 0 : bound.maxWeight();
+    }
+
     /**
      * Calculate hit rate as a percentage.
      * Returns 0 if no operations have been performed.
@@ -78,7 +128,24 @@ public class CacheMetrics {
     }
 
     /**
-     * Reset all metrics. Useful for periodic reporting windows.
+     * Latency distribution since the last reset().
+     */
+    public LatencyHistogram.Snapshot getLatencySnapshot() {
+        LatencyHistogram.Snapshot current = latency.snapshot();
+        LatencyHistogram.Snapshot start = latencyWindowStart;
+        return start == null ? current : current.since(start);
+    }
+
+    /**
+     * Latency percentile (0 - 100) in milliseconds since the last reset().
+     */
+    public double getLatencyPercentileMs(double percentile) {
+        return getLatencySnapshot().valueAtPercentile(percentile) / 1_000_000.0;
+    }
+
+    /**
+     * Reset all metrics. Useful for periodic reporting windows. Size and
+     * weight are gauges of the storage and are not affected.
      */
     public void reset() {
         hits.reset();
@@ -87,12 +154,16 @@ public class CacheMetrics {
         writes.reset();
         totalLatencyNanos.reset();
         operationCount.reset();
+        latencyWindowStart = latency.snapshot();
     }
 
     @Override
     public String toString() {
+        LatencyHistogram.Snapshot window = getLatencySnapshot();
         return String.format(
-                "CacheMetrics{hits=%d, misses=%d, hitRate=%.2f%%, evictions=%d, writes=%d, avgLatencyMs=%.3f}",
-                getHits(), getMisses(), getHitRate(), getEvictions(), getWrites(), getAverageLatencyMs());
+                "CacheMetrics{hits=%d, misses=%d, hitRate=%.2f%%, evictions=%d, writes=%d, size=%d, weight=%d/%d, avgLatencyMs=%.3f, p99LatencyMs=%.3f, p999LatencyMs=%.3f}",
+                getHits(), getMisses(), getHitRate(), getEvictions(), getWrites(), getSize(), getWeight(), getMaxWeight(),
+                getAverageLatencyMs(), window.valueAtPercentile(99) / 1_000_000.0,
+                window.valueAtPercentile(99.9) / 1_000_000.0);
     }
 }
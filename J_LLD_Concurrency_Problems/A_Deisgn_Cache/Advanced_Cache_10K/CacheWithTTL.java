@@ -1,10 +1,13 @@
 package J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_10K;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces.CacheStorage;
 
@@ -16,6 +19,13 @@ import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces.Ca
  * - Background: Periodic cleanup thread removes expired entries (reduces memory
  * waste)
  * 
+ * Deadlines live in a HierarchicalTimerWheel, so a cleanup pass only touches
+ * entries that actually expired (O(expired)) instead of scanning every key.
+ * 
+ * ExpirationListeners are told when a key dies from TTL, e.g. to let the
+ * eviction algorithm forget it:
+ * ttlStorage.addExpirationListener(evictionAlgorithm::keyRemoved);
+ * 
  * This approach balances:
  * - Immediate staleness detection (lazy)
  * - Memory efficiency (background cleanup)
@@ -24,9 +34,18 @@ import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces.Ca
 public class CacheWithTTL<K, V> implements CacheStorage<K, V> {
 
     private final CacheStorage<K, V> delegate;
-    private final Map<K, Long> expirationTimes; // Key -> expiration timestamp in millis
+    private final HierarchicalTimerWheel<K> expirationWheel; // Key -> expiration deadline in millis
     private final long defaultTTLMillis;
     private final ScheduledExecutorService cleanupExecutor;
+    private final List<ExpirationListener<K>> expirationListeners;
+
+    /**
+     * Callback for keys that are removed because their TTL passed.
+     */
+    @FunctionalInterface
+    public interface ExpirationListener<K> {
+        void onExpired(K key) throws Exception;
+    }
 
     /**
      * @param delegate               The underlying cache storage
@@ -37,8 +56,9 @@ public class CacheWithTTL<K, V> implements CacheStorage<K, V> {
      */
     public CacheWithTTL(CacheStorage<K, V> delegate, long defaultTTLMillis, long cleanupIntervalSeconds) {
         this.delegate = delegate;
-        this.expirationTimes = new ConcurrentHashMap<>();
+        this.expirationWheel = new HierarchicalTimerWheel<>(System.currentTimeMillis());
         this.defaultTTLMillis = defaultTTLMillis;
+        this.expirationListeners = new CopyOnWriteArrayList<>();
 
         if (cleanupIntervalSeconds > 0) {
             this.cleanupExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
@@ -56,49 +76,79 @@ public class CacheWithTTL<K, V> implements CacheStorage<K, V> {
         }
     }
 
+    /**
+     * The deadline is scheduled before the value is stored: an expiry that
+     * runs in between sees the new deadline and keeps the key (see expire).
+     */
     @Override
     public void put(K key, V value) throws Exception {
+        expirationWheel.schedule(key, System.currentTimeMillis() + defaultTTLMillis);
         delegate.put(key, value);
-        expirationTimes.put(key, System.currentTimeMillis() + defaultTTLMillis);
     }
 
     /**
      * Put with custom TTL for this specific entry.
      */
     public void putWithTTL(K key, V value, long ttlMillis) throws Exception {
+        expirationWheel.schedule(key, System.currentTimeMillis() + ttlMillis);
         delegate.put(key, value);
-        expirationTimes.put(key, System.currentTimeMillis() + ttlMillis);
+    }
+
+    /**
+     * Register a callback for keys that die from TTL (lazy or background).
+     */
+    public void addExpirationListener(ExpirationListener<K> listener) {
+        expirationListeners.add(listener);
     }
 
     @Override
     public V get(K key) throws Exception {
         // Lazy expiration check
-        Long expiration = expirationTimes.get(key);
-        if (expiration != null && System.currentTimeMillis() > expiration) {
+        if (expirationWheel.removeIfExpired(key, System.currentTimeMillis())) {
             // Entry has expired - remove it
-            remove(key);
+            expire(key);
             throw new Exception("Key expired: " + key);
         }
         return delegate.get(key);
     }
 
+    /**
+     * Null if the key is missing or expired (an expired key is removed, same
+     * as in get).
+     */
+    @Override
+    public V getIfPresent(K key) throws Exception {
+        if (expirationWheel.removeIfExpired(key, System.currentTimeMillis())) {
+            expire(key);
+            return null;
+        }
+        return delegate.getIfPresent(key);
+    }
+
     @Override
     public void remove(K key) throws Exception {
-        expirationTimes.remove(key);
+        expirationWheel.deschedule(key);
         delegate.remove(key);
     }
 
+    /**
+     * The delegate's removeAll (missing keys ignored, one batch call), not a
+     * containsKey + remove per key.
+     */
+    @Override
+    public void removeAll(Collection<K> keys) throws Exception {
+        for (K key : keys) {
+            expirationWheel.deschedule(key);
+        }
+        delegate.removeAll(keys);
+    }
+
     @Override
     public boolean containsKey(K key) throws Exception {
         // Check expiration before reporting containment
-        Long expiration = expirationTimes.get(key);
-        if (expiration != null && System.currentTimeMillis() > expiration) {
+        if (expirationWheel.removeIfExpired(key, System.currentTimeMillis())) {
             // Expired - clean it up
-            try {
-                remove(key);
-            } catch (Exception ignored) {
-                // Key might already be removed
-            }
+            expire(key);
             return false;
         }
         return delegate.containsKey(key);
@@ -114,19 +164,153 @@ public class CacheWithTTL<K, V> implements CacheStorage<K, V> {
         return delegate.getCapacity();
     }
 
+    /**
+     * Atomic operations: an expired entry counts as absent (it is expired
+     * first), the operation itself is the delegate's, and a write it makes
+     * starts a new TTL like put() does.
+     *
+     * The new deadline is scheduled inside the delegate's function, i.e.
+     * atomically with the write for the storages that make these operations
+     * atomic, so an expiry of the old entry can't remove the new value.
+     */
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) throws Exception {
+        expireIfDue(key);
+        // Only the value this call stores gets a deadline, a value that won the race already has its own
+        return delegate.computeIfAbsent(key, k -> {
+            V computed = mappingFunction.apply(k);
+            if (computed != null) {
+                scheduleDefault(k);
+            }
+            return computed;
+        });
+    }
+
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) throws Exception {
+        expireIfDue(key);
+        return delegate.compute(key, (k, current) -> {
+            V updated = remappingFunction.apply(k, current);
+            if (updated != null) {
+                scheduleDefault(k);
+            } else {
+                expirationWheel.deschedule(k);
+            }
+            return updated;
+        });
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) throws Exception {
+        expireIfDue(key);
+        boolean[] stored = new boolean[1];
+        V current = delegate.computeIfAbsent(key, k -> {
+            scheduleDefault(k);
+            stored[0] = true;
+            return value;
+        });
+        return stored[0] ? null : current;
+    }
+
+    @Override
+    public boolean replace(K key, V expected, V newValue) throws Exception {
+        expireIfDue(key);
+        boolean[] replaced = new boolean[1];
+        delegate.compute(key, (k, current) -> {
+            if (current == null || !current.equals(expected)) {
+                return current;
+            }
+            scheduleDefault(k);
+            replaced[0] = true;
+            return newValue;
+        });
+        return replaced[0];
+    }
+
+    // Weights are the delegate's, expiry does not change what an entry weighs
+
+    @Override
+    public long weigh(K key, V value) {
+        return delegate.weigh(key, value);
+    }
+
+    @Override
+    public long weightOf(K key) throws Exception {
+        return delegate.weightOf(key);
+    }
+
+    @Override
+    public long weight() throws Exception {
+        return delegate.weight();
+    }
+
+    @Override
+    public long maxWeight() {
+        return delegate.maxWeight();
+    }
+
+    /**
+     * Remove every expired entry now, on the caller thread. The same pass the
+     * background thread runs, for callers that disabled it
+     * (cleanupIntervalSeconds = 0) or need it to have happened at a known
+     * point (benchmarks of the cleanup cost).
+     */
+    public void cleanUp() {
+        cleanupExpired();
+    }
+
     /**
      * Background cleanup of expired entries.
      * Called periodically by the scheduled executor.
+     * Only visits the wheel buckets that elapsed since the last run.
      */
     private void cleanupExpired() {
-        long now = System.currentTimeMillis();
-        for (Map.Entry<K, Long> entry : expirationTimes.entrySet()) {
-            if (entry.getValue() < now) {
-                try {
-                    remove(entry.getKey());
-                } catch (Exception ignored) {
-                    // Key might already be removed by concurrent access
+        for (K key : expirationWheel.advance(System.currentTimeMillis())) {
+            expire(key);
+        }
+    }
+
+    private void scheduleDefault(K key) {
+        expirationWheel.schedule(key, System.currentTimeMillis() + defaultTTLMillis);
+    }
+
+    private void expireIfDue(K key) {
+        if (expirationWheel.removeIfExpired(key, System.currentTimeMillis())) {
+            expire(key);
+        }
+    }
+
+    /**
+     * Remove an expired key from the delegate and notify listeners.
+     * The wheel already dropped the key, so this runs once per expiration.
+     *
+     * The removal only happens if the key is still unscheduled, checked
+     * inside the delegate's compute: every write schedules a new deadline
+     * before (put) or atomically with (compute and friends) storing its
+     * value, so a write that lands between the wheel firing and this remove
+     * keeps its value instead of being deleted with the expired one.
+     */
+    private void expire(K key) {
+        boolean[] removed = new boolean[1];
+        try {
+            delegate.compute(key, (k, current) -> {
+                if (current == null || expirationWheel.getDeadline(k) != -1) {
+                    return current; // already gone, or rewritten since the deadline fired
                 }
+                removed[0] = true;
+                return null;
+            });
+        } catch (Exception ignored) {
+            // Key might already be removed by concurrent access
+        }
+        if (!removed[0]) {
+            return;
+        }
+        for (ExpirationListener<K> listener : expirationListeners) {
+            try {
+                listener.onExpired(key);
+            } catch (Exception ignored) {
+                // A failing listener must not stop the cleanup
             }
         }
     }
@@ -154,8 +338,8 @@ public class CacheWithTTL<K, V> implements CacheStorage<K, V> {
      * Returns -1 if key doesn't exist or is already expired.
      */
     public long getTimeToLive(K key) {
-        Long expiration = expirationTimes.get(key);
-        if (expiration == null)
+        long expiration = expirationWheel.getDeadline(key);
+        if (expiration == -1)
             return -1;
         long remaining = expiration - System.currentTimeMillis();
         return remaining > 0 ? remaining : -1;
@@ -1,12 +1,11 @@
 package J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_10K;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import J_LLD_Concurrency_Problems.A_Deisgn_Cache.EvictionAlgorithms.EvictionAlgorithm;
-import J_LLD_Concurrency_Problems.A_Deisgn_Cache.UtilityClasses.DoublyLinkedList;
-import J_LLD_Concurrency_Problems.A_Deisgn_Cache.UtilityClasses.DoublyLinkedListNode;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.UtilityClasses.IndexedLinkedList;
 
 /**
  * Improved LRU eviction algorithm using ReentrantReadWriteLock instead of
@@ -24,15 +23,14 @@ import J_LLD_Concurrency_Problems.A_Deisgn_Cache.UtilityClasses.DoublyLinkedList
  */
 public class ConcurrentLRUEvictionAlgorithm<K> implements EvictionAlgorithm<K> {
 
-    private final DoublyLinkedList<K> dll;
-    private final Map<K, DoublyLinkedListNode<K>> keyToNodeMap;
+    // LRU order + key -> slot index, array backed (no node object per key)
+    private final IndexedLinkedList<K> lru;
     private final ReentrantReadWriteLock lock;
     private final ReentrantReadWriteLock.ReadLock readLock;
     private final ReentrantReadWriteLock.WriteLock writeLock;
 
     public ConcurrentLRUEvictionAlgorithm() {
-        this.dll = new DoublyLinkedList<>();
-        this.keyToNodeMap = new HashMap<>();
+        this.lru = new IndexedLinkedList<>();
         this.lock = new ReentrantReadWriteLock();
         this.readLock = lock.readLock();
         this.writeLock = lock.writeLock();
@@ -40,84 +38,86 @@ public class ConcurrentLRUEvictionAlgorithm<K> implements EvictionAlgorithm<K> {
 
     @Override
     public void keyAccessed(K key) throws Exception {
-        // First try with read lock to check if key exists
-        readLock.lock();
+        // Existing key -> move to tail, new key -> add at tail. Both modify the list, so the write lock is needed either way
+        // (a read lock probe first would only add a second lookup).
+        writeLock.lock();
         try {
-            if (keyToNodeMap.containsKey(key)) {
-                // Key exists - need to upgrade to write lock for modification
-                readLock.unlock();
-                writeLock.lock();
-                try {
-                    // Double-check after acquiring write lock (another thread might have removed
-                    // it)
-                    if (keyToNodeMap.containsKey(key)) {
-                        DoublyLinkedListNode<K> node = keyToNodeMap.get(key);
-                        dll.detatchNode(node);
-                        dll.addNodeAtTail(node);
-                    } else {
-                        // Key was removed between read and write lock - add it fresh
-                        addNewKey(key);
-                    }
-                } finally {
-                    writeLock.unlock();
-                }
-                return; // Early return since we already unlocked read lock
+            int slot = lru.indexOf(key);
+            if (slot != IndexedLinkedList.NONE) {
+                lru.moveToTail(slot);
+            } else {
+                lru.addAtTail(0, key);
             }
         } finally {
-            // Only unlock if we still hold the read lock (didn't upgrade)
-            if (lock.getReadHoldCount() > 0) {
-                readLock.unlock();
-            }
+            writeLock.unlock();
         }
+    }
 
-        // Key doesn't exist - acquire write lock to add
+    /**
+     * Cache hit: refresh recency only if the key is still tracked.
+     * Unlike keyAccessed, a read never re-adds a key that was evicted meanwhile.
+     */
+    @Override
+    public void keyRead(K key) throws Exception {
         writeLock.lock();
         try {
-            // Double-check in case another thread added it
-            if (!keyToNodeMap.containsKey(key)) {
-                addNewKey(key);
-            } else {
-                // Another thread added it - just move to tail
-                DoublyLinkedListNode<K> node = keyToNodeMap.get(key);
-                dll.detatchNode(node);
-                dll.addNodeAtTail(node);
+            int slot = lru.indexOf(key);
+            if (slot != IndexedLinkedList.NONE) {
+                lru.moveToTail(slot);
             }
         } finally {
             writeLock.unlock();
         }
     }
 
-    private void addNewKey(K key) {
-        DoublyLinkedListNode<K> newNode = new DoublyLinkedListNode<>(key);
-        dll.addNodeAtTail(newNode);
-        keyToNodeMap.put(key, newNode);
+    /**
+     * Stop tracking a key that left the cache (e.g. TTL expiry).
+     */
+    @Override
+    public void keyRemoved(K key) throws Exception {
+        writeLock.lock();
+        try {
+            int slot = lru.indexOf(key);
+            if (slot != IndexedLinkedList.NONE) {
+                lru.remove(slot);
+            }
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     @Override
     public K evictKey() throws Exception {
         writeLock.lock();
         try {
-            DoublyLinkedListNode<K> nodeToEvict = dll.getHead();
-            if (nodeToEvict == null) {
-                return null;
-            }
-
-            K evictKey = nodeToEvict.getValue();
-            dll.removeHead();
-            keyToNodeMap.remove(evictKey);
-            return evictKey;
+            return lru.removeHead(0);
         } finally {
             writeLock.unlock();
         }
     }
 
+    /**
+     * Keys from least to most recently used (read-only operation).
+     */
+    @Override
+    public List<K> snapshotKeys() throws Exception {
+        readLock.lock();
+        try {
+            List<K> keys = new ArrayList<>(lru.size());
+            lru.appendKeys(0, keys);
+            return keys;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
     /**
      * Check if a key exists in the LRU tracking (read-only operation).
      */
     public boolean containsKey(K key) {
         readLock.lock();
         try {
-            return keyToNodeMap.containsKey(key);
+            return lru.indexOf(key) != IndexedLinkedList.NONE;
         } finally {
             readLock.unlock();
         }
@@ -129,7 +129,7 @@ public class ConcurrentLRUEvictionAlgorithm<K> implements EvictionAlgorithm<K> {
     public int size() {
         readLock.lock();
         try {
-            return keyToNodeMap.size();
+            return lru.size();
         } finally {
             readLock.unlock();
         }
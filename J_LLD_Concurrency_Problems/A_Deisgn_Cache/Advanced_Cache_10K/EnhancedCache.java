@@ -1,9 +1,17 @@
 package J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_10K;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 import J_LLD_Concurrency_Problems.A_Deisgn_Cache.EvictionAlgorithms.EvictionAlgorithm;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.MainCache.BulkOperations;
 import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces.CacheStorage;
 import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces.DBStorage;
 import J_LLD_Concurrency_Problems.A_Deisgn_Cache.WritePolicies.WritePolicy;
@@ -26,6 +34,8 @@ public class EnhancedCache<K, V> {
     private final EvictionAlgorithm<K> evictionAlgorithm;
     private final GracefulKeyBasedExecutor keyBasedExecutor;
     private final CacheMetrics metrics;
+    private final BulkOperations<K, V> bulk; // getAll / putAll / invalidateAll
+    private final ReentrantLock evictionLock = new ReentrantLock(); // serializes victim selection
 
     public EnhancedCache(
             CacheStorage<K, V> cacheStorage,
@@ -39,6 +49,9 @@ public class EnhancedCache<K, V> {
         this.evictionAlgorithm = evictionAlgorithm;
         this.keyBasedExecutor = new GracefulKeyBasedExecutor(numExecutors);
         this.metrics = new CacheMetrics();
+        metrics.bindStorage(cacheStorage);
+        this.bulk = new BulkOperations<>(cacheStorage, dbStorage, writePolicy, evictionAlgorithm, keyBasedExecutor,
+                weightToFree -> selectEvictionVictims(weightToFree, null), this::removeVictims);
     }
 
     public CompletableFuture<V> accessData(K key) {
@@ -46,12 +59,12 @@ public class EnhancedCache<K, V> {
 
         return keyBasedExecutor.submitTask(key, () -> {
             try {
-                if (!cacheStorage.containsKey(key)) {
+                V value = cacheStorage.getIfPresent(key); // one lookup instead of containsKey + get
+                if (value == null) {
                     metrics.recordMiss();
                     throw new Exception("Key not found in cache: " + key);
                 }
-                evictionAlgorithm.keyAccessed(key);
-                V value = cacheStorage.get(key);
+                evictionAlgorithm.keyRead(key);
                 metrics.recordHit();
                 metrics.recordLatency(System.nanoTime() - startTime);
                 return value;
@@ -67,34 +80,14 @@ public class EnhancedCache<K, V> {
 
         return keyBasedExecutor.submitTask(key, () -> {
             try {
-                if (cacheStorage.containsKey(key)) {
-                    writePolicy.write(key, value, cacheStorage, dbStorage);
-                    evictionAlgorithm.keyAccessed(key);
-                } else {
-                    if (cacheStorage.size() >= cacheStorage.getCapacity()) {
-                        K evictedKey = evictionAlgorithm.evictKey();
-                        if (evictedKey != null) {
-                            int currIdx = keyBasedExecutor.getExecutorIndexForKey(key);
-                            int evictedIdx = keyBasedExecutor.getExecutorIndexForKey(evictedKey);
-                            if (currIdx == evictedIdx) {
-                                cacheStorage.remove(evictedKey);
-                            } else {
-                                CompletableFuture<Void> removalFuture = keyBasedExecutor.submitTask(evictedKey, () -> {
-                                    try {
-                                        cacheStorage.remove(evictedKey);
-                                        return null;
-                                    } catch (Exception e) {
-                                        throw new CompletionException(e);
-                                    }
-                                });
-                                removalFuture.join();
-                            }
-                            metrics.recordEviction();
-                        }
-                    }
-                    writePolicy.write(key, value, cacheStorage, dbStorage);
-                    evictionAlgorithm.keyAccessed(key);
-                }
+                int currIdx = keyBasedExecutor.getExecutorIndexForKey(key);
+                bulk.recordWrite(key); // a getAll that read this key from the DB before now must not cache its older value
+                // New key: its full weight. Existing key: only what the new value weighs more than the cached one
+                // (never the case for unweighted storages). weightOf is 0 for an absent key, so one lookup covers both.
+                makeRoom(cacheStorage.weigh(key, value) - cacheStorage.weightOf(key), currIdx, key);
+                writePolicy.write(key, value, cacheStorage, dbStorage);
+                evictionAlgorithm.keyAccessed(key);
+                dropIfTooHeavy(key);
                 metrics.recordWrite();
                 metrics.recordLatency(System.nanoTime() - startTime);
                 return null;
@@ -105,6 +98,139 @@ public class EnhancedCache<K, V> {
         });
     }
 
+    /**
+     * Bulk read: hits are checked with one task per executor group, all misses
+     * of the batch are loaded with ONE dbStorage.readAll and inserted by their
+     * own executors (see BulkOperations.loadMisses). Keys that are neither
+     * cached nor in the DB are left out of the result.
+     */
+    public CompletableFuture<Map<K, V>> getAll(Collection<K> keys) {
+        long startTime = System.nanoTime();
+        Map<K, V> result = new ConcurrentHashMap<>();
+        List<K> misses = Collections.synchronizedList(new ArrayList<>());
+
+        CompletableFuture<Void> lookups = bulk.forEachGroup(keys, groupKeys -> {
+            for (K key : groupKeys) {
+                V value = cacheStorage.getIfPresent(key);
+                if (value != null) {
+                    evictionAlgorithm.keyRead(key);
+                    result.put(key, value);
+                    metrics.recordHit();
+                } else {
+                    metrics.recordMiss();
+                    misses.add(key);
+                }
+            }
+        });
+
+        return lookups.thenCompose(ignored -> misses.isEmpty()
+                ? CompletableFuture.completedFuture(result)
+                : bulk.loadMisses(misses, result, dbStorage::readAll))
+                .whenComplete((map, error) -> metrics.recordLatency(System.nanoTime() - startTime));
+    }
+
+    /**
+     * Bulk write: one task and one writePolicy.writeAll per executor group.
+     */
+    public CompletableFuture<Void> putAll(Map<K, V> entries) {
+        long startTime = System.nanoTime();
+        return bulk.putAll(entries, key -> metrics.recordWrite())
+                .whenComplete((ignored, error) -> metrics.recordLatency(System.nanoTime() - startTime));
+    }
+
+    /**
+     * Drop keys from the cache only (DB untouched). Keys that are not cached
+     * are ignored.
+     */
+    public CompletableFuture<Void> invalidateAll(Collection<K> keys) {
+        return bulk.invalidateAll(keys);
+    }
+
+    /**
+     * Make space for `incomingWeight` more weight (the number of new keys for
+     * unweighted storages). Must be called from the executor with index
+     * currIdx. Removals on other executors are queued, not joined: two
+     * writers evicting each other's keys would otherwise deadlock.
+     */
+    private void makeRoom(long incomingWeight, int currIdx, K incomingKey) throws Exception {
+        // More than the whole cache: dropIfTooHeavy removes the entry after the write, don't flush everything for it
+        if (incomingWeight <= 0 || incomingWeight > cacheStorage.maxWeight()) {
+            return;
+        }
+        long overflow = cacheStorage.weight() + incomingWeight - cacheStorage.maxWeight();
+        if (overflow <= 0) {
+            return;
+        }
+        List<K> victims = selectEvictionVictims(overflow, incomingKey);
+        for (Map.Entry<Integer, List<K>> group : keyBasedExecutor.groupKeysByExecutor(victims).entrySet()) {
+            List<K> groupVictims = group.getValue();
+            if (group.getKey() == currIdx) {
+                removeVictims(groupVictims);
+            } else {
+                keyBasedExecutor.submitTaskToExecutor(group.getKey(), () -> {
+                    try {
+                        removeVictims(groupVictims);
+                        return null;
+                    } catch (Exception e) {
+                        throw new CompletionException(e);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Entry heavier than the whole cache: written (the DB has it) but not kept.
+     * Must be called from the key's executor.
+     */
+    private void dropIfTooHeavy(K key) throws Exception {
+        if (cacheStorage.weightOf(key) > cacheStorage.maxWeight()) {
+            cacheStorage.remove(key);
+            evictionAlgorithm.keyRemoved(key);
+        }
+    }
+
+    /**
+     * Victims until their summed weight reaches weightToFree (one victim per
+     * unit for unweighted storages).
+     *
+     * @param incomingKey the key being inserted when there is exactly one
+     *                    (eviction hint, see EvictionAlgorithm.evictKeyFor), or
+     *                    null
+     */
+    private List<K> selectEvictionVictims(long weightToFree, K incomingKey) throws Exception {
+        List<K> victims = new ArrayList<>();
+        long freed = 0;
+        // Writers of every executor (and bulk operations) select victims: one at a time, so each one's pass over the
+        // eviction algorithm frees its own overflow instead of interleaving with another writer's. Never held while
+        // waiting on an executor, victims on other executors are only queued.
+        evictionLock.lock();
+        try {
+            while (freed < weightToFree) {
+                K evictedKey = incomingKey != null ? evictionAlgorithm.evictKeyFor(incomingKey) : evictionAlgorithm.evictKey();
+                if (evictedKey == null) {
+                    break;
+                }
+                if (cacheStorage.containsKey(evictedKey)) {
+                    victims.add(evictedKey);
+                    freed += cacheStorage.weightOf(evictedKey);
+                }
+            }
+            return victims;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private void removeVictims(List<K> victims) throws Exception {
+        for (K victim : victims) {
+            if (cacheStorage.containsKey(victim)) {
+                cacheStorage.remove(victim);
+                metrics.recordEviction();
+            }
+        }
+    }
+
     /**
      * Get current cache metrics for monitoring.
      */
@@ -112,6 +238,20 @@ public class EnhancedCache<K, V> {
         return metrics;
     }
 
+    /**
+     * Pending tasks per executor, for monitoring saturation.
+     */
+    public int[] getQueueDepthPerExecutor() {
+        return keyBasedExecutor.getQueueDepthPerExecutor();
+    }
+
+    /**
+     * Executors running a task right now, out of getQueueDepthPerExecutor().length.
+     */
+    public int getBusyExecutorCount() {
+        return keyBasedExecutor.getBusyExecutorCount();
+    }
+
     /**
      * Get a snapshot of metrics as string for logging.
      */
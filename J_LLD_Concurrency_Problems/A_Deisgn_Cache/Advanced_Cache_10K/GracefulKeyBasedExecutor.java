@@ -1,11 +1,19 @@
 package J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_10K;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.Executors.PartitionedKeyExecutor;
+
 /**
  * Improved KeyBasedExecutor with graceful shutdown support.
  * 
@@ -14,10 +22,13 @@ import java.util.function.Supplier;
  * 2. Configurable timeout for graceful shutdown
  * 3. Logging of incomplete tasks on forced shutdown
  * 4. Thread naming for easier debugging
+ * 5. Queue depth and busy executors for monitoring (each executor is a
+ * one-thread ThreadPoolExecutor, same behavior as newSingleThreadExecutor but
+ * its queue can be inspected)
  */
-public class GracefulKeyBasedExecutor {
+public class GracefulKeyBasedExecutor implements PartitionedKeyExecutor {
 
-    private final ExecutorService[] executors;
+    private final ThreadPoolExecutor[] executors;
     private final int numExecutors;
     private final long shutdownTimeoutSeconds;
 
@@ -28,11 +39,11 @@ public class GracefulKeyBasedExecutor {
     public GracefulKeyBasedExecutor(int numExecutors, long shutdownTimeoutSeconds) {
         this.numExecutors = numExecutors;
         this.shutdownTimeoutSeconds = shutdownTimeoutSeconds;
-        this.executors = new ExecutorService[numExecutors];
+        this.executors = new ThreadPoolExecutor[numExecutors];
 
         for (int i = 0; i < numExecutors; i++) {
             final int executorId = i;
-            executors[i] = Executors.newSingleThreadExecutor(r -> {
+            executors[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
                 Thread t = new Thread(r, "cache-executor-" + executorId);
                 t.setDaemon(false); // Non-daemon to allow graceful shutdown
                 return t;
@@ -46,10 +57,58 @@ public class GracefulKeyBasedExecutor {
         return CompletableFuture.supplyAsync(task, executor);
     }
 
+    /**
+     * Run a task on a given executor (keys already grouped with
+     * groupKeysByExecutor).
+     */
+    public <T> CompletableFuture<T> submitTaskToExecutor(int executorIndex, Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, executors[executorIndex]);
+    }
+
     public int getExecutorIndexForKey(Object key) {
         return Math.floorMod(key.hashCode(), numExecutors);
     }
 
+    /**
+     * Split a batch of keys by owning executor, so a bulk operation submits one
+     * task per executor instead of one per key.
+     */
+    public <K> Map<Integer, List<K>> groupKeysByExecutor(Collection<K> keys) {
+        Map<Integer, List<K>> groups = new HashMap<>();
+        for (K key : keys) {
+            groups.computeIfAbsent(getExecutorIndexForKey(key), idx -> new ArrayList<>()).add(key);
+        }
+        return groups;
+    }
+
+    public int getNumExecutors() {
+        return numExecutors;
+    }
+
+    /**
+     * Tasks waiting in each executor's queue (the running task not included).
+     * A deep queue on one executor means a hot key (or hot hash slot).
+     */
+    public int[] getQueueDepthPerExecutor() {
+        int[] depths = new int[numExecutors];
+        for (int i = 0; i < numExecutors; i++) {
+            depths[i] = executors[i].getQueue().size();
+        }
+        return depths;
+    }
+
+    /**
+     * Executors running a task right now (approximate, like
+     * ThreadPoolExecutor.getActiveCount).
+     */
+    public int getBusyExecutorCount() {
+        int busy = 0;
+        for (ThreadPoolExecutor executor : executors) {
+            busy += executor.getActiveCount();
+        }
+        return busy;
+    }
+
     /**
      * Graceful shutdown with timeout.
      * 
@@ -0,0 +1,241 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_10K;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hierarchical timing wheel used as the expiration index of CacheWithTTL.
+ *
+ * Problem with a Map of key -> expiration time: finding what expired means
+ * scanning every live entry (O(n) per cleanup), and every deadline is a boxed
+ * Long.
+ *
+ * How it works (same idea as Kafka's purgatory and Caffeine's TimerWheel):
+ * - Time is cut into buckets. Level 0 has 64 buckets of ~64ms, level 1 has 64
+ * buckets of ~4s, level 2 ~4.4min, level 3 ~4.7h, level 4 ~12.4 days.
+ * - An entry is put in the bucket of the coarsest level whose range still
+ * covers its deadline, in a doubly linked list (O(1) insert/remove).
+ * - When time advances, only the buckets whose time span has passed are
+ * visited. Their entries are either expired, or moved ("cascaded") down to a
+ * finer level because their deadline is now close.
+ *
+ * Cost per advance is O(expired + cascaded) instead of O(all entries).
+ * Deadlines are stored as primitive longs inside the nodes.
+ *
+ * Thread safety: structural changes happen under one lock. Deadline lookups
+ * (getDeadline) are lock-free through a ConcurrentHashMap index, so the lazy
+ * expiration check on every cache read does not contend on the wheel.
+ */
+public class HierarchicalTimerWheel<K> {
+
+    // Bucket width of level i is 2^SHIFTS[i] ms, each level has 64 buckets (2^6),
+    // so level i covers exactly one bucket of level i + 1.
+    private static final int[] SHIFTS = { 6, 12, 18, 24, 30 };
+    private static final int BUCKETS_PER_LEVEL = 64;
+    private static final int BUCKET_MASK = BUCKETS_PER_LEVEL - 1;
+
+    private final TimerNode<K>[][] wheel; // sentinel node per bucket
+    private final ConcurrentHashMap<K, TimerNode<K>> index;
+    private final ReentrantLock lock;
+    private long currentTimeMillis;
+
+    @SuppressWarnings("unchecked")
+    public HierarchicalTimerWheel(long startTimeMillis) {
+        // Generic array creation, every slot holds a TimerNode<K> sentinel
+        this.wheel = (TimerNode<K>[][]) new TimerNode<?>[SHIFTS.length][BUCKETS_PER_LEVEL];
+        for (int level = 0; level < SHIFTS.length; level++) {
+            for (int bucket = 0; bucket < BUCKETS_PER_LEVEL; bucket++) {
+                wheel[level][bucket] = TimerNode.sentinel();
+            }
+        }
+        this.index = new ConcurrentHashMap<>();
+        this.lock = new ReentrantLock();
+        this.currentTimeMillis = startTimeMillis;
+    }
+
+    /**
+     * Schedule (or reschedule) expiration of a key.
+     */
+    public void schedule(K key, long deadlineMillis) {
+        TimerNode<K> node = new TimerNode<>(key, deadlineMillis);
+        lock.lock();
+        try {
+            TimerNode<K> previous = index.put(key, node);
+            if (previous != null) {
+                previous.unlink();
+            }
+            link(node);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stop tracking a key (explicit removal or eviction).
+     */
+    public void deschedule(K key) {
+        lock.lock();
+        try {
+            TimerNode<K> node = index.remove(key);
+            if (node != null) {
+                node.unlink();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return deadline in millis, or -1 if the key is not scheduled
+     */
+    public long getDeadline(K key) {
+        TimerNode<K> node = index.get(key);
+        return node == null ? -1 : node.deadline;
+    }
+
+    /**
+     * Lazy expiration: remove the key if its deadline has passed.
+     *
+     * @return true only for the caller that actually expired the key, so
+     *         expiration callbacks fire exactly once
+     */
+    public boolean removeIfExpired(K key, long nowMillis) {
+        TimerNode<K> node = index.get(key);
+        if (node == null || node.deadline > nowMillis) {
+            return false; // fast path, no lock
+        }
+        lock.lock();
+        try {
+            if (index.remove(key, node)) {
+                node.unlink();
+                return true;
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Advance the wheel to nowMillis.
+     *
+     * @return keys whose deadline passed (already removed from the wheel)
+     */
+    public List<K> advance(long nowMillis) {
+        List<K> expired = new ArrayList<>();
+        lock.lock();
+        try {
+            long previousTimeMillis = currentTimeMillis;
+            if (nowMillis <= previousTimeMillis) {
+                return expired;
+            }
+            currentTimeMillis = nowMillis;
+
+            for (int level = 0; level < SHIFTS.length; level++) {
+                long previousTicks = previousTimeMillis >>> SHIFTS[level];
+                long currentTicks = nowMillis >>> SHIFTS[level];
+                long delta = currentTicks - previousTicks;
+                if (delta <= 0) {
+                    break; // coarser levels can't have moved either
+                }
+                expireBuckets(level, previousTicks, delta, nowMillis, expired);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return expired;
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    // Must be called while holding lock
+    private void expireBuckets(int level, long previousTicks, long delta, long nowMillis, List<K> expired) {
+        int start = (int) (previousTicks & BUCKET_MASK);
+        int end = start + (int) Math.min(delta, BUCKETS_PER_LEVEL);
+        for (int i = start; i < end; i++) {
+            TimerNode<K> sentinel = wheel[level][i & BUCKET_MASK];
+            // Detach the whole chain first: cascaded nodes may be linked into this bucket again
+            TimerNode<K> node = sentinel.next;
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+            while (node != sentinel) {
+                TimerNode<K> next = node.next;
+                node.prev = null;
+                node.next = null;
+                if (node.deadline <= nowMillis) {
+                    if (index.remove(node.key, node)) {
+                        expired.add(node.key);
+                    }
+                } else {
+                    link(node); // cascade to a finer level
+                }
+                node = next;
+            }
+        }
+    }
+
+    // Must be called while holding lock
+    private void link(TimerNode<K> node) {
+        long delay = node.deadline - currentTimeMillis;
+        // Past deadlines go into the current bucket so the next advance picks them up
+        long time = Math.max(node.deadline, currentTimeMillis);
+        for (int level = 0; level < SHIFTS.length; level++) {
+            boolean lastLevel = level == SHIFTS.length - 1;
+            if (lastLevel || delay < (1L << SHIFTS[level + 1])) {
+                long ticks = time >>> SHIFTS[level];
+                // A bucket is visited when time LEAVES it. For coarse levels use the bucket just
+                // before the deadline's one, so the node cascades down as soon as time enters the
+                // deadline's bucket instead of one whole (coarse) bucket too late.
+                if (level > 0) {
+                    ticks--;
+                }
+                wheel[level][(int) (ticks & BUCKET_MASK)].append(node);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Intrusive list node: no extra allocation besides the node itself.
+     */
+    private static final class TimerNode<K> {
+        final K key;
+        final long deadline;
+        TimerNode<K> prev;
+        TimerNode<K> next;
+
+        TimerNode(K key, long deadline) {
+            this.key = key;
+            this.deadline = deadline;
+        }
+
+        static <K> TimerNode<K> sentinel() {
+            TimerNode<K> sentinel = new TimerNode<>(null, Long.MAX_VALUE);
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+            return sentinel;
+        }
+
+        // Called on a sentinel: add node at the end of its bucket
+        void append(TimerNode<K> node) {
+            TimerNode<K> tail = prev;
+            node.prev = tail;
+            node.next = this;
+            tail.next = node;
+            prev = node;
+        }
+
+        void unlink() {
+            if (prev != null) {
+                prev.next = next;
+                next.prev = prev;
+                prev = null;
+                next = null;
+            }
+        }
+    }
+}
@@ -1,9 +1,10 @@
 package J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_1M;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.SortedMap;
-import java.util.TreeMap;
 
 /**
  * Consistent hashing implementation for distributed cache node selection.
@@ -19,12 +20,24 @@ import java.util.TreeMap;
  * - Predictable O(log N) lookup time
  * 
  * This is how Redis Cluster, Cassandra, and DynamoDB distribute data.
+ *
+ * Layout: the ring is a sorted long[] of virtual node points plus a parallel
+ * array of owners. A lookup is one Arrays.binarySearch, no TreeMap.tailMap
+ * view and no boxed Long per call. Both arrays live in an immutable snapshot
+ * that addNode / removeNode replace as a whole (copy-on-write): membership
+ * changes are rare, lookups are on every cache operation and never lock.
+ *
+ * Virtual node points are derived from one hash of the node name mixed with
+ * the virtual node index, instead of hashing a concatenated string per
+ * virtual node.
  */
 public class ConsistentHashRing<T> {
 
-    private final SortedMap<Long, T> ring = new TreeMap<>();
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
     private final int virtualNodes; // Number of virtual nodes per physical node
     private final HashFunction hashFunction;
+    private volatile Snapshot snapshot = new Snapshot(new long[0], new Object[0], List.of());
 
     public ConsistentHashRing(int virtualNodes) {
         this(virtualNodes, ConsistentHashRing::defaultHash);
@@ -39,21 +52,54 @@ public class ConsistentHashRing<T> {
      * Add a node to the ring.
      * Creates multiple virtual nodes for better distribution.
      */
-    public void addNode(T node) {
-        for (int i = 0; i < virtualNodes; i++) {
-            long hash = hashFunction.hash(node.toString() + "-vn-" + i);
-            ring.put(hash, node);
+    public synchronized void addNode(T node) {
+        Snapshot current = snapshot;
+        if (current.nodes.contains(node)) {
+            return;
+        }
+        long[] added = pointsOf(node);
+        Arrays.sort(added);
+
+        // Merge two sorted arrays: O(ring size), no re-sort of the existing points
+        long[] points = new long[current.points.length + added.length];
+        Object[] owners = new Object[points.length];
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < points.length; k++) {
+            if (j == added.length || (i < current.points.length && current.points[i] <= added[j])) {
+                points[k] = current.points[i];
+                owners[k] = current.owners[i++];
+            } else {
+                points[k] = added[j++];
+                owners[k] = node;
+            }
         }
+        List<Object> nodes = new ArrayList<>(current.nodes);
+        nodes.add(node);
+        snapshot = new Snapshot(points, owners, List.copyOf(nodes));
     }
 
     /**
      * Remove a node from the ring.
      */
-    public void removeNode(T node) {
-        for (int i = 0; i < virtualNodes; i++) {
-            long hash = hashFunction.hash(node.toString() + "-vn-" + i);
-            ring.remove(hash);
+    public synchronized void removeNode(T node) {
+        Snapshot current = snapshot;
+        if (!current.nodes.contains(node)) {
+            return;
+        }
+        int remaining = current.points.length - virtualNodes;
+        long[] points = new long[remaining];
+        Object[] owners = new Object[remaining];
+        int k = 0;
+        for (int i = 0; i < current.points.length; i++) {
+            if (!current.owners[i].equals(node)) {
+                points[k] = current.points[i];
+                owners[k++] = current.owners[i];
+            }
         }
+        List<Object> nodes = new ArrayList<>(current.nodes);
+        nodes.remove(node);
+        snapshot = new Snapshot(points, owners, List.copyOf(nodes));
     }
 
     /**
@@ -62,18 +108,14 @@ public class ConsistentHashRing<T> {
      * @param key The key to locate
      * @return The node responsible for this key, or null if ring is empty
      */
+    @SuppressWarnings("unchecked")
     public T getNodeForKey(Object key) {
-        if (ring.isEmpty()) {
+        Snapshot ring = snapshot;
+        if (ring.points.length == 0) {
             return null;
         }
-
-        long hash = hashFunction.hash(key.toString());
-
         // Find the first node clockwise from the key's hash
-        SortedMap<Long, T> tailMap = ring.tailMap(hash);
-        Long nodeHash = tailMap.isEmpty() ? ring.firstKey() : tailMap.firstKey();
-
-        return ring.get(nodeHash);
+        return (T) ring.owners[ring.indexFor(hashOf(key))];
     }
 
     /**
@@ -85,44 +127,121 @@ public class ConsistentHashRing<T> {
      * @return List of nodes for replication
      */
     public List<T> getNodesForKey(Object key, int count) {
-        if (ring.isEmpty()) {
-            return new ArrayList<>();
-        }
+        return getNodesForHash(hashOf(key), count);
+    }
 
-        List<T> nodes = new ArrayList<>();
-        long hash = hashFunction.hash(key.toString());
+    /**
+     * Same as getNodesForKey for a hash from hashOf, for callers that route
+     * the same key more than once.
+     */
+    public List<T> getNodesForHash(long hash, int count) {
+        Snapshot ring = snapshot;
+        return ring.points.length == 0 ? new ArrayList<>() : nodesFrom(ring, ring.indexFor(hash), count);
+    }
 
-        // Start from key's position, walk clockwise
-        SortedMap<Long, T> tailMap = ring.tailMap(hash);
+    /**
+     * Position of a key on the ring.
+     */
+    public long hashOf(Object key) {
+        return hashFunction.hash(key.toString());
+    }
 
-        for (T node : tailMap.values()) {
-            if (!nodes.contains(node) && nodes.size() < count) {
-                nodes.add(node);
+    /**
+     * A copy with the same nodes. Cheap: the copy shares the immutable
+     * snapshot until one of the two rings changes.
+     */
+    public ConsistentHashRing<T> copy() {
+        ConsistentHashRing<T> copy = new ConsistentHashRing<>(virtualNodes, hashFunction);
+        copy.snapshot = snapshot;
+        return copy;
+    }
+
+    /**
+     * Token ranges whose replica set differs between this ring and target,
+     * i.e. exactly the data that has to move when this ring becomes target.
+     *
+     * Between two consecutive points of either ring the replica set of both
+     * rings is constant, so comparing the replicas at every point of the
+     * union is exact. Adjacent ranges with the same change are merged.
+     * Ranges are returned sorted by endInclusive.
+     */
+    public List<TokenRange<T>> changedRanges(ConsistentHashRing<T> target, int replicas) {
+        Snapshot from = snapshot;
+        Snapshot to = target.snapshot;
+        long[] union = new long[from.points.length + to.points.length];
+        System.arraycopy(from.points, 0, union, 0, from.points.length);
+        System.arraycopy(to.points, 0, union, from.points.length, to.points.length);
+        Arrays.sort(union);
+        int n = 0;
+        for (int i = 0; i < union.length; i++) {
+            if (i == 0 || union[i] != union[i - 1]) {
+                union[n++] = union[i];
             }
         }
 
-        // Wrap around to beginning of ring if needed
-        for (T node : ring.values()) {
-            if (!nodes.contains(node) && nodes.size() < count) {
-                nodes.add(node);
+        List<TokenRange<T>> ranges = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            long end = union[i];
+            List<T> oldReplicas = from.points.length == 0 ? List.of() : nodesFrom(from, from.indexFor(end), replicas);
+            List<T> newReplicas = to.points.length == 0 ? List.of() : nodesFrom(to, to.indexFor(end), replicas);
+            if (new HashSet<>(oldReplicas).equals(new HashSet<>(newReplicas))) {
+                continue;
+            }
+            long start = union[(i - 1 + n) % n];
+            TokenRange<T> last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+            if (last != null && last.endInclusive == start && last.from.equals(oldReplicas) && last.to.equals(newReplicas)) {
+                ranges.set(ranges.size() - 1, new TokenRange<>(last.startExclusive, end, oldReplicas, newReplicas));
+            } else {
+                ranges.add(new TokenRange<>(start, end, oldReplicas, newReplicas));
             }
         }
+        return ranges;
+    }
 
+    // Walk clockwise (wrapping around) from a point until enough distinct nodes were seen
+    @SuppressWarnings("unchecked")
+    private List<T> nodesFrom(Snapshot ring, int start, int count) {
+        int wanted = Math.min(count, ring.nodes.size());
+        List<T> nodes = new ArrayList<>(Math.max(wanted, 0));
+        for (int step = 0; step < ring.points.length && nodes.size() < wanted; step++) {
+            T node = (T) ring.owners[(start + step) % ring.points.length];
+            if (!nodes.contains(node)) {
+                nodes.add(node);
+            }
+        }
         return nodes;
     }
 
     /**
      * Get all physical nodes in the ring.
      */
+    @SuppressWarnings("unchecked")
     public List<T> getAllNodes() {
-        return new ArrayList<>(new java.util.HashSet<>(ring.values()));
+        return new ArrayList<>((List<T>) snapshot.nodes);
     }
 
     /**
      * Get the number of physical nodes.
      */
     public int size() {
-        return ring.size() / virtualNodes;
+        return snapshot.nodes.size();
+    }
+
+    // One hash of the node name, then one cheap mix per virtual node
+    private long[] pointsOf(T node) {
+        long base = hashFunction.hash(node.toString());
+        long[] points = new long[virtualNodes];
+        for (int i = 0; i < virtualNodes; i++) {
+            points[i] = mix(base + (i + 1) * GOLDEN_GAMMA);
+        }
+        return points;
+    }
+
+    // SplitMix64 finalizer: consecutive inputs end up spread over the whole ring
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
     }
 
     /**
@@ -143,20 +262,23 @@ public class ConsistentHashRing<T> {
             hash ^= key.charAt(i);
             hash *= 0x100000001b3L;
         }
-        return hash;
+        // The last characters barely reach the high bits, which decide the ring position: "key-1".."key-9" would land
+        // next to each other. One finalizer round spreads them.
+        return mix(hash);
     }
 
     /**
      * Visualize the ring distribution for debugging.
      */
     public String visualize() {
+        Snapshot ring = snapshot;
         StringBuilder sb = new StringBuilder();
-        sb.append("Consistent Hash Ring (").append(size()).append(" nodes, ");
+        sb.append("Consistent Hash Ring (").append(ring.nodes.size()).append(" nodes, ");
         sb.append(virtualNodes).append(" virtual nodes each)\n");
         sb.append("==================================================\n");
 
-        for (var entry : ring.entrySet()) {
-            sb.append(String.format("Hash: %20d -> Node: %s%n", entry.getKey(), entry.getValue()));
+        for (int i = 0; i < ring.points.length; i++) {
+            sb.append(String.format("Hash: %20d -> Node: %s%n", ring.points[i], ring.owners[i]));
             if (sb.length() > 2000) {
                 sb.append("... (truncated)\n");
                 break;
@@ -165,4 +287,76 @@ public class ConsistentHashRing<T> {
 
         return sb.toString();
     }
+
+    /**
+     * Hashes in (startExclusive, endInclusive], wrapping past Long.MAX_VALUE
+     * when start >= end (start == end is the whole ring), and the replicas
+     * that own them before (from) and after (to) a membership change.
+     */
+    public static final class TokenRange<T> {
+        final long startExclusive;
+        final long endInclusive;
+        final List<T> from;
+        final List<T> to;
+
+        TokenRange(long startExclusive, long endInclusive, List<T> from, List<T> to) {
+            this.startExclusive = startExclusive;
+            this.endInclusive = endInclusive;
+            this.from = Collections.unmodifiableList(from);
+            this.to = Collections.unmodifiableList(to);
+        }
+
+        public boolean contains(long hash) {
+            if (startExclusive < endInclusive) {
+                return hash > startExclusive && hash <= endInclusive;
+            }
+            return hash > startExclusive || hash <= endInclusive;
+        }
+
+        public long getStartExclusive() {
+            return startExclusive;
+        }
+
+        public long getEndInclusive() {
+            return endInclusive;
+        }
+
+        public List<T> getFrom() {
+            return from;
+        }
+
+        public List<T> getTo() {
+            return to;
+        }
+
+        @Override
+        public String toString() {
+            return "(" + startExclusive + ", " + endInclusive + "] " + from + " -> " + to;
+        }
+    }
+
+    /**
+     * Sorted virtual node points, the owner of each point, and the distinct
+     * physical nodes. Never modified after construction.
+     */
+    private static final class Snapshot {
+        final long[] points;
+        final Object[] owners;
+        final List<Object> nodes;
+
+        Snapshot(long[] points, Object[] owners, List<Object> nodes) {
+            this.points = points;
+            this.owners = owners;
+            this.nodes = nodes;
+        }
+
+        // Index of the first point clockwise from hash (wraps to 0 past the last point)
+        int indexFor(long hash) {
+            int index = Arrays.binarySearch(points, hash);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            return index == points.length ? 0 : index;
+        }
+    }
 }
@@ -0,0 +1,236 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_1M;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One in-process cache node of a LocalClusterCacheStorage, standing in for a
+ * Redis / Memcached server.
+ *
+ * Every entry carries a version (last writer wins), so replicas can be
+ * compared and repaired: a write only lands if it is newer than what the node
+ * holds, which also makes replaying hints and repairs idempotent. A remove is
+ * stored as a tombstone (a version without a value) so that read-repair
+ * can't bring the old value back from a replica that missed the remove.
+ *
+ * The node is an LRU bounded by entry count (tombstones included), like a
+ * cache server with maxmemory-policy allkeys-lru. Each node has its own lock,
+ * so the nodes of a cluster never contend with each other.
+ *
+ * A node that is down rejects every call with an exception, the way a
+ * connection refused / timeout would surface in a real client.
+ */
+public class LocalCacheNode<K, V> {
+
+    private final String address;
+    private final int capacity;
+    private final LinkedHashMap<K, Versioned<V>> entries;
+    private volatile boolean up = true;
+    private volatile int live; // entries that are not tombstones, changed under the node lock
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public LocalCacheNode(String address, int capacity) {
+        this.address = address;
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Versioned<V>> eldest) {
+                if (size() > LocalCacheNode.this.capacity) {
+                    evictions.increment();
+                    if (!eldest.getValue().isTombstone()) {
+                        live--;
+                    }
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * The entry (possibly a tombstone), or null if this node has nothing for
+     * the key.
+     */
+    public synchronized Versioned<V> read(K key) throws Exception {
+        checkUp();
+        Versioned<V> entry = entries.get(key);
+        if (entry == null || entry.isTombstone()) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return entry;
+    }
+
+    /**
+     * Stores the entry unless the node already holds the same or a newer
+     * version.
+     *
+     * @return true if the entry was stored
+     */
+    public synchronized boolean write(K key, Versioned<V> entry) throws Exception {
+        checkUp();
+        Versioned<V> current = entries.get(key);
+        if (current != null && current.version >= entry.version) {
+            return false;
+        }
+        live += (entry.isTombstone() ? 0 : 1) - (current == null || current.isTombstone() ? 0 : 1);
+        entries.put(key, entry);
+        return true;
+    }
+
+    /**
+     * write() for a batch under one lock acquisition.
+     *
+     * @return entries stored
+     */
+    public synchronized int writeAll(Map<K, Versioned<V>> batch) throws Exception {
+        int stored = 0;
+        for (Map.Entry<K, Versioned<V>> entry : batch.entrySet()) {
+            if (write(entry.getKey(), entry.getValue())) {
+                stored++;
+            }
+        }
+        return stored;
+    }
+
+    /**
+     * Keys with a live value (tombstones left out), for rebalancing and
+     * consistency checks.
+     */
+    public synchronized List<K> keys() throws Exception {
+        checkUp();
+        List<K> keys = new ArrayList<>();
+        for (Map.Entry<K, Versioned<V>> entry : entries.entrySet()) {
+            if (!entry.getValue().isTombstone()) {
+                keys.add(entry.getKey());
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Live entries of the given keys, for streaming them to another node.
+     * Not counted as hits or misses.
+     */
+    public synchronized Map<K, Versioned<V>> export(Collection<K> keys) throws Exception {
+        checkUp();
+        Map<K, Versioned<V>> exported = new HashMap<>();
+        for (K key : keys) {
+            Versioned<V> entry = entries.get(key);
+            if (entry != null && !entry.isTombstone()) {
+                exported.put(key, entry);
+            }
+        }
+        return exported;
+    }
+
+    /**
+     * Forget the keys entirely (no tombstone), e.g. after their range moved
+     * to another node.
+     */
+    public synchronized void drop(Collection<K> keys) {
+        for (K key : keys) {
+            Versioned<V> removed = entries.remove(key);
+            if (removed != null && !removed.isTombstone()) {
+                live--;
+            }
+        }
+    }
+
+    /**
+     * Entries with a live value.
+     */
+    public int size() {
+        return live;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public boolean isUp() {
+        return up;
+    }
+
+    /**
+     * Simulate a crash or a network partition: the data is kept, but every
+     * call fails until markUp.
+     */
+    public void markDown() {
+        up = false;
+    }
+
+    public void markUp() {
+        up = true;
+    }
+
+    /**
+     * Simulate a restart of the process: everything held in memory is lost.
+     */
+    public synchronized void wipe() {
+        entries.clear();
+        live = 0;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    private void checkUp() throws Exception {
+        if (!up) {
+            throw new Exception("Node unavailable: " + address);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return address;
+    }
+
+    /**
+     * A value with its version. value == null marks a tombstone (removed at
+     * that version).
+     */
+    public static final class Versioned<V> {
+        final V value;
+        final long version;
+
+        public Versioned(V value, long version) {
+            this.value = value;
+            this.version = version;
+        }
+
+        public V getValue() {
+            return value;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public boolean isTombstone() {
+            return value == null;
+        }
+    }
+}
@@ -0,0 +1,714 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_1M;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_1M.ConsistentHashRing.TokenRange;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_1M.LocalCacheNode.Versioned;
+
+/**
+ * DistributedCacheStorage over N in-process LocalCacheNodes, partitioned with
+ * the ConsistentHashRing. Runs (and can be tested) entirely on one machine:
+ * marking a node down, or wiping it, simulates a crash, a partition or a
+ * restart.
+ *
+ * Replication: every key lives on the first replicationFactor distinct nodes
+ * clockwise from its hash. Writes go to all of them and succeed as long as
+ * one replica is reachable.
+ *
+ * Versions: this coordinator stamps every write with a hybrid clock
+ * (milliseconds << 20, bumped past the previous version), the newest version
+ * wins on every node. A remove writes a tombstone.
+ *
+ * Hinted handoff: a write for a replica that is down is kept as a hint (at
+ * most maxHintsPerNode per node). markUp delivers the hints, so the node
+ * catches up on what it missed instead of serving stale values. Dynamo keeps
+ * hints on a stand-in node; with a single in-process coordinator keeping them
+ * here is equivalent.
+ *
+ * Read-repair: a read that misses on the preferred replica, plus a random
+ * readRepairChance share of all reads, asks every live replica, returns the
+ * newest version and writes it back to the replicas that were missing it or
+ * held an older one. That covers what hints can't: dropped hints and a node
+ * restarted empty.
+ *
+ * Membership changes are online (see Rebalancer): the token ranges that
+ * change owner are streamed to their new replicas while the cluster keeps
+ * serving. Until a range is handed off, reads of it still go to the old
+ * replicas and writes go to old and new replicas both, so neither a read nor
+ * a write falls into a range whose new owner is still empty.
+ */
+public class LocalClusterCacheStorage<K, V> implements DistributedCacheStorage<K, V> {
+
+    private volatile ConsistentHashRing<String> ring;
+    // Non-null while a membership change is streaming data
+    private volatile Migration migration;
+    // Writes route and deliver under the read lock, installing a migration or handing off a range takes the write lock:
+    // no write can route by the old ownership and land after the range it belongs to was handed off
+    private final ReentrantReadWriteLock routingLock = new ReentrantReadWriteLock();
+    private final Object membershipLock = new Object();
+    private volatile int rebalanceBatchSize = 500;
+    private volatile int rebalanceKeysPerSecond = 50_000;
+    private final Map<String, LocalCacheNode<K, V>> nodes = new ConcurrentHashMap<>();
+    private final Map<String, HintQueue<K, V>> hints = new ConcurrentHashMap<>();
+    private final int nodeCapacity;
+    private final double readRepairChance;
+    private final int maxHintsPerNode;
+    private volatile int replicationFactor;
+    private volatile ReadPreference readPreference = ReadPreference.PRIMARY_PREFERRED;
+    private final AtomicLong clock = new AtomicLong();
+
+    private final LongAdder readRepairs = new LongAdder();
+    private final LongAdder hintsStored = new LongAdder();
+    private final LongAdder hintsDelivered = new LongAdder();
+    private final LongAdder hintsDropped = new LongAdder();
+
+    public LocalClusterCacheStorage(int nodeCapacity, int replicationFactor) {
+        this(nodeCapacity, replicationFactor, 128, 0.1, 100_000);
+    }
+
+    /**
+     * @param nodeCapacity     Entries per node
+     * @param virtualNodes     Ring points per node
+     * @param readRepairChance Share of hits that also compare all replicas
+     *                         (misses always do)
+     * @param maxHintsPerNode  Hints kept for one down node, newer writes for
+     *                         it are left to read-repair beyond that
+     */
+    public LocalClusterCacheStorage(int nodeCapacity, int replicationFactor, int virtualNodes,
+            double readRepairChance, int maxHintsPerNode) {
+        if (replicationFactor < 1) {
+            throw new IllegalArgumentException("Replication factor must be at least 1");
+        }
+        this.ring = new ConsistentHashRing<>(virtualNodes);
+        this.nodeCapacity = nodeCapacity;
+        this.replicationFactor = replicationFactor;
+        this.readRepairChance = readRepairChance;
+        this.maxHintsPerNode = maxHintsPerNode;
+    }
+
+    // ==================== CacheStorage ====================
+
+    @Override
+    public void put(K key, V value) throws Exception {
+        write(key, new Versioned<>(value, nextVersion()));
+    }
+
+    @Override
+    public V get(K key) throws Exception {
+        V value = getIfPresent(key);
+        if (value == null) {
+            throw new Exception("Key not found in cache");
+        }
+        return value;
+    }
+
+    @Override
+    public V getIfPresent(K key) throws Exception {
+        Versioned<V> entry = lookup(key);
+        return entry == null ? null : entry.value;
+    }
+
+    /**
+     * Writes a tombstone to every replica (hinted for those that are down).
+     */
+    @Override
+    public void remove(K key) throws Exception {
+        if (lookup(key) == null) {
+            throw new Exception("Key not found in cache");
+        }
+        write(key, new Versioned<>(null, nextVersion()));
+    }
+
+    @Override
+    public boolean containsKey(K key) throws Exception {
+        return lookup(key) != null;
+    }
+
+    /**
+     * Live entries on the reachable nodes divided by the number of copies per
+     * key, i.e. an estimate of the distinct keys cached.
+     */
+    @Override
+    public int size() throws Exception {
+        long entries = 0;
+        for (LocalCacheNode<K, V> node : nodes.values()) {
+            if (node.isUp()) {
+                entries += node.size();
+            }
+        }
+        return (int) (entries / copiesPerKey());
+    }
+
+    @Override
+    public int getCapacity() {
+        return (int) Math.min(Integer.MAX_VALUE, (long) nodeCapacity * nodes.size() / copiesPerKey());
+    }
+
+    private int copiesPerKey() {
+        return Math.max(1, Math.min(replicationFactor, nodes.size()));
+    }
+
+    // ==================== Replication ====================
+
+    // Hybrid clock: wall clock milliseconds in the high bits, strictly increasing within this coordinator
+    private long nextVersion() {
+        long now = System.currentTimeMillis() << 20;
+        return clock.updateAndGet(previous -> Math.max(previous + 1, now));
+    }
+
+    private void write(K key, Versioned<V> entry) throws Exception {
+        routingLock.readLock().lock();
+        try {
+            List<String> replicas = writeReplicas(key);
+            boolean reachable = false;
+            for (String address : replicas) {
+                LocalCacheNode<K, V> node = nodes.get(address);
+                reachable |= node != null && node.isUp();
+            }
+            // Nothing stored (not even hints) when the write can't succeed anywhere
+            if (!reachable) {
+                throw new Exception("No replica available for key: " + key);
+            }
+            for (String address : replicas) {
+                deliver(address, key, entry);
+            }
+        } finally {
+            routingLock.readLock().unlock();
+        }
+    }
+
+    // Reads of a range that is still moving go to the replicas that have the data: the old ones
+    private List<String> readReplicas(K key) {
+        Migration current = migration;
+        if (current == null) {
+            return ring.getNodesForKey(key, replicationFactor);
+        }
+        long hash = current.target.hashOf(key);
+        RangeState range = current.rangeFor(hash);
+        if (range == null) {
+            return current.target.getNodesForHash(hash, replicationFactor); // ownership doesn't change here
+        }
+        return range.handedOff ? range.range.getTo() : range.range.getFrom();
+    }
+
+    // Writes of a range that is still moving go to old and new replicas, whichever side serves it next is up to date
+    private List<String> writeReplicas(K key) {
+        Migration current = migration;
+        if (current == null) {
+            return ring.getNodesForKey(key, replicationFactor);
+        }
+        long hash = current.target.hashOf(key);
+        RangeState range = current.rangeFor(hash);
+        if (range == null) {
+            return current.target.getNodesForHash(hash, replicationFactor);
+        }
+        if (range.handedOff) {
+            return range.range.getTo();
+        }
+        LinkedHashSet<String> both = new LinkedHashSet<>(range.range.getFrom());
+        both.addAll(range.range.getTo());
+        return new ArrayList<>(both);
+    }
+
+    private void deliver(String address, K key, Versioned<V> entry) {
+        LocalCacheNode<K, V> node = nodes.get(address);
+        if (node == null) {
+            return; // removed from the cluster meanwhile
+        }
+        try {
+            node.write(key, entry);
+        } catch (Exception e) {
+            storeHint(address, key, entry);
+        }
+    }
+
+    void storeHint(String address, K key, Versioned<V> entry) {
+        HintQueue<K, V> queue = hints.computeIfAbsent(address, a -> new HintQueue<>());
+        if (queue.size.incrementAndGet() > maxHintsPerNode) {
+            queue.size.decrementAndGet();
+            hintsDropped.increment();
+            return;
+        }
+        queue.hints.offer(new Hint<>(key, entry));
+        hintsStored.increment();
+    }
+
+    /**
+     * Hand the hints kept for a node over to it. Versions make this safe to
+     * run at any time, in any order and more than once.
+     *
+     * @return hints delivered
+     */
+    public int deliverHints(String address) {
+        LocalCacheNode<K, V> node = nodes.get(address);
+        HintQueue<K, V> queue = hints.get(address);
+        if (node == null || queue == null) {
+            return 0;
+        }
+        int delivered = 0;
+        Hint<K, V> hint;
+        while ((hint = queue.hints.poll()) != null) {
+            try {
+                node.write(hint.key, hint.entry);
+            } catch (Exception e) {
+                queue.hints.offer(hint); // down again, keep it for the next attempt
+                break;
+            }
+            queue.size.decrementAndGet();
+            delivered++;
+        }
+        hintsDelivered.add(delivered);
+        return delivered;
+    }
+
+    // ==================== Reads ====================
+
+    // Newest live entry of the key, null on a miss (or if the newest version is a tombstone)
+    private Versioned<V> lookup(K key) throws Exception {
+        List<String> replicas = readReplicas(key);
+        if (replicas.isEmpty()) {
+            throw new Exception("No nodes in the cluster");
+        }
+        boolean repair = replicas.size() > 1 && ThreadLocalRandom.current().nextDouble() < readRepairChance;
+        if (!repair) {
+            Versioned<V> entry = readPreferred(key, replicas);
+            if (entry != null && !entry.isTombstone()) {
+                return entry;
+            }
+            // Miss on the preferred replica: another replica may hold a write this one missed
+        }
+        Versioned<V> newest = readAndRepair(key, replicas);
+        return newest == null || newest.isTombstone() ? null : newest;
+    }
+
+    private Versioned<V> readPreferred(K key, List<String> replicas) throws Exception {
+        int start = 0;
+        switch (readPreference) {
+            case PRIMARY:
+                // No fallback: the primary or nothing
+                return node(replicas.get(0)).read(key);
+            case SECONDARY:
+                start = replicas.size() > 1 ? 1 : 0;
+                break;
+            case NEAREST:
+                // No network distance in-process: spread the reads over the replicas instead
+                start = ThreadLocalRandom.current().nextInt(replicas.size());
+                break;
+            default:
+                break;
+        }
+        for (int i = 0; i < replicas.size(); i++) {
+            LocalCacheNode<K, V> node = nodes.get(replicas.get((start + i) % replicas.size()));
+            if (node != null && node.isUp()) {
+                try {
+                    return node.read(key);
+                } catch (Exception e) {
+                    // Went down meanwhile, try the next replica
+                }
+            }
+        }
+        throw new Exception("No replica available for key: " + key);
+    }
+
+    // Ask every live replica, repair the ones behind the newest version
+    private Versioned<V> readAndRepair(K key, List<String> replicas) throws Exception {
+        List<LocalCacheNode<K, V>> answered = new ArrayList<>(replicas.size());
+        List<Versioned<V>> answers = new ArrayList<>(replicas.size());
+        Versioned<V> newest = null;
+        for (String address : replicas) {
+            LocalCacheNode<K, V> node = nodes.get(address);
+            if (node == null || !node.isUp()) {
+                continue;
+            }
+            try {
+                Versioned<V> entry = node.read(key);
+                answered.add(node);
+                answers.add(entry);
+                if (entry != null && (newest == null || entry.version > newest.version)) {
+                    newest = entry;
+                }
+            } catch (Exception e) {
+                // Down: hinted handoff or a later read repairs it
+            }
+        }
+        if (answered.isEmpty()) {
+            throw new Exception("No replica available for key: " + key);
+        }
+        if (newest != null) {
+            for (int i = 0; i < answered.size(); i++) {
+                Versioned<V> entry = answers.get(i);
+                if (entry == null || entry.version < newest.version) {
+                    try {
+                        if (answered.get(i).write(key, newest)) {
+                            readRepairs.increment();
+                        }
+                    } catch (Exception e) {
+                        // Down again, nothing lost: the next read tries again
+                    }
+                }
+            }
+        }
+        return newest;
+    }
+
+    private LocalCacheNode<K, V> node(String address) throws Exception {
+        LocalCacheNode<K, V> node = nodes.get(address);
+        if (node == null) {
+            throw new Exception("Unknown node: " + address);
+        }
+        return node;
+    }
+
+    // ==================== Node Management ====================
+
+    /**
+     * Adds the node and waits until the ranges it takes over were streamed
+     * to it. The cluster keeps serving meanwhile; use startAddNode to follow
+     * the progress instead of waiting.
+     */
+    @Override
+    public void addNode(String nodeAddress) {
+        startAddNode(nodeAddress).awaitCompletion();
+    }
+
+    /**
+     * Streams the node's ranges to the remaining replicas, then drops it.
+     */
+    @Override
+    public void removeNode(String nodeAddress) {
+        startRemoveNode(nodeAddress).awaitCompletion();
+    }
+
+    /**
+     * Start adding a node. Its ranges are streamed in the background.
+     *
+     * @throws IllegalStateException if another membership change is running
+     */
+    public Rebalancer<K, V> startAddNode(String nodeAddress) {
+        synchronized (membershipLock) {
+            nodes.computeIfAbsent(nodeAddress, address -> new LocalCacheNode<>(address, nodeCapacity));
+            ConsistentHashRing<String> target = ring.copy();
+            target.addNode(nodeAddress);
+            return startRebalance("add " + nodeAddress, target, null);
+        }
+    }
+
+    /**
+     * Start decommissioning a node. It keeps serving its ranges until they
+     * were streamed to their new replicas.
+     *
+     * @throws IllegalStateException if another membership change is running
+     */
+    public Rebalancer<K, V> startRemoveNode(String nodeAddress) {
+        synchronized (membershipLock) {
+            ConsistentHashRing<String> target = ring.copy();
+            target.removeNode(nodeAddress);
+            return startRebalance("remove " + nodeAddress, target, nodeAddress);
+        }
+    }
+
+    // Caller holds membershipLock
+    private Rebalancer<K, V> startRebalance(String description, ConsistentHashRing<String> target, String leavingNode) {
+        if (migration != null) {
+            throw new IllegalStateException("A rebalance is already running");
+        }
+        Migration next = new Migration(target, ring.changedRanges(target, replicationFactor), leavingNode);
+        routingLock.writeLock().lock();
+        try {
+            migration = next;
+        } finally {
+            routingLock.writeLock().unlock();
+        }
+        Rebalancer<K, V> rebalancer = new Rebalancer<>(this, description, next, rebalanceBatchSize, rebalanceKeysPerSecond);
+        rebalancer.start();
+        return rebalancer;
+    }
+
+    // From now on the range is read from and written to its new replicas only
+    void handOff(RangeState range) {
+        routingLock.writeLock().lock();
+        try {
+            range.handedOff = true;
+        } finally {
+            routingLock.writeLock().unlock();
+        }
+    }
+
+    void finishRebalance(Migration finished) {
+        routingLock.writeLock().lock();
+        try {
+            // ring before migration: a router that sees no migration must see the new ring
+            ring = finished.target;
+            migration = null;
+        } finally {
+            routingLock.writeLock().unlock();
+        }
+        if (finished.leavingNode != null) {
+            nodes.remove(finished.leavingNode);
+            hints.remove(finished.leavingNode);
+        }
+    }
+
+    /**
+     * @param batchSize     Keys read from a source node and written to a
+     *                      target per call
+     * @param keysPerSecond Streaming rate limit per rebalance, 0 for none
+     */
+    public void setRebalanceThrottle(int batchSize, int keysPerSecond) {
+        this.rebalanceBatchSize = Math.max(1, batchSize);
+        this.rebalanceKeysPerSecond = Math.max(0, keysPerSecond);
+    }
+
+    @Override
+    public List<String> getNodes() {
+        return ring.getAllNodes();
+    }
+
+    /**
+     * Simulate a crash or partition of a node. Writes for it become hints.
+     */
+    public void markDown(String nodeAddress) throws Exception {
+        node(nodeAddress).markDown();
+    }
+
+    /**
+     * Bring a node back and deliver the hints kept for it.
+     */
+    public void markUp(String nodeAddress) throws Exception {
+        node(nodeAddress).markUp();
+        deliverHints(nodeAddress);
+    }
+
+    /**
+     * Simulate a process restart: the node comes back empty, gets its hints,
+     * and read-repair refills the rest on demand.
+     */
+    public void restartNode(String nodeAddress) throws Exception {
+        LocalCacheNode<K, V> node = node(nodeAddress);
+        node.markDown();
+        node.wipe();
+        markUp(nodeAddress);
+    }
+
+    public LocalCacheNode<K, V> getNode(String nodeAddress) {
+        return nodes.get(nodeAddress);
+    }
+
+    /**
+     * Replica nodes a read of the key goes to, primary first.
+     */
+    public List<String> getReplicasForKey(K key) {
+        return readReplicas(key);
+    }
+
+    // ==================== Health Checks ====================
+
+    /**
+     * Healthy while fewer nodes are down than there are copies of a key, so
+     * every key still has a reachable replica.
+     */
+    @Override
+    public boolean isHealthy() {
+        if (nodes.isEmpty()) {
+            return false;
+        }
+        int down = 0;
+        for (LocalCacheNode<K, V> node : nodes.values()) {
+            if (!node.isUp()) {
+                down++;
+            }
+        }
+        return down < copiesPerKey();
+    }
+
+    @Override
+    public Map<String, Boolean> getNodeHealth() {
+        Map<String, Boolean> health = new TreeMap<>();
+        for (LocalCacheNode<K, V> node : nodes.values()) {
+            health.put(node.getAddress(), node.isUp());
+        }
+        return health;
+    }
+
+    @Override
+    public String getNodeForKey(K key) {
+        return ring.getNodeForKey(key);
+    }
+
+    @Override
+    public int getReplicationFactor() {
+        return replicationFactor;
+    }
+
+    @Override
+    public void setReplicationFactor(int factor) {
+        if (factor < 1) {
+            throw new IllegalArgumentException("Replication factor must be at least 1");
+        }
+        this.replicationFactor = factor;
+    }
+
+    @Override
+    public void setReadPreference(ReadPreference preference) {
+        this.readPreference = preference;
+    }
+
+    // ==================== Metrics ====================
+
+    /**
+     * Hits, misses and evictions per node. Memory, connections and latency
+     * are not measured for in-process nodes and are reported as 0.
+     */
+    @Override
+    public Map<String, NodeMetrics> getNodeMetrics() {
+        Map<String, NodeMetrics> metrics = new TreeMap<>();
+        for (LocalCacheNode<K, V> node : nodes.values()) {
+            metrics.put(node.getAddress(), new LocalNodeMetrics(node.getHits(), node.getMisses(), node.getEvictions()));
+        }
+        return metrics;
+    }
+
+    public long getReadRepairs() {
+        return readRepairs.sum();
+    }
+
+    public long getHintsStored() {
+        return hintsStored.sum();
+    }
+
+    public long getHintsDelivered() {
+        return hintsDelivered.sum();
+    }
+
+    /**
+     * Hints not kept because the node's hint queue was full.
+     */
+    public long getHintsDropped() {
+        return hintsDropped.sum();
+    }
+
+    public int getPendingHints(String nodeAddress) {
+        HintQueue<K, V> queue = hints.get(nodeAddress);
+        return queue == null ? 0 : queue.size.get();
+    }
+
+    /**
+     * One membership change: the ring it leads to and the ranges that change
+     * owner on the way, sorted by end token.
+     */
+    static final class Migration {
+        final ConsistentHashRing<String> target;
+        final RangeState[] ranges;
+        final long[] ends;
+        final String leavingNode;
+
+        Migration(ConsistentHashRing<String> target, List<TokenRange<String>> changed, String leavingNode) {
+            this.target = target;
+            this.leavingNode = leavingNode;
+            this.ranges = new RangeState[changed.size()];
+            this.ends = new long[changed.size()];
+            for (int i = 0; i < ranges.length; i++) {
+                ranges[i] = new RangeState(changed.get(i));
+                ends[i] = changed.get(i).getEndInclusive();
+            }
+        }
+
+        // The changed range containing the hash, null if its owners stay the same
+        RangeState rangeFor(long hash) {
+            if (ranges.length == 0) {
+                return null;
+            }
+            int index = Arrays.binarySearch(ends, hash);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            // Past the last end only the range wrapping around the ring (always the first one) can hold it
+            RangeState candidate = ranges[index == ranges.length ? 0 : index];
+            return candidate.range.contains(hash) ? candidate : null;
+        }
+    }
+
+    static final class RangeState {
+        final TokenRange<String> range;
+        volatile boolean handedOff;
+
+        RangeState(TokenRange<String> range) {
+            this.range = range;
+        }
+    }
+
+    private static final class Hint<K, V> {
+        final K key;
+        final Versioned<V> entry;
+
+        Hint(K key, Versioned<V> entry) {
+            this.key = key;
+            this.entry = entry;
+        }
+    }
+
+    // The queue's own size() is O(n), the bound is checked on every hint
+    private static final class HintQueue<K, V> {
+        final ConcurrentLinkedQueue<Hint<K, V>> hints = new ConcurrentLinkedQueue<>();
+        final AtomicInteger size = new AtomicInteger();
+    }
+
+    private static final class LocalNodeMetrics implements NodeMetrics {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+
+        LocalNodeMetrics(long hits, long misses, long evictions) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+        }
+
+        @Override
+        public long getHits() {
+            return hits;
+        }
+
+        @Override
+        public long getMisses() {
+            return misses;
+        }
+
+        @Override
+        public long getEvictions() {
+            return evictions;
+        }
+
+        @Override
+        public long getMemoryUsedBytes() {
+            return 0;
+        }
+
+        @Override
+        public long getConnections() {
+            return 0;
+        }
+
+        @Override
+        public double getLatencyP99Ms() {
+            return 0.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("{hits=%d, misses=%d, evictions=%d}", hits, misses, evictions);
+        }
+    }
+}
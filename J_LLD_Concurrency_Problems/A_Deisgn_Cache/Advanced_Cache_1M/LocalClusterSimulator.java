@@ -0,0 +1,253 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_1M;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_1M.LocalCacheNode.Versioned;
+
+/**
+ * Runs a LocalClusterCacheStorage through node failures on one machine and
+ * checks after every phase that the replicas agree.
+ *
+ * 1. Ring: lookup throughput and how evenly primaries are spread.
+ * 2. Load: concurrent writers fill the cluster.
+ * 3. Node down: writes and removes keep succeeding, the missed ones become
+ * hints; markUp delivers them.
+ * 4. Node restart: the node comes back empty, reads repair it key by key
+ * (keys that are never read stay missing there, there is no anti-entropy).
+ * 5. Add a node under load: readers and a writer keep going while the
+ * Rebalancer streams the new node's ranges, the hit ratio is printed per
+ * window next to the progress.
+ * 6. Decommission a node the same way.
+ *
+ * Usage: java ...Advanced_Cache_1M.LocalClusterSimulator [nodes] [replicationFactor] [keys]
+ */
+public class LocalClusterSimulator {
+
+    public static void main(String[] args) throws Exception {
+        int numNodes = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int replicationFactor = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int numKeys = args.length > 2 ? Integer.parseInt(args[2]) : 20_000;
+
+        LocalClusterCacheStorage<String, String> cluster = new LocalClusterCacheStorage<>(numKeys, replicationFactor);
+        for (int i = 0; i < numNodes; i++) {
+            cluster.addNode("node-" + i + ":6379");
+        }
+        System.out.printf("%d nodes, replication factor %d, %d keys%n", numNodes, replicationFactor, numKeys);
+
+        // 1. Ring
+        long start = System.nanoTime();
+        int lookups = 2_000_000;
+        Map<String, Integer> primaries = new TreeMap<>();
+        for (int i = 0; i < lookups; i++) {
+            String node = cluster.getNodeForKey("key-" + (i % numKeys));
+            if (i < numKeys) {
+                primaries.merge(node, 1, Integer::sum);
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Ring: %.1fM lookups/s, primaries per node %s%n", lookups / seconds / 1e6, primaries);
+
+        // 2. Load
+        ExecutorService writers = Executors.newFixedThreadPool(4);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int offset = t;
+            tasks.add(writers.submit(() -> {
+                for (int i = offset; i < numKeys; i += 4) {
+                    cluster.put("key-" + i, "v1-" + i);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> task : tasks) {
+            task.get();
+        }
+        writers.shutdown();
+        report(cluster, "Loaded", numKeys);
+
+        // 3. Node down: updates and removes while it is unreachable
+        String downNode = "node-1:6379";
+        cluster.markDown(downNode);
+        int updated = 0;
+        int removed = 0;
+        for (int i = 0; i < numKeys; i += 3) {
+            cluster.put("key-" + i, "v2-" + i);
+            updated++;
+        }
+        for (int i = 1; i < numKeys; i += 50) {
+            cluster.remove("key-" + i);
+            removed++;
+        }
+        int reads = 0;
+        for (int i = 0; i < numKeys; i += 7) {
+            if (cluster.getIfPresent("key-" + i) != null) {
+                reads++;
+            }
+        }
+        System.out.printf("%s down: %d updates, %d removes, %d reads served, healthy=%b, %d hints pending%n",
+                downNode, updated, removed, reads, cluster.isHealthy(), cluster.getPendingHints(downNode));
+        cluster.markUp(downNode);
+        report(cluster, downNode + " back up", numKeys);
+        Map<Integer, String> overrides = new ConcurrentHashMap<>();
+        checkValues(cluster, numKeys, overrides);
+
+        // 4. Restart: the node loses everything, hints don't help, read-repair does
+        String restartedNode = "node-2:6379";
+        cluster.restartNode(restartedNode);
+        System.out.printf("%s restarted: holds %d entries%n", restartedNode, cluster.getNode(restartedNode).size());
+        // Only reads that reach the empty replica (or roll a repair) fix it: spread them with NEAREST
+        cluster.setReadPreference(DistributedCacheStorage.ReadPreference.NEAREST);
+        for (int pass = 1; pass <= 3; pass++) {
+            long repairsBefore = cluster.getReadRepairs();
+            for (int i = 0; i < numKeys; i++) {
+                cluster.getIfPresent("key-" + i);
+            }
+            System.out.printf("Read pass %d: %d read-repairs, %s holds %d entries%n", pass,
+                    cluster.getReadRepairs() - repairsBefore, restartedNode, cluster.getNode(restartedNode).size());
+        }
+        report(cluster, "After read-repair", numKeys);
+        checkValues(cluster, numKeys, overrides);
+
+        // 5. + 6. Membership changes under load
+        cluster.setRebalanceThrottle(500, 20_000);
+        underLoad(cluster, numKeys, overrides, "node-" + numNodes + ":6379", true);
+        underLoad(cluster, numKeys, overrides, "node-0:6379", false);
+
+        System.out.println("Node metrics: " + cluster.getNodeMetrics());
+    }
+
+    private static void underLoad(LocalClusterCacheStorage<String, String> cluster, int numKeys,
+            Map<Integer, String> overrides, String address, boolean add) throws Exception {
+        AtomicBoolean stop = new AtomicBoolean();
+        LongAdder reads = new LongAdder();
+        LongAdder hits = new LongAdder();
+        Thread reader = new Thread(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (!stop.get()) {
+                int i = random.nextInt(numKeys);
+                if (i % 50 == 1) {
+                    continue; // removed in phase 3
+                }
+                try {
+                    if (cluster.getIfPresent("key-" + i) != null) {
+                        hits.increment();
+                    }
+                } catch (Exception e) {
+                    // counted as a miss
+                }
+                reads.increment();
+            }
+        });
+        Thread writer = new Thread(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (long n = 0; !stop.get(); n++) {
+                int i = random.nextInt(numKeys);
+                if (i % 50 == 1) {
+                    continue;
+                }
+                String value = "v3-" + i + "-" + n;
+                try {
+                    cluster.put("key-" + i, value);
+                    overrides.put(i, value);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+                if (n % 64 == 0) {
+                    Thread.yield(); // leave the single writer some room for the readers
+                }
+            }
+        });
+        reader.start();
+        writer.start();
+
+        Rebalancer<String, String> rebalancer = add ? cluster.startAddNode(address) : cluster.startRemoveNode(address);
+        while (!rebalancer.isDone()) {
+            Thread.sleep(250);
+            long windowReads = reads.sumThenReset();
+            long windowHits = hits.sumThenReset();
+            System.out.printf("  %s hit ratio %.2f%%%n", rebalancer,
+                    windowReads == 0 ? 0.0 : 100.0 * windowHits / windowReads);
+        }
+        rebalancer.awaitCompletion();
+        stop.set(true);
+        reader.join();
+        writer.join();
+        System.out.printf("%s: %s, nodes %s%n", add ? "Added" : "Removed", rebalancer, cluster.getNodeHealth().keySet());
+        if (add) {
+            System.out.printf("  %s holds %d entries (%.1f%% of all copies)%n", address, cluster.getNode(address).size(),
+                    100.0 * cluster.getNode(address).size() / (cluster.size() * (double) cluster.getReplicationFactor()));
+        }
+        report(cluster, add ? "After adding" : "After removing", numKeys);
+        checkValues(cluster, numKeys, overrides);
+    }
+
+    // Replicas of a key that don't hold its newest version
+    private static void report(LocalClusterCacheStorage<String, String> cluster, String phase, int numKeys)
+            throws Exception {
+        int divergent = 0;
+        for (int i = 0; i < numKeys; i++) {
+            String key = "key-" + i;
+            long newest = -1;
+            List<Long> versions = new ArrayList<>();
+            for (String address : cluster.getReplicasForKey(key)) {
+                Versioned<String> entry = cluster.getNode(address).read(key);
+                long version = entry == null ? -1 : entry.getVersion();
+                versions.add(version);
+                newest = Math.max(newest, version);
+            }
+            for (long version : versions) {
+                if (version != newest) {
+                    divergent++;
+                }
+            }
+        }
+        System.out.printf("%s: %d entries, %d stale replicas, hints stored=%d delivered=%d dropped=%d%n",
+                phase, cluster.size(), divergent, cluster.getHintsStored(), cluster.getHintsDelivered(),
+                cluster.getHintsDropped());
+    }
+
+    // What the cluster serves must be the last write of each key (removed keys stay removed)
+    private static void checkValues(LocalClusterCacheStorage<String, String> cluster, int numKeys,
+            Map<Integer, String> overrides) throws Exception {
+        int wrong = 0;
+        for (int i = 0; i < numKeys; i++) {
+            String expected = expected(i, overrides);
+            String actual = cluster.getIfPresent("key-" + i);
+            if (expected == null ? actual != null : !expected.equals(actual)) {
+                wrong++;
+            }
+        }
+        // Random spot checks go through every read preference
+        for (DistributedCacheStorage.ReadPreference preference : DistributedCacheStorage.ReadPreference.values()) {
+            cluster.setReadPreference(preference);
+            for (int n = 0; n < 1_000; n++) {
+                int i = ThreadLocalRandom.current().nextInt(numKeys);
+                String expected = expected(i, overrides);
+                String actual = cluster.getIfPresent("key-" + i);
+                if (expected == null ? actual != null : !expected.equals(actual)) {
+                    wrong++;
+                }
+            }
+        }
+        cluster.setReadPreference(DistributedCacheStorage.ReadPreference.PRIMARY_PREFERRED);
+        System.out.printf("Values checked: %d wrong%n", wrong);
+    }
+
+    // Phase 3 removed every 50th key and updated every 3rd one, phases 5 and 6 overwrite random keys
+    private static String expected(int i, Map<Integer, String> overrides) {
+        if (i % 50 == 1) {
+            return null;
+        }
+        return overrides.getOrDefault(i, (i % 3 == 0 ? "v2-" : "v1-") + i);
+    }
+}
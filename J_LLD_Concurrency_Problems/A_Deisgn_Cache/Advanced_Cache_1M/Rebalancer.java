@@ -0,0 +1,312 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_1M;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_1M.LocalCacheNode.Versioned;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_1M.LocalClusterCacheStorage.Migration;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_1M.LocalClusterCacheStorage.RangeState;
+
+/**
+ * Streams the data of one membership change of a LocalClusterCacheStorage
+ * (created by startAddNode / startRemoveNode) and reports its progress.
+ *
+ * Problem: changing the ring alone turns every range that changes owner into
+ * misses at once, exactly when capacity is added because the cluster is busy.
+ *
+ * Flow (on its own thread, the cluster keeps serving):
+ * 1. ConsistentHashRing.changedRanges gives exactly the token ranges whose
+ * replica set changes, nothing else is touched.
+ * 2. Each range gets one live old replica as its source. Every source node is
+ * scanned once and its keys are bucketed into the ranges it serves.
+ * 3. Range by range, the keys are exported from the source and written to
+ * the replicas that are new for the range, in batches of batchSize and
+ * paced to keysPerSecond. Versions make this safe against the writes the
+ * storage sends to old and new replicas meanwhile: the newest always wins.
+ * 4. The range is handed off: reads and writes switch to the new replicas.
+ * 5. After the last range the replicas that lost ranges drop their copies
+ * (one more scan per such node, which also catches keys written to them while
+ * their range was moving) and the new ring is installed.
+ *
+ * A range without a live source is handed off as is: its keys are misses and
+ * get reloaded by the cache, like without a rebalancer.
+ */
+public class Rebalancer<K, V> {
+
+    private final LocalClusterCacheStorage<K, V> storage;
+    private final String description;
+    private final Migration migration;
+    private final int batchSize;
+    private final int keysPerSecond;
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    // Source node of each range, ranges without a live old replica are missing
+    private final Map<RangeState, String> sources = new IdentityHashMap<>();
+
+    private final AtomicInteger rangesDone = new AtomicInteger();
+    private final AtomicInteger rangesWithoutSource = new AtomicInteger();
+    private final LongAdder keysStreamed = new LongAdder();
+    private volatile long keysTotal = -1; // known once the sources were scanned
+    private volatile long startNanos;
+    private volatile long endNanos;
+
+    Rebalancer(LocalClusterCacheStorage<K, V> storage, String description, Migration migration,
+            int batchSize, int keysPerSecond) {
+        this.storage = storage;
+        this.description = description;
+        this.migration = migration;
+        this.batchSize = batchSize;
+        this.keysPerSecond = keysPerSecond;
+    }
+
+    void start() {
+        startNanos = System.nanoTime();
+        Thread thread = new Thread(this::run, "rebalance-" + description);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run() {
+        try {
+            Map<RangeState, List<K>> keysByRange = scanSources();
+            long total = 0;
+            for (List<K> keys : keysByRange.values()) {
+                total += keys.size();
+            }
+            keysTotal = total;
+            for (RangeState range : migration.ranges) {
+                List<K> keys = keysByRange.get(range);
+                if (keys != null) {
+                    stream(range, keys);
+                } else if (!range.range.getFrom().isEmpty()) {
+                    rangesWithoutSource.incrementAndGet();
+                }
+                storage.handOff(range);
+                rangesDone.incrementAndGet();
+            }
+            // Before the new ring is installed: no other membership change can start while the copies are dropped
+            dropOldCopies();
+            finish();
+            completion.complete(null);
+        } catch (Exception e) {
+            // Never leave the cluster half-routed: what was not streamed becomes misses
+            for (RangeState range : migration.ranges) {
+                storage.handOff(range);
+            }
+            finish();
+            completion.completeExceptionally(e);
+        }
+    }
+
+    private void finish() {
+        storage.finishRebalance(migration);
+        endNanos = System.nanoTime();
+    }
+
+    // One live old replica per range, one scan per source node
+    private Map<RangeState, List<K>> scanSources() {
+        Map<String, List<RangeState>> rangesBySource = new LinkedHashMap<>();
+        for (RangeState range : migration.ranges) {
+            for (String address : range.range.getFrom()) {
+                LocalCacheNode<K, V> node = storage.getNode(address);
+                if (node != null && node.isUp()) {
+                    rangesBySource.computeIfAbsent(address, a -> new ArrayList<>()).add(range);
+                    break;
+                }
+            }
+        }
+        Map<RangeState, List<K>> keysByRange = new IdentityHashMap<>();
+        for (Map.Entry<String, List<RangeState>> source : rangesBySource.entrySet()) {
+            List<K> keys;
+            try {
+                keys = storage.getNode(source.getKey()).keys();
+            } catch (Exception e) {
+                continue; // went down since it was picked: its ranges have no source
+            }
+            for (RangeState range : source.getValue()) {
+                sources.put(range, source.getKey());
+                keysByRange.put(range, new ArrayList<>());
+            }
+            for (K key : keys) {
+                RangeState range = migration.rangeFor(migration.target.hashOf(key));
+                // Only the ranges this node is the source of, another source covers the rest
+                if (range != null && source.getKey().equals(sources.get(range))) {
+                    keysByRange.get(range).add(key);
+                }
+            }
+        }
+        return keysByRange;
+    }
+
+    private void stream(RangeState range, List<K> keys) throws Exception {
+        LocalCacheNode<K, V> source = storage.getNode(sources.get(range));
+        List<String> targets = new ArrayList<>(range.range.getTo());
+        targets.removeAll(range.range.getFrom());
+        if (source == null || targets.isEmpty()) {
+            return;
+        }
+        for (int from = 0; from < keys.size(); from += batchSize) {
+            List<K> batch = keys.subList(from, Math.min(keys.size(), from + batchSize));
+            Map<K, Versioned<V>> entries;
+            try {
+                entries = source.export(batch);
+            } catch (Exception e) {
+                return; // source went down: the rest of the range becomes misses (or read-repairs later)
+            }
+            for (String address : targets) {
+                LocalCacheNode<K, V> target = storage.getNode(address);
+                if (target == null) {
+                    continue;
+                }
+                try {
+                    target.writeAll(entries);
+                } catch (Exception e) {
+                    // Target down: it gets the batch as hints, like any other write
+                    for (Map.Entry<K, Versioned<V>> entry : entries.entrySet()) {
+                        storage.storeHint(address, entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+            keysStreamed.add(batch.size());
+            throttle();
+        }
+    }
+
+    // Keep the streaming rate at keysPerSecond on average
+    private void throttle() throws InterruptedException {
+        if (keysPerSecond <= 0) {
+            return;
+        }
+        long dueNanos = keysStreamed.sum() * 1_000_000_000L / keysPerSecond;
+        long aheadNanos = dueNanos - (System.nanoTime() - startNanos);
+        if (aheadNanos > 0) {
+            Thread.sleep(aheadNanos / 1_000_000, (int) (aheadNanos % 1_000_000));
+        }
+    }
+
+    // Nodes that lost a range drop its keys: unreachable copies would only waste memory, and a stale one could come back
+    // into use if the node regains the range later
+    private void dropOldCopies() {
+        Set<String> losers = new LinkedHashSet<>();
+        for (RangeState range : migration.ranges) {
+            for (String address : range.range.getFrom()) {
+                if (!range.range.getTo().contains(address)) {
+                    losers.add(address);
+                }
+            }
+        }
+        for (String address : losers) {
+            LocalCacheNode<K, V> node = storage.getNode(address);
+            if (node == null || address.equals(migration.leavingNode)) {
+                continue; // the leaving node is dropped as a whole
+            }
+            List<K> lost = new ArrayList<>();
+            try {
+                for (K key : node.keys()) {
+                    RangeState range = migration.rangeFor(migration.target.hashOf(key));
+                    if (range != null && range.range.getFrom().contains(address) && !range.range.getTo().contains(address)) {
+                        lost.add(key);
+                    }
+                }
+            } catch (Exception e) {
+                continue; // down: stays as it is, the versions still protect reads if it ever owns the range again
+            }
+            node.drop(lost);
+        }
+    }
+
+    /**
+     * Blocks until every range was handed off.
+     */
+    public void awaitCompletion() {
+        completion.join();
+    }
+
+    public CompletableFuture<Void> getCompletion() {
+        return completion;
+    }
+
+    public boolean isDone() {
+        return completion.isDone();
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public int getRangesTotal() {
+        return migration.ranges.length;
+    }
+
+    public int getRangesDone() {
+        return rangesDone.get();
+    }
+
+    /**
+     * Ranges handed off without data because none of their old replicas was
+     * reachable.
+     */
+    public int getRangesWithoutSource() {
+        return rangesWithoutSource.get();
+    }
+
+    public long getKeysStreamed() {
+        return keysStreamed.sum();
+    }
+
+    /**
+     * Keys to stream, -1 until the source nodes were scanned.
+     */
+    public long getKeysTotal() {
+        return keysTotal;
+    }
+
+    /**
+     * Share of the work done, between 0 and 1.
+     */
+    public double getProgress() {
+        if (isDone()) {
+            return 1.0;
+        }
+        long total = keysTotal;
+        if (total > 0) {
+            return Math.min(1.0, (double) keysStreamed.sum() / total);
+        }
+        int ranges = getRangesTotal();
+        return ranges == 0 ? 0.0 : (double) rangesDone.get() / ranges;
+    }
+
+    public long getElapsedMillis() {
+        long end = endNanos;
+        return ((end != 0 ? end : System.nanoTime()) - startNanos) / 1_000_000;
+    }
+
+    /**
+     * Counts keyed by name, for logging or a metrics endpoint.
+     */
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new HashMap<>();
+        stats.put("rangesTotal", (long) getRangesTotal());
+        stats.put("rangesDone", (long) getRangesDone());
+        stats.put("rangesWithoutSource", (long) getRangesWithoutSource());
+        stats.put("keysTotal", getKeysTotal());
+        stats.put("keysStreamed", getKeysStreamed());
+        stats.put("elapsedMillis", getElapsedMillis());
+        return stats;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Rebalance[%s]{%.1f%%, ranges=%d/%d, keys=%d/%d, %dms%s}",
+                description, getProgress() * 100, getRangesDone(), getRangesTotal(), getKeysStreamed(),
+                Math.max(0, getKeysTotal()), getElapsedMillis(), isDone() ? ", done" : "");
+    }
+}
@@ -0,0 +1,119 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.Benchmarks;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// One runnable benchmark: a name, its parameters and how to build its Workload.
+/* A suite class lists one Benchmark per parameter combination (the @Param cross product of a JMH class), e.g.
+       eviction:algorithm=LRU,keys=zipf,threads=4
+   That id is what the runner filters on, forks with and prints.
+*/
+public class Benchmark {
+
+    public enum Mode {
+        THROUGHPUT("thrpt", "ops/s"),     // operations per second, summed over all threads
+        SINGLE_SHOT("ss", "us/op");       // average time of one call, with an untimed setup before every call
+
+        private final String label;
+        private final String unit;
+
+        Mode(String label, String unit){
+            this.label = label;
+            this.unit = unit;
+        }
+
+        public String getLabel(){
+            return label;
+        }
+
+        public String getUnit(){
+            return unit;
+        }
+    }
+
+    @FunctionalInterface
+    public interface WorkloadFactory {
+        Workload create() throws Exception;
+    }
+
+    private final String name;
+    private final Map<String, String> params;
+    private final Mode mode;
+    private final int threads;
+    private final int invocationsPerIteration;
+    private final WorkloadFactory factory;
+
+    private Benchmark(String name, Map<String, String> params, Mode mode, int threads, int invocationsPerIteration,
+            WorkloadFactory factory){
+        this.name = name;
+        this.params = params;
+        this.mode = mode;
+        this.threads = threads;
+        this.invocationsPerIteration = invocationsPerIteration;
+        this.factory = factory;
+    }
+
+    // paramPairs: name1, value1, name2, value2 ... (the threads parameter is added last)
+    public static Benchmark throughput(String name, int threads, WorkloadFactory factory, String... paramPairs){
+        if(threads <= 0){
+            throw new IllegalArgumentException("Threads must be positive");
+        }
+        Map<String, String> params = params(paramPairs);
+        params.put("threads", String.valueOf(threads));
+        return new Benchmark(name, params, Mode.THROUGHPUT, threads, 0, factory);
+    }
+
+    // Runs on one thread, every measurement iteration times this many calls
+    public static Benchmark singleShot(String name, int invocationsPerIteration, WorkloadFactory factory,
+            String... paramPairs){
+        if(invocationsPerIteration <= 0){
+            throw new IllegalArgumentException("Invocations per iteration must be positive");
+        }
+        return new Benchmark(name, params(paramPairs), Mode.SINGLE_SHOT, 1, invocationsPerIteration, factory);
+    }
+
+    private static Map<String, String> params(String[] paramPairs){
+        if(paramPairs.length % 2 != 0){
+            throw new IllegalArgumentException("Parameters must be name, value pairs");
+        }
+        Map<String, String> params = new LinkedHashMap<>();
+        for(int i = 0; i < paramPairs.length; i += 2){
+            params.put(paramPairs[i], paramPairs[i + 1]);
+        }
+        return params;
+    }
+
+    public String getId(){
+        StringBuilder sb = new StringBuilder(name);
+        char separator = ':';
+        for(Map.Entry<String, String> param : params.entrySet()){
+            sb.append(separator).append(param.getKey()).append('=').append(param.getValue());
+            separator = ',';
+        }
+        return sb.toString();
+    }
+
+    public String getName(){
+        return name;
+    }
+
+    public Map<String, String> getParams(){
+        return params;
+    }
+
+    public Mode getMode(){
+        return mode;
+    }
+
+    public int getThreads(){
+        return threads;
+    }
+
+    public int getInvocationsPerIteration(){
+        return invocationsPerIteration;
+    }
+
+    Workload createWorkload() throws Exception {
+        return factory.create();
+    }
+}
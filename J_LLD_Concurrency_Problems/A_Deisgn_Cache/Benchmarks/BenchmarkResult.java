@@ -0,0 +1,184 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.Benchmarks;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Measured iterations of one benchmark (all forks merged) plus what the GC profiler and the workload counted.
+/* Score = mean of the iteration scores. Error = half width of the 99.9% confidence interval of that mean
+   (Student's t, the same statistic JMH prints after the "±", printed as "+-"), NaN with a single iteration.
+   Allocation is measured over the measured iterations of all threads: the benchmark threads AND the threads of the
+   component (executors, loaders, cleanup), like JMH's gc.alloc.rate.norm.
+*/
+public class BenchmarkResult {
+
+    // t(0.9995, df) for df = 1..30, beyond that the normal quantile is close enough
+    private static final double[] T_999 = {
+            636.619, 31.599, 12.924, 8.610, 6.869, 5.959, 5.408, 5.041, 4.781, 4.587,
+            4.437, 4.318, 4.221, 4.140, 4.073, 4.015, 3.965, 3.922, 3.883, 3.850,
+            3.819, 3.792, 3.768, 3.745, 3.725, 3.707, 3.690, 3.674, 3.659, 3.646 };
+    private static final double Z_999 = 3.291;
+
+    private static final String SEPARATOR = "\t";
+
+    private final String id;
+    private final Benchmark.Mode mode;
+    private final List<Double> scores = new ArrayList<>();
+    private long operations;
+    private double seconds;
+    private long allocatedBytes = -1; // -1: the JVM can't count allocations per thread
+    private long gcCount;
+    private long gcTimeMillis;
+    private final Map<String, Double> secondary = new LinkedHashMap<>();
+    private int forks;
+
+    BenchmarkResult(String id, Benchmark.Mode mode){
+        this.id = id;
+        this.mode = mode;
+    }
+
+    void addIteration(double score, long iterationOperations, double iterationSeconds, long iterationAllocatedBytes){
+        scores.add(score);
+        operations += iterationOperations;
+        seconds += iterationSeconds;
+        if(scores.size() == 1){
+            allocatedBytes = iterationAllocatedBytes;
+        } else {
+            allocatedBytes = allocatedBytes < 0 || iterationAllocatedBytes < 0 ? -1 : allocatedBytes + iterationAllocatedBytes;
+        }
+    }
+
+    void setGc(long count, long timeMillis){
+        this.gcCount = count;
+        this.gcTimeMillis = timeMillis;
+    }
+
+    void setSecondary(Map<String, Double> results){
+        secondary.clear();
+        secondary.putAll(results);
+        forks = 1;
+    }
+
+    // Iterations of another fork of the same benchmark. Secondary results are averaged over the forks.
+    void merge(BenchmarkResult other){
+        scores.addAll(other.scores);
+        operations += other.operations;
+        seconds += other.seconds;
+        allocatedBytes = allocatedBytes < 0 || other.allocatedBytes < 0 ? -1 : allocatedBytes + other.allocatedBytes;
+        gcCount += other.gcCount;
+        gcTimeMillis += other.gcTimeMillis;
+        for(Map.Entry<String, Double> result : other.secondary.entrySet()){
+            Double mine = secondary.get(result.getKey());
+            secondary.put(result.getKey(), mine == null ? result.getValue()
+                    : (mine * forks + result.getValue()) / (forks + 1));
+        }
+        forks++;
+    }
+
+    public String getId(){
+        return id;
+    }
+
+    public Benchmark.Mode getMode(){
+        return mode;
+    }
+
+    public int getCount(){
+        return scores.size();
+    }
+
+    public double getScore(){
+        double sum = 0;
+        for(double score : scores){
+            sum += score;
+        }
+        return scores.isEmpty() ? Double.NaN : sum / scores.size();
+    }
+
+    public double getError(){
+        int n = scores.size();
+        if(n < 2){
+            return Double.NaN;
+        }
+        double mean = getScore();
+        double squares = 0;
+        for(double score : scores){
+            squares += (score - mean) * (score - mean);
+        }
+        double standardDeviation = Math.sqrt(squares / (n - 1));
+        double t = n - 1 <= T_999.length ? T_999[n - 2] : Z_999;
+        return t * standardDeviation / Math.sqrt(n);
+    }
+
+    // gc.alloc.rate: MB allocated per second of measurement (MB = 2^20 bytes, as in JMH)
+    public double getAllocationRateMb(){
+        return allocatedBytes < 0 || seconds == 0 ? Double.NaN : allocatedBytes / seconds / (1024 * 1024);
+    }
+
+    // gc.alloc.rate.norm: bytes allocated per operation
+    public double getAllocatedBytesPerOperation(){
+        return allocatedBytes < 0 || operations == 0 ? Double.NaN : (double) allocatedBytes / operations;
+    }
+
+    // Operations and seconds of the measured iterations. For SINGLE_SHOT the seconds are the timed calls only.
+    long getOperations(){
+        return operations;
+    }
+
+    double getSeconds(){
+        return seconds;
+    }
+
+    public long getGcCount(){
+        return gcCount;
+    }
+
+    public long getGcTimeMillis(){
+        return gcTimeMillis;
+    }
+
+    public Map<String, Double> getSecondary(){
+        return secondary;
+    }
+
+    // One line, how a forked JVM hands its result to the parent
+    String encode(){
+        StringBuilder sb = new StringBuilder();
+        sb.append(id).append(SEPARATOR).append(mode.name()).append(SEPARATOR);
+        for(int i = 0; i < scores.size(); i++){
+            sb.append(i == 0 ? "" : ",").append(scores.get(i));
+        }
+        sb.append(SEPARATOR).append(operations).append(SEPARATOR).append(seconds)
+                .append(SEPARATOR).append(allocatedBytes)
+                .append(SEPARATOR).append(gcCount).append(SEPARATOR).append(gcTimeMillis);
+        for(Map.Entry<String, Double> result : secondary.entrySet()){
+            sb.append(SEPARATOR).append(result.getKey()).append('=').append(result.getValue());
+        }
+        return sb.toString();
+    }
+
+    static BenchmarkResult decode(String line){
+        String[] fields = line.split(SEPARATOR);
+        if(fields.length < 8){
+            throw new IllegalArgumentException("Not a benchmark result: " + line);
+        }
+        BenchmarkResult result = new BenchmarkResult(fields[0], Benchmark.Mode.valueOf(fields[1]));
+        if(!fields[2].isEmpty()){
+            for(String score : fields[2].split(",")){
+                result.scores.add(Double.parseDouble(score));
+            }
+        }
+        result.operations = Long.parseLong(fields[3]);
+        result.seconds = Double.parseDouble(fields[4]);
+        result.allocatedBytes = Long.parseLong(fields[5]);
+        result.gcCount = Long.parseLong(fields[6]);
+        result.gcTimeMillis = Long.parseLong(fields[7]);
+        for(int i = 8; i < fields.length; i++){
+            int equals = fields[i].lastIndexOf('=');
+            result.secondary.put(fields[i].substring(0, equals), Double.parseDouble(fields[i].substring(equals + 1)));
+        }
+        result.forks = 1;
+        return result;
+    }
+}
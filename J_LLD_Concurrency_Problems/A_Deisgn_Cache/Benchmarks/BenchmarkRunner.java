@@ -0,0 +1,492 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.Benchmarks;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
+// Runs a suite of Benchmarks the way JMH does, without needing JMH on the classpath (this repo has no build).
+/* Per benchmark:
+    - Forked JVM (default, -f 1): the benchmark runs alone in a fresh JVM, so the JIT profile of one cache doesn't
+      slow down the next one (an interface call site that saw 4 EvictionAlgorithms is megamorphic, one that saw 1 is
+      inlined). -f 0 runs everything in this JVM, for debugging.
+    - Warm-up iterations (not reported), then measurement iterations of a fixed duration.
+    - Score with a 99.9% confidence interval over the iterations (and forks), see BenchmarkResult.
+    - Always on GC profiler, the equivalent of -prof gc: gc.alloc.rate (MB/s), gc.alloc.rate.norm (B/op), gc.count,
+      gc.time, measured over the measurement iterations only.
+    - Secondary results of the workload (hit ratio, DB reads/s ...).
+
+   Options (same names as JMH where there is one):
+     -wi N          warm-up iterations (default 10)
+     -i N           measurement iterations (default 10)
+     -r SECONDS     duration of one iteration (default 1)
+     -f N           forks per benchmark, 0 = run in this JVM (default 2)
+     -t 1,4,...     only throughput benchmarks with these thread counts
+     -o FILE        also write the result table (with the JVM / machine it ran on) to FILE
+     -l             list the benchmarks and exit
+     REGEX ...      only benchmarks whose id matches one of them, e.g. "eviction:.*zipf" or "stampede"
+*/
+public class BenchmarkRunner {
+
+    private static final String RESULT_PREFIX = "#RESULT\t";
+    private static final String CHILD_OPTION = "--child";
+
+    private static final com.sun.management.ThreadMXBean THREADS = allocationCountingThreadBean();
+
+    private static class Options {
+        int warmupIterations = 10;
+        int iterations = 10;
+        double iterationSeconds = 1;
+        int forks = 2;
+        Set<Integer> threads;
+        String output;
+        boolean list;
+        String child;
+        final List<Pattern> filters = new ArrayList<>();
+    }
+
+    // Entry point of a suite's main(): suiteClass is the class whose main() calls this, forked JVMs start it again
+    public static void run(Class<?> suiteClass, List<Benchmark> suite, String[] args) throws Exception {
+        Options options = parse(args);
+        if(options.child != null){
+            runChild(suite, options);
+            return;
+        }
+        List<Benchmark> selected = select(suite, options);
+        if(options.list){
+            for(Benchmark benchmark : selected){
+                System.out.println(benchmark.getId());
+            }
+            return;
+        }
+        if(selected.isEmpty()){
+            System.out.println("No benchmark matches, -l lists them");
+            return;
+        }
+
+        List<BenchmarkResult> results = new ArrayList<>();
+        List<String> failed = new ArrayList<>();
+        long start = System.nanoTime();
+        for(int b = 0; b < selected.size(); b++){
+            Benchmark benchmark = selected.get(b);
+            System.out.printf("%n# Run progress: %d of %d%n# Benchmark: %s%n", b + 1, selected.size(), benchmark.getId());
+            BenchmarkResult merged = null;
+            try {
+                for(int fork = 0; fork < Math.max(1, options.forks); fork++){
+                    if(options.forks > 1){
+                        System.out.printf("# Fork %d of %d%n", fork + 1, options.forks);
+                    }
+                    BenchmarkResult result = options.forks == 0
+                            ? runInProcess(benchmark, options, System.out)
+                            : runForked(suiteClass, benchmark, options);
+                    if(merged == null){
+                        merged = result;
+                    } else {
+                        merged.merge(result);
+                    }
+                }
+                results.add(merged);
+            } catch (Exception e) {
+                System.out.println("# FAILED: " + e.getMessage());
+                failed.add(benchmark.getId());
+            }
+        }
+
+        String header = header(options, TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start));
+        String table = formatTable(results);
+        System.out.println();
+        System.out.print(table);
+        for(String id : failed){
+            System.out.println("FAILED: " + id);
+        }
+        if(options.output != null){
+            StringBuilder file = new StringBuilder(header).append('\n').append(table);
+            for(String id : failed){
+                file.append("FAILED: ").append(id).append('\n');
+            }
+            Files.writeString(Path.of(options.output), file.toString(), StandardCharsets.UTF_8);
+            System.out.println("\nResults written to " + options.output);
+        }
+    }
+
+    private static Options parse(String[] args){
+        Options options = new Options();
+        for(int i = 0; i < args.length; i++){
+            String arg = args[i];
+            switch(arg){
+                case "-wi": options.warmupIterations = Integer.parseInt(args[++i]); break;
+                case "-i": options.iterations = Integer.parseInt(args[++i]); break;
+                case "-r": options.iterationSeconds = Double.parseDouble(args[++i]); break;
+                case "-f": options.forks = Integer.parseInt(args[++i]); break;
+                case "-o": options.output = args[++i]; break;
+                case "-l": options.list = true; break;
+                case CHILD_OPTION: options.child = args[++i]; break;
+                case "-t":
+                    options.threads = new HashSet<>();
+                    for(String threads : args[++i].split(",")){
+                        options.threads.add(Integer.parseInt(threads.trim()));
+                    }
+                    break;
+                default:
+                    if(arg.startsWith("-")){
+                        throw new IllegalArgumentException("Unknown option " + arg);
+                    }
+                    options.filters.add(Pattern.compile(arg));
+            }
+        }
+        if(options.iterations < 1 || options.warmupIterations < 0 || options.iterationSeconds <= 0 || options.forks < 0){
+            throw new IllegalArgumentException("Need -i >= 1, -wi >= 0, -r > 0 and -f >= 0");
+        }
+        return options;
+    }
+
+    private static List<Benchmark> select(List<Benchmark> suite, Options options){
+        List<Benchmark> selected = new ArrayList<>();
+        for(Benchmark benchmark : suite){
+            if(options.threads != null && benchmark.getMode() == Benchmark.Mode.THROUGHPUT
+                    && !options.threads.contains(benchmark.getThreads())){
+                continue;
+            }
+            boolean matches = options.filters.isEmpty();
+            for(Pattern filter : options.filters){
+                matches |= filter.matcher(benchmark.getId()).find();
+            }
+            if(matches){
+                selected.add(benchmark);
+            }
+        }
+        return selected;
+    }
+
+    // Same main class in a new JVM (same JVM flags and classpath), its result comes back as one line on stdout
+    private static BenchmarkResult runForked(Class<?> suiteClass, Benchmark benchmark, Options options) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(ProcessHandle.current().info().command()
+                .orElse(Path.of(System.getProperty("java.home"), "bin", "java").toString()));
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(suiteClass.getName());
+        command.add(CHILD_OPTION);
+        command.add(benchmark.getId());
+        command.add("-wi");
+        command.add(String.valueOf(options.warmupIterations));
+        command.add("-i");
+        command.add(String.valueOf(options.iterations));
+        command.add("-r");
+        command.add(String.valueOf(options.iterationSeconds));
+
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        BenchmarkResult result = null;
+        try (BufferedReader out = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while((line = out.readLine()) != null){
+                if(line.startsWith(RESULT_PREFIX)){
+                    result = BenchmarkResult.decode(line.substring(RESULT_PREFIX.length()));
+                } else {
+                    System.out.println(line);
+                }
+            }
+        }
+        int exitCode = process.waitFor();
+        if(exitCode != 0 || result == null){
+            throw new Exception("forked JVM exited with code " + exitCode);
+        }
+        return result;
+    }
+
+    private static void runChild(List<Benchmark> suite, Options options) throws Exception {
+        for(Benchmark benchmark : suite){
+            if(benchmark.getId().equals(options.child)){
+                BenchmarkResult result = runInProcess(benchmark, options, System.out);
+                System.out.println(RESULT_PREFIX + result.encode());
+                System.out.flush();
+                System.exit(0); // the component under test may have left non-daemon threads behind
+            }
+        }
+        throw new IllegalArgumentException("Unknown benchmark " + options.child);
+    }
+
+    private static BenchmarkResult runInProcess(Benchmark benchmark, Options options, PrintStream out) throws Exception {
+        Workload workload = benchmark.createWorkload();
+        BenchmarkResult result = new BenchmarkResult(benchmark.getId(), benchmark.getMode());
+        String unit = benchmark.getMode().getUnit();
+        // Load the GC MXBean classes now: loading them between warm-up and measurement can deoptimize warmed-up code
+        gcCountAndTime();
+        try {
+            for(int i = 0; i < options.warmupIterations; i++){
+                Iteration iteration = iteration(benchmark, workload, options);
+                out.printf("# Warmup Iteration %3d: %s %s%n", i + 1, number(iteration.score), unit);
+            }
+            workload.resetCounters();
+            long[] gcBefore = gcCountAndTime();
+            for(int i = 0; i < options.iterations; i++){
+                Iteration iteration = iteration(benchmark, workload, options);
+                out.printf("Iteration %3d: %s %s%n", i + 1, number(iteration.score), unit);
+                result.addIteration(iteration.score, iteration.operations, iteration.seconds, iteration.allocatedBytes);
+            }
+            long[] gcAfter = gcCountAndTime();
+            result.setGc(gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1]);
+            result.setSecondary(workload.secondaryResults(result.getOperations(), result.getSeconds()));
+        } finally {
+            workload.tearDown();
+        }
+        return result;
+    }
+
+    private static class Iteration {
+        double score;
+        long operations;
+        double seconds;
+        long allocatedBytes;
+    }
+
+    private static Iteration iteration(Benchmark benchmark, Workload workload, Options options) throws Exception {
+        return benchmark.getMode() == Benchmark.Mode.THROUGHPUT
+                ? throughputIteration(workload, benchmark.getThreads(), (long) (options.iterationSeconds * 1e9))
+                : singleShotIteration(workload, benchmark.getInvocationsPerIteration());
+    }
+
+    private static Iteration throughputIteration(Workload workload, int threads, long durationNanos) throws Exception {
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch go = new CountDownLatch(1);
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        long[] operations = new long[threads];
+        long[] allocated = new long[threads];
+        Thread[] workers = new Thread[threads];
+        Set<Long> workerIds = new HashSet<>();
+        for(int t = 0; t < threads; t++){
+            int index = t;
+            workers[t] = new Thread(() -> {
+                Blackhole blackhole = new Blackhole();
+                long done = 0;
+                ready.countDown();
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long allocatedBefore = currentThreadAllocatedBytes();
+                try {
+                    while(!stop.get()){
+                        workload.operation(blackhole);
+                        done++;
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                    stop.set(true);
+                }
+                // A thread's allocation counter is gone once it dies, so each worker reports its own
+                allocated[index] = currentThreadAllocatedBytes() - allocatedBefore;
+                operations[index] = done;
+            }, "benchmark-worker-" + t);
+            workers[t].setDaemon(true);
+            workers[t].start();
+            workerIds.add(workers[t].getId());
+        }
+        ready.await();
+        Map<Long, Long> backgroundBefore = allocatedBytesByThread(workerIds);
+
+        long start = System.nanoTime();
+        go.countDown();
+        TimeUnit.NANOSECONDS.sleep(durationNanos);
+        stop.set(true);
+        long end = System.nanoTime();
+        for(Thread worker : workers){
+            worker.join();
+        }
+        Map<Long, Long> backgroundAfter = allocatedBytesByThread(workerIds);
+        if(failure.get() != null){
+            throw new Exception("Benchmark operation failed: " + failure.get(), failure.get());
+        }
+
+        Iteration iteration = new Iteration();
+        iteration.seconds = (end - start) / 1e9;
+        for(int t = 0; t < threads; t++){
+            iteration.operations += operations[t];
+        }
+        iteration.score = iteration.operations / iteration.seconds;
+        iteration.allocatedBytes = THREADS == null ? -1 : sum(allocated) + delta(backgroundBefore, backgroundAfter);
+        return iteration;
+    }
+
+    private static Iteration singleShotIteration(Workload workload, int invocations) throws Exception {
+        Blackhole blackhole = new Blackhole();
+        long nanos = 0;
+        long allocated = 0;
+        for(int i = 0; i < invocations; i++){
+            workload.beforeInvocation();
+            long allocatedBefore = currentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            workload.operation(blackhole);
+            nanos += System.nanoTime() - start;
+            allocated += currentThreadAllocatedBytes() - allocatedBefore;
+        }
+        Iteration iteration = new Iteration();
+        iteration.operations = invocations;
+        iteration.seconds = nanos / 1e9;
+        iteration.score = nanos / 1000.0 / invocations;
+        iteration.allocatedBytes = THREADS == null ? -1 : allocated;
+        return iteration;
+    }
+
+    // ---- GC profiler ----
+
+    private static com.sun.management.ThreadMXBean allocationCountingThreadBean(){
+        if(!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)){
+            return null; // not a HotSpot-compatible JVM, allocation results are left out
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if(!threads.isThreadAllocatedMemorySupported()){
+            return null;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+        return threads;
+    }
+
+    private static long currentThreadAllocatedBytes(){
+        return THREADS == null ? 0 : THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    // Threads of the component under test (executors, loader pools, cleanup threads ...)
+    private static Map<Long, Long> allocatedBytesByThread(Set<Long> excluded){
+        Map<Long, Long> allocated = new HashMap<>();
+        if(THREADS == null){
+            return allocated;
+        }
+        long[] ids = THREADS.getAllThreadIds();
+        long[] bytes = THREADS.getThreadAllocatedBytes(ids);
+        for(int i = 0; i < ids.length; i++){
+            if(bytes[i] >= 0 && !excluded.contains(ids[i]) && ids[i] != Thread.currentThread().getId()){
+                allocated.put(ids[i], bytes[i]);
+            }
+        }
+        return allocated;
+    }
+
+    // Threads that started during the iteration count from 0, threads that died during it are lost (as in JMH)
+    private static long delta(Map<Long, Long> before, Map<Long, Long> after){
+        long total = 0;
+        for(Map.Entry<Long, Long> thread : after.entrySet()){
+            total += thread.getValue() - before.getOrDefault(thread.getKey(), 0L);
+        }
+        return total;
+    }
+
+    private static long sum(long[] values){
+        long total = 0;
+        for(long value : values){
+            total += value;
+        }
+        return total;
+    }
+
+    private static long[] gcCountAndTime(){
+        long count = 0;
+        long time = 0;
+        for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()){
+            count += Math.max(0, gc.getCollectionCount());
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return new long[] { count, time };
+    }
+
+    // ---- Report ----
+
+    private static String header(Options options, long elapsedSeconds){
+        StringBuilder sb = new StringBuilder();
+        sb.append("# Date: ").append(LocalDate.now()).append('\n');
+        sb.append("# JVM: ").append(System.getProperty("java.vm.name")).append(' ')
+                .append(System.getProperty("java.runtime.version")).append(" (").append(System.getProperty("java.vendor"))
+                .append(")\n");
+        sb.append("# JVM options: ").append(String.join(" ", ManagementFactory.getRuntimeMXBean().getInputArguments()))
+                .append('\n');
+        sb.append("# OS: ").append(System.getProperty("os.name")).append(' ').append(System.getProperty("os.version"))
+                .append(' ').append(System.getProperty("os.arch")).append(", ")
+                .append(Runtime.getRuntime().availableProcessors()).append(" CPUs, max heap ")
+                .append(Runtime.getRuntime().maxMemory() / (1024 * 1024)).append(" MB\n");
+        sb.append(String.format("# Warm-up: %d iterations, measurement: %d iterations, %s s each, %d fork(s)%n",
+                options.warmupIterations, options.iterations, number(options.iterationSeconds), options.forks));
+        sb.append("# Total time: ").append(elapsedSeconds).append(" s\n");
+        return sb.toString();
+    }
+
+    static String formatTable(List<BenchmarkResult> results){
+        List<String[]> rows = new ArrayList<>();
+        rows.add(new String[] { "Benchmark", "Mode", "Cnt", "Score", "", "Error", "Units" });
+        for(BenchmarkResult result : results){
+            String mode = result.getMode().getLabel();
+            String count = String.valueOf(result.getCount());
+            double error = result.getError();
+            rows.add(new String[] { result.getId(), mode, count, number(result.getScore()),
+                    Double.isNaN(error) ? "" : "+-", number(error), result.getMode().getUnit() });
+            Map<String, String[]> secondary = new LinkedHashMap<>();
+            secondary.put("gc.alloc.rate", new String[] { number(result.getAllocationRateMb()), "MB/sec" });
+            secondary.put("gc.alloc.rate.norm", new String[] { number(result.getAllocatedBytesPerOperation()), "B/op" });
+            secondary.put("gc.count", new String[] { String.valueOf(result.getGcCount()), "counts" });
+            secondary.put("gc.time", new String[] { String.valueOf(result.getGcTimeMillis()), "ms" });
+            for(Map.Entry<String, Double> extra : result.getSecondary().entrySet()){
+                secondary.put(extra.getKey(), new String[] { number(extra.getValue()), "#" });
+            }
+            for(Map.Entry<String, String[]> row : secondary.entrySet()){
+                rows.add(new String[] { result.getId() + ":" + row.getKey(), mode, count, row.getValue()[0], "", "",
+                        row.getValue()[1] });
+            }
+        }
+
+        int[] widths = new int[rows.get(0).length];
+        for(String[] row : rows){
+            for(int c = 0; c < row.length; c++){
+                widths[c] = Math.max(widths[c], row[c].length());
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        for(String[] row : rows){
+            sb.append(pad(row[0], widths[0], true));
+            for(int c = 1; c < row.length; c++){
+                sb.append("  ").append(pad(row[c], widths[c], c == row.length - 1));
+            }
+            int end = sb.length();
+            while(sb.charAt(end - 1) == ' '){
+                end--;
+            }
+            sb.setLength(end);
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String pad(String value, int width, boolean left){
+        String padding = " ".repeat(width - value.length());
+        return left ? value + padding : padding + value;
+    }
+
+    static String number(double value){
+        if(Double.isNaN(value)){
+            return "";
+        }
+        if(Math.abs(value) >= 1000){
+            return String.format("%.0f", value);
+        }
+        return String.format(Math.abs(value) >= 1 || value == 0 ? "%.3f" : "%.6f", value);
+    }
+}
@@ -0,0 +1,29 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.Benchmarks;
+
+// Sink for results a benchmark operation would otherwise throw away, so the JIT can't remove the work that produced them
+// (a cache read whose value is unused is a candidate for dead code elimination once inlined).
+/* Same trick as JMH: compare against two volatile fields that are never equal. The JIT can't prove the branch is never
+   taken, so the value must be computed, but it never is taken, so consuming costs two volatile reads (plain loads on
+   x86) and no store.
+   One instance per benchmark thread.
+*/
+public final class Blackhole {
+
+    private volatile Object left = new Object();
+    private volatile Object right = new Object();
+    private volatile long leftLong = 1;
+    private volatile long rightLong = 2;
+    private Object sink;
+
+    public void consume(Object value){
+        if(value == left & value == right){
+            sink = value; // never happens
+        }
+    }
+
+    public void consume(long value){
+        if(value == leftLong & value == rightLong){
+            sink = value; // never happens
+        }
+    }
+}
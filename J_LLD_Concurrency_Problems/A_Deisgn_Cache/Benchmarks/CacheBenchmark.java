@@ -0,0 +1,141 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.Benchmarks;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_10K.ConcurrentLRUEvictionAlgorithm;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_10K.EnhancedCache;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.MainCache.Cache;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.ConcreteStorages.ConcreteCacheStorage.InMemoryCacheStorage;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.WritePolicies.ConcreteWritePolicies.WriteThroughPolicy;
+
+// Cache vs EnhancedCache, read-through traffic: read the key, on a miss write the DB value into the cache.
+/* Both get the same storage, eviction algorithm (ConcurrentLRU), write policy (write-through, in-memory DB) and 4
+   key executors, so the difference is the cache classes themselves:
+    - Cache answers a hit on the caller thread, EnhancedCache sends every read through the key's executor.
+    - Each is used through its cheapest miss API: Cache.accessDataIfPresent (null), EnhancedCache.accessData
+      (exceptional future - that exception is part of its miss cost).
+   100K keys, 10K capacity: Zipf traffic is mostly hits, uniform traffic mostly misses (and evictions).
+
+   Usage: java ...Benchmarks.CacheBenchmark [runner options, see BenchmarkRunner]
+*/
+public class CacheBenchmark {
+
+    static final int KEY_SPACE = 100_000;
+    static final int CAPACITY = 10_000;
+    static final int EXECUTORS = 4;
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkRunner.run(CacheBenchmark.class, benchmarks(), args);
+    }
+
+    static List<Benchmark> benchmarks(){
+        List<Benchmark> benchmarks = new ArrayList<>();
+        for(String impl : new String[] { "Cache", "EnhancedCache" }){
+            for(String keys : new String[] { "zipf", "uniform" }){
+                for(int threads : CacheBenchmarks.THREAD_COUNTS){
+                    benchmarks.add(Benchmark.throughput("cache", threads,
+                            () -> new ReadThrough(impl, keys), "impl", impl, "keys", keys));
+                }
+            }
+        }
+        return benchmarks;
+    }
+
+    private static class ReadThrough implements Workload {
+
+        private final KeyGenerator keys;
+        private final Integer[] boxedKeys;
+        private final String[] values;
+        private final Cache<Integer, String> cache;
+        private final EnhancedCache<Integer, String> enhancedCache;
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+
+        ReadThrough(String impl, String keyDistribution) throws Exception {
+            this.keys = CacheBenchmarks.keyGenerator(keyDistribution, KEY_SPACE);
+            this.boxedKeys = KeyGenerator.boxedKeys(KEY_SPACE);
+            this.values = new String[KEY_SPACE];
+            CountingDBStorage<Integer, String> db = new CountingDBStorage<>(0);
+            for(int i = 0; i < KEY_SPACE; i++){
+                values[i] = "value-" + i;
+                db.load(boxedKeys[i], values[i]);
+            }
+            if(impl.equals("Cache")){
+                this.cache = new Cache<>(new InMemoryCacheStorage<>(CAPACITY), db, new WriteThroughPolicy<>(),
+                        new ConcurrentLRUEvictionAlgorithm<>(), EXECUTORS);
+                this.enhancedCache = null;
+            } else {
+                this.cache = null;
+                this.enhancedCache = new EnhancedCache<>(new InMemoryCacheStorage<>(CAPACITY), db,
+                        new WriteThroughPolicy<>(), new ConcurrentLRUEvictionAlgorithm<>(), EXECUTORS);
+            }
+            // Start full, otherwise the cache is still filling up (hit ratio climbing) during the measurement
+            for(int i = 0; i < CAPACITY; i++){
+                write(boxedKeys[i], values[i]);
+            }
+        }
+
+        @Override
+        public void operation(Blackhole blackhole) throws Exception {
+            int index = keys.nextKey(ThreadLocalRandom.current());
+            Integer key = boxedKeys[index];
+            String value = read(key);
+            if(value == null){
+                misses.increment();
+                write(key, values[index]);
+                value = values[index];
+            } else {
+                hits.increment();
+            }
+            blackhole.consume(value);
+        }
+
+        private void write(Integer key, String value){
+            if(cache != null){
+                cache.updateData(key, value).join();
+            } else {
+                enhancedCache.updateData(key, value).join();
+            }
+        }
+
+        private String read(Integer key){
+            if(cache != null){
+                return cache.accessDataIfPresent(key).join();
+            }
+            try {
+                return enhancedCache.accessData(key).join();
+            } catch (CompletionException miss) {
+                return null;
+            }
+        }
+
+        @Override
+        public void resetCounters(){
+            hits.reset();
+            misses.reset();
+        }
+
+        @Override
+        public Map<String, Double> secondaryResults(long operations, double seconds){
+            Map<String, Double> results = new LinkedHashMap<>();
+            long lookups = hits.sum() + misses.sum();
+            results.put("hit.ratio", lookups == 0 ? Double.NaN : (double) hits.sum() / lookups);
+            return results;
+        }
+
+        @Override
+        public void tearDown(){
+            if(cache != null){
+                cache.shutDown();
+            } else {
+                enhancedCache.shutDownNow();
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.Benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// The whole cache benchmark suite: the yardstick for cache performance changes. See README.md in this package.
+/* Every benchmark class also has its own main() for running just its part.
+
+   Usage: java ...Benchmarks.CacheBenchmarks [runner options, see BenchmarkRunner]
+     e.g. CacheBenchmarks -l                     list all benchmark ids
+          CacheBenchmarks eviction -t 1,16       the eviction benchmarks with 1 and 16 threads
+          CacheBenchmarks -o baselines/new.txt   full run, results saved next to the baselines
+*/
+public class CacheBenchmarks {
+
+    static final int[] THREAD_COUNTS = { 1, 4, 16, 64 };
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkRunner.run(CacheBenchmarks.class, all(), args);
+    }
+
+    static List<Benchmark> all(){
+        List<Benchmark> benchmarks = new ArrayList<>();
+        benchmarks.addAll(CacheBenchmark.benchmarks());
+        benchmarks.addAll(EvictionAlgorithmBenchmark.benchmarks());
+        benchmarks.addAll(WritePolicyBenchmark.benchmarks());
+        benchmarks.addAll(TTLCleanupBenchmark.benchmarks());
+        benchmarks.addAll(StampedeBenchmark.benchmarks());
+        benchmarks.addAll(StorageBenchmark.benchmarks());
+        return benchmarks;
+    }
+
+    static KeyGenerator keyGenerator(String distribution, int keySpace){
+        switch(distribution){
+            case "zipf": return KeyGenerator.zipfian(keySpace);
+            case "uniform": return KeyGenerator.uniform(keySpace);
+            default: throw new IllegalArgumentException("Unknown key distribution " + distribution);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.Benchmarks;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.ConcreteStorages.ConcreteDBStorage.SimpleDBStorage;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces.DBStorage;
+
+// SimpleDBStorage with a round trip latency and counters, so a benchmark can report how much load reached the "DB".
+/* Latency is paid once per call (a batch costs one round trip, like a multi-row statement) by parking the caller,
+   which is what a blocking JDBC call does to a thread. 0 = in-memory speed, measures the cache's own overhead.
+   Counters count entries, not calls: writeAll of 10 entries is 10 writes and 1 round trip.
+*/
+class CountingDBStorage<K, V> implements DBStorage<K, V> {
+
+    private final SimpleDBStorage<K, V> delegate = new SimpleDBStorage<>();
+    private final long latencyNanos;
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder roundTrips = new LongAdder();
+
+    CountingDBStorage(long latencyMicros){
+        this.latencyNanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+    }
+
+    // Initial content, not counted and without latency
+    void load(K key, V value) throws Exception {
+        delegate.write(key, value);
+    }
+
+    @Override
+    public void write(K key, V value) throws Exception {
+        roundTrip();
+        writes.increment();
+        delegate.write(key, value);
+    }
+
+    @Override
+    public V read(K key) throws Exception {
+        roundTrip();
+        reads.increment();
+        return delegate.read(key);
+    }
+
+    @Override
+    public Optional<V> readIfPresent(K key) throws Exception {
+        roundTrip();
+        reads.increment();
+        return delegate.readIfPresent(key);
+    }
+
+    @Override
+    public void delete(K key) throws Exception {
+        roundTrip();
+        delegate.delete(key);
+    }
+
+    @Override
+    public Optional<Iterable<K>> scanKeys() throws Exception {
+        return delegate.scanKeys();
+    }
+
+    @Override
+    public Map<K, V> readAll(Collection<K> keys) throws Exception {
+        roundTrip();
+        reads.add(keys.size());
+        return delegate.readAll(keys);
+    }
+
+    @Override
+    public void writeAll(Map<K, V> entries) throws Exception {
+        roundTrip();
+        writes.add(entries.size());
+        delegate.writeAll(entries);
+    }
+
+    long getReads(){
+        return reads.sum();
+    }
+
+    long getWrites(){
+        return writes.sum();
+    }
+
+    long getRoundTrips(){
+        return roundTrips.sum();
+    }
+
+    void resetCounters(){
+        reads.reset();
+        writes.reset();
+        roundTrips.reset();
+    }
+
+    private void roundTrip(){
+        roundTrips.increment();
+        if(latencyNanos == 0){
+            return;
+        }
+        // parkNanos may return early (spurious wake-up), the full latency is always paid
+        long deadline = System.nanoTime() + latencyNanos;
+        long remaining;
+        while((remaining = deadline - System.nanoTime()) > 0){
+            LockSupport.parkNanos(remaining);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.Benchmarks;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_100K.ShardedLRUEvictionAlgorithm;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_10K.ConcurrentLRUEvictionAlgorithm;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.EvictionAlgorithms.EvictionAlgorithm;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.EvictionAlgorithms.ConcreteEvictionAlgorithm.LRUEvictionAlgorithm;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.EvictionAlgorithms.ConcreteEvictionAlgorithm.WTinyLFUEvictionAlgorithm;
+
+// Every EvictionAlgorithm driven the way a full cache drives it, without the rest of the cache.
+/* Per operation a key is drawn: if it is resident -> keyRead (a hit), otherwise evictKeyFor + keyAccessed (a miss
+   that evicts one key to make room). The resident set is a concurrent set shared by all algorithms, so its cost is
+   the same constant everywhere and the differences are the algorithms' own locking and bookkeeping.
+   Hit ratio is reported next to the throughput: a policy that is faster because it evicts worse keys shows up there.
+
+   Usage: java ...Benchmarks.EvictionAlgorithmBenchmark [runner options, see BenchmarkRunner]
+*/
+public class EvictionAlgorithmBenchmark {
+
+    static final int KEY_SPACE = 100_000;
+    static final int CAPACITY = 10_000;
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkRunner.run(EvictionAlgorithmBenchmark.class, benchmarks(), args);
+    }
+
+    static List<Benchmark> benchmarks(){
+        List<Benchmark> benchmarks = new ArrayList<>();
+        for(String algorithm : new String[] { "LRU", "ConcurrentLRU", "ShardedLRU", "WTinyLFU" }){
+            for(String keys : new String[] { "zipf", "uniform" }){
+                for(int threads : CacheBenchmarks.THREAD_COUNTS){
+                    benchmarks.add(Benchmark.throughput("eviction", threads,
+                            () -> new FullCache(algorithm(algorithm), keys), "algorithm", algorithm, "keys", keys));
+                }
+            }
+        }
+        return benchmarks;
+    }
+
+    private static EvictionAlgorithm<Integer> algorithm(String name){
+        switch(name){
+            case "LRU": return new LRUEvictionAlgorithm<>();
+            case "ConcurrentLRU": return new ConcurrentLRUEvictionAlgorithm<>();
+            case "ShardedLRU": return new ShardedLRUEvictionAlgorithm<>();
+            case "WTinyLFU": return new WTinyLFUEvictionAlgorithm<>(CAPACITY);
+            default: throw new IllegalArgumentException("Unknown eviction algorithm " + name);
+        }
+    }
+
+    private static class FullCache implements Workload {
+
+        private final EvictionAlgorithm<Integer> algorithm;
+        private final KeyGenerator keys;
+        private final Integer[] boxedKeys;
+        private final Set<Integer> resident;
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+
+        FullCache(EvictionAlgorithm<Integer> algorithm, String keyDistribution) throws Exception {
+            this.algorithm = algorithm;
+            this.keys = CacheBenchmarks.keyGenerator(keyDistribution, KEY_SPACE);
+            this.boxedKeys = KeyGenerator.boxedKeys(KEY_SPACE);
+            this.resident = ConcurrentHashMap.newKeySet(CAPACITY * 2);
+            // Start full, every miss of the measurement evicts
+            for(int i = 0; i < CAPACITY; i++){
+                resident.add(boxedKeys[i]);
+                algorithm.keyAccessed(boxedKeys[i]);
+            }
+        }
+
+        @Override
+        public void operation(Blackhole blackhole) throws Exception {
+            Integer key = boxedKeys[keys.nextKey(ThreadLocalRandom.current())];
+            if(!resident.add(key)){
+                hits.increment();
+                algorithm.keyRead(key);
+                return;
+            }
+            // This thread owns the insert of key: make room first, like Cache.updateData
+            misses.increment();
+            Integer victim = algorithm.evictKeyFor(key);
+            if(victim != null){
+                resident.remove(victim);
+            }
+            algorithm.keyAccessed(key);
+            blackhole.consume(victim);
+        }
+
+        @Override
+        public void resetCounters(){
+            hits.reset();
+            misses.reset();
+        }
+
+        @Override
+        public Map<String, Double> secondaryResults(long operations, double seconds){
+            Map<String, Double> results = new LinkedHashMap<>();
+            long lookups = hits.sum() + misses.sum();
+            results.put("hit.ratio", lookups == 0 ? Double.NaN : (double) hits.sum() / lookups);
+            return results;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.Benchmarks;
+
+import java.util.Random;
+
+// Draws key indexes in [0, keySpace()) for a benchmark thread.
+/* Workloads turn the index into a key through a pre-boxed Integer[] table, so drawing a key never allocates and the
+   allocation profile of a benchmark is the cache's own.
+   The caller passes its random (ThreadLocalRandom.current()), one generator instance is shared by all threads.
+*/
+public interface KeyGenerator {
+
+    int nextKey(Random random);
+
+    int keySpace();
+
+    // Shown as the "keys" parameter of a benchmark
+    String name();
+
+    static KeyGenerator zipfian(int keySpace){
+        return new ZipfianKeyGenerator(keySpace, ZipfianKeyGenerator.DEFAULT_EXPONENT);
+    }
+
+    static KeyGenerator uniform(int keySpace){
+        return new UniformKeyGenerator(keySpace);
+    }
+
+    // Keys 0..keySpace-1 boxed once, shared read-only by all threads
+    static Integer[] boxedKeys(int keySpace){
+        Integer[] keys = new Integer[keySpace];
+        for(int i = 0; i < keySpace; i++){
+            keys[i] = i;
+        }
+        return keys;
+    }
+}
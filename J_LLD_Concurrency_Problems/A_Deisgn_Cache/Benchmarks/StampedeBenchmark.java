@@ -0,0 +1,108 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.Benchmarks;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_100K.StampedeProtectedCache;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_10K.CacheWithTTL;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.ConcreteStorages.ConcreteCacheStorage.InMemoryCacheStorage;
+
+// Hot-key stampede: every thread reads the same key, which expires every 20ms and takes 2ms to load from the DB.
+/*  - unprotected:  get, on a miss read the DB and put (cache-aside without coordination). Every thread that misses
+                    during the 2ms load goes to the DB too.
+    - locked:       StampedeProtectedCache, one loader per key, the other readers wait for it.
+    - refreshAhead: StampedeProtectedCache in refresh-ahead mode (refresh after 20ms, expire after 200ms): the key is
+                    reloaded in the background while readers keep getting the current value.
+   db.reads.per.sec is the load that reaches the DB, the ideal is one read per expiry (50/s).
+
+   Usage: java ...Benchmarks.StampedeBenchmark [runner options, see BenchmarkRunner]
+*/
+public class StampedeBenchmark {
+
+    static final long TTL_MILLIS = 20;
+    static final long DB_LATENCY_MICROS = 2_000;
+    static final int[] THREAD_COUNTS = { 4, 16, 64 };
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkRunner.run(StampedeBenchmark.class, benchmarks(), args);
+    }
+
+    static List<Benchmark> benchmarks(){
+        List<Benchmark> benchmarks = new ArrayList<>();
+        for(String impl : new String[] { "unprotected", "locked", "refreshAhead" }){
+            for(int threads : THREAD_COUNTS){
+                benchmarks.add(Benchmark.throughput("stampede", threads, () -> new HotKey(impl), "impl", impl));
+            }
+        }
+        return benchmarks;
+    }
+
+    private static class HotKey implements Workload {
+
+        private static final Integer KEY = 42;
+
+        private final CountingDBStorage<Integer, String> db;
+        private final CacheWithTTL<Integer, String> ttlStorage;
+        private final StampedeProtectedCache<Integer, String> cache;
+
+        HotKey(String impl) throws Exception {
+            this.db = new CountingDBStorage<>(DB_LATENCY_MICROS);
+            db.load(KEY, "hot");
+            switch(impl){
+                case "unprotected":
+                    this.ttlStorage = new CacheWithTTL<>(new InMemoryCacheStorage<>(16), TTL_MILLIS, 0);
+                    this.cache = null;
+                    break;
+                case "locked":
+                    this.ttlStorage = new CacheWithTTL<>(new InMemoryCacheStorage<>(16), TTL_MILLIS, 0);
+                    this.cache = new StampedeProtectedCache<>(ttlStorage, db);
+                    break;
+                case "refreshAhead":
+                    this.ttlStorage = null;
+                    this.cache = new StampedeProtectedCache<>(new InMemoryCacheStorage<>(16), db, 16, 5_000, TTL_MILLIS,
+                            10 * TTL_MILLIS, 1);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown stampede implementation " + impl);
+            }
+        }
+
+        @Override
+        public void operation(Blackhole blackhole) throws Exception {
+            if(cache != null){
+                blackhole.consume(cache.get(KEY));
+                return;
+            }
+            String value = ttlStorage.getIfPresent(KEY);
+            if(value == null){
+                value = db.readIfPresent(KEY).orElseThrow();
+                ttlStorage.put(KEY, value);
+            }
+            blackhole.consume(value);
+        }
+
+        @Override
+        public void resetCounters(){
+            db.resetCounters();
+        }
+
+        @Override
+        public Map<String, Double> secondaryResults(long operations, double seconds){
+            Map<String, Double> results = new LinkedHashMap<>();
+            results.put("db.reads.per.sec", seconds == 0 ? Double.NaN : db.getReads() / seconds);
+            return results;
+        }
+
+        @Override
+        public void tearDown(){
+            if(cache != null){
+                cache.shutdown();
+            }
+            if(ttlStorage != null){
+                ttlStorage.shutdown();
+            }
+        }
+    }
+}
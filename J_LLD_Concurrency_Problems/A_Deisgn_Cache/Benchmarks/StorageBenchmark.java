@@ -0,0 +1,105 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.Benchmarks;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.ConcreteStorages.ConcreteCacheStorage.InMemoryCacheStorage;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.ConcreteStorages.ConcreteCacheStorage.StripedCacheStorage;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces.CacheStorage;
+
+// CacheStorage implementations under the atomic operations callers coordinate with, without a cache around them.
+/* Zipf keys over 100K, per operation:
+    - 80% read-through: getIfPresent, on a miss putIfAbsent (the loader's install, the first one wins)
+    - 15% compute: replace the value from the current one
+    - 5%  compute to null: remove the key, so reads keep missing
+   inMemory is a ConcurrentHashMap, striped is StripedCacheStorage (CAS on immutable bucket chains, lock-free reads).
+
+   Usage: java ...Benchmarks.StorageBenchmark [runner options, see BenchmarkRunner]
+*/
+public class StorageBenchmark {
+
+    static final int KEY_SPACE = 100_000;
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkRunner.run(StorageBenchmark.class, benchmarks(), args);
+    }
+
+    static List<Benchmark> benchmarks(){
+        List<Benchmark> benchmarks = new ArrayList<>();
+        for(String impl : new String[] { "inMemory", "striped" }){
+            for(int threads : CacheBenchmarks.THREAD_COUNTS){
+                benchmarks.add(Benchmark.throughput("storage", threads, () -> new AtomicOperations(impl), "impl", impl));
+            }
+        }
+        return benchmarks;
+    }
+
+    private static CacheStorage<Integer, String> storage(String name){
+        switch(name){
+            case "inMemory": return new InMemoryCacheStorage<>(KEY_SPACE);
+            case "striped": return new StripedCacheStorage<>(KEY_SPACE);
+            default: throw new IllegalArgumentException("Unknown storage " + name);
+        }
+    }
+
+    private static class AtomicOperations implements Workload {
+
+        private final CacheStorage<Integer, String> storage;
+        private final KeyGenerator keys;
+        private final Integer[] boxedKeys;
+        private final String[] values;
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder reads = new LongAdder();
+
+        AtomicOperations(String impl) throws Exception {
+            this.storage = storage(impl);
+            this.keys = KeyGenerator.zipfian(KEY_SPACE);
+            this.boxedKeys = KeyGenerator.boxedKeys(KEY_SPACE);
+            this.values = new String[KEY_SPACE];
+            for(int i = 0; i < KEY_SPACE; i++){
+                values[i] = "value-" + i;
+                storage.put(boxedKeys[i], values[i]);
+            }
+        }
+
+        @Override
+        public void operation(Blackhole blackhole) throws Exception {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int index = keys.nextKey(random);
+            Integer key = boxedKeys[index];
+            int op = random.nextInt(100);
+            if(op < 80){
+                reads.increment();
+                String value = storage.getIfPresent(key);
+                if(value != null){
+                    hits.increment();
+                }else{
+                    value = storage.putIfAbsent(key, values[index]);
+                }
+                blackhole.consume(value);
+            }else if(op < 95){
+                blackhole.consume(storage.compute(key, (k, old) -> old == values[index] ? values[(index + 1) % KEY_SPACE] : values[index]));
+            }else{
+                blackhole.consume(storage.compute(key, (k, old) -> null));
+            }
+        }
+
+        @Override
+        public void resetCounters(){
+            hits.reset();
+            reads.reset();
+        }
+
+        @Override
+        public Map<String, Double> secondaryResults(long operations, double seconds){
+            Map<String, Double> results = new LinkedHashMap<>();
+            long readCount = reads.sum();
+            results.put("hit.ratio", readCount == 0 ? Double.NaN : (double) hits.sum() / readCount);
+            return results;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.Benchmarks;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_10K.CacheWithTTL;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.ConcreteStorages.ConcreteCacheStorage.InMemoryCacheStorage;
+
+// Cost of one CacheWithTTL cleanup pass vs the number of live entries, with the same number of expired entries each time.
+/* Before every timed pass (untimed): 1000 entries are put with a 1ms TTL and we wait until time leaves their timer
+   wheel bucket (at most ~64ms, buckets are aligned on multiples of 64ms). The cache also holds `size` live entries with a 1h TTL.
+   - CacheWithTTL: the pass only visits the elapsed wheel buckets, its time should stay flat as size grows.
+   - mapScan: reference for the previous implementation, a key -> deadline map scanned completely on every pass.
+   expired.per.op checks both really removed the 1000 expired entries every pass.
+
+   Usage: java ...Benchmarks.TTLCleanupBenchmark [runner options, see BenchmarkRunner]
+*/
+public class TTLCleanupBenchmark {
+
+    static final int[] SIZES = { 1_000, 10_000, 100_000, 1_000_000 };
+    static final int EXPIRED_PER_PASS = 1_000;
+    static final int INVOCATIONS_PER_ITERATION = 100;
+    static final long LIVE_TTL_MILLIS = 3_600_000;
+    static final long WHEEL_TICK_MILLIS = 64; // level 0 bucket width of HierarchicalTimerWheel
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkRunner.run(TTLCleanupBenchmark.class, benchmarks(), args);
+    }
+
+    static List<Benchmark> benchmarks(){
+        List<Benchmark> benchmarks = new ArrayList<>();
+        for(String impl : new String[] { "CacheWithTTL", "mapScan" }){
+            for(int size : SIZES){
+                benchmarks.add(Benchmark.singleShot("ttlCleanup", INVOCATIONS_PER_ITERATION,
+                        () -> impl.equals("CacheWithTTL") ? new WheelCleanup(size) : new ScanCleanup(size),
+                        "impl", impl, "size", String.valueOf(size)));
+            }
+        }
+        return benchmarks;
+    }
+
+    // Keys [0, size) live, [size, size + EXPIRED_PER_PASS) are the ones that expire before every pass
+    private static Integer[] keys(int size){
+        return KeyGenerator.boxedKeys(size + EXPIRED_PER_PASS);
+    }
+
+    private static class WheelCleanup implements Workload {
+
+        private final int size;
+        private final Integer[] keys;
+        private final CacheWithTTL<Integer, String> cache;
+        private final LongAdder expired = new LongAdder();
+
+        WheelCleanup(int size) throws Exception {
+            this.size = size;
+            this.keys = keys(size);
+            // Cleanup interval 0: no background thread, only the timed cleanUp() calls expire entries
+            this.cache = new CacheWithTTL<>(new InMemoryCacheStorage<>(keys.length), LIVE_TTL_MILLIS, 0);
+            cache.addExpirationListener(key -> expired.increment());
+            for(int i = 0; i < size; i++){
+                cache.put(keys[i], "live");
+            }
+        }
+
+        @Override
+        public void beforeInvocation() throws Exception {
+            for(int i = size; i < keys.length; i++){
+                cache.putWithTTL(keys[i], "short-lived", 1);
+            }
+            awaitBucketEnd(System.currentTimeMillis() + 1);
+        }
+
+        @Override
+        public void operation(Blackhole blackhole){
+            cache.cleanUp();
+        }
+
+        @Override
+        public void resetCounters(){
+            expired.reset();
+        }
+
+        @Override
+        public Map<String, Double> secondaryResults(long operations, double seconds){
+            return expiredPerPass(expired.sum(), operations);
+        }
+
+        @Override
+        public void tearDown(){
+            cache.shutdown();
+        }
+    }
+
+    // The cleanup CacheWithTTL had before the timer wheel: scan every deadline, remove the ones in the past
+    private static class ScanCleanup implements Workload {
+
+        private final int size;
+        private final Integer[] keys;
+        private final InMemoryCacheStorage<Integer, String> storage;
+        private final ConcurrentHashMap<Integer, Long> expirationTimes = new ConcurrentHashMap<>();
+        private long expired;
+
+        ScanCleanup(int size) throws Exception {
+            this.size = size;
+            this.keys = keys(size);
+            this.storage = new InMemoryCacheStorage<>(keys.length);
+            long deadline = System.currentTimeMillis() + LIVE_TTL_MILLIS;
+            for(int i = 0; i < size; i++){
+                storage.put(keys[i], "live");
+                expirationTimes.put(keys[i], deadline);
+            }
+        }
+
+        @Override
+        public void beforeInvocation() throws Exception {
+            long deadline = System.currentTimeMillis() + 1;
+            for(int i = size; i < keys.length; i++){
+                storage.put(keys[i], "short-lived");
+                expirationTimes.put(keys[i], deadline);
+            }
+            awaitBucketEnd(deadline); // same wait as the wheel, not needed by the scan
+        }
+
+        @Override
+        public void operation(Blackhole blackhole) throws Exception {
+            long now = System.currentTimeMillis();
+            for(Map.Entry<Integer, Long> entry : expirationTimes.entrySet()){
+                if(entry.getValue() < now){
+                    expirationTimes.remove(entry.getKey());
+                    storage.remove(entry.getKey());
+                    expired++;
+                }
+            }
+        }
+
+        @Override
+        public void resetCounters(){
+            expired = 0;
+        }
+
+        @Override
+        public Map<String, Double> secondaryResults(long operations, double seconds){
+            return expiredPerPass(expired, operations);
+        }
+    }
+
+    // Sleep until time has left the level 0 wheel bucket of `deadline` (+1ms, currentTimeMillis may lag behind sleep)
+    private static void awaitBucketEnd(long deadline) throws InterruptedException {
+        long bucketEnd = (deadline / WHEEL_TICK_MILLIS + 1) * WHEEL_TICK_MILLIS;
+        long wait;
+        while((wait = bucketEnd + 1 - System.currentTimeMillis()) > 0){
+            Thread.sleep(wait);
+        }
+    }
+
+    private static Map<String, Double> expiredPerPass(long expired, long passes){
+        Map<String, Double> results = new LinkedHashMap<>();
+        results.put("expired.per.op", passes == 0 ? Double.NaN : (double) expired / passes);
+        return results;
+    }
+}
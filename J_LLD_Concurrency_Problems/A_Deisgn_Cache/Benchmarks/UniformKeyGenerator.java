@@ -0,0 +1,32 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.Benchmarks;
+
+import java.util.Random;
+
+// Every key equally likely: the worst case for a cache (hit ratio = capacity / key space) and for eviction, which
+// runs on almost every operation.
+public class UniformKeyGenerator implements KeyGenerator {
+
+    private final int keySpace;
+
+    public UniformKeyGenerator(int keySpace){
+        if(keySpace <= 0){
+            throw new IllegalArgumentException("Key space must be positive");
+        }
+        this.keySpace = keySpace;
+    }
+
+    @Override
+    public int nextKey(Random random){
+        return random.nextInt(keySpace);
+    }
+
+    @Override
+    public int keySpace(){
+        return keySpace;
+    }
+
+    @Override
+    public String name(){
+        return "uniform";
+    }
+}
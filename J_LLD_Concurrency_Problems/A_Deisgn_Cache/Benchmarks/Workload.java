@@ -0,0 +1,33 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.Benchmarks;
+
+import java.util.Map;
+
+// The state of one benchmark run (the cache under test, its DB, the key generator ...) and the operation that is measured.
+/* Created once per benchmark (per forked JVM), then:
+    THROUGHPUT:  operation() runs in a loop on every benchmark thread, ops/s is reported.
+    SINGLE_SHOT: beforeInvocation() (not timed) then operation() (timed) on one thread, the time per call is reported.
+                 For work that must be set up before every call, e.g. entries that need to expire before a cleanup pass.
+   An exception thrown by operation() fails the benchmark - expected misses must be handled inside it.
+*/
+public interface Workload {
+
+    void operation(Blackhole blackhole) throws Exception;
+
+    // SINGLE_SHOT only: prepare the next timed call
+    default void beforeInvocation() throws Exception {
+    }
+
+    // Called after warm-up, so the secondary results only cover the measured iterations
+    default void resetCounters(){
+    }
+
+    // Extra results of the measured iterations (hit ratio, DB reads/s ...), given their operations and duration.
+    // Key = result name, printed as benchmark:name. Use a LinkedHashMap to keep the order stable.
+    default Map<String, Double> secondaryResults(long operations, double seconds){
+        return Map.of();
+    }
+
+    // Stop the threads / executors of the component under test
+    default void tearDown() throws Exception {
+    }
+}
@@ -0,0 +1,124 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.Benchmarks;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_100K.DurableWriteBehindPolicy;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.ConcreteStorages.ConcreteCacheStorage.InMemoryCacheStorage;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.WritePolicies.WritePolicy;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.WritePolicies.ConcreteWritePolicies.WriteAroundPolicy;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.WritePolicies.ConcreteWritePolicies.WriteBackPolicy;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.WritePolicies.ConcreteWritePolicies.WriteBehindPolicy;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.WritePolicies.ConcreteWritePolicies.WriteThroughPolicy;
+
+// Cost of one WritePolicy.write for every policy, with an in-memory DB and with a DB that takes 100us per round trip.
+/* The in-memory DB measures the policy's own overhead (thread hops, buffering), the slow DB shows who makes the caller
+   wait for the DB. Keys are Zipf over 10K keys, so write-back policies can coalesce repeated writes of hot keys:
+   db.writes.per.op < 1 is that saving (it counts the writes the DB received during the measurement, buffered writes
+   still pending at its end are not counted).
+   DurableWriteBehind writes its WAL to a temporary directory, deleted after the run.
+
+   Usage: java ...Benchmarks.WritePolicyBenchmark [runner options, see BenchmarkRunner]
+*/
+public class WritePolicyBenchmark {
+
+    static final int KEY_SPACE = 10_000;
+    static final int[] THREAD_COUNTS = { 1, 16 };
+    static final long[] DB_LATENCIES_MICROS = { 0, 100 };
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkRunner.run(WritePolicyBenchmark.class, benchmarks(), args);
+    }
+
+    static List<Benchmark> benchmarks(){
+        List<Benchmark> benchmarks = new ArrayList<>();
+        for(String policy : new String[] { "WriteThrough", "WriteAround", "WriteBehind", "WriteBack", "DurableWriteBehind" }){
+            for(long latency : DB_LATENCIES_MICROS){
+                for(int threads : THREAD_COUNTS){
+                    benchmarks.add(Benchmark.throughput("writePolicy", threads, () -> new Writes(policy, latency),
+                            "policy", policy, "dbLatencyUs", String.valueOf(latency)));
+                }
+            }
+        }
+        return benchmarks;
+    }
+
+    private static class Writes implements Workload {
+
+        private final WritePolicy<Integer, String> policy;
+        private final Path walDirectory;
+        private final InMemoryCacheStorage<Integer, String> storage;
+        private final CountingDBStorage<Integer, String> db;
+        private final KeyGenerator keys;
+        private final Integer[] boxedKeys;
+        private final String[] values;
+
+        Writes(String policyName, long dbLatencyMicros) throws Exception {
+            this.walDirectory = policyName.equals("DurableWriteBehind") ? Files.createTempDirectory("bench-wal") : null;
+            this.policy = policy(policyName, walDirectory);
+            this.storage = new InMemoryCacheStorage<>(KEY_SPACE);
+            this.db = new CountingDBStorage<>(dbLatencyMicros);
+            this.keys = KeyGenerator.zipfian(KEY_SPACE);
+            this.boxedKeys = KeyGenerator.boxedKeys(KEY_SPACE);
+            this.values = new String[KEY_SPACE];
+            for(int i = 0; i < KEY_SPACE; i++){
+                values[i] = "value-" + i;
+            }
+        }
+
+        private static WritePolicy<Integer, String> policy(String name, Path walDirectory) throws Exception {
+            switch(name){
+                case "WriteThrough": return new WriteThroughPolicy<>();
+                case "WriteAround": return new WriteAroundPolicy<>();
+                case "WriteBehind": return new WriteBehindPolicy<>();
+                case "WriteBack": return new WriteBackPolicy<>();
+                case "DurableWriteBehind": return new DurableWriteBehindPolicy<>(walDirectory.toString());
+                default: throw new IllegalArgumentException("Unknown write policy " + name);
+            }
+        }
+
+        @Override
+        public void operation(Blackhole blackhole) throws Exception {
+            int index = keys.nextKey(ThreadLocalRandom.current());
+            policy.write(boxedKeys[index], values[index], storage, db);
+        }
+
+        @Override
+        public void resetCounters(){
+            db.resetCounters();
+        }
+
+        @Override
+        public Map<String, Double> secondaryResults(long operations, double seconds){
+            Map<String, Double> results = new LinkedHashMap<>();
+            results.put("db.writes.per.op", operations == 0 ? Double.NaN : (double) db.getWrites() / operations);
+            results.put("db.roundtrips.per.op", operations == 0 ? Double.NaN : (double) db.getRoundTrips() / operations);
+            return results;
+        }
+
+        @Override
+        public void tearDown() throws Exception {
+            if(policy instanceof WriteBackPolicy){
+                ((WriteBackPolicy<Integer, String>) policy).shutdown(5_000);
+            }
+            if(policy instanceof DurableWriteBehindPolicy){
+                ((DurableWriteBehindPolicy<Integer, String>) policy).shutdown();
+                List<Path> files;
+                try (Stream<Path> walk = Files.walk(walDirectory)) {
+                    files = walk.sorted(Comparator.reverseOrder()).collect(Collectors.toList()); // files before their directory
+                }
+                for(Path file : files){
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.Benchmarks;
+
+import java.util.Random;
+
+// Skewed keys: the key of rank r is drawn with probability ~ 1 / r^exponent (a few very hot keys, a long cold tail),
+// the usual shape of cache traffic. 0.99 is the YCSB default.
+/* Drawing: Gray et al., "Quickly generating billion-record synthetic databases" (the YCSB generator). zeta(n) is summed
+   once in the constructor, every draw is then O(1) with two pow() calls - no CDF binary search, no allocation.
+   The formula needs exponent in (0, 1).
+
+   Ranks are scrambled through a fixed permutation (same as the zipfTrace of the other benchmarks), otherwise the hottest
+   keys would be 0, 1, 2 ... and all land in neighbouring shards / stripes.
+*/
+public class ZipfianKeyGenerator implements KeyGenerator {
+
+    public static final double DEFAULT_EXPONENT = 0.99;
+
+    private final int keySpace;
+    private final double exponent;
+    private final double zetaN;
+    private final double alpha;
+    private final double eta;
+    private final double secondRankThreshold;
+    private final int[] permutation; // rank -> key
+
+    public ZipfianKeyGenerator(int keySpace, double exponent){
+        if(keySpace < 2){
+            throw new IllegalArgumentException("Key space must be at least 2");
+        }
+        if(exponent <= 0 || exponent >= 1){
+            throw new IllegalArgumentException("Exponent must be in (0, 1)");
+        }
+        this.keySpace = keySpace;
+        this.exponent = exponent;
+        this.zetaN = zeta(keySpace, exponent);
+        double zeta2 = zeta(2, exponent);
+        this.alpha = 1.0 / (1.0 - exponent);
+        this.eta = (1 - Math.pow(2.0 / keySpace, 1 - exponent)) / (1 - zeta2 / zetaN);
+        this.secondRankThreshold = 1 + Math.pow(0.5, exponent);
+
+        this.permutation = new int[keySpace];
+        for(int i = 0; i < keySpace; i++){
+            permutation[i] = i;
+        }
+        Random random = new Random(42); // same permutation in every run and every forked JVM
+        for(int i = keySpace - 1; i > 0; i--){
+            int j = random.nextInt(i + 1);
+            int tmp = permutation[i];
+            permutation[i] = permutation[j];
+            permutation[j] = tmp;
+        }
+    }
+
+    @Override
+    public int nextKey(Random random){
+        return permutation[nextRank(random)];
+    }
+
+    // 0 = hottest
+    int nextRank(Random random){
+        double u = random.nextDouble();
+        double uz = u * zetaN;
+        if(uz < 1){
+            return 0;
+        }
+        if(uz < secondRankThreshold){
+            return 1;
+        }
+        int rank = (int) (keySpace * Math.pow(eta * u - eta + 1, alpha));
+        return Math.min(rank, keySpace - 1);
+    }
+
+    @Override
+    public int keySpace(){
+        return keySpace;
+    }
+
+    @Override
+    public String name(){
+        return "zipf";
+    }
+
+    public double getExponent(){
+        return exponent;
+    }
+
+    private static double zeta(int n, double exponent){
+        double sum = 0;
+        for(int i = 1; i <= n; i++){
+            sum += 1.0 / Math.pow(i, exponent);
+        }
+        return sum;
+    }
+}
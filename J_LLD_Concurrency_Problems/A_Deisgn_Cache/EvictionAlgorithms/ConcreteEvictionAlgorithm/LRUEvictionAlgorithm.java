@@ -1,51 +1,59 @@
 package J_LLD_Concurrency_Problems.A_Deisgn_Cache.EvictionAlgorithms.ConcreteEvictionAlgorithm;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 
 import J_LLD_Concurrency_Problems.A_Deisgn_Cache.EvictionAlgorithms.EvictionAlgorithm;
-import J_LLD_Concurrency_Problems.A_Deisgn_Cache.UtilityClasses.DoublyLinkedList;
-import J_LLD_Concurrency_Problems.A_Deisgn_Cache.UtilityClasses.DoublyLinkedListNode;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.UtilityClasses.IndexedLinkedList;
 
 public class LRUEvictionAlgorithm<K> implements EvictionAlgorithm<K> {
 
-    // doubly linked list to track LRU order
-    private final DoublyLinkedList<K> dll;
-
-    // map of key to it'snode in ddl
-    private final Map<K, DoublyLinkedListNode<K>> keyToNodeMap;
+    // LRU order (head = least recently used) + key -> slot index in one array backed structure, no node object per key
+    private final IndexedLinkedList<K> lru;
 
     public LRUEvictionAlgorithm(){
-        this.dll = new DoublyLinkedList<>();
-        this.keyToNodeMap = new HashMap<>();
+        this.lru = new IndexedLinkedList<>();
     }
 
     @Override
     public synchronized void keyAccessed(K key) throws Exception {
-        if(keyToNodeMap.containsKey(key)){
+        int slot = lru.indexOf(key);
+        if(slot != IndexedLinkedList.NONE){
             //move node to the tail (most recently used)
-            DoublyLinkedListNode<K> node = keyToNodeMap.get(key);
-            dll.detatchNode(node);
-            dll.addNodeAtTail(node);
+            lru.moveToTail(slot);
         }else{
-            DoublyLinkedListNode<K> newNode = new DoublyLinkedListNode<>(key);
-            dll.addNodeAtTail(newNode);
-            keyToNodeMap.put(key, newNode);
+            lru.addAtTail(0, key);
         }
     }
 
     @Override
-    public synchronized K evictKey() throws Exception{
-        // remove least recently used node from head
-        DoublyLinkedListNode<K> nodeToEvict = dll.getHead();
-        if(nodeToEvict == null){
-            return null;
+    public synchronized void keyRead(K key) throws Exception {
+        // Only refresh recency of keys we still track, never re-add an evicted key
+        int slot = lru.indexOf(key);
+        if(slot != IndexedLinkedList.NONE){
+            lru.moveToTail(slot);
+        }
+    }
+
+    @Override
+    public synchronized void keyRemoved(K key) throws Exception {
+        int slot = lru.indexOf(key);
+        if(slot != IndexedLinkedList.NONE){
+            lru.remove(slot);
         }
+    }
+
+    @Override
+    public synchronized K evictKey() throws Exception{
+        // remove least recently used key from head
+        return lru.removeHead(0);
+    }
 
-        K evictKey = nodeToEvict.getValue();
-        dll.removeHead();
-        keyToNodeMap.remove(evictKey);
-        return evictKey;
+    // Least recently used first. The lock is held only for the copy, O(n) but no allocation per key.
+    @Override
+    public synchronized List<K> snapshotKeys() throws Exception {
+        List<K> keys = new ArrayList<>(lru.size());
+        lru.appendKeys(0, keys);
+        return keys;
     }
-    
 }
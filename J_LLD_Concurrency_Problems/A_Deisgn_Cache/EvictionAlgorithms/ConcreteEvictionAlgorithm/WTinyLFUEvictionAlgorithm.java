@@ -0,0 +1,159 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.EvictionAlgorithms.ConcreteEvictionAlgorithm;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.EvictionAlgorithms.EvictionAlgorithm;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.UtilityClasses.FrequencySketch;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.UtilityClasses.IndexedLinkedList;
+
+// W-TinyLFU (the policy used by Caffeine): LRU admission window + frequency based admission + segmented LRU main region.
+/* Why not plain LRU?
+    - LRU admits every new key. A scan (batch job reading millions of keys once) pushes the whole hot set out.
+    - LFU resists scans but reacts slowly when popularity changes and needs a counter per key.
+
+   Layout (percent of capacity):
+        [ window LRU 1% ] -> admission filter -> [ probation 20% | protected 80% ]  (main = segmented LRU)
+
+    - New keys always enter the small window, so a brand new hot key is not rejected immediately (recency).
+    - When the window overflows, its oldest key (candidate) has to beat the oldest key of the main region (victim).
+      The one with the lower estimated frequency (FrequencySketch) is evicted. One-hit-wonders from a scan lose this fight.
+    - Keys in probation that are accessed again are promoted to protected. Protected overflow is demoted back to probation.
+
+   The cache calls evictKey() BEFORE it inserts the new key, so the duel is done between the window's oldest key and
+   the main victim at that moment - the new key will take the candidate's place in the window.
+*/
+public class WTinyLFUEvictionAlgorithm<K> implements EvictionAlgorithm<K> {
+
+    // The three regions are three lists of one IndexedLinkedList: the list a slot is linked in is its region
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private final IndexedLinkedList<K> lists;
+    private final FrequencySketch<K> sketch;
+
+    private final int windowMax;
+    private final int protectedMax;
+
+    // capacity must match the capacity of the CacheStorage this policy is used with
+    public WTinyLFUEvictionAlgorithm(int capacity){
+        this(capacity, 0.01);
+    }
+
+    public WTinyLFUEvictionAlgorithm(int capacity, double windowPercent){
+        if(capacity <= 0){
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.windowMax = Math.max(1, (int) (capacity * windowPercent));
+        int mainMax = Math.max(1, capacity - windowMax);
+        this.protectedMax = Math.max(1, (int) (mainMax * 0.8));
+        this.lists = new IndexedLinkedList<>(3, capacity + 1); // sized up front: no regrowth once the cache is full
+        this.sketch = new FrequencySketch<>(capacity);
+    }
+
+    @Override
+    public synchronized void keyAccessed(K key) throws Exception {
+        sketch.increment(key);
+        int slot = lists.indexOf(key);
+        if(slot == IndexedLinkedList.NONE){
+            // New key always starts in the window
+            lists.addAtTail(WINDOW, key);
+            // Cache not full yet (no eviction happened): overflow from the window moves to probation without a duel
+            while(lists.size(WINDOW) > windowMax){
+                lists.moveToTail(PROBATION, lists.head(WINDOW));
+            }
+            return;
+        }
+        onHit(slot);
+    }
+
+    @Override
+    public synchronized void keyRead(K key) throws Exception {
+        // Popularity is counted even if the key isn't tracked, the sketch remembers history of non-resident keys too
+        sketch.increment(key);
+        int slot = lists.indexOf(key);
+        if(slot != IndexedLinkedList.NONE){
+            onHit(slot);
+        }
+    }
+
+    @Override
+    public synchronized K evictKey() throws Exception {
+        int windowSize = lists.size(WINDOW);
+        boolean mainHasKeys = (lists.size(PROBATION) + lists.size(PROTECTED)) > 0;
+
+        if(windowSize >= windowMax && windowSize > 0 && mainHasKeys){
+            // The next insert will overflow the window: its oldest key must earn a place in the main region
+            int candidate = lists.head(WINDOW);
+            int victim = peekMainVictim();
+            if(sketch.frequency(lists.keyAt(candidate)) > sketch.frequency(lists.keyAt(victim))){
+                K victimKey = lists.keyAt(victim);
+                lists.remove(victim);
+                lists.moveToTail(PROBATION, candidate);
+                return victimKey;
+            }
+            // Ties go to the victim: a key seen once in a scan must not push out an established key
+            return lists.removeHead(WINDOW);
+        }
+
+        if(mainHasKeys){
+            int victim = peekMainVictim();
+            K victimKey = lists.keyAt(victim);
+            lists.remove(victim);
+            return victimKey;
+        }
+
+        return lists.removeHead(WINDOW); // null when nothing is tracked
+    }
+
+    @Override
+    public synchronized void keyRemoved(K key) throws Exception {
+        int slot = lists.indexOf(key);
+        if(slot != IndexedLinkedList.NONE){
+            lists.remove(slot);
+        }
+    }
+
+    // Probation, then protected, then window: roughly the order evictKey() would pick them.
+    // Replaying it restores recency only, the frequency sketch of a restored policy starts empty.
+    @Override
+    public synchronized List<K> snapshotKeys() throws Exception {
+        List<K> keys = new ArrayList<>(lists.size());
+        lists.appendKeys(PROBATION, keys);
+        lists.appendKeys(PROTECTED, keys);
+        lists.appendKeys(WINDOW, keys);
+        return keys;
+    }
+
+    // Probation holds the keys seen only once in the main region, so they go first
+    private int peekMainVictim(){
+        if(lists.size(PROBATION) > 0){
+            return lists.head(PROBATION);
+        }
+        return lists.head(PROTECTED);
+    }
+
+    private void onHit(int slot){
+        switch(lists.listOf(slot)){
+            case WINDOW:
+                lists.moveToTail(slot);
+                break;
+            case PROBATION:
+                // Second access in the main region: promote to protected
+                lists.moveToTail(PROTECTED, slot);
+                while(lists.size(PROTECTED) > protectedMax){
+                    // Protected overflow is demoted back to probation
+                    lists.moveToTail(PROBATION, lists.head(PROTECTED));
+                }
+                break;
+            case PROTECTED:
+                lists.moveToTail(slot);
+                break;
+        }
+    }
+
+    public synchronized int size(){
+        return lists.size();
+    }
+}
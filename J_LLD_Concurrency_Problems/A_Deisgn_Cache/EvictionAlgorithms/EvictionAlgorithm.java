@@ -1,5 +1,7 @@
 package J_LLD_Concurrency_Problems.A_Deisgn_Cache.EvictionAlgorithms;
 
+import java.util.List;
+
 // Eviction policies like LRU and LFU is used when max capacity is reached and TTL is for custom expiration.
 
 public interface EvictionAlgorithm<K> {
@@ -9,4 +11,33 @@ public interface EvictionAlgorithm<K> {
 
     // Select and remove one key from the cache
     K evictKey() throws Exception;
+
+    // Notify that an already cached key was read (cache hit).
+    /* Why a separate method from keyAccessed?
+        - keyAccessed is also used when a new key is inserted, so it must never be skipped (an untracked key can never be evicted).
+        - A read only refreshes recency, which is a hint. Implementations may buffer, batch or even drop it.
+        - A read must not start tracking a key that is no longer tracked (e.g. it was evicted while the read was in flight).
+       Default keeps the old behaviour so existing algorithms don't need to change.
+    */
+    default void keyRead(K key) throws Exception {
+        keyAccessed(key);
+    }
+
+    // Evict to make room for a specific new key. The cache passes the key when it knows it (single key insert).
+    // Sharded policies can then evict inside the new key's own shard instead of searching all shards. Default ignores the hint.
+    default K evictKeyFor(K incomingKey) throws Exception {
+        return evictKey();
+    }
+
+    // Notify that a key left the cache for a reason other than evictKey (TTL expiry, explicit removal).
+    // Without this the algorithm keeps tracking a dead key and may later "evict" something that is not cached anymore.
+    default void keyRemoved(K key) throws Exception {
+    }
+
+    // Copy of the tracked keys in eviction order, the next victim first. Used by snapshots (CacheSnapshotter):
+    // calling keyAccessed for each key in this order on an empty algorithm restores the recency order.
+    // Default: the algorithm doesn't expose its order, nothing is snapshotted.
+    default List<K> snapshotKeys() throws Exception {
+        return List.of();
+    }
 }
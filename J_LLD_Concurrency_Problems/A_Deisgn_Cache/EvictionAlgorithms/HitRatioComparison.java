@@ -0,0 +1,153 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.EvictionAlgorithms;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_100K.ShardedLRUEvictionAlgorithm;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_10K.ConcurrentLRUEvictionAlgorithm;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.EvictionAlgorithms.ConcreteEvictionAlgorithm.LRUEvictionAlgorithm;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.EvictionAlgorithms.ConcreteEvictionAlgorithm.WTinyLFUEvictionAlgorithm;
+
+// Replays access traces through every eviction algorithm and prints the hit ratio of each.
+/* Usage:
+    java ...EvictionAlgorithms.HitRatioComparison                 -> built-in synthetic traces
+    java ...EvictionAlgorithms.HitRatioComparison trace.txt 1000  -> recorded trace (one key per line) with a cache of 1000 entries
+
+   The simulation is what Cache.updateData/accessData do, minus storage and executors:
+    - hit  -> keyRead(key)
+    - miss -> evictKey() if full, then keyAccessed(key)
+   For capacity sweeps and traces that don't fit in memory, see TraceSimulator.TraceSimulator.
+*/
+public class HitRatioComparison {
+
+    public static void main(String[] args) throws IOException {
+        Map<String, IntFunction<EvictionAlgorithm<String>>> algorithms = new LinkedHashMap<>();
+        algorithms.put("LRU", capacity -> new LRUEvictionAlgorithm<>());
+        algorithms.put("ConcurrentLRU", capacity -> new ConcurrentLRUEvictionAlgorithm<>());
+        algorithms.put("ShardedLRU(16)", capacity -> new ShardedLRUEvictionAlgorithm<>(16));
+        algorithms.put("W-TinyLFU", WTinyLFUEvictionAlgorithm::new);
+
+        Map<String, List<String>> traces = new LinkedHashMap<>();
+        int capacity = 1_000;
+        if(args.length >= 1){
+            traces.put(args[0], Files.readAllLines(Path.of(args[0])));
+            if(args.length >= 2){
+                capacity = Integer.parseInt(args[1]);
+            }
+        }else{
+            traces.put("zipf(0.9), 100K keys", zipfTrace(100_000, 0.9, 500_000, 42));
+            traces.put("zipf + nightly scans", zipfWithScans(100_000, 0.9, 500_000, 50_000, 42));
+            traces.put("loop over 1.2x capacity", loopTrace((int) (capacity * 1.2), 500_000));
+        }
+
+        System.out.printf("Cache capacity: %d entries%n", capacity);
+        for(Map.Entry<String, List<String>> trace : traces.entrySet()){
+            System.out.println("\nTrace: " + trace.getKey() + " (" + trace.getValue().size() + " accesses)");
+            for(Map.Entry<String, IntFunction<EvictionAlgorithm<String>>> algorithm : algorithms.entrySet()){
+                EvictionAlgorithm<String> policy = algorithm.getValue().apply(capacity);
+                double hitRatio = simulate(policy, trace.getValue(), capacity);
+                System.out.printf("  %-16s hit ratio = %6.2f%%%n", algorithm.getKey(), hitRatio * 100);
+            }
+        }
+    }
+
+    static <K> double simulate(EvictionAlgorithm<K> policy, List<K> trace, int capacity){
+        Set<K> resident = new HashSet<>();
+        long hits = 0;
+        try{
+            for(K key : trace){
+                if(resident.contains(key)){
+                    hits++;
+                    policy.keyRead(key);
+                    continue;
+                }
+                if(resident.size() >= capacity){
+                    K evicted = policy.evictKey();
+                    if(evicted != null){
+                        resident.remove(evicted);
+                    }
+                }
+                resident.add(key);
+                policy.keyAccessed(key);
+            }
+        }catch(Exception e){
+            throw new IllegalStateException(e);
+        }
+        return trace.isEmpty() ? 0 : (double) hits / trace.size();
+    }
+
+    // Popularity follows a power law: a few keys get most of the traffic (typical web workload)
+    static List<String> zipfTrace(int numKeys, double exponent, int length, long seed){
+        double[] cdf = zipfCdf(numKeys, exponent);
+        Random random = new Random(seed);
+        List<String> trace = new ArrayList<>(length);
+        for(int i = 0; i < length; i++){
+            trace.add("k" + sampleZipf(cdf, random));
+        }
+        return trace;
+    }
+
+    // Zipf traffic interrupted by scans over keys that are read exactly once (the batch job case)
+    static List<String> zipfWithScans(int numKeys, double exponent, int length, int scanLength, long seed){
+        double[] cdf = zipfCdf(numKeys, exponent);
+        Random random = new Random(seed);
+        List<String> trace = new ArrayList<>(length);
+        int scanId = 0;
+        while(trace.size() < length){
+            for(int i = 0; i < 100_000 && trace.size() < length; i++){
+                trace.add("k" + sampleZipf(cdf, random));
+            }
+            for(int i = 0; i < scanLength && trace.size() < length; i++){
+                trace.add("scan" + scanId + "-" + i);
+            }
+            scanId++;
+        }
+        return trace;
+    }
+
+    // Cyclic access slightly larger than the cache: worst case for LRU (every access is a miss)
+    static List<String> loopTrace(int loopSize, int length){
+        List<String> trace = new ArrayList<>(length);
+        for(int i = 0; i < length; i++){
+            trace.add("k" + (i % loopSize));
+        }
+        return trace;
+    }
+
+    private static double[] zipfCdf(int numKeys, double exponent){
+        double[] cdf = new double[numKeys];
+        double sum = 0;
+        for(int i = 0; i < numKeys; i++){
+            sum += 1.0 / Math.pow(i + 1, exponent);
+            cdf[i] = sum;
+        }
+        for(int i = 0; i < numKeys; i++){
+            cdf[i] /= sum;
+        }
+        return cdf;
+    }
+
+    private static int sampleZipf(double[] cdf, Random random){
+        double u = random.nextDouble();
+        int lo = 0;
+        int hi = cdf.length - 1;
+        while(lo < hi){
+            int mid = (lo + hi) >>> 1;
+            if(cdf[mid] < u){
+                lo = mid + 1;
+            }else{
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
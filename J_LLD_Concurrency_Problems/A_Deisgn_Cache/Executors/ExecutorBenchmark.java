@@ -0,0 +1,136 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.Executors;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+// Fixed stripes (KeyBasedExecutor) vs per-key mailboxes (OrderedKeyExecutor) under skewed keys and slow tasks.
+/* Workload:
+    - Keys drawn from a Zipf distribution (a few very hot keys, long tail).
+    - Every task simulates a DB write: 100us, and 1% of them a slow one (5ms).
+    - All tasks are submitted up front, then we wait for all of them.
+
+   Reported: total time, task latency (submit -> done) percentiles, and the deepest stripe queue seen.
+   With fixed stripes, unrelated keys hashed next to a hot or slow key wait behind it. With mailboxes they
+   only wait for a free worker; the floor is the hot key's own serial work (per-key order must be kept).
+
+   Usage: java ...Executors.ExecutorBenchmark [threads] [tasks] [zipfExponent]
+*/
+public class ExecutorBenchmark {
+
+    private static final long TASK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long SLOW_TASK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    interface KeyExecutor {
+        CompletableFuture<Long> submit(Object key, Supplier<Long> task);
+        long[] stripeDepths();
+        void shutDown();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int tasks = args.length > 1 ? Integer.parseInt(args[1]) : 50_000;
+        double exponent = args.length > 2 ? Double.parseDouble(args[2]) : 1.0;
+
+        int[] keys = zipfKeys(10_000, exponent, tasks, 42);
+        boolean[] slow = new boolean[tasks];
+        Random random = new Random(7);
+        for(int i = 0; i < tasks; i++){
+            slow[i] = random.nextInt(100) == 0;
+        }
+        System.out.printf("%d threads, %d tasks, zipf(%.2f) over 10K keys, 100us tasks + 1%% 5ms tasks%n%n",
+                threads, tasks, exponent);
+
+        for(int round = 0; round < 2; round++){ // first round warms up the JIT
+            boolean print = round == 1;
+            run("KeyBasedExecutor (fixed stripes)", fixedStripes(threads), keys, slow, print);
+            run("OrderedKeyExecutor (mailboxes)", mailboxes(threads), keys, slow, print);
+        }
+    }
+
+    private static void run(String name, KeyExecutor executor, int[] keys, boolean[] slow, boolean print) throws Exception {
+        long[] latencies = new long[keys.length];
+        List<CompletableFuture<Long>> futures = new ArrayList<>(keys.length);
+        long maxDepth = 0;
+        long start = System.nanoTime();
+        for(int i = 0; i < keys.length; i++){
+            long submitted = System.nanoTime();
+            long work = slow[i] ? SLOW_TASK_NANOS : TASK_NANOS;
+            int index = i;
+            futures.add(executor.submit("key-" + keys[i], () -> {
+                LockSupport.parkNanos(work);
+                latencies[index] = System.nanoTime() - submitted;
+                return work;
+            }));
+            if((i & 1023) == 0){
+                for(long depth : executor.stripeDepths()){
+                    maxDepth = Math.max(maxDepth, depth);
+                }
+            }
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        long elapsed = System.nanoTime() - start;
+        executor.shutDown();
+
+        if(print){
+            Arrays.sort(latencies);
+            System.out.printf("%-34s total %6d ms | latency p50 %6.1f ms  p99 %7.1f ms  p99.9 %7.1f ms | max stripe depth %d%n",
+                    name, TimeUnit.NANOSECONDS.toMillis(elapsed), percentile(latencies, 0.50), percentile(latencies, 0.99),
+                    percentile(latencies, 0.999), maxDepth);
+        }
+    }
+
+    private static KeyExecutor fixedStripes(int threads){
+        KeyBasedExecutor executor = new KeyBasedExecutor(threads);
+        long[] depths = new long[threads]; // KeyBasedExecutor has no metrics: count around the task
+        return new KeyExecutor(){
+            public CompletableFuture<Long> submit(Object key, Supplier<Long> task){
+                int stripe = executor.getExecutorIndexForKey(key);
+                synchronized(depths){ depths[stripe]++; }
+                return executor.submitTask(key, () -> {
+                    try{
+                        return task.get();
+                    }finally{
+                        synchronized(depths){ depths[stripe]--; }
+                    }
+                });
+            }
+            public long[] stripeDepths(){ synchronized(depths){ return depths.clone(); } }
+            public void shutDown(){ executor.shutDown(); }
+        };
+    }
+
+    private static KeyExecutor mailboxes(int threads){
+        OrderedKeyExecutor executor = new OrderedKeyExecutor(threads);
+        return new KeyExecutor(){
+            public CompletableFuture<Long> submit(Object key, Supplier<Long> task){ return executor.submitTask(key, task); }
+            public long[] stripeDepths(){ return executor.getQueueDepthPerStripe(); }
+            public void shutDown(){ executor.shutDown(); }
+        };
+    }
+
+    private static double percentile(long[] sorted, double p){
+        return sorted[(int) Math.min(sorted.length - 1, Math.round(p * (sorted.length - 1)))] / 1_000_000.0;
+    }
+
+    private static int[] zipfKeys(int numKeys, double exponent, int length, long seed){
+        double[] cdf = new double[numKeys];
+        double sum = 0;
+        for(int i = 0; i < numKeys; i++){
+            sum += 1.0 / Math.pow(i + 1, exponent);
+            cdf[i] = sum;
+        }
+        Random random = new Random(seed);
+        int[] keys = new int[length];
+        for(int i = 0; i < length; i++){
+            int index = Arrays.binarySearch(cdf, random.nextDouble() * sum);
+            keys[i] = index >= 0 ? index : -index - 1;
+        }
+        return keys;
+    }
+}
@@ -1,11 +1,16 @@
 package J_LLD_Concurrency_Problems.A_Deisgn_Cache.Executors;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.function.Supplier;
 
-public class KeyBasedExecutor {
+public class KeyBasedExecutor implements PartitionedKeyExecutor {
     
     private final ExecutorService[] executors;
     private final int numExecutors;
@@ -26,6 +31,21 @@ public class KeyBasedExecutor {
     }
     // Key is mapped to exactly one executor and that executor has ONE thread
 
+    // Run a task on a given executor. Used by bulk operations that already grouped their keys with groupKeysByExecutor.
+    public <T> CompletableFuture<T> submitTaskToExecutor(int executorIndex, Supplier<T> task){
+        return CompletableFuture.supplyAsync(task, executors[executorIndex]);
+    }
+
+    // Split a batch of keys by owning executor: a bulk operation then needs one task per executor instead of one per key,
+    // and every key is still handled by its own executor (per-key ordering is kept)
+    public <K> Map<Integer, List<K>> groupKeysByExecutor(Collection<K> keys){
+        Map<Integer, List<K>> groups = new HashMap<>();
+        for(K key : keys){
+            groups.computeIfAbsent(getExecutorIndexForKey(key), idx -> new ArrayList<>()).add(key);
+        }
+        return groups;
+    }
+
     /* Why use completable future here?
     - Might be slow (DB, eviction, locking)
     - Should not block caller threads
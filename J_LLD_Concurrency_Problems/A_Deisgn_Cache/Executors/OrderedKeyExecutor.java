@@ -0,0 +1,204 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.Executors;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+// Per-key ordered executor on a shared pool (alternative to KeyBasedExecutor).
+/* Problem with KeyBasedExecutor:
+    - A key is pinned to one of N single-thread executors. A slow task (DB write) blocks every other key of that
+      stripe, even though they are unrelated (head-of-line blocking).
+    - Skewed traffic: the stripes of the hot keys are at 100% while the other threads idle.
+
+   Here:
+    - Every key that has work gets its own mailbox (FIFO queue). Tasks of one key run one at a time, in submit order.
+    - A mailbox with work is scheduled onto a shared pool (work-stealing ForkJoinPool in FIFO mode by default).
+      Any idle worker picks up any ready mailbox, so a slow key only holds the thread it runs on.
+    - A mailbox runs at most `throughput` tasks, then goes to the back of the pool queue (a hot key can't starve the others).
+    - Empty mailboxes are removed, memory is proportional to the keys with pending work, not to all keys ever seen.
+
+   Ordering: submit() and mailbox retirement both go through ConcurrentHashMap.compute on the key, so a task is
+   either added to a mailbox that will still run, or it creates a new one. Never both, never lost.
+
+   Blocking tasks: ForkJoinPool doesn't add threads for plain blocking calls, so size `parallelism` for the DB
+   latency, or pass another pool (e.g. Executors.newVirtualThreadPerTaskExecutor() on Java 21+).
+
+   Unlike KeyBasedExecutor there is no "executor index" per key, so it is not a drop-in for Cache's bulk
+   operations (groupKeysByExecutor). The stripes below exist for metrics only.
+*/
+public class OrderedKeyExecutor {
+
+    private final ExecutorService pool;
+    private final boolean ownsPool;
+    private final int throughput;
+    private final ConcurrentHashMap<Object, Mailbox> mailboxes = new ConcurrentHashMap<>();
+
+    // Queue depth (submitted, not finished) per hash stripe: same bucketing as KeyBasedExecutor, to compare the two
+    private final AtomicLongArray stripeDepths;
+
+    public OrderedKeyExecutor(int parallelism){
+        this(new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true), true, 64, parallelism);
+    }
+
+    // Run mailboxes on an external pool (not shut down by shutDown())
+    public OrderedKeyExecutor(ExecutorService pool, int throughput, int metricStripes){
+        this(pool, false, throughput, metricStripes);
+    }
+
+    private OrderedKeyExecutor(ExecutorService pool, boolean ownsPool, int throughput, int metricStripes){
+        this.pool = pool;
+        this.ownsPool = ownsPool;
+        this.throughput = throughput;
+        this.stripeDepths = new AtomicLongArray(metricStripes);
+    }
+
+    // Same contract as KeyBasedExecutor.submitTask: tasks of one key run sequentially in submit order
+    public <T> CompletableFuture<T> submitTask(Object key, Supplier<T> task){
+        CompletableFuture<T> future = new CompletableFuture<>();
+        int stripe = getStripeForKey(key);
+        stripeDepths.incrementAndGet(stripe);
+        QueuedTask<T> queued = new QueuedTask<>(task, future, stripe);
+
+        Mailbox[] toSchedule = new Mailbox[1];
+        mailboxes.compute(key, (k, mailbox) -> {
+            if(mailbox == null){
+                mailbox = new Mailbox(k);
+            }
+            mailbox.tasks.add(queued);
+            if(!mailbox.scheduled){ // only changed inside compute, so the key's bin lock guards it
+                mailbox.scheduled = true;
+                toSchedule[0] = mailbox;
+            }
+            return mailbox;
+        });
+        if(toSchedule[0] != null){
+            schedule(toSchedule[0]);
+        }
+        return future;
+    }
+
+    private void schedule(Mailbox mailbox){
+        try{
+            pool.execute(mailbox);
+        }catch(RuntimeException e){
+            // Pool shut down: fail the queued tasks without running them (they were never accepted) instead of leaving
+            // their futures hanging. Removed from the map first, so a later submit gets a new mailbox and its own rejection.
+            RejectedExecutionException rejection = e instanceof RejectedExecutionException
+                    ? (RejectedExecutionException) e : new RejectedExecutionException(e);
+            mailboxes.remove(mailbox.key, mailbox);
+            QueuedTask<?> task;
+            while((task = mailbox.tasks.poll()) != null){
+                task.reject(rejection);
+            }
+        }
+    }
+
+    public int getStripeForKey(Object key){
+        return Math.floorMod(key.hashCode(), stripeDepths.length());
+    }
+
+    // Pending + running tasks per stripe
+    public long[] getQueueDepthPerStripe(){
+        long[] depths = new long[stripeDepths.length()];
+        for(int i = 0; i < depths.length; i++){
+            depths[i] = stripeDepths.get(i);
+        }
+        return depths;
+    }
+
+    // Keys that currently have queued or running work
+    public int getActiveKeyCount(){
+        return mailboxes.size();
+    }
+
+    public boolean shutDown(long timeout, TimeUnit unit) throws InterruptedException {
+        if(!ownsPool){
+            return true;
+        }
+        // Mailboxes re-submit themselves while they have work: wait for them to drain before closing the pool
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while(!mailboxes.isEmpty() && System.nanoTime() < deadline){
+            Thread.sleep(1);
+        }
+        pool.shutdown();
+        return pool.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    public void shutDown(){
+        try{
+            shutDown(30, TimeUnit.SECONDS);
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // A submitted task and its future: run() runs it on the mailbox, reject() fails the future without running it
+    private final class QueuedTask<T> implements Runnable {
+        final Supplier<T> task;
+        final CompletableFuture<T> future;
+        final int stripe;
+
+        QueuedTask(Supplier<T> task, CompletableFuture<T> future, int stripe){
+            this.task = task;
+            this.future = future;
+            this.stripe = stripe;
+        }
+
+        @Override
+        public void run(){
+            try{
+                future.complete(task.get());
+            }catch(Throwable t){
+                future.completeExceptionally(t);
+            }finally{
+                stripeDepths.decrementAndGet(stripe);
+            }
+        }
+
+        void reject(RejectedExecutionException e){
+            stripeDepths.decrementAndGet(stripe);
+            future.completeExceptionally(e);
+        }
+    }
+
+    private final class Mailbox implements Runnable {
+        final Object key;
+        final Queue<QueuedTask<?>> tasks = new ConcurrentLinkedQueue<>();
+        boolean scheduled; // guarded by the map bin of key (only touched inside compute)
+
+        Mailbox(Object key){
+            this.key = key;
+        }
+
+        @Override
+        public void run(){
+            for(int i = 0; i < throughput; i++){
+                QueuedTask<?> task = tasks.poll();
+                if(task == null){
+                    break;
+                }
+                task.run();
+            }
+            // Retire if empty, otherwise yield the thread and go to the back of the pool queue
+            boolean[] more = new boolean[1];
+            mailboxes.compute(key, (k, mailbox) -> {
+                if(tasks.isEmpty()){
+                    scheduled = false;
+                    return null;
+                }
+                more[0] = true;
+                return mailbox;
+            });
+            if(more[0]){
+                schedule(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.Executors;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+// An executor where every key is owned by exactly one single-thread executor (KeyBasedExecutor, GracefulKeyBasedExecutor).
+// What the bulk operations need (MainCache.BulkOperations): split a batch by owner and run one task per owner.
+public interface PartitionedKeyExecutor {
+    <T> CompletableFuture<T> submitTaskToExecutor(int executorIndex, Supplier<T> task);
+    <K> Map<Integer, List<K>> groupKeysByExecutor(Collection<K> keys);
+    int getExecutorIndexForKey(Object key);
+}
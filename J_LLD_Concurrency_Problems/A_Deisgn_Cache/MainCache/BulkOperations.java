@@ -0,0 +1,255 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.MainCache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.EvictionAlgorithms.EvictionAlgorithm;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.Executors.PartitionedKeyExecutor;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces.CacheStorage;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces.DBStorage;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.WritePolicies.WritePolicy;
+
+// getAll / putAll / invalidateAll mechanics shared by Cache and EnhancedCache. Each cache keeps what differs: how hits are
+// served, how victims are picked (under which lock) and removed, and per-key bookkeeping (negative cache, metrics).
+/* Flow of a bulk read once the cache has found its misses (loadMisses):
+    1. All misses are loaded with ONE DB read, run on the executor of the first missed key. Victims for all loaded keys
+       are selected right after, in one pass over the eviction algorithm.
+    2. Loaded values are inserted with one task per owning executor (keys grouped by executor index), so they stay ordered
+       with updateData calls for the same keys. The same task removes the victims owned by that executor.
+
+   Stale inserts: the DB read runs on one executor, an updateData of a missed key on its own executor meanwhile. If that
+   write lands AND its value is evicted before the insert task runs, putIfAbsent would cache the older DB value. So writes
+   bump a per-key write generation (recordWrite) and a miss is only cached if its generation didn't move since before the
+   DB read. Generations are striped (a key shares its counter with other keys of its stripe): bounded memory, and a
+   collision only skips caching one loaded value, it never caches a stale one.
+*/
+public class BulkOperations<K, V> {
+
+    private static final int GENERATION_STRIPES = 1024; // power of two
+
+    private final CacheStorage<K, V> cacheStorage;
+    private final DBStorage<K, V> dbStorage;
+    private final WritePolicy<K, V> writePolicy;
+    private final EvictionAlgorithm<K> evictionAlgorithm;
+    private final PartitionedKeyExecutor executor;
+    private final VictimSelector<K> victimSelector;
+    private final KeyTask<List<K>> victimRemover;
+    private final AtomicLongArray writeGenerations = new AtomicLongArray(GENERATION_STRIPES);
+
+    // Picks keys to evict until their summed weight reaches weightToFree, with the cache's own locking
+    @FunctionalInterface
+    public interface VictimSelector<K>{
+        List<K> select(long weightToFree) throws Exception;
+    }
+
+    // Callback run on the owning executor (victims to remove, a key that was just written ...)
+    @FunctionalInterface
+    public interface KeyTask<T>{
+        void run(T value) throws Exception;
+    }
+
+    // Reads a batch of missed keys, returns the ones that exist (the cache can wrap dbStorage.readAll with bookkeeping)
+    @FunctionalInterface
+    public interface BatchReader<K, V>{
+        Map<K, V> readAll(List<K> keys) throws Exception;
+    }
+
+    // Work of one executor in a bulk operation: the keys it owns and the eviction victims it owns
+    @FunctionalInterface
+    private interface GroupTask<K>{
+        void run(List<K> keys, List<K> victims) throws Exception;
+    }
+
+    public BulkOperations(CacheStorage<K, V> cacheStorage, DBStorage<K, V> dbStorage, WritePolicy<K, V> writePolicy,
+            EvictionAlgorithm<K> evictionAlgorithm, PartitionedKeyExecutor executor,
+            VictimSelector<K> victimSelector, KeyTask<List<K>> victimRemover){
+        this.cacheStorage = cacheStorage;
+        this.dbStorage = dbStorage;
+        this.writePolicy = writePolicy;
+        this.evictionAlgorithm = evictionAlgorithm;
+        this.executor = executor;
+        this.victimSelector = victimSelector;
+        this.victimRemover = victimRemover;
+    }
+
+    // Every write of a key (updateData, putAll) calls this on the key's executor, before it writes
+    public void recordWrite(K key){
+        writeGenerations.incrementAndGet(generationStripe(key));
+    }
+
+    // Step 1 and 2 of the flow above. `result` already holds the hits, the loaded (or newer cached) values are added to it.
+    // Keys that are neither cached nor in the DB are left out.
+    public CompletableFuture<Map<K, V>> loadMisses(List<K> misses, Map<K, V> result, BatchReader<K, V> reader){
+        int loaderIdx = executor.getExecutorIndexForKey(misses.get(0));
+        return executor.submitTaskToExecutor(loaderIdx, () -> {
+            try{
+                // Before the DB read: a write that lands after this point must win over what the read returns
+                Map<K, Long> generations = new HashMap<>();
+                for(K key : misses){
+                    generations.put(key, writeGenerations.get(generationStripe(key)));
+                }
+                Map<K, V> loaded = reader.readAll(misses);
+                long incomingWeight = 0;
+                for(Map.Entry<K, V> entry : loaded.entrySet()){
+                    incomingWeight += cacheStorage.weigh(entry.getKey(), entry.getValue());
+                }
+                return BulkLoad.of(loaded, generations, selectBatchVictims(incomingWeight), cacheStorage);
+            }catch(Exception e){
+                throw new CompletionException(e);
+            }
+        }).thenCompose(load -> {
+            result.putAll(load.loaded);
+            Map<Integer, List<K>> insertGroups = executor.groupKeysByExecutor(load.toCache.keySet());
+            Map<Integer, List<K>> victimGroups = executor.groupKeysByExecutor(load.victims);
+            return runPerExecutor(insertGroups, victimGroups, (groupKeys, victims) -> {
+                victimRemover.run(victims);
+                for(K key : groupKeys){
+                    if(writeGenerations.get(generationStripe(key)) != load.generations.get(key)){
+                        // Written since the DB read: don't cache the loaded value, answer with the written one if it is still cached
+                        V current = cacheStorage.getIfPresent(key);
+                        if(current != null){
+                            result.put(key, current);
+                        }
+                        continue;
+                    }
+                    V current = cacheStorage.putIfAbsent(key, load.toCache.get(key));
+                    if(current != null){
+                        // Cached by a write that ran after the DB read, its value is newer than the loaded one
+                        result.put(key, current);
+                    }else{
+                        evictionAlgorithm.keyAccessed(key);
+                    }
+                }
+            }).thenApply(ignored -> result);
+        });
+    }
+
+    // Bulk write: one task and one writePolicy.writeAll per executor group instead of one per key
+    // (a single DB call for the whole batch would have to bypass the per-key executors and lose the write ordering).
+    // afterWrite runs for every key once it is written, on its executor.
+    public CompletableFuture<Void> putAll(Map<K, V> entries, KeyTask<K> afterWrite){
+        List<K> victims;
+        try{
+            // New keys add their full weight, overwritten keys only the difference to the cached value
+            long incomingWeight = 0;
+            for(Map.Entry<K, V> entry : entries.entrySet()){
+                incomingWeight += cacheStorage.weigh(entry.getKey(), entry.getValue()) - cacheStorage.weightOf(entry.getKey());
+            }
+            victims = selectBatchVictims(incomingWeight);
+        }catch(Exception e){
+            return CompletableFuture.failedFuture(e);
+        }
+        Map<Integer, List<K>> writeGroups = executor.groupKeysByExecutor(entries.keySet());
+        Map<Integer, List<K>> victimGroups = executor.groupKeysByExecutor(victims);
+        return runPerExecutor(writeGroups, victimGroups, (groupKeys, groupVictims) -> {
+            victimRemover.run(groupVictims);
+            Map<K, V> batch = new HashMap<>();
+            for(K key : groupKeys){
+                recordWrite(key);
+                batch.put(key, entries.get(key));
+            }
+            writePolicy.writeAll(batch, cacheStorage, dbStorage);
+            for(K key : groupKeys){
+                evictionAlgorithm.keyAccessed(key);
+                afterWrite.run(key);
+            }
+        });
+    }
+
+    // Drop keys from the cache only (the DB is not touched). Keys that are not cached are ignored.
+    public CompletableFuture<Void> invalidateAll(Collection<K> keys){
+        return forEachGroup(keys, groupKeys -> {
+            for(K key : groupKeys){
+                if(cacheStorage.containsKey(key)){
+                    cacheStorage.remove(key);
+                    // Tell the eviction algorithm, otherwise it keeps tracking (and later "evicts") a key that is gone
+                    evictionAlgorithm.keyRemoved(key);
+                }
+            }
+        });
+    }
+
+    // One task per executor owning some of the (deduplicated) keys, each task gets its executor's keys
+    public CompletableFuture<Void> forEachGroup(Collection<K> keys, KeyTask<List<K>> task){
+        Map<Integer, List<K>> groups = executor.groupKeysByExecutor(new LinkedHashSet<>(keys));
+        return runPerExecutor(groups, Map.of(), (groupKeys, ignored) -> task.run(groupKeys));
+    }
+
+    // Victims for `incomingWeight` more weight of a batch, selected in one pass for the whole batch
+    private List<K> selectBatchVictims(long incomingWeight) throws Exception{
+        long overflow = cacheStorage.weight() + incomingWeight - cacheStorage.maxWeight();
+        return overflow <= 0 ? List.of() : victimSelector.select(overflow);
+    }
+
+    private static int generationStripe(Object key){
+        int h = key.hashCode() * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (GENERATION_STRIPES - 1);
+    }
+
+    /* One task per executor that owns batch keys or victims.
+        - Each executor removes its own victims, so no task ever waits on another executor.
+          (Evicting inside each group and joining removals on other executors deadlocks: every group waits on the others.)
+        - While the tasks run the cache can be over capacity by a few entries, that's fine for a cache.
+    */
+    private CompletableFuture<Void> runPerExecutor(Map<Integer, List<K>> keyGroups, Map<Integer, List<K>> victimGroups, GroupTask<K> task){
+        Set<Integer> executorIndexes = new HashSet<>(keyGroups.keySet());
+        executorIndexes.addAll(victimGroups.keySet());
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        for(int idx : executorIndexes){
+            List<K> keys = keyGroups.getOrDefault(idx, List.of());
+            List<K> victims = victimGroups.getOrDefault(idx, List.of());
+            tasks.add(executor.submitTaskToExecutor(idx, () -> {
+                try{
+                    task.run(keys, victims);
+                    return null;
+                }catch(Exception e){
+                    throw new CompletionException(e);
+                }
+            }));
+        }
+        return CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0]));
+    }
+
+    // Result of the DB read of a getAll, together with the keys evicted to make room for it
+    private static final class BulkLoad<K, V>{
+        final Map<K, V> loaded;         // everything returned to the caller
+        final Map<K, V> toCache;        // the part that fits in the cache
+        final Map<K, Long> generations; // write generation of every missed key before the DB read
+        final List<K> victims;
+
+        private BulkLoad(Map<K, V> loaded, Map<K, V> toCache, Map<K, Long> generations, List<K> victims){
+            this.loaded = loaded;
+            this.toCache = toCache;
+            this.generations = generations;
+            this.victims = victims;
+        }
+
+        // A batch bigger than what eviction can free (e.g. more weight than the capacity) is returned in full but only partly cached
+        static <K, V> BulkLoad<K, V> of(Map<K, V> loaded, Map<K, Long> generations, List<K> victims, CacheStorage<K, V> cacheStorage) throws Exception{
+            long room = cacheStorage.maxWeight() - cacheStorage.weight();
+            for(K victim : victims){
+                room += cacheStorage.weightOf(victim);
+            }
+            Map<K, V> toCache = new HashMap<>();
+            long used = 0;
+            for(Map.Entry<K, V> entry : loaded.entrySet()){
+                long weight = cacheStorage.weigh(entry.getKey(), entry.getValue());
+                if(used + weight > room){
+                    continue; // a lighter entry further on may still fit
+                }
+                toCache.put(entry.getKey(), entry.getValue());
+                used += weight;
+            }
+            return new BulkLoad<>(loaded, toCache.size() == loaded.size() ? loaded : toCache, generations, victims);
+        }
+    }
+}
@@ -1,12 +1,23 @@
 package J_LLD_Concurrency_Problems.A_Deisgn_Cache.MainCache;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
 import J_LLD_Concurrency_Problems.A_Deisgn_Cache.EvictionAlgorithms.EvictionAlgorithm;
 import J_LLD_Concurrency_Problems.A_Deisgn_Cache.Executors.KeyBasedExecutor;
 import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces.CacheStorage;
 import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces.DBStorage;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.UtilityClasses.BloomFilter;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.UtilityClasses.NegativeCache;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.UtilityClasses.StripedReadBuffer;
 import J_LLD_Concurrency_Problems.A_Deisgn_Cache.WritePolicies.WritePolicy;
 
 public class Cache<K, V> {
@@ -16,6 +27,19 @@ public class Cache<K, V> {
     private final WritePolicy<K, V> writePolicy;
     private final EvictionAlgorithm<K> evictionAlgorithm;
     private final KeyBasedExecutor keyBasedExecutor;
+    private final BulkOperations<K, V> bulk; // getAll / putAll / invalidateAll
+
+    // Hits are served on the caller thread, so their recency updates are buffered here and replayed into the eviction algorithm in batches
+    // (one stripe per core, a drain is attempted once the reader's stripe holds ACCESS_DRAIN_THRESHOLD events).
+    // This is the only read buffer on the path: don't wrap the eviction algorithm in a ReadBufferedEvictionAlgorithm.
+    private static final int ACCESS_DRAIN_THRESHOLD = 64;
+    private final StripedReadBuffer<K> accessBuffer = new StripedReadBuffer<>(Runtime.getRuntime().availableProcessors(), ACCESS_DRAIN_THRESHOLD);
+    private final ReentrantLock drainLock = new ReentrantLock();
+
+    // Optional shortcuts for keys that don't exist in the DB (see enableNegativeCaching / enableBloomFilter)
+    private volatile NegativeCache<K> negativeCache;
+    private volatile BloomFilter<K> bloomFilter;
+    private final LongAdder shortCircuitedMisses = new LongAdder();
 
     public Cache(CacheStorage<K, V> cacheStorage, DBStorage<K, V> dbStorage, WritePolicy<K, V> writePolicy, EvictionAlgorithm<K> evictionAlgorithm, int numExecutors) {
         this.cacheStorage = cacheStorage;
@@ -23,10 +47,57 @@ public class Cache<K, V> {
         this.writePolicy = writePolicy;
         this.evictionAlgorithm = evictionAlgorithm;
         this.keyBasedExecutor = new KeyBasedExecutor(numExecutors);
+        this.bulk = new BulkOperations<>(cacheStorage, dbStorage, writePolicy, evictionAlgorithm, keyBasedExecutor,
+                weightToFree -> selectEvictionVictims(weightToFree, null), cacheStorage::removeAll);
+    }
+
+    // Remember keys the DB doesn't have (only getAll reads through to the DB here), so they skip the executor and the DB
+    // for a while. Call before the cache takes traffic.
+    public void enableNegativeCaching(NegativeCache<K> negativeCache){
+        this.negativeCache = negativeCache;
+    }
+
+    // Filter built from the DB key set (e.g. BloomFilter.of(dbStorage, ...)): keys it has never seen are rejected
+    // on the caller thread. Every write through this cache adds its key. Call before the cache takes traffic.
+    public void enableBloomFilter(BloomFilter<K> bloomFilter){
+        this.bloomFilter = bloomFilter;
     }
 
     //Read data from the cache and update the eviction algorithm as key is accessed
+    // A miss completes the future exceptionally ("Key not found in cache")
     public CompletableFuture<V> accessData(K key){
+        return read(key, true);
+    }
+
+    // Same as accessData, but a miss completes with null instead of an exception (no stack trace filled per miss)
+    public CompletableFuture<V> accessDataIfPresent(K key){
+        return read(key, false);
+    }
+
+    private CompletableFuture<V> read(K key, boolean failOnMiss){
+        // Fast path: a hit is answered on the caller thread without hopping onto the key's executor.
+        /* Why is this safe?
+            - CacheStorage (ConcurrentHashMap) is already thread-safe for reads, the executor only exists to order writes for a key.
+            - Writes for a key still go through the same single thread executor, so their order is unchanged.
+            - A read racing with a queued write sees either the old or the new value, never a torn one (same as a read submitted just before the write).
+         */
+        try{
+            V value = cacheStorage.getIfPresent(key); // one lookup, null on a miss instead of an exception
+            if(value != null){
+                recordAccess(key);
+                return CompletableFuture.completedFuture(value);
+            }
+        }catch(Exception e){
+            // Storage failure - let the slow path below report it
+        }
+
+        // Not in the DB means not cached either: writes clear both marks before they are queued, so no pending write is skipped
+        if(isKnownAbsent(key)){
+            shortCircuitedMisses.increment();
+            return failOnMiss ? CompletableFuture.failedFuture(new Exception("Key not found in cache")) : CompletableFuture.completedFuture(null);
+        }
+
+        // Slow path: miss (or racing eviction) goes through the per-key executor as before
         return keyBasedExecutor.submitTask(key, () -> { // key, supplier. key is mapped to exactly one executor. That executor has ONE thread
             // in submitTask the task is queued instead of sequentially executing it.
             /* Is we do this for same executor, same thread:
@@ -39,11 +110,16 @@ public class Cache<K, V> {
             - This ensures sequential execution for a key, not for across the key (that's why we use multiple executors)
              */
             try{
-                if(!cacheStorage.containsKey(key)){
+                // One lookup: a TTL expiry between containsKey and get would turn a hit into a failure
+                V value = cacheStorage.getIfPresent(key);
+                if(value == null){
+                    if(!failOnMiss){
+                        return null;
+                    }
                     throw new Exception("Key not found in cache");
                 }
                 evictionAlgorithm.keyAccessed(key);
-                return cacheStorage.get(key);
+                return value;
             }catch(Exception e){
                 // e.printStackTrace(); // Gives error because supplier must return V
                 throw new CompletionException(e); 
@@ -51,41 +127,75 @@ public class Cache<K, V> {
         });
     }
 
+    private boolean isKnownAbsent(K key){
+        BloomFilter<K> filter = bloomFilter;
+        if(filter != null && !filter.mightContain(key)){
+            return true;
+        }
+        NegativeCache<K> negatives = negativeCache;
+        return negatives != null && negatives.isKnownAbsent(key);
+    }
+
+    // A write makes the key exist: before it is queued (so reads submitted after it aren't short-circuited) and again once written
+    private void markPresent(K key){
+        BloomFilter<K> filter = bloomFilter;
+        if(filter != null){
+            filter.put(key);
+        }
+        NegativeCache<K> negatives = negativeCache;
+        if(negatives != null){
+            negatives.invalidate(key);
+        }
+    }
+
+    // Buffer the access instead of calling the (synchronized) eviction algorithm on every hit
+    private void recordAccess(K key){
+        // Recency is only a hint for eviction, so when the buffer is full we drop the event instead of blocking the reader (lossy buffer)
+        if(accessBuffer.record(key)){
+            tryDrainAccesses();
+        }
+    }
+
+    // Readers never wait for the drain: whoever gets the lock replays the batch, everyone else just returns
+    private void tryDrainAccesses(){
+        if(drainLock.tryLock()){
+            try{
+                drainAccesses();
+            }finally{
+                drainLock.unlock();
+            }
+        }
+    }
+
+    // Must be called while holding drainLock
+    private void drainAccesses(){
+        accessBuffer.drainTo(key -> {
+            try{
+                // Skip keys evicted after they were read, otherwise the LRU would start tracking a key that is no longer cached
+                if(cacheStorage.containsKey(key)){
+                    evictionAlgorithm.keyRead(key);
+                }
+            }catch(Exception e){
+                // Losing one recency update is acceptable
+            }
+        });
+    }
+
     // Write data to both cache and DB using write through policy. If the key is new and cache is full, evict a key using the eviction algorithm.
+    // With a weighted storage "full" means the total weight: as many keys are evicted as it takes to fit the new value.
     public CompletableFuture<Void> updateData(K key, V value){
+        markPresent(key);
         return keyBasedExecutor.submitTask(key, () -> {
             try{
-                if(cacheStorage.containsKey(key)){
-                    // update existing key using concurrent writes
-                    writePolicy.write(key, value, cacheStorage, dbStorage);
-                    evictionAlgorithm.keyAccessed(key);
-                }else{
-                    // new key: check capacity and possibly evict
-                    if(cacheStorage.size() >= cacheStorage.getCapacity()){
-                        K evictedKey = evictionAlgorithm.evictKey();
-                        if(evictedKey != null){
-                            // remove evicted key executor to maintain order
-                            int currIdx = keyBasedExecutor.getExecutorIndexForKey(key);
-                            int evictedIdx = keyBasedExecutor.getExecutorIndexForKey(evictedKey);
-                            if(currIdx == evictedIdx){
-                                cacheStorage.remove(evictedKey);
-                            }else{
-                                CompletableFuture<Void> removalFuture = keyBasedExecutor.submitTask(evictedKey, () -> {
-                                    try{
-                                        cacheStorage.remove(evictedKey);
-                                        return null;
-                                    }catch(Exception e){
-                                        throw new CompletionException(e);
-                                    }
-                                });
-                                removalFuture.join();
-                            }
-                        }
-                    }
-                    // now write the new key
-                    writePolicy.write(key, value, cacheStorage, dbStorage);
-                    evictionAlgorithm.keyAccessed(key);
-                }
+                int currIdx = keyBasedExecutor.getExecutorIndexForKey(key);
+                // New key: its full weight (one entry for unweighted storages). Existing key: only what the new value weighs
+                // more than the cached one. weightOf is 0 for an absent key, so one lookup covers both (no containsKey first).
+                makeRoom(cacheStorage.weigh(key, value) - cacheStorage.weightOf(key), currIdx, key);
+                bulk.recordWrite(key); // a getAll that read this key from the DB before now must not cache its older value
+                writePolicy.write(key, value, cacheStorage, dbStorage);
+                evictionAlgorithm.keyAccessed(key);
+                dropIfTooHeavy(key);
+                markPresent(key);
                 return null;
             } catch(Exception e){
                 throw new CompletionException(e); 
@@ -93,7 +203,140 @@ public class Cache<K, V> {
         });
     }
 
+    // Writes always drain the buffered reads first so the eviction decision sees up-to-date recency
+    // incomingKey (may be null) is the key being inserted, passed to the eviction algorithm as a hint
+    // Victims are taken until their summed weight reaches weightToFree (one victim per unit for unweighted storages)
+    private List<K> selectEvictionVictims(long weightToFree, K incomingKey) throws Exception{
+        List<K> victims = new ArrayList<>();
+        long freed = 0;
+        drainLock.lock();
+        try{
+            drainAccesses();
+            while(freed < weightToFree){
+                K evictedKey = incomingKey != null ? evictionAlgorithm.evictKeyFor(incomingKey) : evictionAlgorithm.evictKey();
+                if(evictedKey == null){
+                    break;
+                }
+                // A buffered read can replay a key that was already evicted, skip such keys instead of "evicting" nothing
+                if(cacheStorage.containsKey(evictedKey)){
+                    victims.add(evictedKey);
+                    freed += cacheStorage.weightOf(evictedKey);
+                }
+            }
+            return victims;
+        }finally{
+            // Don't hold drainLock while waiting on another executor: that executor may itself be waiting for drainLock
+            drainLock.unlock();
+        }
+    }
+
+    // Make space for `incomingWeight` more weight (the number of new keys for unweighted storages). Must be called from the executor with index currIdx.
+    private void makeRoom(long incomingWeight, int currIdx, K incomingKey) throws Exception{
+        // More than the whole cache: don't flush everything for an entry dropIfTooHeavy removes right after the write anyway
+        if(incomingWeight <= 0 || incomingWeight > cacheStorage.maxWeight()){
+            return;
+        }
+        long overflow = cacheStorage.weight() + incomingWeight - cacheStorage.maxWeight();
+        if(overflow <= 0){
+            return;
+        }
+        List<K> victims = selectEvictionVictims(overflow, incomingKey);
+        // remove evicted keys on their own executor to maintain order
+        for(Map.Entry<Integer, List<K>> group : keyBasedExecutor.groupKeysByExecutor(victims).entrySet()){
+            List<K> groupVictims = group.getValue();
+            if(group.getKey() == currIdx){
+                cacheStorage.removeAll(groupVictims);
+            }else{
+                // Queued, not joined: two writers evicting each other's keys would otherwise wait on each other forever.
+                // The victims are already out of the eviction algorithm, the cache is just over capacity until this runs.
+                keyBasedExecutor.submitTaskToExecutor(group.getKey(), () -> {
+                    try{
+                        // Some keys may have been removed by the time this runs, removeAll ignores them
+                        cacheStorage.removeAll(groupVictims);
+                        return null;
+                    }catch(Exception e){
+                        throw new CompletionException(e);
+                    }
+                });
+            }
+        }
+    }
+
+    // An entry heavier than the whole cache would evict everything and still not fit: it is written (the DB has it) but not kept.
+    // Must be called from the key's executor.
+    private void dropIfTooHeavy(K key) throws Exception{
+        if(cacheStorage.weightOf(key) > cacheStorage.maxWeight()){
+            cacheStorage.remove(key);
+            evictionAlgorithm.keyRemoved(key);
+        }
+    }
+
+    // Bulk read: a page that needs 200 keys makes one call instead of 200 futures and up to 200 DB round trips
+    // Hits are served on the caller thread, same fast path as accessData. Misses are read through from the DB in one batch
+    // (BulkOperations.loadMisses). Keys that are neither cached nor in the DB are left out of the result.
+    public CompletableFuture<Map<K, V>> getAll(Collection<K> keys){
+        Map<K, V> result = new ConcurrentHashMap<>(); // filled from several executors
+        List<K> misses = new ArrayList<>();
+        for(K key : new LinkedHashSet<>(keys)){
+            try{
+                V value = cacheStorage.getIfPresent(key);
+                if(value != null){
+                    result.put(key, value);
+                    recordAccess(key);
+                    continue;
+                }
+            }catch(Exception e){
+                // Storage failure - load it like any other miss
+            }
+            if(isKnownAbsent(key)){
+                shortCircuitedMisses.increment();
+                continue;
+            }
+            misses.add(key);
+        }
+        if(misses.isEmpty()){
+            return CompletableFuture.completedFuture(result);
+        }
+
+        return bulk.loadMisses(misses, result, this::readMisses);
+    }
+
+    // DB read of a getAll's misses: keys the DB doesn't have are remembered in the negative cache.
+    // A failing readAll throws before anything is marked, the getAll future fails instead.
+    private Map<K, V> readMisses(List<K> misses) throws Exception{
+        NegativeCache<K> negatives = negativeCache;
+        long generation = negatives != null ? negatives.generation() : 0;
+        Map<K, V> loaded = dbStorage.readAll(misses);
+        if(negatives != null && loaded.size() < misses.size()){
+            for(K key : misses){
+                if(!loaded.containsKey(key)){
+                    negatives.markAbsent(key, generation);
+                }
+            }
+        }
+        return loaded;
+    }
+
+    // Bulk write: one task and one writePolicy.writeAll per executor group instead of one per key (see BulkOperations.putAll)
+    public CompletableFuture<Void> putAll(Map<K, V> entries){
+        for(K key : entries.keySet()){
+            markPresent(key);
+        }
+        return bulk.putAll(entries, this::markPresent);
+    }
+
+    // Drop keys from the cache only (the DB is not touched). Keys that are not cached are ignored.
+    public CompletableFuture<Void> invalidateAll(Collection<K> keys){
+        return bulk.invalidateAll(keys);
+    }
+
+    // Reads answered "absent" by the Bloom filter or the negative cache, without the executor or the DB
+    public long getShortCircuitedMisses(){
+        return shortCircuitedMisses.sum();
+    }
+
     public void shutDown(){
+        tryDrainAccesses();
         keyBasedExecutor.shutDown();
     }
 }
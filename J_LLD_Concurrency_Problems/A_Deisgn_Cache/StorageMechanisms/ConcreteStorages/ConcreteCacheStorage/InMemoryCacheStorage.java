@@ -1,18 +1,32 @@
 package J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.ConcreteStorages.ConcreteCacheStorage;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces.CacheStorage;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces.Weigher;
 
 public class InMemoryCacheStorage<K, V> implements CacheStorage<K, V> {
 
     private final int capacity;
-    private final Map<K, V> cache;
+    private final ConcurrentHashMap<K, V> cache;
+
+    // Weighted mode only (weigher != null): the capacity is a total weight instead of an entry count
+    private final Weigher<K, V> weigher;
+    private final long maxWeight;
+    // Striped counter: every write adds its delta to a cell of its own, no global lock and no single contended CAS
+    private final LongAdder totalWeight = new LongAdder();
 
     public InMemoryCacheStorage(int capacity){
         this.capacity = capacity;
         this.cache = new ConcurrentHashMap<>();
+        this.weigher = null;
+        this.maxWeight = capacity;
     }
     /* Why constructor based initialization here and not in DBStorage?
         - The cache has a bounded capacity (e.g., 100 entries). This is fundamental to caching - you need to know the limit upfront to implement eviction policies (LRU, LFU, etc.)
@@ -21,25 +35,45 @@ public class InMemoryCacheStorage<K, V> implements CacheStorage<K, V> {
     
     */
 
+    // Bounded by the summed weight of the entries (e.g. bytes), any number of entries as long as they fit
+    public InMemoryCacheStorage(long maxWeight, Weigher<K, V> weigher){
+        this.capacity = Integer.MAX_VALUE;
+        this.cache = new ConcurrentHashMap<>();
+        this.weigher = weigher;
+        this.maxWeight = maxWeight;
+    }
+
     @Override
     public void put(K key, V value) throws Exception {
-        cache.put(key, value);
+        V old = cache.put(key, value);
+        if(weigher != null){
+            // put returns exactly the value it replaced, so concurrent writes of the same key can't count an entry twice
+            totalWeight.add(weigher.weigh(key, value) - (old == null ? 0 : weigher.weigh(key, old)));
+        }
     }
 
     @Override
     public V get(K key) throws Exception {
-        if(!cache.containsKey(key)){
+        V value = cache.get(key); // one lookup: a remove between containsKey and get would return null instead of throwing
+        if(value == null){
             throw new Exception("Key not found in cache");
         }
+        return value;
+    }
+
+    // One map lookup, null on a miss
+    @Override
+    public V getIfPresent(K key) throws Exception {
         return cache.get(key);
     }
 
     @Override
     public void remove(K key) throws Exception {
-        if(!cache.containsKey(key)){
+        V old = cache.remove(key);
+        if(old == null){
             throw new Exception("Key not found in cache");
         }
-        cache.remove(key);
+        released(key, old);
     }
 
     @Override
@@ -56,4 +90,115 @@ public class InMemoryCacheStorage<K, V> implements CacheStorage<K, V> {
     public int getCapacity() {
         return capacity;
     }
-}
\ No newline at end of file
+
+    @Override
+    public long weigh(K key, V value) {
+        return weigher == null ? 1 : weigher.weigh(key, value);
+    }
+
+    @Override
+    public long weightOf(K key) throws Exception {
+        V value = cache.get(key);
+        return value == null ? 0 : weigh(key, value);
+    }
+
+    @Override
+    public long weight() throws Exception {
+        return weigher == null ? cache.size() : totalWeight.sum();
+    }
+
+    @Override
+    public long maxWeight() {
+        return maxWeight;
+    }
+
+    // The atomic operations are ConcurrentHashMap's own. Weight deltas are computed from the exact value each call replaced
+    // (inside the map's lock for the function variants), so racing writers of a key can't count an entry twice.
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) throws Exception {
+        if(weigher == null){
+            return cache.computeIfAbsent(key, mappingFunction);
+        }
+        return cache.computeIfAbsent(key, k -> {
+            V value = mappingFunction.apply(k);
+            if(value != null){
+                totalWeight.add(weigher.weigh(k, value));
+            }
+            return value;
+        });
+    }
+
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) throws Exception {
+        if(weigher == null){
+            return cache.compute(key, remappingFunction);
+        }
+        return cache.compute(key, (k, old) -> {
+            V value = remappingFunction.apply(k, old);
+            totalWeight.add((value == null ? 0 : weigher.weigh(k, value)) - (old == null ? 0 : weigher.weigh(k, old)));
+            return value;
+        });
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) throws Exception {
+        V current = cache.putIfAbsent(key, value);
+        if(current == null && weigher != null){
+            totalWeight.add(weigher.weigh(key, value));
+        }
+        return current;
+    }
+
+    @Override
+    public boolean replace(K key, V expected, V newValue) throws Exception {
+        if(!cache.replace(key, expected, newValue)){
+            return false;
+        }
+        if(weigher != null){
+            totalWeight.add(weigher.weigh(key, newValue) - weigher.weigh(key, expected));
+        }
+        return true;
+    }
+
+    private void released(K key, V old){
+        if(weigher != null){
+            totalWeight.add(-weigher.weigh(key, old));
+        }
+    }
+
+    // No exception per missing key, ConcurrentHashMap.get returns null instead
+    @Override
+    public Map<K, V> getAll(Collection<K> keys) throws Exception {
+        Map<K, V> result = new HashMap<>();
+        for(K key : keys){
+            V value = cache.get(key);
+            if(value != null){
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void putAll(Map<K, V> entries) throws Exception {
+        if(weigher == null){
+            cache.putAll(entries);
+            return;
+        }
+        // One put per entry: the weight delta needs the value each put replaced
+        for(Map.Entry<K, V> entry : entries.entrySet()){
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public void removeAll(Collection<K> keys) throws Exception {
+        for(K key : keys){
+            V old = cache.remove(key);
+            if(old != null){
+                released(key, old);
+            }
+        }
+    }
+}
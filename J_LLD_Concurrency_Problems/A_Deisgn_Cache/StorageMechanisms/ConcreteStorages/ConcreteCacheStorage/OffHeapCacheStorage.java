@@ -0,0 +1,420 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.ConcreteStorages.ConcreteCacheStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces.CacheStorage;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces.Codec;
+
+// CacheStorage that keeps values outside the Java heap. Drop-in replacement for InMemoryCacheStorage in Cache / EnhancedCache.
+/* Why off-heap?
+    - InMemoryCacheStorage keeps every value as a heap object. A multi-GB cache is a multi-GB live set the GC has to trace,
+      so old-gen pauses grow with the cache size.
+    - Here values are serialized with a Codec into slab chunks of direct ByteBuffers (SlabAllocator). The GC only sees
+      the pages, not the millions of values inside them.
+    - The on-heap part is a compact index: per segment, an open addressing table made of plain arrays
+      (keys, hashes, chunk addresses, value lengths). No Map.Entry / node object per entry.
+    - remove() and overwrites give the chunk back to its slab class, so evicted space is reused right away.
+
+   Trade-off: every get() copies and decodes the value (CPU) in exchange for a heap that stays small (GC).
+   Keys stay on-heap - they are usually small and needed for equals().
+
+   Full = weight, so the caches evict (makeRoom) before the slabs run out instead of put() failing:
+    - An entry weighs the page bytes its chunk takes (SlabAllocator.pageBytesFor), at least maxMemoryBytes / capacity,
+      so neither the memory budget nor the entry capacity can be exceeded.
+    - maxWeight() is the memory the slabs can fill (SlabAllocator.getUsableBytes: a partly filled page per slab class
+      is kept back).
+    - Last resort, when a put still finds no chunk (concurrent writers on different executors all made room for
+      themselves only, or chunks of other sizes hold the memory): the page with the fewest entries is vacated, its
+      entries are dropped and reported to the EvictionListeners, and the page moves to the slab class that needs it.
+      This scans the whole index, so size maxMemoryBytes to hold `capacity` values and let the cache evict.
+   Only a value larger than a slab page (SlabAllocator.getMaxValueSize) makes put() fail.
+*/
+public class OffHeapCacheStorage<K, V> implements CacheStorage<K, V> {
+
+    private final int capacity;
+    private final Codec<V> valueCodec;
+    private final SlabAllocator allocator;
+    private final long minEntryWeight;
+    private final Segment<K>[] segments;
+    private final int segmentMask;
+    private final List<EvictionListener<K>> evictionListeners = new CopyOnWriteArrayList<>();
+
+    // Callback for entries the storage drops itself to free a slab page (see put), e.g. evictionAlgorithm::keyRemoved
+    @FunctionalInterface
+    public interface EvictionListener<K> {
+        void onEvicted(K key) throws Exception;
+    }
+
+    public OffHeapCacheStorage(int capacity, long maxMemoryBytes, Codec<V> valueCodec){
+        this(capacity, maxMemoryBytes, valueCodec, 16);
+    }
+
+    public OffHeapCacheStorage(int capacity, long maxMemoryBytes, Codec<V> valueCodec, int numSegments){
+        this.capacity = capacity;
+        this.valueCodec = valueCodec;
+        this.allocator = new SlabAllocator(maxMemoryBytes);
+        this.minEntryWeight = Math.max(1, allocator.getMaxBytes() / Math.max(1, capacity));
+        int segmentCount = numSegments <= 1 ? 1 : Integer.highestOneBit(numSegments - 1) << 1;
+        this.segments = newSegments(segmentCount);
+        int initialSlots = Math.max(16, capacity / segmentCount * 2); // sized so the table rarely needs to grow
+        for(int i = 0; i < segmentCount; i++){
+            segments[i] = new Segment<>(initialSlots);
+        }
+        this.segmentMask = segmentCount - 1;
+    }
+
+    // Generic array creation: every element is a Segment<K> created by the constructor, the array never escapes
+    @SuppressWarnings("unchecked")
+    private static <K> Segment<K>[] newSegments(int count){
+        return (Segment<K>[]) new Segment<?>[count];
+    }
+
+    // Register before the cache takes traffic, e.g. addEvictionListener(evictionAlgorithm::keyRemoved)
+    public void addEvictionListener(EvictionListener<K> listener){
+        evictionListeners.add(listener);
+    }
+
+    @Override
+    public void put(K key, V value) throws Exception {
+        // Serialize and copy outside the segment lock: only the index update is serialized per segment
+        byte[] bytes = valueCodec.encode(value);
+        if(bytes.length > allocator.getMaxValueSize()){
+            throw new Exception("Value too large for off-heap storage: " + bytes.length + " bytes");
+        }
+        long address = allocate(bytes.length);
+        allocator.write(address, bytes);
+        long weight = entryWeight(bytes.length);
+
+        int hash = hash(key);
+        long oldAddress;
+        int oldLength;
+        Segment<K> segment = segmentFor(hash);
+        segment.lock.writeLock().lock();
+        try{
+            int slot = segment.findSlot(key, hash);
+            if(segment.keys[slot] != null){
+                oldAddress = segment.addresses[slot];
+                oldLength = segment.lengths[slot];
+                segment.weight -= entryWeight(oldLength);
+            }else{
+                oldAddress = -1;
+                oldLength = 0;
+            }
+            segment.set(slot, key, hash, address, bytes.length);
+            segment.weight += weight;
+        }finally{
+            segment.lock.writeLock().unlock();
+        }
+        // Readers copy under the read lock, so once the new address is published nobody can still be reading the old chunk
+        if(oldAddress >= 0){
+            allocator.free(oldAddress, oldLength);
+        }
+    }
+
+    @Override
+    public V get(K key) throws Exception {
+        V value = getIfPresent(key);
+        if(value == null){
+            throw new Exception("Key not found in cache");
+        }
+        return value;
+    }
+
+    @Override
+    public V getIfPresent(K key) throws Exception {
+        int hash = hash(key);
+        Segment<K> segment = segmentFor(hash);
+        byte[] bytes;
+        segment.lock.readLock().lock();
+        try{
+            int slot = segment.findSlot(key, hash);
+            if(segment.keys[slot] == null){
+                return null;
+            }
+            bytes = allocator.read(segment.addresses[slot], segment.lengths[slot]);
+        }finally{
+            segment.lock.readLock().unlock();
+        }
+        return valueCodec.decode(bytes);
+    }
+
+    @Override
+    public void remove(K key) throws Exception {
+        int hash = hash(key);
+        Segment<K> segment = segmentFor(hash);
+        long address;
+        int length;
+        segment.lock.writeLock().lock();
+        try{
+            int slot = segment.findSlot(key, hash);
+            if(segment.keys[slot] == null){
+                throw new Exception("Key not found in cache");
+            }
+            address = segment.addresses[slot];
+            length = segment.lengths[slot];
+            segment.delete(slot);
+            segment.weight -= entryWeight(length);
+        }finally{
+            segment.lock.writeLock().unlock();
+        }
+        allocator.free(address, length);
+    }
+
+    @Override
+    public boolean containsKey(K key) throws Exception {
+        int hash = hash(key);
+        Segment<K> segment = segmentFor(hash);
+        segment.lock.readLock().lock();
+        try{
+            return segment.keys[segment.findSlot(key, hash)] != null;
+        }finally{
+            segment.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() throws Exception {
+        int size = 0;
+        for(Segment<K> segment : segments){
+            segment.lock.readLock().lock();
+            try{
+                size += segment.size;
+            }finally{
+                segment.lock.readLock().unlock();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    // Weights are page bytes, see the class comment
+
+    @Override
+    public long weigh(K key, V value) {
+        byte[] bytes;
+        try{
+            bytes = valueCodec.encode(value);
+        }catch(Exception e){
+            return minEntryWeight; // put() reports the codec failure
+        }
+        // Never fits: more than maxWeight(), so the caches skip making room for it and put() reports it. Not Long.MAX_VALUE,
+        // batches sum weights.
+        return bytes.length > allocator.getMaxValueSize() ? allocator.getMaxBytes() + 1 : entryWeight(bytes.length);
+    }
+
+    @Override
+    public long weightOf(K key) throws Exception {
+        int hash = hash(key);
+        Segment<K> segment = segmentFor(hash);
+        segment.lock.readLock().lock();
+        try{
+            int slot = segment.findSlot(key, hash);
+            return segment.keys[slot] == null ? 0 : entryWeight(segment.lengths[slot]);
+        }finally{
+            segment.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long weight() throws Exception {
+        long weight = 0;
+        for(Segment<K> segment : segments){
+            segment.lock.readLock().lock();
+            try{
+                weight += segment.weight;
+            }finally{
+                segment.lock.readLock().unlock();
+            }
+        }
+        return weight;
+    }
+
+    @Override
+    public long maxWeight() {
+        return allocator.getUsableBytes();
+    }
+
+    // Memory usage by slab class (chunk size, pages, used/free chunks, bytes lost to rounding)
+    public List<SlabAllocator.SlabClassStats> getSlabStats(){
+        return allocator.getStats();
+    }
+
+    // Off-heap bytes reserved so far (whole pages)
+    public long getOffHeapBytes(){
+        return allocator.getAllocatedBytes();
+    }
+
+    private long entryWeight(int length){
+        return Math.max(minEntryWeight, allocator.pageBytesFor(length));
+    }
+
+    // A chunk for `length` bytes. When the slabs are exhausted, vacate the least used page and take it for this size's
+    // slab class (see SlabAllocator.startReclaim): no other writer can take the chunks this write paid evictions for.
+    private long allocate(int length) throws Exception {
+        long address = allocator.allocate(length);
+        while(address < 0){
+            int page = allocator.reclaimablePage();
+            if(page < 0){
+                throw new Exception("Off-heap memory exhausted"); // no page at all, can't happen for a value that fits a page
+            }
+            allocator.startReclaim(page);
+            address = -1;
+            // A writer that got a chunk of the page before startReclaim indexes it right after: drop that entry too
+            while(address < 0 && allocator.isReclaiming(page)){
+                evictPage(page);
+                address = allocator.allocateFromReclaimed(length, page);
+                if(address < 0){
+                    Thread.yield();
+                }
+            }
+            if(address < 0){
+                address = allocator.allocate(length); // another reclaimer got the page first, its evictions may have freed a chunk
+            }
+        }
+        return address;
+    }
+
+    // Drop every entry stored on the page and tell the listeners
+    private void evictPage(int page){
+        List<K> evicted = new ArrayList<>();
+        for(Segment<K> segment : segments){
+            segment.lock.writeLock().lock();
+            try{
+                int slot = 0;
+                while(slot < segment.keys.length){
+                    // delete() shifts later entries back into the slot, so only advance when nothing was deleted
+                    if(segment.keys[slot] != null && SlabAllocator.pageOf(segment.addresses[slot]) == page){
+                        @SuppressWarnings("unchecked")
+                        K key = (K) segment.keys[slot];
+                        long address = segment.addresses[slot];
+                        int length = segment.lengths[slot];
+                        segment.delete(slot);
+                        segment.weight -= entryWeight(length);
+                        allocator.free(address, length);
+                        evicted.add(key);
+                    }else{
+                        slot++;
+                    }
+                }
+            }finally{
+                segment.lock.writeLock().unlock();
+            }
+        }
+        for(K key : evicted){
+            for(EvictionListener<K> listener : evictionListeners){
+                try{
+                    listener.onEvicted(key);
+                }catch(Exception ignored){
+                    // A failing listener must not fail the write that needed the memory
+                }
+            }
+        }
+    }
+
+    private Segment<K> segmentFor(int hash){
+        // High bits pick the segment, low bits pick the slot inside it
+        return segments[(hash >>> 16) & segmentMask];
+    }
+
+    private static int hash(Object key){
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    // Open addressing (linear probing) table stored in parallel primitive arrays
+    private static final class Segment<K> {
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        Object[] keys;
+        int[] hashes;
+        long[] addresses;
+        int[] lengths;
+        int size;
+        long weight; // sum of entryWeight over the entries
+
+        Segment(int initialSlots){
+            allocate(Integer.highestOneBit(initialSlots - 1) << 1);
+        }
+
+        private void allocate(int slots){
+            keys = new Object[slots];
+            hashes = new int[slots];
+            addresses = new long[slots];
+            lengths = new int[slots];
+        }
+
+        // Slot holding the key, or the empty slot where it would be inserted
+        int findSlot(Object key, int hash){
+            int mask = keys.length - 1;
+            int slot = hash & mask;
+            while(keys[slot] != null){
+                if(hashes[slot] == hash && keys[slot].equals(key)){
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        void set(int slot, K key, int hash, long address, int length){
+            if(keys[slot] == null){
+                if((size + 1) * 4 > keys.length * 3){ // keep load factor under 0.75
+                    grow();
+                    slot = findSlot(key, hash);
+                }
+                size++;
+            }
+            keys[slot] = key;
+            hashes[slot] = hash;
+            addresses[slot] = address;
+            lengths[slot] = length;
+        }
+
+        /* Backward shift deletion instead of tombstones:
+            entries after the hole that are not in their home slot are moved back, so lookups never need to
+            skip deleted markers and the table doesn't degrade after many removes (evictions).
+        */
+        void delete(int slot){
+            int mask = keys.length - 1;
+            int hole = slot;
+            int next = (hole + 1) & mask;
+            while(keys[next] != null){
+                int home = hashes[next] & mask;
+                // Move the entry if its home slot is not in the (cyclic) range (hole, next]
+                if(((next - home) & mask) >= ((next - hole) & mask)){
+                    keys[hole] = keys[next];
+                    hashes[hole] = hashes[next];
+                    addresses[hole] = addresses[next];
+                    lengths[hole] = lengths[next];
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            keys[hole] = null;
+            size--;
+        }
+
+        private void grow(){
+            Object[] oldKeys = keys;
+            int[] oldHashes = hashes;
+            long[] oldAddresses = addresses;
+            int[] oldLengths = lengths;
+            allocate(oldKeys.length * 2);
+            for(int i = 0; i < oldKeys.length; i++){
+                if(oldKeys[i] != null){
+                    int slot = findSlot(oldKeys[i], oldHashes[i]);
+                    keys[slot] = oldKeys[i];
+                    hashes[slot] = oldHashes[i];
+                    addresses[slot] = oldAddresses[i];
+                    lengths[slot] = oldLengths[i];
+                }
+            }
+        }
+    }
+}
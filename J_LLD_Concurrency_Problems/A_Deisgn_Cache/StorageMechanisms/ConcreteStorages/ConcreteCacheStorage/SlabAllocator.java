@@ -0,0 +1,418 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.ConcreteStorages.ConcreteCacheStorage;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Memcached style slab allocator on top of direct (off-heap) ByteBuffers.
+/* Why slabs instead of one ByteBuffer per value?
+    - allocateDirect is slow and its memory is only released when the buffer object is garbage collected.
+    - Instead, memory is taken in big pages (1 MB) once, and every page is cut into equal chunks of one "slab class".
+    - Slab classes grow by a factor (64, 80, 100, 128 ... bytes), a value goes into the smallest chunk it fits in.
+    - A freed chunk goes to its class free list and is reused by the next value of similar size -> no fragmentation of the page.
+    - Cost: internal waste (a 65 byte value uses an 80 byte chunk), which is what getStats() reports per class.
+
+   A chunk is identified by a long "address":  [ class id : 8 bits | page index : 32 bits | chunk index : 24 bits ]
+   The page index is global (one page table for all classes), so a page can move to another class once it is empty:
+   without that, pages stay with the class that first took them and a new value size finds no memory even though
+   other classes have whole pages free (memcached calls it slab calcification, its slab rebalancer does the same move).
+
+   Locking: allocate/free take only their class lock. Moving a page takes the allocator lock first, then the two class
+   locks in class id order.
+*/
+public class SlabAllocator {
+
+    private static final int MIN_CHUNK_SIZE = 64;
+    private static final double GROWTH_FACTOR = 1.25;
+
+    private final int pageSize;
+    private final int maxPages;
+    private final SlabClass[] slabClasses;
+    private final ByteBuffer[] pages;     // page index -> page, filled as pages are reserved
+    private final int[] pageOwner;        // page index -> class id, written under the locks of both classes
+    private final int[] pageUsedChunks;   // page index -> chunks handed out, guarded by the owner class lock
+    private final boolean[] pageReclaiming; // page index -> being vacated (see startReclaim), guarded by the owner class lock
+    private final AtomicLong pagesAllocated = new AtomicLong();
+    private final AtomicInteger classesWithPages = new AtomicInteger();
+
+    public SlabAllocator(long maxMemoryBytes){
+        this(maxMemoryBytes, 1024 * 1024);
+    }
+
+    public SlabAllocator(long maxMemoryBytes, int pageSize){
+        long pageCount = Math.max(1, maxMemoryBytes / pageSize);
+        if(pageCount > Integer.MAX_VALUE){
+            throw new IllegalArgumentException("Too many pages: " + pageCount + ", use a larger page size");
+        }
+        this.pageSize = pageSize;
+        this.maxPages = (int) pageCount;
+        this.pages = new ByteBuffer[maxPages];
+        this.pageOwner = new int[maxPages];
+        this.pageUsedChunks = new int[maxPages];
+        this.pageReclaiming = new boolean[maxPages];
+
+        List<SlabClass> classes = new ArrayList<>();
+        int chunkSize = MIN_CHUNK_SIZE;
+        while(chunkSize < pageSize){
+            classes.add(new SlabClass(classes.size(), chunkSize, pageSize / chunkSize));
+            int next = (int) (chunkSize * GROWTH_FACTOR);
+            chunkSize = (next + 7) & ~7; // 8 byte alignment
+        }
+        classes.add(new SlabClass(classes.size(), pageSize, 1)); // largest class: one value per page
+        this.slabClasses = classes.toArray(new SlabClass[0]);
+    }
+
+    // Largest value that fits in a chunk
+    public int getMaxValueSize(){
+        return pageSize;
+    }
+
+    public long getMaxBytes(){
+        return (long) maxPages * pageSize;
+    }
+
+    // Page bytes a value of `size` bytes takes: its chunk plus its share of what the chunks of its class leave unused
+    // at the end of a page. Summed over the entries of a page that is full, this is exactly pageSize.
+    public long pageBytesFor(int size){
+        return pageSize / slabClassFor(size).chunksPerPage;
+    }
+
+    // Bytes values can fill before an allocation may find no chunk: every class that holds pages can have a partly
+    // filled page, so one page per such class (and one for a class that has none yet) is kept back.
+    public long getUsableBytes(){
+        return Math.max(1, maxPages - classesWithPages.get() - 1) * (long) pageSize;
+    }
+
+    // Returns the address of a chunk that can hold size bytes, or -1 if the memory limit is reached and no class
+    // has an empty page to give up (see startReclaim)
+    public long allocate(int size){
+        if(size > pageSize){
+            return -1;
+        }
+        SlabClass slabClass = slabClassFor(size);
+        synchronized(slabClass){
+            long address = slabClass.allocate();
+            if(address >= 0){
+                return address;
+            }
+            int page = reservePage();
+            if(page >= 0){
+                pages[page] = ByteBuffer.allocateDirect(pageSize);
+                addPage(slabClass, page);
+                return slabClass.allocate();
+            }
+        }
+        return allocateFromEmptyPage(slabClass);
+    }
+
+    public void free(long address, int size){
+        SlabClass slabClass = slabClasses[classOf(address)];
+        synchronized(slabClass){
+            slabClass.free(address, size);
+        }
+    }
+
+    // Reclaiming a page for another slab class, when allocate returns -1:
+    /*  1. page = reclaimablePage(), the page with the fewest chunks in use
+        2. startReclaim(page): its class stops handing out chunks of that page, chunks freed on it are not reused
+        3. the caller frees every chunk on the page (drops those entries)
+        4. allocateFromReclaimed(size, page) moves the page to the class of `size` and allocates from it
+       Between 2 and 4 no other writer can take the page's chunks, so the caller that paid for the evictions gets them.
+    */
+
+    // -1 before any page is reserved. The counts are read without the class locks: a hint.
+    public int reclaimablePage(){
+        int best = -1;
+        int bestUsed = Integer.MAX_VALUE;
+        int reserved = (int) Math.min(pagesAllocated.get(), maxPages);
+        for(int page = 0; page < reserved; page++){
+            int used = pageUsedChunks[page];
+            if(pages[page] != null && !pageReclaiming[page] && used < bestUsed){
+                best = page;
+                bestUsed = used;
+            }
+        }
+        return best;
+    }
+
+    public void startReclaim(int page){
+        synchronized(this){
+            SlabClass owner = slabClasses[pageOwner[page]];
+            synchronized(owner){
+                pageReclaiming[page] = true;
+                owner.dropFreeChunks(page);
+            }
+        }
+    }
+
+    // -1 if a chunk of the page is still in use (handed out before startReclaim and not freed yet), or the page was
+    // already taken by another reclaimer: free what is left on it and call again, or pick another page
+    public long allocateFromReclaimed(int size, int page){
+        SlabClass target = slabClassFor(size);
+        synchronized(this){
+            SlabClass owner = slabClasses[pageOwner[page]];
+            SlabClass first = owner.id < target.id ? owner : target;
+            SlabClass second = owner.id < target.id ? target : owner;
+            synchronized(first){
+                synchronized(second){
+                    if(!pageReclaiming[page] || pageUsedChunks[page] != 0){
+                        return -1;
+                    }
+                    pageReclaiming[page] = false;
+                    movePage(page, owner, target);
+                    return target.allocate();
+                }
+            }
+        }
+    }
+
+    // True while the page is being vacated, e.g. to check allocateFromReclaimed failed because of a late chunk
+    public boolean isReclaiming(int page){
+        synchronized(this){
+            SlabClass owner = slabClasses[pageOwner[page]];
+            synchronized(owner){
+                return pageReclaiming[page];
+            }
+        }
+    }
+
+    public static int pageOf(long address){
+        return (int) ((address >>> 24) & 0xFFFFFFFFL);
+    }
+
+    // Budget used up: move a page nobody uses any more from another class to this one
+    private long allocateFromEmptyPage(SlabClass target){
+        synchronized(this){
+            int reserved = (int) Math.min(pagesAllocated.get(), maxPages);
+            for(int page = 0; page < reserved; page++){
+                if(pages[page] == null || pageUsedChunks[page] != 0 || pageReclaiming[page]){
+                    continue;
+                }
+                SlabClass owner = slabClasses[pageOwner[page]];
+                SlabClass first = owner.id < target.id ? owner : target;
+                SlabClass second = owner.id < target.id ? target : owner;
+                synchronized(first){
+                    synchronized(second){
+                        long address = target.allocate(); // a free may have raced in meanwhile
+                        if(address >= 0){
+                            return address;
+                        }
+                        if(owner == target || pageOwner[page] != owner.id || pageUsedChunks[page] != 0 || pageReclaiming[page]){
+                            continue;
+                        }
+                        movePage(page, owner, target);
+                        return target.allocate();
+                    }
+                }
+            }
+            return -1;
+        }
+    }
+
+    // Must be called while holding the locks of both classes, only for a page without chunks in use
+    private void movePage(int page, SlabClass owner, SlabClass target){
+        owner.removePage(page);
+        if(owner.pageIds.isEmpty()){
+            classesWithPages.decrementAndGet();
+        }
+        addPage(target, page);
+    }
+
+    // Must be called while holding the lock of slabClass
+    private void addPage(SlabClass slabClass, int page){
+        if(slabClass.pageIds.isEmpty()){
+            classesWithPages.incrementAndGet();
+        }
+        pageOwner[page] = slabClass.id;
+        slabClass.addPage(page);
+    }
+
+    // Copy bytes into a chunk. Absolute puts don't touch the buffer position, so different chunks can be written concurrently.
+    // The page reference was published before the address (allocate happens before the caller stores the address
+    // under its own lock), so reading it needs no lock here
+    public void write(long address, byte[] bytes){
+        SlabClass slabClass = slabClasses[classOf(address)];
+        pages[pageOf(address)].put(chunkOf(address) * slabClass.chunkSize, bytes);
+        slabClass.recordUsedBytes(bytes.length);
+    }
+
+    public byte[] read(long address, int length){
+        SlabClass slabClass = slabClasses[classOf(address)];
+        byte[] bytes = new byte[length];
+        pages[pageOf(address)].get(chunkOf(address) * slabClass.chunkSize, bytes);
+        return bytes;
+    }
+
+    public long getAllocatedBytes(){
+        return Math.min(pagesAllocated.get(), maxPages) * (long) pageSize;
+    }
+
+    // Memory usage per slab class (only classes that own at least one page)
+    public List<SlabClassStats> getStats(){
+        List<SlabClassStats> stats = new ArrayList<>();
+        for(SlabClass slabClass : slabClasses){
+            synchronized(slabClass){
+                if(!slabClass.pageIds.isEmpty()){
+                    stats.add(new SlabClassStats(slabClass.id, slabClass.chunkSize, slabClass.pageIds.size(),
+                            slabClass.usedChunks, slabClass.pageIds.size() * (long) slabClass.chunksPerPage,
+                            slabClass.usedBytes));
+                }
+            }
+        }
+        return stats;
+    }
+
+    // Index of a fresh page, -1 once the memory limit is reached
+    private int reservePage(){
+        long page = pagesAllocated.getAndIncrement();
+        return page < maxPages ? (int) page : -1;
+    }
+
+    private SlabClass slabClassFor(int size){
+        // Binary search for the smallest chunk size >= size
+        int lo = 0;
+        int hi = slabClasses.length - 1;
+        while(lo < hi){
+            int mid = (lo + hi) >>> 1;
+            if(slabClasses[mid].chunkSize < size){
+                lo = mid + 1;
+            }else{
+                hi = mid;
+            }
+        }
+        return slabClasses[lo];
+    }
+
+    private static long address(int classId, int page, int chunk){
+        return ((long) classId << 56) | ((long) page << 24) | chunk;
+    }
+
+    private static int classOf(long address){
+        return (int) (address >>> 56);
+    }
+
+    private static int chunkOf(long address){
+        return (int) (address & 0xFFFFFF);
+    }
+
+    // Fields guarded by the class's own lock (pageUsedChunks entries of its pages too)
+    private final class SlabClass {
+        final int id;
+        final int chunkSize;
+        final int chunksPerPage;
+        final List<Integer> pageIds = new ArrayList<>();
+        private long[] freeChunks = new long[16]; // stack of recycled addresses
+        private int freeCount;
+        private int lastPage = -1;
+        private int nextChunkInLastPage;
+        long usedChunks;
+        long usedBytes;
+
+        SlabClass(int id, int chunkSize, int chunksPerPage){
+            this.id = id;
+            this.chunkSize = chunkSize;
+            this.chunksPerPage = chunksPerPage;
+            this.nextChunkInLastPage = chunksPerPage; // no page yet
+        }
+
+        // Recycled chunk first, then the next untouched chunk of the last page. -1 if a new page is needed.
+        long allocate(){
+            long address;
+            if(freeCount > 0){
+                address = freeChunks[--freeCount];
+            }else if(nextChunkInLastPage < chunksPerPage){
+                address = address(id, lastPage, nextChunkInLastPage++);
+            }else{
+                return -1;
+            }
+            usedChunks++;
+            pageUsedChunks[pageOf(address)]++;
+            return address;
+        }
+
+        void addPage(int page){
+            pageIds.add(page);
+            lastPage = page;
+            nextChunkInLastPage = 0;
+        }
+
+        // Only for a page without chunks in use
+        void removePage(int page){
+            pageIds.remove(Integer.valueOf(page));
+            dropFreeChunks(page);
+        }
+
+        // No chunk of the page is handed out any more: its recycled chunks leave the free stack, its untouched ones are skipped
+        void dropFreeChunks(int page){
+            int kept = 0;
+            for(int i = 0; i < freeCount; i++){
+                if(pageOf(freeChunks[i]) != page){
+                    freeChunks[kept++] = freeChunks[i];
+                }
+            }
+            freeCount = kept;
+            if(lastPage == page){
+                lastPage = -1;
+                nextChunkInLastPage = chunksPerPage;
+            }
+        }
+
+        void free(long address, int size){
+            usedChunks--;
+            usedBytes -= size;
+            pageUsedChunks[pageOf(address)]--;
+            if(pageReclaiming[pageOf(address)]){
+                return; // the page is being vacated, its chunks go to another class with it
+            }
+            if(freeCount == freeChunks.length){
+                long[] grown = new long[freeChunks.length * 2];
+                System.arraycopy(freeChunks, 0, grown, 0, freeCount);
+                freeChunks = grown;
+            }
+            freeChunks[freeCount++] = address;
+        }
+
+        synchronized void recordUsedBytes(int size){
+            usedBytes += size;
+        }
+    }
+
+    // Snapshot of one slab class, used for monitoring
+    public static final class SlabClassStats {
+        private final int classId;
+        private final int chunkSize;
+        private final int pages;
+        private final long usedChunks;
+        private final long totalChunks;
+        private final long usedBytes;
+
+        SlabClassStats(int classId, int chunkSize, int pages, long usedChunks, long totalChunks, long usedBytes){
+            this.classId = classId;
+            this.chunkSize = chunkSize;
+            this.pages = pages;
+            this.usedChunks = usedChunks;
+            this.totalChunks = totalChunks;
+            this.usedBytes = usedBytes;
+        }
+
+        public int getClassId(){ return classId; }
+        public int getChunkSize(){ return chunkSize; }
+        public int getPages(){ return pages; }
+        public long getUsedChunks(){ return usedChunks; }
+        public long getTotalChunks(){ return totalChunks; }
+        public long getUsedBytes(){ return usedBytes; }
+
+        // Bytes lost because values are smaller than their chunk
+        public long getWastedBytes(){
+            return usedChunks * chunkSize - usedBytes;
+        }
+
+        @Override
+        public String toString(){
+            return String.format("SlabClass{id=%d, chunkSize=%d, pages=%d, chunks=%d/%d, usedBytes=%d, wastedBytes=%d}",
+                    classId, chunkSize, pages, usedChunks, totalChunks, usedBytes, getWastedBytes());
+        }
+    }
+}
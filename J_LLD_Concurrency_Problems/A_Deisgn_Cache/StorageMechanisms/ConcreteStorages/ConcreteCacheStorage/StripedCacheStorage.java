@@ -0,0 +1,379 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.ConcreteStorages.ConcreteCacheStorage;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces.CacheStorage;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces.Weigher;
+
+// CacheStorage built around the atomic operations: reads never lock, writes are a compare-and-set on one bucket.
+// Drop-in replacement for InMemoryCacheStorage (same constructors, same weighted mode).
+/* Layout: key hash -> stripe (high bits) -> bucket of the stripe (low bits) -> chain of immutable nodes.
+    - A node never changes once published. Every write builds the new chain of its bucket (a new node at the head for an
+      insert, a copy of the nodes in front of the changed one for an update or remove) and installs it with one CAS on the
+      bucket head. A lost CAS means another writer changed the same bucket: re-read and retry.
+    - A reader walks whatever chain the bucket head points to: no lock, no CAS, no retry. It sees either the chain before
+      a write or the one after it, never a half-done write.
+    - put / remove / putIfAbsent / replace are plain CAS loops, so a writer never blocks anybody.
+    - computeIfAbsent and compute also take their stripe's lock around the function, so it runs once per call and two
+      computeIfAbsent calls of an absent key don't both load it. Readers and plain writers don't take that lock.
+      Keep the function short, a slow one delays the other compute calls of its stripe.
+    - Entry count and weight are kept per stripe, updated after the winning CAS with the exact value it replaced.
+
+   Tables are sized once from the capacity (the cache evicts before it grows past it), so there is no resize for readers
+   to race with. Filled far beyond the capacity the storage stays correct, the chains just get longer.
+*/
+public class StripedCacheStorage<K, V> implements CacheStorage<K, V> {
+
+    static final int DEFAULT_STRIPES = 64;
+
+    private final int capacity;
+    private final Stripe<K, V>[] stripes;
+    private final int stripeShift;
+
+    // Weighted mode only (weigher != null): the capacity is a total weight instead of an entry count
+    private final Weigher<K, V> weigher;
+    private final long maxWeight;
+
+    public StripedCacheStorage(int capacity){
+        this(capacity, DEFAULT_STRIPES);
+    }
+
+    public StripedCacheStorage(int capacity, int numStripes){
+        this(capacity, capacity, null, numStripes);
+    }
+
+    // Bounded by the summed weight of the entries. expectedEntries sizes the tables (the entry count isn't known up front).
+    public StripedCacheStorage(long maxWeight, Weigher<K, V> weigher, int expectedEntries){
+        this(Integer.MAX_VALUE, maxWeight, weigher, DEFAULT_STRIPES, expectedEntries);
+    }
+
+    private StripedCacheStorage(int capacity, long maxWeight, Weigher<K, V> weigher, int numStripes){
+        this(capacity, maxWeight, weigher, numStripes, capacity);
+    }
+
+    private StripedCacheStorage(int capacity, long maxWeight, Weigher<K, V> weigher, int numStripes, int expectedEntries){
+        if(numStripes < 1 || expectedEntries < 0){
+            throw new IllegalArgumentException("Need at least one stripe and a non-negative number of entries");
+        }
+        this.capacity = capacity;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        int stripeCount = Math.min(1 << 16, numStripes <= 1 ? 1 : Integer.highestOneBit(numStripes - 1) << 1);
+        this.stripeShift = 32 - Integer.numberOfTrailingZeros(stripeCount);
+        this.stripes = newStripes(stripeCount);
+        // Load factor 0.75: about one node per bucket when the cache is full
+        long perStripe = ((long) expectedEntries * 4 / 3) / stripeCount + 1;
+        int buckets = perStripe >= 1 << 30 ? 1 << 30 : Math.max(2, Integer.highestOneBit((int) perStripe - 1) << 1);
+        for(int i = 0; i < stripeCount; i++){
+            stripes[i] = new Stripe<>(buckets);
+        }
+    }
+
+    // Generic array creation: every element is a Stripe<K, V> created by the constructor, the array never escapes
+    @SuppressWarnings("unchecked")
+    private static <K, V> Stripe<K, V>[] newStripes(int count){
+        return (Stripe<K, V>[]) new Stripe<?, ?>[count];
+    }
+
+    @Override
+    public void put(K key, V value) throws Exception {
+        Objects.requireNonNull(value, "Null values are not supported");
+        int hash = hash(key);
+        Stripe<K, V> stripe = stripeFor(hash);
+        int bucket = hash & stripe.mask;
+        while(true){
+            Node<K, V> head = stripe.buckets.get(bucket);
+            Node<K, V> found = find(head, hash, key);
+            Node<K, V> updated = found == null
+                    ? new Node<>(key, hash, value, head)
+                    : rebuild(head, found, new Node<>(found.key, hash, value, found.next));
+            if(stripe.buckets.compareAndSet(bucket, head, updated)){
+                changed(stripe, key, found == null ? null : found.value, value);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public V get(K key) throws Exception {
+        V value = getIfPresent(key);
+        if(value == null){
+            throw new Exception("Key not found in cache");
+        }
+        return value;
+    }
+
+    // Lock-free: one volatile read of the bucket head, then a walk over immutable nodes
+    @Override
+    public V getIfPresent(K key) throws Exception {
+        int hash = hash(key);
+        Stripe<K, V> stripe = stripeFor(hash);
+        Node<K, V> found = find(stripe.buckets.get(hash & stripe.mask), hash, key);
+        return found == null ? null : found.value;
+    }
+
+    @Override
+    public void remove(K key) throws Exception {
+        if(removeIfPresent(key) == null){
+            throw new Exception("Key not found in cache");
+        }
+    }
+
+    @Override
+    public boolean containsKey(K key) throws Exception {
+        return getIfPresent(key) != null;
+    }
+
+    @Override
+    public int size() throws Exception {
+        long size = 0;
+        for(Stripe<K, V> stripe : stripes){
+            size += stripe.count.get();
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public long weigh(K key, V value) {
+        return weigher == null ? 1 : weigher.weigh(key, value);
+    }
+
+    @Override
+    public long weightOf(K key) throws Exception {
+        V value = getIfPresent(key);
+        return value == null ? 0 : weigh(key, value);
+    }
+
+    @Override
+    public long weight() throws Exception {
+        if(weigher == null){
+            return size();
+        }
+        long weight = 0;
+        for(Stripe<K, V> stripe : stripes){
+            weight += stripe.weight.get();
+        }
+        return weight;
+    }
+
+    @Override
+    public long maxWeight() {
+        return maxWeight;
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) throws Exception {
+        V value = getIfPresent(key);
+        if(value != null){
+            return value;
+        }
+        Stripe<K, V> stripe = stripeFor(hash(key));
+        stripe.computeLock.lock();
+        try{
+            // Another computeIfAbsent of this key may have stored it while we waited for the lock
+            value = getIfPresent(key);
+            if(value != null){
+                return value;
+            }
+            V computed = mappingFunction.apply(key);
+            if(computed == null){
+                return null;
+            }
+            V raced = putIfAbsent(key, computed); // a plain put can still get in first, its value wins then
+            return raced != null ? raced : computed;
+        }finally{
+            stripe.computeLock.unlock();
+        }
+    }
+
+    // The function sees the value it replaces. If a plain put/remove changes the key between the function and the CAS,
+    // the function runs again on the new value.
+    @Override
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) throws Exception {
+        int hash = hash(key);
+        Stripe<K, V> stripe = stripeFor(hash);
+        int bucket = hash & stripe.mask;
+        stripe.computeLock.lock();
+        try{
+            while(true){
+                Node<K, V> head = stripe.buckets.get(bucket);
+                Node<K, V> found = find(head, hash, key);
+                V old = found == null ? null : found.value;
+                V value = remappingFunction.apply(key, old);
+                Node<K, V> updated;
+                if(value == null){
+                    if(found == null){
+                        return null;
+                    }
+                    updated = rebuild(head, found, found.next);
+                }else{
+                    updated = found == null
+                            ? new Node<>(key, hash, value, head)
+                            : rebuild(head, found, new Node<>(found.key, hash, value, found.next));
+                }
+                if(stripe.buckets.compareAndSet(bucket, head, updated)){
+                    changed(stripe, key, old, value);
+                    return value;
+                }
+            }
+        }finally{
+            stripe.computeLock.unlock();
+        }
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) throws Exception {
+        Objects.requireNonNull(value, "Null values are not supported");
+        int hash = hash(key);
+        Stripe<K, V> stripe = stripeFor(hash);
+        int bucket = hash & stripe.mask;
+        while(true){
+            Node<K, V> head = stripe.buckets.get(bucket);
+            Node<K, V> found = find(head, hash, key);
+            if(found != null){
+                return found.value;
+            }
+            if(stripe.buckets.compareAndSet(bucket, head, new Node<>(key, hash, value, head))){
+                changed(stripe, key, null, value);
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public boolean replace(K key, V expected, V newValue) throws Exception {
+        Objects.requireNonNull(newValue, "Null values are not supported");
+        int hash = hash(key);
+        Stripe<K, V> stripe = stripeFor(hash);
+        int bucket = hash & stripe.mask;
+        while(true){
+            Node<K, V> head = stripe.buckets.get(bucket);
+            Node<K, V> found = find(head, hash, key);
+            if(found == null || !found.value.equals(expected)){
+                return false;
+            }
+            Node<K, V> updated = rebuild(head, found, new Node<>(found.key, hash, newValue, found.next));
+            if(stripe.buckets.compareAndSet(bucket, head, updated)){
+                changed(stripe, key, found.value, newValue);
+                return true;
+            }
+        }
+    }
+
+    // No exception per missing key
+    @Override
+    public Map<K, V> getAll(Collection<K> keys) throws Exception {
+        Map<K, V> result = new HashMap<>();
+        for(K key : keys){
+            V value = getIfPresent(key);
+            if(value != null){
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+
+    // A key removed by someone else in the meantime is simply skipped (the default's containsKey + remove would throw)
+    @Override
+    public void removeAll(Collection<K> keys) throws Exception {
+        for(K key : keys){
+            removeIfPresent(key);
+        }
+    }
+
+    // Removed value, null if the key was not there
+    private V removeIfPresent(K key){
+        int hash = hash(key);
+        Stripe<K, V> stripe = stripeFor(hash);
+        int bucket = hash & stripe.mask;
+        while(true){
+            Node<K, V> head = stripe.buckets.get(bucket);
+            Node<K, V> found = find(head, hash, key);
+            if(found == null){
+                return null;
+            }
+            if(stripe.buckets.compareAndSet(bucket, head, rebuild(head, found, found.next))){
+                changed(stripe, key, found.value, null);
+                return found.value;
+            }
+        }
+    }
+
+    private void changed(Stripe<K, V> stripe, K key, V old, V value){
+        int delta = (value == null ? 0 : 1) - (old == null ? 0 : 1);
+        if(delta != 0){
+            stripe.count.addAndGet(delta);
+        }
+        if(weigher != null){
+            stripe.weight.addAndGet((value == null ? 0 : weigher.weigh(key, value)) - (old == null ? 0 : weigher.weigh(key, old)));
+        }
+    }
+
+    private static <K, V> Node<K, V> find(Node<K, V> node, int hash, Object key){
+        while(node != null && (node.hash != hash || !node.key.equals(key))){
+            node = node.next;
+        }
+        return node;
+    }
+
+    // Chain with `target` replaced by `tail` (target.next to drop it). The nodes in front of target are copied, the ones
+    // behind it are shared with the old chain. Order inside a bucket doesn't matter, so the copies are prepended.
+    private static <K, V> Node<K, V> rebuild(Node<K, V> head, Node<K, V> target, Node<K, V> tail){
+        Node<K, V> chain = tail;
+        for(Node<K, V> node = head; node != target; node = node.next){
+            chain = new Node<>(node.key, node.hash, node.value, chain);
+        }
+        return chain;
+    }
+
+    private Stripe<K, V> stripeFor(int hash){
+        // High bits pick the stripe, low bits pick the bucket inside it
+        return stripes[stripeShift == 32 ? 0 : hash >>> stripeShift];
+    }
+
+    private static int hash(Object key){
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Stripe<K, V> {
+        final AtomicReferenceArray<Node<K, V>> buckets;
+        final int mask;
+        final AtomicInteger count = new AtomicInteger();
+        final AtomicLong weight = new AtomicLong();
+        final ReentrantLock computeLock = new ReentrantLock();
+
+        Stripe(int buckets){
+            this.buckets = new AtomicReferenceArray<>(buckets);
+            this.mask = buckets - 1;
+        }
+    }
+
+    private static final class Node<K, V> {
+        final K key;
+        final int hash;
+        final V value;
+        final Node<K, V> next;
+
+        Node(K key, int hash, V value, Node<K, V> next){
+            this.key = key;
+            this.hash = hash;
+            this.value = value;
+            this.next = next;
+        }
+    }
+}
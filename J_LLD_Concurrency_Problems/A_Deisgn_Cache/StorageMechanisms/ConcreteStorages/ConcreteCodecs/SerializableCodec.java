@@ -0,0 +1,30 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.ConcreteStorages.ConcreteCodecs;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces.Codec;
+
+// Fallback codec for any Serializable type. Works for everything but is slow and verbose - prefer a dedicated codec for hot types.
+// T is not bounded by Serializable so it can be used with plain generic K/V, a non serializable value fails with NotSerializableException on encode.
+public class SerializableCodec<T> implements Codec<T> {
+
+    @Override
+    public byte[] encode(T value) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(ObjectOutputStream out = new ObjectOutputStream(bytes)){
+            out.writeObject(value);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T decode(byte[] bytes) throws Exception {
+        try(ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))){
+            return (T) in.readObject();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.ConcreteStorages.ConcreteCodecs;
+
+import java.nio.charset.StandardCharsets;
+
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces.Codec;
+
+public class StringCodec implements Codec<String> {
+
+    @Override
+    public byte[] encode(String value) throws Exception {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String decode(byte[] bytes) throws Exception {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
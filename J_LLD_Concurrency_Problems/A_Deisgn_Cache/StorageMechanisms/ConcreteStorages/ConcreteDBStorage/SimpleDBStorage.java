@@ -1,9 +1,13 @@
 package J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.ConcreteStorages.ConcreteDBStorage;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 
 import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces.DBStorage;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces.KeyNotFoundException;
 
 public class SimpleDBStorage<K, V> implements DBStorage<K, V> {
 
@@ -25,10 +29,11 @@ public class SimpleDBStorage<K, V> implements DBStorage<K, V> {
 
     @Override
     public V read(K key) throws Exception {
-        if(!database.containsKey(key)){ 
-            throw new Exception("Key not found in DBStorage: " + key);
+        V value = database.get(key); // one lookup: a delete between containsKey and get would return null
+        if(value == null){
+            throw new KeyNotFoundException(key);
         }
-        return database.get(key);
+        return value;
     }
 
     @Override
@@ -38,4 +43,32 @@ public class SimpleDBStorage<K, V> implements DBStorage<K, V> {
         }
         database.remove(key);
     }
+
+    @Override
+    public Optional<V> readIfPresent(K key) throws Exception {
+        return Optional.ofNullable(database.get(key));
+    }
+
+    @Override
+    public Optional<Iterable<K>> scanKeys() throws Exception {
+        return Optional.of(database.keySet());
+    }
+
+    // Single pass over the map, no exception per missing key (a real DB would answer the whole batch in one query)
+    @Override
+    public Map<K, V> readAll(Collection<K> keys) throws Exception {
+        Map<K, V> result = new HashMap<>();
+        for(K key : keys){
+            V value = database.get(key);
+            if(value != null){
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void writeAll(Map<K, V> entries) throws Exception {
+        database.putAll(entries);
+    }
 }
@@ -1,5 +1,12 @@
 package J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
 public interface CacheStorage<K, V> {
     void put(K key, V value) throws Exception;
     V get(K key) throws Exception;
@@ -7,4 +14,127 @@ public interface CacheStorage<K, V> {
     boolean containsKey(K key) throws Exception;
     int size() throws Exception;
     int getCapacity();
+
+    // Weighted capacity. By default every entry weighs 1, so weight() is size() and maxWeight() is getCapacity(): the caches
+    // evict by entry count exactly as before. A storage built with a Weigher (see InMemoryCacheStorage) overrides all four and
+    // the caches then evict as many entries as it takes to fit the incoming one.
+
+    // Weight an entry would have in this storage (used for entries that are not stored yet)
+    default long weigh(K key, V value) {
+        return 1;
+    }
+
+    // Weight of the stored entry, 0 if the key is not cached
+    default long weightOf(K key) throws Exception {
+        return containsKey(key) ? 1 : 0;
+    }
+
+    // Total weight of all stored entries
+    default long weight() throws Exception {
+        return size();
+    }
+
+    default long maxWeight() {
+        return getCapacity();
+    }
+
+    // Value of the key, or null if it is not cached. Lets the hot read path tell a miss apart without an exception
+    // (creating one fills in a stack trace, far more expensive than the lookup itself). Null values are not supported.
+    // The default goes through containsKey + get, storages with a single lookup override it.
+    default V getIfPresent(K key) throws Exception {
+        try{
+            return containsKey(key) ? get(key) : null;
+        }catch(Exception e){
+            return null; // removed between containsKey and get
+        }
+    }
+
+    // Atomic read-modify-write, same contract as the ConcurrentHashMap methods of the same name (null = absent everywhere).
+    /* They replace check-then-act sequences (containsKey then get, getIfPresent then put) that race with other writers
+       of the key, so callers can coordinate through the storage instead of serializing every write of a key on one thread.
+       The defaults below ARE such sequences: atomic only when the caller already serializes the writes of a key (Cache's
+       key executors). InMemoryCacheStorage, StripedCacheStorage and CacheWithTTL make them atomic.
+    */
+
+    // Cached value, or the function's value stored if the key is absent. The function runs at most once and may return
+    // null to store nothing.
+    default V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) throws Exception {
+        V value = getIfPresent(key);
+        if(value != null){
+            return value;
+        }
+        V computed = mappingFunction.apply(key);
+        if(computed == null){
+            return null;
+        }
+        V raced = putIfAbsent(key, computed);
+        return raced != null ? raced : computed;
+    }
+
+    // New value computed from the current one (null if absent). Returning null removes the key.
+    default V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) throws Exception {
+        V current = getIfPresent(key);
+        V updated = remappingFunction.apply(key, current);
+        if(updated != null){
+            put(key, updated);
+        }else if(current != null){
+            removeAll(List.of(key));
+        }
+        return updated;
+    }
+
+    // Stores the value only if the key is absent. Returns the current value, null when this call stored it.
+    default V putIfAbsent(K key, V value) throws Exception {
+        V current = getIfPresent(key);
+        if(current == null){
+            put(key, value);
+        }
+        return current;
+    }
+
+    // Compare-and-set: stores newValue only if the key currently maps to a value equal to expected
+    default boolean replace(K key, V expected, V newValue) throws Exception {
+        V current = getIfPresent(key);
+        if(current == null || !current.equals(expected)){
+            return false;
+        }
+        put(key, newValue);
+        return true;
+    }
+
+    // Bulk operations. The defaults simply loop over the single key methods, a storage can override them when it has a cheaper batch path.
+
+    // Returns only the keys that are present, missing keys are left out instead of failing the whole batch
+    default Map<K, V> getAll(Collection<K> keys) throws Exception {
+        Map<K, V> result = new HashMap<>();
+        for(K key : keys){
+            if(containsKey(key)){
+                try{
+                    result.put(key, get(key));
+                }catch(Exception e){
+                    // Removed between containsKey and get - treat as missing
+                }
+            }
+        }
+        return result;
+    }
+
+    default void putAll(Map<K, V> entries) throws Exception {
+        for(Map.Entry<K, V> entry : entries.entrySet()){
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    // Keys that are not present are ignored
+    default void removeAll(Collection<K> keys) throws Exception {
+        for(K key : keys){
+            if(containsKey(key)){
+                try{
+                    remove(key);
+                }catch(Exception e){
+                    // Removed between containsKey and remove - nothing left to do
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,13 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces;
+
+// Turns a key or value into bytes and back. Needed by every storage that keeps data outside the Java heap (off-heap memory, files, network).
+public interface Codec<T> {
+    byte[] encode(T value) throws Exception;
+    T decode(byte[] bytes) throws Exception;
+}
+
+/* Why pluggable?
+    - The storage shouldn't care about the format, only about bytes.
+    - Strings can be stored as plain UTF-8 (fast, compact), other objects may use Java serialization, JSON, Protobuf...
+    - Swapping the format doesn't require touching the storage (Open/Closed principle).
+*/
@@ -1,9 +1,55 @@
 package J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
 public interface DBStorage<K, V> {
     void write(K key, V value) throws Exception;
+    // A missing key throws KeyNotFoundException, any other exception means the read failed
     V read(K key) throws Exception;
     void delete(K key) throws Exception;
+
+    // Value of the key, or empty if the DB doesn't have it. A missing key is a normal answer here, not an error, so
+    // caches use this on their miss path instead of catching the exception of read().
+    // Empty means "definitely not in the DB" (callers may cache that answer): a failing DB throws instead.
+    // Default wraps read().
+    default Optional<V> readIfPresent(K key) throws Exception {
+        try{
+            return Optional.of(read(key));
+        }catch(KeyNotFoundException e){
+            return Optional.empty();
+        }
+    }
+
+    // Every key in the DB (e.g. SELECT id FROM ...), used to build a BloomFilter of existing keys (BloomFilter.of(dbStorage, ...)).
+    // Empty if this DB can't list its keys: run without a filter then.
+    default Optional<Iterable<K>> scanKeys() throws Exception {
+        return Optional.empty();
+    }
+
+    // Batch read: one round trip for many keys (e.g. SELECT ... WHERE id IN (...)). Keys not found in the DB are left out of the result,
+    // so a key missing from the result is a definite "not found". A failing DB throws, it never returns a partial result.
+    // The default falls back to one read per key, so existing implementations keep working unchanged.
+    default Map<K, V> readAll(Collection<K> keys) throws Exception {
+        Map<K, V> result = new HashMap<>();
+        for(K key : keys){
+            try{
+                result.put(key, read(key));
+            }catch(KeyNotFoundException e){
+                // a missing key must not fail the whole batch (any other exception does)
+            }
+        }
+        return result;
+    }
+
+    // Batch write: one round trip for many entries (e.g. multi-row INSERT / batch statement)
+    default void writeAll(Map<K, V> entries) throws Exception {
+        for(Map.Entry<K, V> entry : entries.entrySet()){
+            write(entry.getKey(), entry.getValue());
+        }
+    }
 }
 
 /* Generics provides intent. We can use Object too but them storage maps something to something. (Would require casting and is prone to errors)
@@ -0,0 +1,12 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces;
+
+// DBStorage.read() throws this when the DB answered "the key doesn't exist". Anything else it throws is a failure (DB down,
+// timeout ...): the key may well exist, so callers must not remember it as absent.
+public class KeyNotFoundException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    public KeyNotFoundException(Object key){
+        super("Key not found in DBStorage: " + key);
+    }
+}
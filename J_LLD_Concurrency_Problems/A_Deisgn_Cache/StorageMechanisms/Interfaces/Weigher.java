@@ -0,0 +1,13 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces;
+
+// Weight of one cache entry, e.g. the size of the value in bytes. Lets a storage bound its memory instead of its entry count.
+@FunctionalInterface
+public interface Weigher<K, V> {
+    int weigh(K key, V value);
+}
+
+/* Rules for an implementation:
+    - Deterministic: the storage subtracts the weight again when the entry is replaced or removed, weighing the same entry twice must give the same number.
+    - Cheap: it runs on every write. A byte[] length or String length is fine, serializing the value to measure it is not.
+    - Not negative. 0 is allowed, such an entry never counts against the limit.
+*/
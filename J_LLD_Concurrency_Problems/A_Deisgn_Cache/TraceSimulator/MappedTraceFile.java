@@ -0,0 +1,194 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.TraceSimulator;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// A recorded trace file, memory-mapped and read window by window, so files of many GB stream through with
+// a constant heap and no read() copies.
+/* Formats:
+    - BINARY (*.bin): 8-byte big-endian keys back to back, what DataOutputStream.writeLong / write() produce.
+                      Fastest to read and the size tells the number of accesses.
+    - TEXT (anything else): one access per line, the first field (up to whitespace or ',') is the key, so plain key lists,
+                      CSV and "key size ..." style traces all work. Decimal keys are used as they are, any other key is
+                      hashed to 64 bits (FNV-1a). Empty lines and lines starting with '#' are skipped.
+
+   A MappedByteBuffer holds at most 2GB, so the file is mapped in windows (1GB by default). A binary window is a multiple of 8
+   bytes, so a key never spans two windows. A text line cut by the end of a window is not parsed: the next window is mapped
+   from the start of that line. A window is unmapped when the GC collects its buffer, only the address space is held until
+   then.
+*/
+public class MappedTraceFile implements TraceSource {
+
+    public enum Format {
+        BINARY, TEXT
+    }
+
+    static final long DEFAULT_WINDOW_BYTES = 1L << 30;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Path path;
+    private final Format format;
+    private final FileChannel channel;
+    private final long size;
+    private final long windowBytes;
+
+    private MappedByteBuffer window;
+    private long windowStart; // file offset of window index 0
+
+    public MappedTraceFile(Path path) throws IOException {
+        this(path, formatOf(path));
+    }
+
+    public MappedTraceFile(Path path, Format format) throws IOException {
+        this(path, format, DEFAULT_WINDOW_BYTES);
+    }
+
+    MappedTraceFile(Path path, Format format, long windowBytes) throws IOException {
+        if(windowBytes < Long.BYTES || windowBytes > Integer.MAX_VALUE){
+            throw new IllegalArgumentException("Window must be between 8 bytes and 2GB");
+        }
+        this.path = path;
+        this.format = format;
+        this.windowBytes = format == Format.BINARY ? windowBytes - windowBytes % Long.BYTES : windowBytes;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+        if(format == Format.BINARY && size % Long.BYTES != 0){
+            channel.close();
+            throw new IOException(path + " is not a binary trace: size " + size + " is not a multiple of 8");
+        }
+    }
+
+    public static Format formatOf(Path path){
+        return path.getFileName().toString().endsWith(".bin") ? Format.BINARY : Format.TEXT;
+    }
+
+    @Override
+    public int read(long[] keys) throws IOException {
+        return format == Format.BINARY ? readBinary(keys) : readText(keys);
+    }
+
+    private int readBinary(long[] keys) throws IOException {
+        int count = 0;
+        while(count < keys.length){
+            if(window == null || !window.hasRemaining()){
+                if(!map(window == null ? 0 : windowStart + window.limit())){
+                    break;
+                }
+            }
+            int n = Math.min(keys.length - count, window.remaining() / Long.BYTES);
+            for(int i = 0; i < n; i++){
+                keys[count++] = window.getLong();
+            }
+        }
+        return count;
+    }
+
+    private int readText(long[] keys) throws IOException {
+        int count = 0;
+        while(count < keys.length){
+            if(window == null || !window.hasRemaining()){
+                if(!map(window == null ? 0 : windowStart + window.limit())){
+                    break;
+                }
+            }
+            int start = window.position();
+            int end = start;
+            int limit = window.limit();
+            while(end < limit && window.get(end) != '\n'){
+                end++;
+            }
+            if(end == limit && windowStart + limit < size){
+                // The line goes on in the next window: map again from its start
+                if(start == 0){
+                    throw new IOException("Line at offset " + windowStart + " of " + path + " is longer than the mapping window");
+                }
+                map(windowStart + start);
+                continue;
+            }
+            window.position(Math.min(end + 1, limit));
+            int keyStart = start;
+            while(keyStart < end && isSeparator(window.get(keyStart))){
+                keyStart++;
+            }
+            if(keyStart == end || window.get(keyStart) == '#'){
+                continue;
+            }
+            int keyEnd = keyStart;
+            while(keyEnd < end && !isSeparator(window.get(keyEnd)) && window.get(keyEnd) != ','){
+                keyEnd++;
+            }
+            keys[count++] = parseKey(keyStart, keyEnd);
+        }
+        return count;
+    }
+
+    private static boolean isSeparator(byte b){
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    // Decimal keys (up to 18 digits, so they can't overflow) as they are, anything else FNV-1a hashed
+    private long parseKey(int from, int to){
+        int digitsFrom = window.get(from) == '-' && to - from > 1 ? from + 1 : from;
+        boolean numeric = to - digitsFrom <= 18;
+        long value = 0;
+        for(int i = digitsFrom; i < to && numeric; i++){
+            byte b = window.get(i);
+            numeric = b >= '0' && b <= '9';
+            value = value * 10 + (b - '0');
+        }
+        if(numeric){
+            return digitsFrom == from ? value : -value;
+        }
+        long hash = FNV_OFFSET_BASIS;
+        for(int i = from; i < to; i++){
+            hash ^= window.get(i) & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private boolean map(long offset) throws IOException {
+        if(offset >= size){
+            return false;
+        }
+        long length = Math.min(windowBytes, size - offset);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        windowStart = offset;
+        return true;
+    }
+
+    @Override
+    public String name(){
+        return path + " (" + format.name().toLowerCase() + ", " + size + " bytes)";
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+
+    // Writes a trace as a binary trace file, returns the number of keys written
+    public static long write(TraceSource source, Path path) throws IOException {
+        long written = 0;
+        long[] keys = new long[TraceSimulator.BLOCK_SIZE];
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 20))) {
+            int count;
+            while((count = source.read(keys)) > 0){
+                for(int i = 0; i < count; i++){
+                    out.writeLong(keys[i]);
+                }
+                written += count;
+            }
+        }
+        return written;
+    }
+}
@@ -0,0 +1,54 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.TraceSimulator;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.EvictionAlgorithms.EvictionAlgorithm;
+
+// One configuration of the sweep: a cache of `capacity` entries driven by one eviction algorithm instance.
+/* Same simulation as HitRatioComparison (what Cache.updateData/accessData do, minus storage and executors):
+    - hit  -> keyRead(key)
+    - miss -> evictKeyFor(key) if full, then keyAccessed(key)
+   Only ever used by one thread at a time (the sweep hands each block to each cache once), so plain fields are enough.
+*/
+class SimulatedCache {
+
+    private final String algorithm;
+    private final int capacity;
+    private final EvictionAlgorithm<Long> policy;
+    private final Set<Long> resident;
+    private long accesses;
+    private long hits;
+    private long evictions;
+
+    SimulatedCache(String algorithm, int capacity, EvictionAlgorithm<Long> policy){
+        this.algorithm = algorithm;
+        this.capacity = capacity;
+        this.policy = policy;
+        this.resident = new HashSet<>(capacity * 2);
+    }
+
+    void access(long[] keys, int count) throws Exception {
+        for(int i = 0; i < count; i++){
+            Long key = keys[i];
+            accesses++;
+            if(resident.contains(key)){
+                hits++;
+                policy.keyRead(key);
+                continue;
+            }
+            if(resident.size() >= capacity){
+                Long evicted = policy.evictKeyFor(key);
+                if(evicted != null && resident.remove(evicted)){
+                    evictions++;
+                }
+            }
+            resident.add(key);
+            policy.keyAccessed(key);
+        }
+    }
+
+    SimulationResult result(){
+        return new SimulationResult(algorithm, capacity, accesses, hits, evictions);
+    }
+}
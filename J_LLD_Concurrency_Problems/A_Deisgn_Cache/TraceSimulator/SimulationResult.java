@@ -0,0 +1,52 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.TraceSimulator;
+
+// Outcome of one (algorithm, capacity) configuration over a whole trace.
+public class SimulationResult {
+
+    private final String algorithm;
+    private final int capacity;
+    private final long accesses;
+    private final long hits;
+    private final long evictions;
+
+    public SimulationResult(String algorithm, int capacity, long accesses, long hits, long evictions){
+        this.algorithm = algorithm;
+        this.capacity = capacity;
+        this.accesses = accesses;
+        this.hits = hits;
+        this.evictions = evictions;
+    }
+
+    public String getAlgorithm(){
+        return algorithm;
+    }
+
+    public int getCapacity(){
+        return capacity;
+    }
+
+    public long getAccesses(){
+        return accesses;
+    }
+
+    public long getHits(){
+        return hits;
+    }
+
+    public long getMisses(){
+        return accesses - hits;
+    }
+
+    public long getEvictions(){
+        return evictions;
+    }
+
+    public double getHitRatio(){
+        return accesses == 0 ? 0 : (double) hits / accesses;
+    }
+
+    @Override
+    public String toString(){
+        return String.format("%s capacity=%d hitRatio=%.4f evictions=%d", algorithm, capacity, getHitRatio(), evictions);
+    }
+}
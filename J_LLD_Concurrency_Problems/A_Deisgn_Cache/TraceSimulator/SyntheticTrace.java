@@ -0,0 +1,131 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.TraceSimulator;
+
+import java.util.Random;
+
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.Benchmarks.ZipfianKeyGenerator;
+
+// Generated traces, so the simulator runs without any recorded data. Same seed -> same trace.
+/*  - zipf:      power-law popularity, a few hot keys and a long cold tail (typical web traffic)
+    - scanMixed: zipf traffic interrupted by scans over keys read exactly once (batch jobs, backups).
+                 Recency-only policies let the scan flush the hot set, frequency-aware ones shouldn't.
+    - loop:      the same keys over and over in a fixed order. With a loop longer than the cache, LRU always
+                 evicts the key that is needed next and never hits.
+   The shapes are the ones of HitRatioComparison, generated on the fly instead of held in a list, so they can be as long as
+   a recorded trace (or written to a file with TraceSimulator -write).
+*/
+public abstract class SyntheticTrace implements TraceSource {
+
+    private final String name;
+    private final long length;
+    private long produced;
+
+    protected SyntheticTrace(String name, long length){
+        if(length < 0){
+            throw new IllegalArgumentException("Trace length must not be negative");
+        }
+        this.name = name;
+        this.length = length;
+    }
+
+    public static SyntheticTrace zipf(int keySpace, double exponent, long length, long seed){
+        return new Zipf(keySpace, exponent, length, seed);
+    }
+
+    // burstLength zipf accesses, then scanLength keys never seen before, repeated
+    public static SyntheticTrace scanMixed(int keySpace, double exponent, long length, int burstLength, int scanLength, long seed){
+        return new ScanMixed(keySpace, exponent, length, burstLength, scanLength, seed);
+    }
+
+    public static SyntheticTrace loop(int loopSize, long length){
+        return new Loop(loopSize, length);
+    }
+
+    @Override
+    public int read(long[] keys){
+        int count = (int) Math.min(keys.length, length - produced);
+        for(int i = 0; i < count; i++){
+            keys[i] = nextKey();
+        }
+        produced += count;
+        return count;
+    }
+
+    protected abstract long nextKey();
+
+    @Override
+    public String name(){
+        return name;
+    }
+
+    public long length(){
+        return length;
+    }
+
+    private static class Zipf extends SyntheticTrace {
+
+        private final ZipfianKeyGenerator keys;
+        private final Random random;
+
+        Zipf(int keySpace, double exponent, long length, long seed){
+            super("zipf(" + exponent + ") over " + keySpace + " keys", length);
+            this.keys = new ZipfianKeyGenerator(keySpace, exponent);
+            this.random = new Random(seed);
+        }
+
+        @Override
+        protected long nextKey(){
+            return keys.nextKey(random);
+        }
+    }
+
+    private static class ScanMixed extends SyntheticTrace {
+
+        private final ZipfianKeyGenerator keys;
+        private final Random random;
+        private final int keySpace;
+        private final int burstLength;
+        private final int scanLength;
+        private long position; // in the current burst + scan cycle
+        private long scanned;  // scan keys are keySpace, keySpace + 1 ...: never a zipf key, never repeated
+
+        ScanMixed(int keySpace, double exponent, long length, int burstLength, int scanLength, long seed){
+            super("zipf(" + exponent + ") over " + keySpace + " keys + scans of " + scanLength + " every " + burstLength, length);
+            if(burstLength < 1 || scanLength < 0){
+                throw new IllegalArgumentException("Burst length must be positive and scan length not negative");
+            }
+            this.keys = new ZipfianKeyGenerator(keySpace, exponent);
+            this.random = new Random(seed);
+            this.keySpace = keySpace;
+            this.burstLength = burstLength;
+            this.scanLength = scanLength;
+        }
+
+        @Override
+        protected long nextKey(){
+            long key = position < burstLength ? keys.nextKey(random) : keySpace + scanned++;
+            position = (position + 1) % (burstLength + scanLength);
+            return key;
+        }
+    }
+
+    private static class Loop extends SyntheticTrace {
+
+        private final int loopSize;
+        private int next;
+
+        Loop(int loopSize, long length){
+            super("loop over " + loopSize + " keys", length);
+            if(loopSize < 1){
+                throw new IllegalArgumentException("Loop size must be positive");
+            }
+            this.loopSize = loopSize;
+        }
+
+        @Override
+        protected long nextKey(){
+            long key = next;
+            next = (next + 1) % loopSize;
+            return key;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.TraceSimulator;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_100K.ShardedLRUEvictionAlgorithm;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_100K.ShardedLRUEvictionAlgorithm.EvictionMode;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_10K.ConcurrentLRUEvictionAlgorithm;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.EvictionAlgorithms.EvictionAlgorithm;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.EvictionAlgorithms.ConcreteEvictionAlgorithm.LRUEvictionAlgorithm;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.EvictionAlgorithms.ConcreteEvictionAlgorithm.WTinyLFUEvictionAlgorithm;
+
+// Replays a key-access trace through every (eviction algorithm, capacity) pair and reports the hit ratio curve and
+// eviction count of each: the data for choosing a policy and a size, instead of guessing.
+/* One pass over the trace, whatever the number of configurations: the trace is read in blocks of BLOCK_SIZE keys, every
+   block is handed to all configurations in parallel on `threads` workers, and the next block is read meanwhile. A multi-GB
+   trace is read (and paged in) once, not once per configuration, and the configurations use all cores.
+   Each configuration is a SimulatedCache; an algorithm instance is only ever used by one thread at a time.
+
+   Usage: java ...TraceSimulator.TraceSimulator [options] [trace-file]
+     trace-file      recorded trace, see MappedTraceFile for the formats. Without one, the synthetic traces run.
+     -a NAME,...     algorithms (default all): LRU, ConcurrentLRU, ShardedLRU, ShardedLRU-sampled, ShardedLRU-local, W-TinyLFU
+     -c N,...        capacities in entries (default 1K, 2K, 5K ... 100K)
+     -t N            worker threads (default: number of cores)
+     -s NAME,...     synthetic traces (default all): zipf, scan, loop
+     -n N            accesses per synthetic trace (default 2M)
+     -csv FILE       also write every result as CSV (trace, algorithm, capacity, accesses, hits, hit ratio, evictions)
+     -write FILE     write the one synthetic trace selected with -s to FILE as a binary trace and exit,
+                     e.g. -s zipf -n 500000000 -write zipf.bin gives a 4GB trace
+*/
+public class TraceSimulator {
+
+    static final int BLOCK_SIZE = 1 << 16;
+    static final int[] DEFAULT_CAPACITIES = { 1_000, 2_000, 5_000, 10_000, 20_000, 50_000, 100_000 };
+
+    // Synthetic traces: zipf keys drawn from 1M keys, so even the largest default capacity can't hold every key
+    static final int SYNTHETIC_KEY_SPACE = 1_000_000;
+    static final double SYNTHETIC_EXPONENT = 0.99;
+    static final int SCAN_BURST_LENGTH = 100_000;
+    static final int SCAN_LENGTH = 50_000;
+    static final int LOOP_SIZE = 30_000; // between the default capacities: LRU gets 0% below it, ~100% above it
+    static final long SEED = 42;
+
+    private final Map<String, IntFunction<EvictionAlgorithm<Long>>> algorithms;
+    private final int[] capacities;
+    private final int threads;
+
+    public TraceSimulator(Map<String, IntFunction<EvictionAlgorithm<Long>>> algorithms, int[] capacities, int threads){
+        if(algorithms.isEmpty() || capacities.length == 0){
+            throw new IllegalArgumentException("At least one algorithm and one capacity are needed");
+        }
+        this.algorithms = algorithms;
+        this.capacities = capacities.clone();
+        this.threads = Math.max(1, threads);
+    }
+
+    // Every eviction algorithm of the repo, the factory gets the capacity (W-TinyLFU sizes its sketch and window with it)
+    public static Map<String, IntFunction<EvictionAlgorithm<Long>>> allAlgorithms(){
+        Map<String, IntFunction<EvictionAlgorithm<Long>>> algorithms = new LinkedHashMap<>();
+        algorithms.put("LRU", capacity -> new LRUEvictionAlgorithm<>());
+        algorithms.put("ConcurrentLRU", capacity -> new ConcurrentLRUEvictionAlgorithm<>());
+        algorithms.put("ShardedLRU", capacity -> new ShardedLRUEvictionAlgorithm<>(16));
+        algorithms.put("ShardedLRU-sampled", capacity -> new ShardedLRUEvictionAlgorithm<>(16, EvictionMode.SAMPLED, 4));
+        algorithms.put("ShardedLRU-local", capacity -> new ShardedLRUEvictionAlgorithm<>(16, EvictionMode.LOCAL, 4));
+        algorithms.put("W-TinyLFU", WTinyLFUEvictionAlgorithm::new);
+        return algorithms;
+    }
+
+    // Results in algorithm order, then capacity order
+    public List<SimulationResult> run(TraceSource trace) throws Exception {
+        List<SimulatedCache> caches = new ArrayList<>();
+        for(Map.Entry<String, IntFunction<EvictionAlgorithm<Long>>> algorithm : algorithms.entrySet()){
+            for(int capacity : capacities){
+                caches.add(new SimulatedCache(algorithm.getKey(), capacity, algorithm.getValue().apply(capacity)));
+            }
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "trace-simulator-" + threadCount.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+        try{
+            long[] block = new long[BLOCK_SIZE];
+            long[] nextBlock = new long[BLOCK_SIZE];
+            int count = trace.read(block);
+            List<Future<?>> pending = new ArrayList<>(caches.size());
+            while(count > 0){
+                long[] keys = block;
+                int keyCount = count;
+                for(SimulatedCache cache : caches){
+                    pending.add(workers.submit(() -> {
+                        cache.access(keys, keyCount);
+                        return null;
+                    }));
+                }
+                count = trace.read(nextBlock); // overlaps with the simulation of the current block
+                for(Future<?> future : pending){
+                    try{
+                        future.get();
+                    }catch(ExecutionException e){
+                        throw new Exception("Simulation failed: " + e.getCause(), e.getCause());
+                    }
+                }
+                pending.clear();
+                long[] swap = block;
+                block = nextBlock;
+                nextBlock = swap;
+            }
+        }finally{
+            workers.shutdownNow();
+        }
+
+        List<SimulationResult> results = new ArrayList<>(caches.size());
+        for(SimulatedCache cache : caches){
+            results.add(cache.result());
+        }
+        return results;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, IntFunction<EvictionAlgorithm<Long>>> algorithms = allAlgorithms();
+        int[] capacities = DEFAULT_CAPACITIES;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> synthetic = List.of("zipf", "scan", "loop");
+        long length = 2_000_000;
+        String csv = null;
+        String write = null;
+        String traceFile = null;
+        for(int i = 0; i < args.length; i++){
+            switch(args[i]){
+                case "-a": algorithms = selectAlgorithms(args[++i].split(",")); break;
+                case "-c": capacities = parseInts(args[++i]); break;
+                case "-t": threads = Integer.parseInt(args[++i]); break;
+                case "-s": synthetic = List.of(args[++i].split(",")); break;
+                case "-n": length = Long.parseLong(args[++i]); break;
+                case "-csv": csv = args[++i]; break;
+                case "-write": write = args[++i]; break;
+                default: traceFile = args[i];
+            }
+        }
+
+        if(write != null){
+            if(synthetic.size() != 1){
+                throw new IllegalArgumentException("-write needs exactly one synthetic trace (-s)");
+            }
+            long start = System.nanoTime();
+            long written = MappedTraceFile.write(syntheticTrace(synthetic.get(0), length), Path.of(write));
+            System.out.printf("Wrote %d keys to %s in %.1fs%n", written, write, (System.nanoTime() - start) / 1e9);
+            return;
+        }
+
+        List<TraceSource> traces = new ArrayList<>();
+        if(traceFile != null){
+            traces.add(new MappedTraceFile(Path.of(traceFile)));
+        }else{
+            for(String name : synthetic){
+                traces.add(syntheticTrace(name, length));
+            }
+        }
+
+        TraceSimulator simulator = new TraceSimulator(algorithms, capacities, threads);
+        StringBuilder csvLines = new StringBuilder("trace,algorithm,capacity,accesses,hits,hit_ratio,evictions\n");
+        for(TraceSource trace : traces){
+            long start = System.nanoTime();
+            List<SimulationResult> results;
+            try (TraceSource source = trace) {
+                results = simulator.run(source);
+            }
+            long accesses = results.get(0).getAccesses();
+            System.out.printf("%nTrace: %s%n%d accesses, %d configurations on %d threads, %.1fs%n", trace.name(), accesses,
+                    results.size(), threads, (System.nanoTime() - start) / 1e9);
+            System.out.print(formatTable("Hit ratio %", results, r -> String.format("%.2f", r.getHitRatio() * 100)));
+            System.out.print(formatTable("Evictions", results, r -> String.valueOf(r.getEvictions())));
+            for(SimulationResult r : results){
+                csvLines.append('"').append(trace.name().replace("\"", "'")).append("\",").append(r.getAlgorithm())
+                        .append(',').append(r.getCapacity()).append(',').append(r.getAccesses()).append(',')
+                        .append(r.getHits()).append(',').append(String.format("%.6f", r.getHitRatio())).append(',')
+                        .append(r.getEvictions()).append('\n');
+            }
+        }
+        if(csv != null){
+            Files.writeString(Path.of(csv), csvLines.toString(), StandardCharsets.UTF_8);
+            System.out.println("\nResults written to " + csv);
+        }
+    }
+
+    static SyntheticTrace syntheticTrace(String name, long length){
+        switch(name){
+            case "zipf": return SyntheticTrace.zipf(SYNTHETIC_KEY_SPACE, SYNTHETIC_EXPONENT, length, SEED);
+            case "scan": return SyntheticTrace.scanMixed(SYNTHETIC_KEY_SPACE, SYNTHETIC_EXPONENT, length, SCAN_BURST_LENGTH,
+                    SCAN_LENGTH, SEED);
+            case "loop": return SyntheticTrace.loop(LOOP_SIZE, length);
+            default: throw new IllegalArgumentException("Unknown synthetic trace " + name + " (zipf, scan, loop)");
+        }
+    }
+
+    private static Map<String, IntFunction<EvictionAlgorithm<Long>>> selectAlgorithms(String[] names){
+        Map<String, IntFunction<EvictionAlgorithm<Long>>> all = allAlgorithms();
+        Map<String, IntFunction<EvictionAlgorithm<Long>>> selected = new LinkedHashMap<>();
+        for(String name : names){
+            if(!all.containsKey(name)){
+                throw new IllegalArgumentException("Unknown algorithm " + name + ", known: " + all.keySet());
+            }
+            selected.put(name, all.get(name));
+        }
+        return selected;
+    }
+
+    private static int[] parseInts(String list){
+        String[] parts = list.split(",");
+        int[] values = new int[parts.length];
+        for(int i = 0; i < parts.length; i++){
+            values[i] = Integer.parseInt(parts[i].trim());
+        }
+        return values;
+    }
+
+    // One row per capacity, one column per algorithm: each column is that algorithm's curve
+    private static String formatTable(String title, List<SimulationResult> results,
+            Function<SimulationResult, String> cell){
+        Map<String, Map<Integer, String>> columns = new LinkedHashMap<>();
+        Map<Integer, Boolean> capacities = new LinkedHashMap<>();
+        for(SimulationResult r : results){
+            columns.computeIfAbsent(r.getAlgorithm(), a -> new LinkedHashMap<>()).put(r.getCapacity(), cell.apply(r));
+            capacities.put(r.getCapacity(), true);
+        }
+        StringBuilder table = new StringBuilder(String.format("%n%s%n%10s", title, "capacity"));
+        for(String algorithm : columns.keySet()){
+            table.append(String.format("  %" + Math.max(10, algorithm.length()) + "s", algorithm));
+        }
+        table.append('\n');
+        for(int capacity : capacities.keySet()){
+            table.append(String.format("%10d", capacity));
+            for(Map.Entry<String, Map<Integer, String>> column : columns.entrySet()){
+                table.append(String.format("  %" + Math.max(10, column.getKey().length()) + "s", column.getValue().get(capacity)));
+            }
+            table.append('\n');
+        }
+        return table.toString();
+    }
+}
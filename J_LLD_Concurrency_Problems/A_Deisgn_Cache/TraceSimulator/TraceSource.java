@@ -0,0 +1,20 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.TraceSimulator;
+
+import java.io.IOException;
+
+// A stream of key accesses, read block by block so a trace never has to fit in memory.
+/* Keys are longs: no parsing or boxing per access in the reader, and every recorded key fits
+   (numeric ids and block addresses as they are, string keys hashed to 64 bits).
+*/
+public interface TraceSource extends AutoCloseable {
+
+    // Fills keys from index 0 on and returns how many were read, 0 once the trace is exhausted
+    int read(long[] keys) throws IOException;
+
+    // Shown in the simulator's report
+    String name();
+
+    @Override
+    default void close() throws IOException {
+    }
+}
@@ -0,0 +1,108 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.UtilityClasses;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces.DBStorage;
+
+// Bloom filter: "is this key possibly in the set?" in a fixed number of bits, without storing the keys.
+/* Why?
+    - A lookup for a key that doesn't exist in the DB misses the cache every time and goes all the way to the DB.
+      If the filter is built from the DB key set, mightContain(key) == false proves the key is absent - no executor, no DB call.
+    - False positives are possible (the key then takes the normal miss path), false negatives are not.
+
+   Layout: m bits in a long array, k bit positions per key derived from two hashes (h1 + i * h2, Kirsch-Mitzenmacher).
+   m and k follow from the expected number of keys n and the target false positive rate p:
+        m = -n * ln(p) / ln(2)^2        k = m / n * ln(2)
+   e.g. 1% false positives cost ~9.6 bits per key, 7 hashes.
+
+   Thread safe: bits are only ever set (CAS on the word), so concurrent put / mightContain need no lock.
+   Keys can't be removed. A key deleted from the DB stays "maybe present" until the filter is rebuilt, which only costs a miss.
+   Keys written to the DB behind the cache's back are NOT in the filter: rebuild periodically in that case.
+*/
+public class BloomFilter<K> {
+
+    private final AtomicLongArray words;
+    private final long numBits;
+    private final int numHashes;
+
+    public BloomFilter(long expectedKeys, double falsePositiveRate){
+        if(expectedKeys <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1){
+            throw new IllegalArgumentException("Require expectedKeys > 0 and 0 < falsePositiveRate < 1");
+        }
+        long bits = (long) Math.ceil(-expectedKeys * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (bits + 63) / 64));
+        this.words = new AtomicLongArray(wordCount);
+        this.numBits = (long) wordCount * 64;
+        this.numHashes = Math.max(1, (int) Math.round((double) numBits / expectedKeys * Math.log(2)));
+    }
+
+    // Build from an existing key set
+    public static <K> BloomFilter<K> of(Iterable<K> keys, long expectedKeys, double falsePositiveRate){
+        BloomFilter<K> filter = new BloomFilter<>(expectedKeys, falsePositiveRate);
+        for(K key : keys){
+            filter.put(key);
+        }
+        return filter;
+    }
+
+    // Build from every key of the DB. Empty if the DB can't list its keys: the cache then runs without a filter, e.g.
+    //     BloomFilter.of(dbStorage, expectedKeys, 0.01).ifPresent(cache::enableBloomFilter);
+    public static <K> Optional<BloomFilter<K>> of(DBStorage<K, ?> dbStorage, long expectedKeys, double falsePositiveRate) throws Exception {
+        Optional<Iterable<K>> keys = dbStorage.scanKeys();
+        if(keys.isEmpty()){
+            return Optional.empty();
+        }
+        return Optional.of(of(keys.get(), expectedKeys, falsePositiveRate));
+    }
+
+    public void put(K key){
+        long h1 = spread(key.hashCode());
+        long h2 = mix(h1) | 1; // odd, so the k positions never all coincide
+        for(int i = 0; i < numHashes; i++){
+            long bit = Math.floorMod(h1 + i * h2, numBits);
+            int index = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long word = words.get(index);
+            while((word & mask) == 0 && !words.compareAndSet(index, word, word | mask)){
+                word = words.get(index);
+            }
+        }
+    }
+
+    // false = definitely never put, true = probably put
+    public boolean mightContain(K key){
+        long h1 = spread(key.hashCode());
+        long h2 = mix(h1) | 1;
+        for(int i = 0; i < numHashes; i++){
+            long bit = Math.floorMod(h1 + i * h2, numBits);
+            if((words.get((int) (bit >>> 6)) & (1L << bit)) == 0){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long getNumBits(){
+        return numBits;
+    }
+
+    public int getNumHashes(){
+        return numHashes;
+    }
+
+    // hashCode() of similar keys ("key-1", "key-2") differ in few bits, mix them over all 64
+    private static long spread(int hashCode){
+        return mix(hashCode * 0x9E3779B97F4A7C15L);
+    }
+
+    // Finalizer of MurmurHash3 (fmix64)
+    private static long mix(long h){
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,101 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.UtilityClasses;
+
+// Count-Min sketch with 4-bit counters, used to estimate how often a key was accessed "recently".
+/* Why not a HashMap<K, Integer> of counts?
+    - It would need one entry per key ever seen (including keys that are not cached anymore) -> unbounded memory.
+    - The sketch has a fixed size (one long per cached entry) and never stores keys, only counters.
+    - It can over-estimate (hash collisions) but never under-estimate, good enough to compare "hot vs cold".
+
+   Layout: every long in the table holds 16 counters of 4 bits (max value 15).
+   A key is hashed 4 times (depth 4), each hash picks one counter, the frequency is the minimum of those 4 counters.
+
+   Aging: after sampleSize increments all counters are halved, so keys that were popular long ago slowly lose their advantage.
+
+   Not thread safe - callers must guard it (the eviction algorithm already holds its own lock).
+*/
+public class FrequencySketch<K> {
+
+    private static final long[] SEEDS = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+    private static final long RESET_MASK = 0x7777777777777777L; // clears the top bit of every 4-bit counter after a shift
+    private static final long ONE_MASK = 0x1111111111111111L;   // lowest bit of every 4-bit counter
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int additions;
+
+    public FrequencySketch(int maximumSize){
+        int size = ceilingPowerOfTwo(Math.max(8, maximumSize));
+        this.table = new long[size];
+        this.tableMask = size - 1;
+        // Caffeine uses 10 x the cache size as the aging window
+        this.sampleSize = (int) Math.min(Integer.MAX_VALUE, 10L * Math.max(1, maximumSize));
+    }
+
+    // Estimated number of occurrences of the key in the current window (0 - 15)
+    public int frequency(K key){
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        int frequency = Integer.MAX_VALUE;
+        for(int i = 0; i < 4; i++){
+            int index = indexOf(hash, i);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    // Record one occurrence of the key, aging the whole sketch when the sample window is full
+    public void increment(K key){
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+
+        boolean added = false;
+        for(int i = 0; i < 4; i++){
+            int index = indexOf(hash, i);
+            added |= incrementAt(index, start + i);
+        }
+
+        if(added && (++additions >= sampleSize)){
+            reset();
+        }
+    }
+
+    // Increment the 4-bit counter j of table[i] unless it is saturated (15)
+    private boolean incrementAt(int i, int j){
+        int offset = j << 2;
+        long mask = (0xfL << offset);
+        if((table[i] & mask) != mask){
+            table[i] += (1L << offset);
+            return true;
+        }
+        return false;
+    }
+
+    // Halve every counter. Odd counters lose their lowest bit, which is accounted for in additions
+    private void reset(){
+        int odd = 0;
+        for(int i = 0; i < table.length; i++){
+            odd += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions = (additions >>> 1) - (odd >>> 2);
+    }
+
+    private int indexOf(int item, int i){
+        long hash = (item + SEEDS[i]) * SEEDS[i];
+        hash += (hash >>> 32);
+        return ((int) hash) & tableMask;
+    }
+
+    // Poor hashCode implementations (e.g. small Integers) would otherwise hit the same counters
+    private static int spread(int x){
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+
+    private static int ceilingPowerOfTwo(int x){
+        return Integer.highestOneBit(x - 1) << 1;
+    }
+}
@@ -0,0 +1,260 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.UtilityClasses;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Array backed doubly linked list(s) with a built-in key -> slot index. Replaces HashMap<K, DoublyLinkedListNode<K>> + DoublyLinkedList in the LRU policies.
+/* Why?
+    - HashMap + DoublyLinkedList costs, per key: a HashMap.Node (32 bytes), a DoublyLinkedListNode (24 bytes), a table
+      reference, and every move to the tail chases pointers to objects spread all over the heap.
+    - Here a key gets a slot number. Everything about the slot lives in parallel arrays:
+        keys[slot], hashes[slot], prev[slot], next[slot], listOf[slot]  (+ stamps[slot] if used)
+      prev/next are slot numbers (ints), not references. Removed slots go to a free list and are reused.
+    - The key -> slot lookup is an open addressing table of ints (slot + 1, 0 = empty) with linear probing.
+      So the only object per key is the key itself.
+    - Several lists can share one pool (numLists): W-TinyLFU keeps window / probation / protected in one structure,
+      moving a key between them is just relinking.
+
+   Not thread safe: the eviction algorithms already guard it with their own lock.
+   Null keys are not supported.
+*/
+public class IndexedLinkedList<K> {
+
+    public static final int NONE = -1;
+
+    private Object[] keys;
+    private int[] hashes;
+    private int[] prev;
+    private int[] next; // list successor, or next free slot for free slots
+    private byte[] listOf;
+    private long[] stamps; // optional per slot value (e.g. last access time), allocated on first use
+    private int[] table;   // slot + 1, 0 = empty
+    private int freeHead = NONE;
+    private int used;      // slots handed out at least once (slots >= used were never used)
+    private int size;
+
+    private final int[] heads;
+    private final int[] tails;
+    private final int[] sizes;
+
+    public IndexedLinkedList(){
+        this(1, 16);
+    }
+
+    public IndexedLinkedList(int numLists, int initialCapacity){
+        if(numLists < 1 || numLists > Byte.MAX_VALUE){
+            throw new IllegalArgumentException("numLists must be between 1 and " + Byte.MAX_VALUE);
+        }
+        heads = new int[numLists];
+        tails = new int[numLists];
+        sizes = new int[numLists];
+        Arrays.fill(heads, NONE);
+        Arrays.fill(tails, NONE);
+        allocate(Math.max(4, initialCapacity));
+    }
+
+    // Slot of the key, or NONE
+    public int indexOf(K key){
+        return table[probe(key, hash(key))] - 1;
+    }
+
+    // Add a key that is not in the structure yet at the tail (most recent end) of a list. Returns its slot.
+    public int addAtTail(int list, K key){
+        int hash = hash(key);
+        int tableIndex = probe(key, hash);
+        if(table[tableIndex] != 0){
+            throw new IllegalStateException("Key already present: " + key);
+        }
+        if(freeHead == NONE && used == keys.length){
+            grow();
+            tableIndex = probe(key, hash);
+        }
+        int slot;
+        if(freeHead != NONE){
+            slot = freeHead;
+            freeHead = next[slot];
+        }else{
+            slot = used++;
+        }
+        keys[slot] = key;
+        hashes[slot] = hash;
+        table[tableIndex] = slot + 1;
+        size++;
+        link(list, slot);
+        return slot;
+    }
+
+    // Move a slot to the tail of its own list
+    public void moveToTail(int slot){
+        moveToTail(listOf[slot], slot);
+    }
+
+    // Move a slot to the tail of another (or the same) list
+    public void moveToTail(int list, int slot){
+        if(tails[list] == slot){
+            return;
+        }
+        unlink(slot);
+        link(list, slot);
+    }
+
+    public void remove(int slot){
+        deleteFromTable(slot);
+        unlink(slot);
+        keys[slot] = null; // don't keep the key reachable
+        next[slot] = freeHead;
+        freeHead = slot;
+        size--;
+    }
+
+    // Remove and return the head (least recent end) of a list, null if the list is empty
+    public K removeHead(int list){
+        int slot = heads[list];
+        if(slot == NONE){
+            return null;
+        }
+        K key = keyAt(slot);
+        remove(slot);
+        return key;
+    }
+
+    public int head(int list){
+        return heads[list];
+    }
+
+    // Slot after this one towards the tail of its list, NONE at the tail. Walk a list with head(list) + next(slot).
+    public int next(int slot){
+        return next[slot];
+    }
+
+    // Append the keys of a list to out, head (least recent) first
+    public void appendKeys(int list, List<? super K> out){
+        for(int slot = heads[list]; slot != NONE; slot = next[slot]){
+            out.add(keyAt(slot));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public K keyAt(int slot){
+        return (K) keys[slot];
+    }
+
+    public int listOf(int slot){
+        return listOf[slot];
+    }
+
+    public long stampAt(int slot){
+        return stamps == null ? 0 : stamps[slot];
+    }
+
+    public void setStamp(int slot, long stamp){
+        if(stamps == null){
+            stamps = new long[keys.length];
+        }
+        stamps[slot] = stamp;
+    }
+
+    public int size(){
+        return size;
+    }
+
+    public int size(int list){
+        return sizes[list];
+    }
+
+    private void link(int list, int slot){
+        listOf[slot] = (byte) list;
+        prev[slot] = tails[list];
+        next[slot] = NONE;
+        if(tails[list] != NONE){
+            next[tails[list]] = slot;
+        }else{
+            heads[list] = slot;
+        }
+        tails[list] = slot;
+        sizes[list]++;
+    }
+
+    private void unlink(int slot){
+        int list = listOf[slot];
+        int p = prev[slot];
+        int n = next[slot];
+        if(p != NONE){
+            next[p] = n;
+        }else{
+            heads[list] = n;
+        }
+        if(n != NONE){
+            prev[n] = p;
+        }else{
+            tails[list] = p;
+        }
+        sizes[list]--;
+    }
+
+    // Table index holding the key, or the empty index where it would go
+    private int probe(Object key, int hash){
+        int mask = table.length - 1;
+        int index = hash & mask;
+        while(table[index] != 0){
+            int slot = table[index] - 1;
+            if(hashes[slot] == hash && keys[slot].equals(key)){
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    // Backward shift deletion: no tombstones, probe chains stay short after many evictions
+    private void deleteFromTable(int slot){
+        int mask = table.length - 1;
+        int hole = probe(keys[slot], hashes[slot]);
+        int index = (hole + 1) & mask;
+        while(table[index] != 0){
+            int home = hashes[table[index] - 1] & mask;
+            if(((index - home) & mask) >= ((index - hole) & mask)){
+                table[hole] = table[index];
+                hole = index;
+            }
+            index = (index + 1) & mask;
+        }
+        table[hole] = 0;
+    }
+
+    private void allocate(int capacity){
+        keys = new Object[capacity];
+        hashes = new int[capacity];
+        prev = new int[capacity];
+        next = new int[capacity];
+        listOf = new byte[capacity];
+        table = new int[Integer.highestOneBit(capacity - 1) << 2]; // >= 2x capacity: load factor <= 0.5
+    }
+
+    // Only called when every slot is in use, so slots keep their numbers and only the table is rebuilt
+    private void grow(){
+        int capacity = keys.length * 2;
+        keys = Arrays.copyOf(keys, capacity);
+        hashes = Arrays.copyOf(hashes, capacity);
+        prev = Arrays.copyOf(prev, capacity);
+        next = Arrays.copyOf(next, capacity);
+        listOf = Arrays.copyOf(listOf, capacity);
+        if(stamps != null){
+            stamps = Arrays.copyOf(stamps, capacity);
+        }
+        table = new int[Integer.highestOneBit(capacity - 1) << 2];
+        int mask = table.length - 1;
+        for(int slot = 0; slot < used; slot++){
+            int index = hashes[slot] & mask;
+            while(table[index] != 0){
+                index = (index + 1) & mask;
+            }
+            table[index] = slot + 1;
+        }
+    }
+
+    private static int hash(Object key){
+        int h = key.hashCode() * 0x9E3779B9; // spread poor hashCodes (e.g. small Integers) over the table
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,194 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.UtilityClasses;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Concurrent log-linear latency histogram (the HdrHistogram layout), values in nanoseconds.
+/* Why not fixed buckets (1ms, 5ms, 10ms ...)?
+    - A cache hit takes well under a millisecond, so every hit lands in the first bucket and p50 / p99 of hits are invisible.
+    - Log-linear buckets keep the same RELATIVE precision at every scale: every power of two is split into 64 equal
+      sub-buckets, so a recorded value is known within 1/64 (~1.6%) - ~16ns around 1us, ~16us around 1ms.
+    - Values 0 - 63ns get one bucket each. The last power of two ends at 2^37ns (~137s), larger values are counted in
+      the last bucket (max still reports them exactly). 2048 buckets = 16KB per recording thread.
+
+   Recording: every thread writes to its own Recorder (found through a ThreadLocal), so there is no lock and no CAS,
+   and nothing is allocated after the first record of a thread - the histogram doesn't disturb what it measures.
+   A Recorder has exactly one writer, so a plain get + lazySet is enough: the writer never loses an increment, readers
+   see the counts a little late at worst.
+
+   Reading: snapshot() merges all Recorders into an immutable Snapshot (percentiles, mean, max). Snapshots are
+   cumulative; snapshot().since(previous) gives the distribution of one reporting interval. Recorders of threads that
+   died are folded into one retired array on the next snapshot, so short-lived threads don't pile up memory.
+*/
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;        // 64 sub-buckets per power of two
+    private static final int MAX_SHIFT = 30;                            // last range: [2^36, 2^37) ns in steps of 2^30
+    static final int BUCKETS = (MAX_SHIFT + 2) * SUB_BUCKETS;           // 2048
+    private static final long MAX_TRACKABLE = (2L * SUB_BUCKETS << MAX_SHIFT) - 1;
+
+    private static final int SUM = BUCKETS;         // Recorder slot: sum of the recorded values
+    private static final int MAX = BUCKETS + 1;     // Recorder slot: largest recorded value
+
+    private final ThreadLocal<Recorder> recorder = ThreadLocal.withInitial(this::register);
+    private final List<Recorder> recorders = new ArrayList<>();   // guarded by this
+    private final long[] retired = new long[BUCKETS + 2];          // guarded by this, merged Recorders of dead threads
+
+    // Record one latency. Negative values (clock went backwards) count as 0.
+    public void record(long nanos){
+        long value = Math.max(0, nanos);
+        AtomicLongArray counts = recorder.get().counts;
+        int index = indexOf(value);
+        counts.lazySet(index, counts.get(index) + 1);
+        counts.lazySet(SUM, counts.get(SUM) + value);
+        if(value > counts.get(MAX)){
+            counts.lazySet(MAX, value);
+        }
+    }
+
+    // Cumulative distribution of everything recorded so far
+    public synchronized Snapshot snapshot(){
+        long[] merged = retired.clone();
+        List<Recorder> alive = new ArrayList<>(recorders.size());
+        for(Recorder r : recorders){
+            // A dead thread's writes are all visible once isAlive() returned false
+            if(!r.owner.isAlive()){
+                addTo(retired, r.counts);
+            } else {
+                alive.add(r);
+            }
+            addTo(merged, r.counts);
+        }
+        recorders.clear();
+        recorders.addAll(alive);
+        return new Snapshot(merged);
+    }
+
+    private synchronized Recorder register(){
+        Recorder r = new Recorder(Thread.currentThread());
+        recorders.add(r);
+        return r;
+    }
+
+    private static void addTo(long[] target, AtomicLongArray counts){
+        for(int i = 0; i < BUCKETS; i++){
+            target[i] += counts.get(i);
+        }
+        target[SUM] += counts.get(SUM);
+        target[MAX] = Math.max(target[MAX], counts.get(MAX));
+    }
+
+    // Values below 64 are their own bucket; above, the top 7 bits (the leading 1 + 6 sub-bucket bits) pick the bucket
+    static int indexOf(long value){
+        if(value < SUB_BUCKETS){
+            return (int) value;
+        }
+        if(value > MAX_TRACKABLE){
+            return BUCKETS - 1;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    // Smallest value counted in the bucket
+    static long lowestValueAt(int index){
+        if(index < SUB_BUCKETS){
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        long mantissa = (index & (SUB_BUCKETS - 1)) + SUB_BUCKETS;
+        return mantissa << shift;
+    }
+
+    // Largest value counted in the bucket
+    static long highestValueAt(int index){
+        if(index < SUB_BUCKETS){
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        return lowestValueAt(index) + (1L << shift) - 1;
+    }
+
+    private static final class Recorder {
+        final Thread owner;
+        final AtomicLongArray counts = new AtomicLongArray(BUCKETS + 2);
+
+        Recorder(Thread owner){
+            this.owner = owner;
+        }
+    }
+
+    // Immutable merged view, values in nanoseconds
+    public static final class Snapshot {
+
+        private final long[] counts; // BUCKETS bucket counts, then SUM and MAX
+        private final long count;
+
+        Snapshot(long[] counts){
+            this.counts = counts;
+            long total = 0;
+            for(int i = 0; i < BUCKETS; i++){
+                total += counts[i];
+            }
+            this.count = total;
+        }
+
+        public long getCount(){
+            return count;
+        }
+
+        public long getSum(){
+            return counts[SUM];
+        }
+
+        public double getMean(){
+            return count == 0 ? 0.0 : (double) counts[SUM] / count;
+        }
+
+        public long getMax(){
+            return counts[MAX];
+        }
+
+        // Value at the percentile (0 - 100): the highest value of the bucket holding that rank, never above max
+        public long valueAtPercentile(double percentile){
+            if(count == 0){
+                return 0;
+            }
+            double p = Math.min(100.0, Math.max(0.0, percentile));
+            long rank = Math.max(1, (long) Math.ceil(p / 100.0 * count));
+            long seen = 0;
+            for(int i = 0; i < BUCKETS; i++){
+                seen += counts[i];
+                if(seen >= rank){
+                    return Math.min(highestValueAt(i), counts[MAX]);
+                }
+            }
+            return counts[MAX];
+        }
+
+        // Values recorded between `earlier` and this snapshot (both of the same histogram). The max of the interval is
+        // not known exactly: it is the top of the highest bucket that got values, capped by the cumulative max.
+        public Snapshot since(Snapshot earlier){
+            long[] diff = new long[BUCKETS + 2];
+            int highest = -1;
+            for(int i = 0; i < BUCKETS; i++){
+                diff[i] = counts[i] - earlier.counts[i];
+                if(diff[i] > 0){
+                    highest = i;
+                }
+            }
+            diff[SUM] = counts[SUM] - earlier.counts[SUM];
+            diff[MAX] = highest < 0 ? 0 : Math.min(highestValueAt(highest), counts[MAX]);
+            return new Snapshot(diff);
+        }
+
+        @Override
+        public String toString(){
+            return String.format("{count=%d, mean=%.1fus, p50=%.1fus, p99=%.1fus, p99.9=%.1fus, max=%.1fus}",
+                    count, getMean() / 1000.0, valueAtPercentile(50) / 1000.0, valueAtPercentile(99) / 1000.0,
+                    valueAtPercentile(99.9) / 1000.0, getMax() / 1000.0);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.UtilityClasses;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// Heap bytes per tracked key: HashMap + DoublyLinkedList (the old LRU layout) vs IndexedLinkedList.
+/* Method:
+    - The keys are created once up front and shared by every layout, so only the bookkeeping is measured.
+    - Used heap is read after repeated System.gc() before and after building each structure. Not byte exact,
+      but with a million keys the noise is far below one byte per entry.
+    - "with access times" adds what ShardedLRUEvictionAlgorithm keeps per key (HashMap<K, Long> before, a long[] stamp now).
+
+   Usage: java ...UtilityClasses.LruFootprintComparison [keys]
+*/
+public class LruFootprintComparison {
+
+    public static void main(String[] args){
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        String[] keys = new String[count];
+        for(int i = 0; i < count; i++){
+            keys[i] = "key-" + i;
+        }
+
+        System.out.printf("Bytes per key (%d keys, keys themselves excluded)%n", count);
+        report("HashMap + DoublyLinkedList", count, () -> {
+            Map<String, DoublyLinkedListNode<String>> map = new HashMap<>();
+            DoublyLinkedList<String> list = new DoublyLinkedList<>();
+            for(String key : keys){
+                DoublyLinkedListNode<String> node = new DoublyLinkedListNode<>(key);
+                list.addNodeAtTail(node);
+                map.put(key, node);
+            }
+            return new Object[]{map, list};
+        });
+        report("  + HashMap<K, Long> access times", count, () -> {
+            Map<String, DoublyLinkedListNode<String>> map = new HashMap<>();
+            Map<String, Long> accessTimes = new HashMap<>();
+            DoublyLinkedList<String> list = new DoublyLinkedList<>();
+            for(String key : keys){
+                DoublyLinkedListNode<String> node = new DoublyLinkedListNode<>(key);
+                list.addNodeAtTail(node);
+                map.put(key, node);
+                accessTimes.put(key, System.nanoTime());
+            }
+            return new Object[]{map, accessTimes, list};
+        });
+        report("IndexedLinkedList", count, () -> {
+            IndexedLinkedList<String> list = new IndexedLinkedList<>();
+            for(String key : keys){
+                list.addAtTail(0, key);
+            }
+            return list;
+        });
+        report("  + stamps (access times)", count, () -> {
+            IndexedLinkedList<String> list = new IndexedLinkedList<>();
+            for(String key : keys){
+                list.setStamp(list.addAtTail(0, key), System.nanoTime());
+            }
+            return list;
+        });
+        report("IndexedLinkedList (presized)", count, () -> {
+            IndexedLinkedList<String> list = new IndexedLinkedList<>(1, count);
+            for(String key : keys){
+                list.addAtTail(0, key);
+            }
+            return list;
+        });
+        System.out.println(keys.length); // keep the keys reachable until the end
+    }
+
+    private static void report(String name, int count, Supplier<Object> build){
+        long before = usedHeap();
+        Object structure = build.get();
+        long after = usedHeap();
+        System.out.printf("  %-36s %6.1f%n", name, (double) (after - before) / count);
+        if(structure.hashCode() == 42){ // keep the structure reachable past the measurement
+            System.out.println();
+        }
+    }
+
+    private static long usedHeap(){
+        Runtime runtime = Runtime.getRuntime();
+        for(int i = 0; i < 5; i++){
+            System.gc();
+            try{
+                Thread.sleep(50);
+            }catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
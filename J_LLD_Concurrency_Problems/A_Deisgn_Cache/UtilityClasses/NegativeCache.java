@@ -0,0 +1,117 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.UtilityClasses;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Remembers keys the DB recently answered "not found" for, so repeated lookups of a missing key don't go to the DB again.
+/* Why separate from the normal cache?
+    - Absent keys must not take capacity from real entries, and the answer goes stale faster (someone may create the key),
+      so they get their own small capacity and a short TTL.
+    - No value is stored, only key -> deadline.
+
+   Bounded by insertion order (FIFO): every mark is queued with its deadline, once more than `capacity` marks were queued
+   the oldest one is dropped. Good enough here: an entry dropped early only costs one more DB read.
+   A queued mark only removes the key if the map still holds that same deadline: a key that expired (or was invalidated)
+   and was marked again is queued twice, and the old queue entry must not drop the fresh mark.
+   Writes through the cache must call invalidate(key), otherwise a freshly written key would still be reported absent
+   until its TTL runs out.
+
+   Race with writes: a reader asks the DB, gets "not found", and marks the key - but a write of that key may have
+   landed between the DB answer and the mark. So the reader takes generation() BEFORE the DB call and passes it to
+   markAbsent. invalidate() bumps the generation first and removes the key second, so either the write removes the
+   mark or the reader sees the new generation and takes its mark back.
+*/
+public class NegativeCache<K> {
+
+    private final ConcurrentHashMap<K, Long> deadlines = new ConcurrentHashMap<>(); // key -> expiry in System.nanoTime()
+    private final ConcurrentLinkedQueue<Mark<K>> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong generation = new AtomicLong(); // bumped by every invalidate
+    private final int capacity;
+    private final long ttlNanos;
+    private final LongAdder hits = new LongAdder();
+
+    public NegativeCache(int capacity, long ttlMillis){
+        if(capacity <= 0 || ttlMillis <= 0){
+            throw new IllegalArgumentException("Capacity and TTL must be positive");
+        }
+        this.capacity = capacity;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    }
+
+    // true if the DB said "not found" for this key less than ttl ago
+    public boolean isKnownAbsent(K key){
+        Long deadline = deadlines.get(key);
+        if(deadline == null){
+            return false;
+        }
+        if(System.nanoTime() - deadline >= 0){
+            deadlines.remove(key, deadline); // expired, the next lookup goes to the DB again
+            return false;
+        }
+        hits.increment();
+        return true;
+    }
+
+    // Take this before asking the DB, pass it to markAbsent afterwards
+    public long generation(){
+        return generation.get();
+    }
+
+    // The DB answered "not found" for a question asked at readGeneration
+    public void markAbsent(K key, long readGeneration){
+        Long deadline = System.nanoTime() + ttlNanos;
+        deadlines.put(key, deadline);
+        // Queued on every mark, also when it replaces an older one: the old queue entry won't remove this deadline
+        insertionOrder.offer(new Mark<>(key, deadline));
+        if(queued.incrementAndGet() > capacity){
+            trim();
+        }
+        if(generation.get() != readGeneration){
+            // Some key was written meanwhile, maybe this one: don't trust the answer
+            deadlines.remove(key, deadline);
+        }
+    }
+
+    // The key was written: it exists now. Call before queuing the write and again once it reached the DB.
+    public void invalidate(K key){
+        generation.incrementAndGet();
+        deadlines.remove(key);
+    }
+
+    // Keys dropped from the map by invalidate/expiry stay queued until they are polled here, so the queue is what is bounded
+    private void trim(){
+        while(queued.get() > capacity){
+            Mark<K> oldest = insertionOrder.poll();
+            if(oldest == null){
+                return;
+            }
+            queued.decrementAndGet();
+            deadlines.remove(oldest.key, oldest.deadline); // no-op if the key was marked again since
+        }
+    }
+
+    public int size(){
+        return deadlines.size();
+    }
+
+    // Lookups answered "absent" without going to the DB
+    public long getHits(){
+        return hits.sum();
+    }
+
+    // One markAbsent call: the key and the deadline it stored
+    private static final class Mark<K>{
+        final K key;
+        final Long deadline;
+
+        Mark(K key, Long deadline){
+            this.key = key;
+            this.deadline = deadline;
+        }
+    }
+}
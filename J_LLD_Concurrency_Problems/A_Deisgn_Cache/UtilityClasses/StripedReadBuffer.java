@@ -0,0 +1,114 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.UtilityClasses;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+// Lossy buffer for cache-hit events: readers record keys here instead of taking the eviction policy's lock, and one
+// drainer at a time replays them into the policy in a batch.
+/* Striped by thread id into small ring buffers, so concurrent readers rarely share one (one CAS per recorded hit, no
+   allocation, unlike a ConcurrentLinkedQueue node per hit).
+    - record() never blocks: a full stripe (or a lost race for a slot) drops the event. Recency is only a hint for
+      eviction, losing a few events barely changes the hit rate.
+    - record() returns true once the caller's stripe is full: the caller should then try to drain (tryLock, never wait).
+    - drainTo() must only be called by one thread at a time (the holder of the caller's drain lock).
+   Used by Cache for its hit path and by ReadBufferedEvictionAlgorithm for callers that report hits straight to the policy.
+*/
+public class StripedReadBuffer<K> {
+
+    private final RingBuffer<K>[] stripes;
+    private final int stripeMask;
+
+    // numStripes and bufferSize are rounded up to powers of two. One stripe per core is enough: more stripes than
+    // running threads only waste memory.
+    public StripedReadBuffer(int numStripes, int bufferSize){
+        int stripeCount = ceilingPowerOfTwo(numStripes);
+        this.stripes = newStripes(stripeCount);
+        for(int i = 0; i < stripeCount; i++){
+            stripes[i] = new RingBuffer<>(ceilingPowerOfTwo(bufferSize));
+        }
+        this.stripeMask = stripeCount - 1;
+    }
+
+    // Generic array creation: every element is a RingBuffer<K> created by the constructor, the array never escapes
+    @SuppressWarnings("unchecked")
+    private static <K> RingBuffer<K>[] newStripes(int count){
+        return (RingBuffer<K>[]) new RingBuffer<?>[count];
+    }
+
+    // True when the caller should drain: its stripe is full, whether or not this event made it in
+    public boolean record(K key){
+        RingBuffer<K> buffer = stripes[stripeIndex()];
+        return !buffer.offer(key) || buffer.isFull();
+    }
+
+    // Replays every published event in recording order per stripe. Single consumer only.
+    public void drainTo(Consumer<K> consumer){
+        for(RingBuffer<K> buffer : stripes){
+            buffer.drainTo(consumer);
+        }
+    }
+
+    private int stripeIndex(){
+        // Spread thread ids so consecutive ids don't land on neighbouring stripes
+        long id = Thread.currentThread().getId();
+        int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & stripeMask;
+    }
+
+    private static int ceilingPowerOfTwo(int x){
+        if(x <= 1){
+            return 1;
+        }
+        return Integer.highestOneBit(x - 1) << 1;
+    }
+
+    // Bounded multi-producer / single-consumer ring buffer.
+    /* Producers claim a slot with one CAS on writeCounter and publish the key with lazySet. The single consumer reads
+       slots in order and stops at the first slot that is claimed but not yet published.
+    */
+    private static final class RingBuffer<K> {
+        private final AtomicReferenceArray<K> slots;
+        private final int mask;
+        private final AtomicLong writeCounter = new AtomicLong();
+        private volatile long readCounter; // only advanced by the drainer
+
+        RingBuffer(int size){
+            this.slots = new AtomicReferenceArray<>(size);
+            this.mask = size - 1;
+        }
+
+        boolean offer(K key){
+            long head = readCounter;
+            long tail = writeCounter.get();
+            if(tail - head >= slots.length()){
+                return false; // full - lossy
+            }
+            if(!writeCounter.compareAndSet(tail, tail + 1)){
+                return false; // another reader took this slot, dropping is cheaper than retrying
+            }
+            slots.lazySet((int) (tail & mask), key);
+            return true;
+        }
+
+        boolean isFull(){
+            return writeCounter.get() - readCounter >= slots.length();
+        }
+
+        void drainTo(Consumer<K> consumer){
+            long head = readCounter;
+            long tail = writeCounter.get();
+            while(head < tail){
+                int index = (int) (head & mask);
+                K key = slots.get(index);
+                if(key == null){
+                    break; // slot claimed but not yet published, pick it up next drain
+                }
+                slots.lazySet(index, null);
+                head++;
+                consumer.accept(key);
+            }
+            readCounter = head;
+        }
+    }
+}
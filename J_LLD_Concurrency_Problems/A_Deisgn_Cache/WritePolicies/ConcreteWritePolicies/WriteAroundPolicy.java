@@ -1,5 +1,7 @@
 package J_LLD_Concurrency_Problems.A_Deisgn_Cache.WritePolicies.ConcreteWritePolicies;
 
+import java.util.Map;
+
 import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces.CacheStorage;
 import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces.DBStorage;
 import J_LLD_Concurrency_Problems.A_Deisgn_Cache.WritePolicies.WritePolicy;
@@ -12,4 +14,9 @@ public class WriteAroundPolicy<K, V> implements WritePolicy<K, V> {
         dbStorage.write(key, value);
         // No need for CompletableFuture here - single synchronous operation
     }
-}
\ No newline at end of file
+
+    @Override
+    public void writeAll(Map<K, V> entries, CacheStorage<K, V> cacheStorage, DBStorage<K, V> dbStorage) throws Exception {
+        dbStorage.writeAll(entries);
+    }
+}
@@ -1,47 +1,50 @@
 package J_LLD_Concurrency_Problems.A_Deisgn_Cache.WritePolicies.ConcreteWritePolicies;
 
-import java.util.Map;
-import java.util.Queue;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces.CacheStorage;
 import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces.DBStorage;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.WritePolicies.WriteBehindEngine;
 import J_LLD_Concurrency_Problems.A_Deisgn_Cache.WritePolicies.WritePolicy;
 
 public class WriteBackPolicy<K, V> implements WritePolicy<K, V> {
 
-    private final Queue<Map.Entry<K, V>> writeQueue = new ConcurrentLinkedQueue<>(); // When you delay DB writes, you must remember what needs to be written later. Each entyr: "At some point, write (key, value) to DB"
+    // When you delay DB writes, you must remember what needs to be written later. The engine keeps one pending entry per key
+    // ("at some point, write (key, latest value) to DB") and flushes them in batches by size or age.
+    private final WriteBehindEngine<K, V> engine;
+    private final AtomicLong sequence = new AtomicLong(); // orders writes of the same key inside the buffer
+    private final long backpressureTimeoutMs;
+
+    public WriteBackPolicy(){
+        this(10, 1000, 10_000, 5000); // Defaults: batch of 10 keys, flush at least every second, 10K pending keys
+    }
+
+    public WriteBackPolicy(int maxBatchSize, long maxDelayMs, int maxPending, long backpressureTimeoutMs){
+        this.engine = new WriteBehindEngine<>(maxBatchSize, maxDelayMs, maxPending);
+        this.backpressureTimeoutMs = backpressureTimeoutMs;
+    }
 
-    
     @Override
     public void write(K key, V value, CacheStorage<K, V> cacheStorage, DBStorage<K, V> dbStorage) throws Exception {
+        engine.awaitCapacity(backpressureTimeoutMs);
         // Write to cache immediately (sync)
         cacheStorage.put(key, value);
-        writeQueue.offer(Map.entry(key, value));
-        
-        // Batch write asynchronously to DB
-        if (writeQueue.size() >= 10) {
-            CompletableFuture.runAsync(() -> flushBatch(dbStorage));
-        }
+        // DB write is buffered, a later write of the same key replaces it
+        engine.submit(key, value, sequence.incrementAndGet(), dbStorage);
     }
 
-    //Take multiple pending writes from the queue and write them to the database in one go.
-    private void flushBatch(DBStorage<K, V> dbStorage) {
-        int batchSize = 10;
-
-        for (int i = 0; i < batchSize; i++) {
-            Map.Entry<K, V> entry = writeQueue.poll();
-            if (entry == null) {
-                break;
-            }
-            try {
-                dbStorage.write(entry.getKey(), entry.getValue());
-            } catch (Exception e) {
-                // handle failure: retry, log, requeue, etc.
-                e.printStackTrace();
-            }
-        }
+    // Push everything buffered to the DB now
+    public void flush(){
+        engine.flush();
     }
 
+    // Returns true if every buffered write reached the DB before the timeout
+    public boolean shutdown(long timeoutMs){
+        return engine.shutdown(timeoutMs);
+    }
+
+    // Coalescing ratio, flush lag, failed batches...
+    public WriteBehindEngine<K, V> getEngine(){
+        return engine;
+    }
 }
@@ -1,5 +1,6 @@
 package J_LLD_Concurrency_Problems.A_Deisgn_Cache.WritePolicies.ConcreteWritePolicies;
 
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 
@@ -30,4 +31,26 @@ public class WriteThroughPolicy<K, V> implements WritePolicy<K, V> {
 
         CompletableFuture.allOf(cachedFuture, dbFuture).join();
     }
+
+    // Same as write() but one batch call to each storage instead of one call per key
+    @Override
+    public void writeAll(Map<K, V> entries, CacheStorage<K, V> cacheStorage, DBStorage<K, V> dbStorage) throws Exception {
+        CompletableFuture<Void> cachedFuture = CompletableFuture.runAsync(() -> {
+            try{
+                cacheStorage.putAll(entries);
+            }catch(Exception e){
+                throw new CompletionException(e);
+            }
+        });
+
+        CompletableFuture<Void> dbFuture = CompletableFuture.runAsync(() -> {
+            try{
+                dbStorage.writeAll(entries);
+            }catch(Exception e){
+                throw new CompletionException(e);
+            }
+        });
+
+        CompletableFuture.allOf(cachedFuture, dbFuture).join();
+    }
 }
@@ -0,0 +1,372 @@
+package J_LLD_Concurrency_Problems.A_Deisgn_Cache.WritePolicies;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces.DBStorage;
+
+// Shared buffering + flushing logic for the asynchronous write policies (WriteBackPolicy, DurableWriteBehindPolicy).
+/* How it works:
+    - Pending writes live in a per-key map, not a queue: a second write to a key that is not flushed yet replaces the
+      first one (coalescing). A hot key written 1000 times between two flushes costs one DB write, not 1000.
+    - Every write carries a sequence number (LSN for the durable policy). When two writes of a key meet in the
+      buffer, the higher sequence wins, whatever the order they arrived in.
+    - A flush is triggered by size (maxBatchSize pending keys) or by age (oldest pending write older than maxDelayMs),
+      and sends the whole batch with ONE DBStorage.writeAll call.
+    - A failed batch is merged back into the buffer (a newer pending write of the same key wins) and retried with
+      exponential backoff, so a DB outage doesn't turn into a retry storm.
+    - Bounded: writers call awaitCapacity() before adding, which waits for a flush when maxPending keys are buffered.
+    - Listener callbacks tell the owner which sequences reached the DB and which were superseded by a newer write,
+      that's what DurableWriteBehindPolicy needs to move its WAL checkpoint.
+
+   Metrics: coalescing ratio (writes submitted per entry written to the DB) and flush lag (age of the oldest write
+   in a batch when it reached the DB).
+*/
+public class WriteBehindEngine<K, V> {
+
+    // Callbacks run on the flushing thread, keep them short
+    public interface FlushListener {
+        // Every sequence of a batch that was written to the DB
+        default void onFlushed(long[] sequences){}
+
+        // A pending write was replaced by a newer one of the same key before reaching the DB
+        default void onSuperseded(long sequence){}
+    }
+
+    private final int maxBatchSize;
+    private final int maxPending;
+    private final long maxDelayNanos;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final FlushListener listener;
+
+    private final ConcurrentHashMap<K, Pending<V>> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicLong oldestPendingNanos = new AtomicLong(); // 0 = nothing pending
+    private volatile DBStorage<K, V> dbStorage; // WritePolicy hands the DB in on every write
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private long backoffNanos; // guarded by flushLock
+    private volatile long retryAtNanos;
+
+    private final ReentrantLock capacityLock = new ReentrantLock();
+    private final Condition notFull = capacityLock.newCondition();
+
+    private final ScheduledExecutorService flusher;
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private volatile boolean shutdown;
+
+    // Metrics
+    private final LongAdder writesSubmitted = new LongAdder();
+    private final LongAdder writesCoalesced = new LongAdder();
+    private final LongAdder entriesFlushed = new LongAdder();
+    private final LongAdder batchesFlushed = new LongAdder();
+    private final LongAdder batchesFailed = new LongAdder();
+    private volatile long lastFlushLagNanos;
+    private final AtomicLong maxFlushLagNanos = new AtomicLong();
+
+    public WriteBehindEngine(int maxBatchSize, long maxDelayMs, int maxPending){
+        this(maxBatchSize, maxDelayMs, maxPending, 100, 30_000, new FlushListener(){});
+    }
+
+    public WriteBehindEngine(int maxBatchSize, long maxDelayMs, int maxPending, long initialBackoffMs, long maxBackoffMs,
+            FlushListener listener){
+        this.maxBatchSize = maxBatchSize;
+        this.maxPending = Math.max(maxPending, maxBatchSize);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+        this.initialBackoffNanos = TimeUnit.MILLISECONDS.toNanos(initialBackoffMs);
+        this.maxBackoffNanos = TimeUnit.MILLISECONDS.toNanos(maxBackoffMs);
+        this.backoffNanos = initialBackoffNanos;
+        this.listener = listener;
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "write-behind-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        // Age trigger: check a few times per maxDelay so a write waits at most ~1.25 x maxDelay
+        long tickMs = Math.max(1, maxDelayMs / 4);
+        flusher.scheduleWithFixedDelay(this::flushDue, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Blocks while the buffer is full (backpressure). Throws if no flush makes room within timeoutMs (e.g. DB down).
+    public void awaitCapacity(long timeoutMs) throws Exception {
+        if(pendingCount.get() < maxPending){
+            return;
+        }
+        requestFlush();
+        long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        capacityLock.lock();
+        try{
+            while(pendingCount.get() >= maxPending){
+                if(remaining <= 0){
+                    throw new Exception("Write-behind buffer full (" + maxPending + " pending keys)");
+                }
+                remaining = notFull.awaitNanos(remaining);
+            }
+        }finally{
+            capacityLock.unlock();
+        }
+    }
+
+    // Buffer a write. Never blocks: call awaitCapacity first to respect the bound.
+    public void submit(K key, V value, long sequence, DBStorage<K, V> dbStorage) throws Exception {
+        if(shutdown){
+            throw new Exception("Write-behind engine is shut down");
+        }
+        this.dbStorage = dbStorage;
+        writesSubmitted.increment();
+        long now = System.nanoTime();
+        long[] superseded = {-1};
+        pending.compute(key, (k, old) -> {
+            if(old == null){
+                pendingCount.incrementAndGet();
+                return new Pending<>(value, sequence, now);
+            }
+            if(old.sequence > sequence){ // arrived late, the buffered write is newer
+                superseded[0] = sequence;
+                return old;
+            }
+            superseded[0] = old.sequence;
+            return new Pending<>(value, sequence, old.firstWriteNanos); // keep the age of the oldest unflushed write
+        });
+        if(superseded[0] >= 0){
+            writesCoalesced.increment();
+            listener.onSuperseded(superseded[0]);
+        }
+        oldestPendingNanos.compareAndSet(0, now);
+        if(pendingCount.get() >= maxBatchSize){
+            requestFlush();
+        }
+    }
+
+    // Flush everything that is buffered now, ignoring the age/size triggers (still honours the retry backoff)
+    public void flush(){
+        flushLock.lock();
+        try{
+            while(pendingCount.get() > 0 && flushOnce()){
+                // keep going until empty or a batch fails
+            }
+        }finally{
+            flushLock.unlock();
+        }
+    }
+
+    // Stops the background flusher and drains the buffer, retrying failed batches until timeoutMs. Returns true if everything reached the DB.
+    public boolean shutdown(long timeoutMs){
+        shutdown = true;
+        flusher.shutdown();
+        try{
+            flusher.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS);
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while(pendingCount.get() > 0 && System.nanoTime() < deadline){
+            flush();
+            long wait = retryAtNanos - System.nanoTime();
+            if(pendingCount.get() > 0 && wait > 0){
+                try{
+                    Thread.sleep(TimeUnit.NANOSECONDS.toMillis(Math.min(wait, deadline - System.nanoTime())) + 1);
+                }catch(InterruptedException e){
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        return pendingCount.get() == 0;
+    }
+
+    private void requestFlush(){
+        if(!shutdown && flushRequested.compareAndSet(false, true)){
+            try{
+                flusher.execute(this::flushDue);
+            }catch(RejectedExecutionException e){
+                // shutdown() stopped the flusher after the check above: flush on this thread instead (shutdown's own drain
+                // serializes with it on flushLock), a caller waiting in awaitCapacity still gets its room
+                flushRequested.set(false);
+                flush();
+            }
+        }
+    }
+
+    // Runs on the flusher thread: flush while the size or age trigger holds
+    private void flushDue(){
+        flushRequested.set(false);
+        flushLock.lock();
+        try{
+            while(isFlushDue() && flushOnce()){
+                // a batch is capped at maxBatchSize, more may be due
+            }
+        }catch(RuntimeException e){
+            // never let an exception cancel the scheduled task
+        }finally{
+            flushLock.unlock();
+        }
+    }
+
+    private boolean isFlushDue(){
+        int count = pendingCount.get();
+        if(count == 0){
+            return false;
+        }
+        if(count >= maxBatchSize){
+            return true;
+        }
+        long oldest = oldestPendingNanos.get();
+        return oldest != 0 && System.nanoTime() - oldest >= maxDelayNanos;
+    }
+
+    // One batch, one writeAll. Caller holds flushLock. Returns false if nothing could be written (backoff or failure).
+    private boolean flushOnce(){
+        DBStorage<K, V> db = dbStorage;
+        if(db == null || System.nanoTime() < retryAtNanos){
+            return false;
+        }
+
+        // Take up to maxBatchSize entries out of the buffer. remove(key, value) loses against a concurrent overwrite,
+        // in which case the newer write stays for the next batch.
+        List<Map.Entry<K, Pending<V>>> batch = new ArrayList<>(Math.min(maxBatchSize, pendingCount.get()));
+        oldestPendingNanos.set(0);
+        Iterator<Map.Entry<K, Pending<V>>> it = pending.entrySet().iterator();
+        while(batch.size() < maxBatchSize && it.hasNext()){
+            Map.Entry<K, Pending<V>> entry = it.next();
+            if(pending.remove(entry.getKey(), entry.getValue())){
+                pendingCount.decrementAndGet();
+                batch.add(entry);
+            }
+        }
+        if(pendingCount.get() > 0){
+            oldestPendingNanos.compareAndSet(0, System.nanoTime()); // approximate: leftovers are flushed by the size trigger anyway
+        }
+        if(batch.isEmpty()){
+            return false;
+        }
+
+        Map<K, V> entries = new LinkedHashMap<>();
+        long[] sequences = new long[batch.size()];
+        long oldestWrite = Long.MAX_VALUE;
+        for(int i = 0; i < batch.size(); i++){
+            Pending<V> p = batch.get(i).getValue();
+            entries.put(batch.get(i).getKey(), p.value);
+            sequences[i] = p.sequence;
+            oldestWrite = Math.min(oldestWrite, p.firstWriteNanos);
+        }
+
+        try{
+            db.writeAll(entries);
+        }catch(Exception e){
+            batchesFailed.increment();
+            requeue(batch);
+            retryAtNanos = System.nanoTime() + backoffNanos;
+            backoffNanos = Math.min(backoffNanos * 2, maxBackoffNanos);
+            return false;
+        }
+
+        backoffNanos = initialBackoffNanos;
+        retryAtNanos = 0;
+        batchesFlushed.increment();
+        entriesFlushed.add(batch.size());
+        long lag = System.nanoTime() - oldestWrite;
+        lastFlushLagNanos = lag;
+        maxFlushLagNanos.accumulateAndGet(lag, Math::max);
+        listener.onFlushed(sequences);
+
+        capacityLock.lock();
+        try{
+            notFull.signalAll();
+        }finally{
+            capacityLock.unlock();
+        }
+        return true;
+    }
+
+    // Put a failed batch back. A write that arrived for the same key in the meantime is newer and wins.
+    private void requeue(List<Map.Entry<K, Pending<V>>> batch){
+        for(Map.Entry<K, Pending<V>> entry : batch){
+            Pending<V> failed = entry.getValue();
+            long[] superseded = {-1};
+            pending.compute(entry.getKey(), (k, current) -> {
+                if(current == null){
+                    pendingCount.incrementAndGet();
+                    return failed;
+                }
+                if(current.sequence > failed.sequence){
+                    superseded[0] = failed.sequence;
+                    return new Pending<>(current.value, current.sequence, failed.firstWriteNanos);
+                }
+                superseded[0] = current.sequence;
+                return failed;
+            });
+            if(superseded[0] >= 0){
+                writesCoalesced.increment();
+                listener.onSuperseded(superseded[0]);
+            }
+            oldestPendingNanos.compareAndSet(0, failed.firstWriteNanos);
+        }
+    }
+
+    public int getPendingCount(){
+        return pendingCount.get();
+    }
+
+    public long getWritesSubmitted(){
+        return writesSubmitted.sum();
+    }
+
+    public long getWritesCoalesced(){
+        return writesCoalesced.sum();
+    }
+
+    public long getEntriesFlushed(){
+        return entriesFlushed.sum();
+    }
+
+    public long getBatchesFlushed(){
+        return batchesFlushed.sum();
+    }
+
+    public long getBatchesFailed(){
+        return batchesFailed.sum();
+    }
+
+    // Writes accepted per entry written to the DB. 1.0 = no coalescing, 10.0 = one DB write per 10 cache writes.
+    public double getCoalescingRatio(){
+        long flushed = entriesFlushed.sum();
+        return flushed == 0 ? 1.0 : (double) (flushed + writesCoalesced.sum()) / flushed;
+    }
+
+    public long getLastFlushLagMs(){
+        return TimeUnit.NANOSECONDS.toMillis(lastFlushLagNanos);
+    }
+
+    public long getMaxFlushLagMs(){
+        return TimeUnit.NANOSECONDS.toMillis(maxFlushLagNanos.get());
+    }
+
+    private static final class Pending<V> {
+        final V value;
+        final long sequence;
+        final long firstWriteNanos;
+
+        Pending(V value, long sequence, long firstWriteNanos){
+            this.value = value;
+            this.sequence = sequence;
+            this.firstWriteNanos = firstWriteNanos;
+        }
+    }
+}
@@ -1,9 +1,18 @@
 package J_LLD_Concurrency_Problems.A_Deisgn_Cache.WritePolicies;
 
+import java.util.Map;
+
 import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces.CacheStorage;
 import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.Interfaces.DBStorage;
 
 public interface WritePolicy<K, V> {
     // Write key-value pair to both cache and DB storage concurrent;y
     void write(K key, V value, CacheStorage<K, V> cacheStorage, DBStorage<K, V> dbStorage) throws Exception;
+
+    // Batch version used by Cache.putAll. Default keeps the per-key semantics of the policy, policies that talk to the DB synchronously override it to use one writeAll.
+    default void writeAll(Map<K, V> entries, CacheStorage<K, V> cacheStorage, DBStorage<K, V> dbStorage) throws Exception {
+        for(Map.Entry<K, V> entry : entries.entrySet()){
+            write(entry.getKey(), entry.getValue(), cacheStorage, dbStorage);
+        }
+    }
 }
@@ -1,13 +1,17 @@
 package J_LLD_Concurrency_Problems.B_Design_Pub_Sub.Controller;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 import J_LLD_Concurrency_Problems.B_Design_Pub_Sub.Core.Message;
 import J_LLD_Concurrency_Problems.B_Design_Pub_Sub.Core.Topic;
@@ -22,6 +26,7 @@ public class KafkaController {
     // executor service to run concurrent subscriber message consumption
     private final ExecutorService subscriberExecutor;
     private final AtomicInteger topicIdCounter; 
+    private final LongAdder publishedCount = new LongAdder();
 
     public KafkaController(){
         topics = new ConcurrentHashMap<>();
@@ -57,6 +62,7 @@ public class KafkaController {
             throw new IllegalArgumentException("Topic with id " + topicId + " does not exist.");
         }
         topic.addMessage(message);
+        publishedCount.increment();
 
         List<TopicSubscriber> subscribers = topicSubscribers.get(topicId);
         for(TopicSubscriber topicSubscriber : subscribers){
@@ -87,6 +93,25 @@ public class KafkaController {
         }
     }
 
+    // Monitoring: subscriber lag per subscription = topic.getMessageCount() - offset
+    public Collection<Topic> getTopics(){
+        return Collections.unmodifiableCollection(topics.values());
+    }
+
+    public List<TopicSubscriber> getSubscriptions(String topicId){
+        List<TopicSubscriber> subscribers = topicSubscribers.get(topicId);
+        return subscribers == null ? List.of() : Collections.unmodifiableList(subscribers);
+    }
+
+    public long getPublishedCount(){
+        return publishedCount.sum();
+    }
+
+    // Subscriber loops currently running (one per subscription, Executors.newCachedThreadPool is a ThreadPoolExecutor)
+    public int getSubscriberThreadCount(){
+        return ((ThreadPoolExecutor) subscriberExecutor).getActiveCount();
+    }
+
     public void shutdown(){
         subscriberExecutor.shutdown();
         try {
@@ -30,6 +30,10 @@ public class Topic {
     public synchronized List<Message> getMessages() {
         return Collections.unmodifiableList(messages);
     }
+
+    public synchronized int getMessageCount() {
+        return messages.size();
+    }
 }
 
 /* Some important points:
@@ -3,6 +3,7 @@ package J_LLD_Concurrency_Problems.C_Design_Rate_Limiter.Controller;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.LongAdder;
 
 import J_LLD_Concurrency_Problems.C_Design_Rate_Limiter.Algorithms.RateLimiterInterface;
 import J_LLD_Concurrency_Problems.C_Design_Rate_Limiter.CommonEnums.RateLimiterType;
@@ -12,6 +13,8 @@ public class RateLimiterController {
     
     private final RateLimiterInterface rateLimiter;
     private final ExecutorService executor;
+    private final LongAdder allowedCount = new LongAdder();
+    private final LongAdder blockedCount = new LongAdder();
 
     public RateLimiterController(RateLimiterType type, Map<String, Object> config, ExecutorService executorService){
         this.rateLimiter = RateLimiterFactory.createLimiter(type, config);
@@ -21,6 +24,7 @@ public class RateLimiterController {
     public CompletableFuture<Boolean> processRequest(String rateLimitKey){
         return CompletableFuture.supplyAsync(() -> {
             boolean allowed = rateLimiter.giveAccess(rateLimitKey);
+            (allowed ? allowedCount : blockedCount).increment();
             if(allowed){
                 System.out.printf("Request with key [%s]: Allowed%n", rateLimitKey);
             }else{
@@ -30,6 +34,15 @@ public class RateLimiterController {
         }, executor);
     }
 
+    // Decisions so far, for monitoring (the executor passed in can be monitored on its own)
+    public long getAllowedCount(){
+        return allowedCount.sum();
+    }
+
+    public long getBlockedCount(){
+        return blockedCount.sum();
+    }
+
     public void updateConfiguration(Map<String, Object> config){
         rateLimiter.updateConfiguration(config);
     }
@@ -4,8 +4,10 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import J_LLD_Concurrency_Problems.C_Design_Rate_Limiter.Algorithms.RateLimiterInterface;
 import J_LLD_Concurrency_Problems.C_Design_Rate_Limiter.CommonEnums.RateLimiterType;
@@ -33,9 +35,11 @@ Single-Threaded Executor Per Partition:
 
 */
 public class RateLimiterControllerSingleThreadedExecutor {
-    private final List<ExecutorService> partitions;
+    private final List<ThreadPoolExecutor> partitions;
     private final int numPartitions;
     private final RateLimiterInterface rateLimiter;
+    private final LongAdder allowedCount = new LongAdder();
+    private final LongAdder blockedCount = new LongAdder();
 
     public RateLimiterControllerSingleThreadedExecutor(RateLimiterType type, Map<String, Object> config){
         this.rateLimiter = RateLimiterFactory.createLimiter(type, config);
@@ -43,17 +47,53 @@ public class RateLimiterControllerSingleThreadedExecutor {
         this.partitions = new ArrayList<>();
 
         for(int i=0; i<numPartitions; i++){
-            partitions.add(Executors.newSingleThreadExecutor());
+            // Same as Executors.newSingleThreadExecutor(), but the queue stays reachable for getQueueDepthPerPartition()
+            partitions.add(new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>()));
         }
     }
 
     public CompletableFuture<Boolean> processRequest(String rateLimitKey){
         int partition = rateLimitKey == null ? 0 : getPartition(rateLimitKey); // null -> partition 0 (global bucket)
         return CompletableFuture.supplyAsync(() -> {
-            return rateLimiter.giveAccess(rateLimitKey);
+            boolean allowed = rateLimiter.giveAccess(rateLimitKey);
+            (allowed ? allowedCount : blockedCount).increment();
+            return allowed;
         }, partitions.get(partition));
     }
 
+    public long getAllowedCount(){
+        return allowedCount.sum();
+    }
+
+    public long getBlockedCount(){
+        return blockedCount.sum();
+    }
+
+    // Requests waiting per partition: one deep queue = one hot key (all its requests share a thread)
+    public int[] getQueueDepthPerPartition(){
+        int[] depths = new int[numPartitions];
+        for(int i=0; i<numPartitions; i++){
+            depths[i] = partitions.get(i).getQueue().size();
+        }
+        return depths;
+    }
+
+    // Partitions processing a request right now
+    public int getBusyPartitionCount(){
+        int busy = 0;
+        for(ThreadPoolExecutor partition : partitions){
+            busy += partition.getActiveCount();
+        }
+        return busy;
+    }
+
+    public void shutdown(){
+        rateLimiter.shutdown();
+        for(ThreadPoolExecutor partition : partitions){
+            partition.shutdown();
+        }
+    }
+
     private int getPartition(String key){
        return Math.abs(key.hashCode()) % numPartitions;
     }
@@ -0,0 +1,130 @@
+package J_LLD_Concurrency_Problems.Monitoring;
+
+import java.io.PrintStream;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// MetricsReporter printing one line per source and window, for watching a load test live:
+//   [14:02:17] users-cache: hit ratio 97.3% | cache_hits_total 48120/s | cache_misses_total 1331/s | executor_queued_tasks 12
+/* - Counters are shown as their rate during the window, gauges as their current value.
+   - A source with <prefix>hits_total and <prefix>misses_total counters also gets the hit ratio OF THE WINDOW (the
+     lifetime ratio hides a sudden drop).
+   - Series of a metric with extra labels (one per executor, topic ...) are shown as name{label=value,...}, only the
+     labels that differ between the series of the source are printed.
+   - Optional name prefixes restrict the output ("cache_", "executor_") - everything else is still served over HTTP.
+*/
+public class ConsoleReporter implements MetricsReporter {
+
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss").withZone(ZoneId.systemDefault());
+
+    private final PrintStream out;
+    private final String[] namePrefixes;
+
+    public ConsoleReporter(String... namePrefixes){
+        this(System.out, namePrefixes);
+    }
+
+    public ConsoleReporter(PrintStream out, String... namePrefixes){
+        this.out = out;
+        this.namePrefixes = namePrefixes;
+    }
+
+    @Override
+    public void report(MetricsWindow window){
+        Map<String, List<MetricSample>> bySource = new LinkedHashMap<>();
+        for(MetricSample sample : window.getSamples()){
+            bySource.computeIfAbsent(sample.getSource(), s -> new ArrayList<>()).add(sample);
+        }
+        String time = TIME.format(Instant.ofEpochMilli(window.getEndMillis()));
+        for(Map.Entry<String, List<MetricSample>> source : bySource.entrySet()){
+            List<String> parts = new ArrayList<>();
+            String hitRatio = windowHitRatio(window, source.getValue());
+            if(hitRatio != null){
+                parts.add(hitRatio);
+            }
+            Map<String, String> shared = sharedLabels(source.getValue());
+            for(MetricSample sample : source.getValue()){
+                if(!included(sample.getName())){
+                    continue;
+                }
+                String value = sample.getType() == MetricSample.Type.COUNTER
+                        ? format(window.rate(sample)) + "/s"
+                        : format(sample.getValue());
+                parts.add(sample.getName() + extraLabels(sample, shared) + " " + value);
+            }
+            if(!parts.isEmpty()){
+                out.println("[" + time + "] " + source.getKey() + ": " + String.join(" | ", parts));
+            }
+        }
+    }
+
+    private boolean included(String name){
+        if(namePrefixes.length == 0){
+            return true;
+        }
+        for(String prefix : namePrefixes){
+            if(name.startsWith(prefix)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String windowHitRatio(MetricsWindow window, List<MetricSample> samples){
+        Map<String, MetricSample> counters = new HashMap<>();
+        for(MetricSample sample : samples){
+            if(sample.getType() == MetricSample.Type.COUNTER){
+                counters.put(sample.getName(), sample);
+            }
+        }
+        for(MetricSample hits : counters.values()){
+            if(!hits.getName().endsWith("hits_total")){
+                continue;
+            }
+            String prefix = hits.getName().substring(0, hits.getName().length() - "hits_total".length());
+            MetricSample misses = counters.get(prefix + "misses_total");
+            if(misses == null){
+                continue;
+            }
+            double hitDelta = window.delta(hits);
+            double total = hitDelta + window.delta(misses);
+            return total == 0 ? "hit ratio -" : String.format("hit ratio %.1f%%", 100.0 * hitDelta / total);
+        }
+        return null;
+    }
+
+    // Labels with the same value on every sample of the source (typically the registration labels)
+    private static Map<String, String> sharedLabels(List<MetricSample> samples){
+        Map<String, String> shared = new HashMap<>(samples.get(0).getLabels());
+        for(MetricSample sample : samples){
+            shared.entrySet().removeIf(label -> !label.getValue().equals(sample.getLabels().get(label.getKey())));
+        }
+        return shared;
+    }
+
+    private static String extraLabels(MetricSample sample, Map<String, String> shared){
+        StringBuilder sb = new StringBuilder();
+        for(Map.Entry<String, String> label : sample.getLabels().entrySet()){
+            if(!shared.containsKey(label.getKey())){
+                sb.append(sb.length() == 0 ? "{" : ",").append(label.getKey()).append('=').append(label.getValue());
+            }
+        }
+        return sb.length() == 0 ? "" : sb.append('}').toString();
+    }
+
+    private static String format(double value){
+        if(Double.isNaN(value)){
+            return "-";
+        }
+        if(value == Math.rint(value) || Math.abs(value) >= 100){
+            return String.format("%.0f", value);
+        }
+        return String.format(Math.abs(value) >= 1 ? "%.2f" : "%.4f", value);
+    }
+}
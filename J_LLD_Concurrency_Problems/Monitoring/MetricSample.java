@@ -0,0 +1,82 @@
+package J_LLD_Concurrency_Problems.Monitoring;
+
+import java.util.Collections;
+import java.util.Map;
+
+// One value of one metric at collection time, e.g. cache_hits_total{cache="users"} 1234
+public class MetricSample {
+
+    public enum Type {
+        COUNTER,    // only goes up (reporters show its rate)
+        GAUGE       // current value (sizes, queue depths, percentiles)
+    }
+
+    private final String source;    // name the MetricsSource was registered under
+    private final String name;
+    private final String help;
+    private final Type type;
+    private final Map<String, String> labels;
+    private final double value;
+
+    MetricSample(String source, String name, String help, Type type, Map<String, String> labels, double value){
+        this.source = source;
+        this.name = name;
+        this.help = help;
+        this.type = type;
+        this.labels = Collections.unmodifiableMap(labels);
+        this.value = value;
+    }
+
+    public String getSource(){
+        return source;
+    }
+
+    public String getName(){
+        return name;
+    }
+
+    public String getHelp(){
+        return help;
+    }
+
+    public Type getType(){
+        return type;
+    }
+
+    public Map<String, String> getLabels(){
+        return labels;
+    }
+
+    public double getValue(){
+        return value;
+    }
+
+    // {cache="users",executor="3"} in Prometheus text format, "" without labels
+    public String labelString(){
+        if(labels.isEmpty()){
+            return "";
+        }
+        StringBuilder sb = new StringBuilder("{");
+        for(Map.Entry<String, String> label : labels.entrySet()){
+            if(sb.length() > 1){
+                sb.append(',');
+            }
+            sb.append(label.getKey()).append("=\"").append(escape(label.getValue())).append('"');
+        }
+        return sb.append('}').toString();
+    }
+
+    // Identifies the same series across collections (name + labels)
+    public String seriesKey(){
+        return name + labelString();
+    }
+
+    private static String escape(String value){
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    @Override
+    public String toString(){
+        return seriesKey() + " " + value;
+    }
+}
@@ -0,0 +1,43 @@
+package J_LLD_Concurrency_Problems.Monitoring;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Handed to a MetricsSource during collection. Every sample gets the labels the source was registered with, plus
+// the extra label pairs given here: collector.gauge("executor_queue_depth", "...", 3, "executor", "2")
+public class MetricsCollector {
+
+    private final String source;
+    private final Map<String, String> baseLabels;
+    private final List<MetricSample> samples = new ArrayList<>();
+
+    MetricsCollector(String source, Map<String, String> baseLabels){
+        this.source = source;
+        this.baseLabels = baseLabels;
+    }
+
+    public void counter(String name, String help, double value, String... labelPairs){
+        add(name, help, MetricSample.Type.COUNTER, value, labelPairs);
+    }
+
+    public void gauge(String name, String help, double value, String... labelPairs){
+        add(name, help, MetricSample.Type.GAUGE, value, labelPairs);
+    }
+
+    private void add(String name, String help, MetricSample.Type type, double value, String[] labelPairs){
+        if(labelPairs.length % 2 != 0){
+            throw new IllegalArgumentException("Labels must be given as name, value pairs: " + name);
+        }
+        Map<String, String> labels = new LinkedHashMap<>(baseLabels);
+        for(int i = 0; i < labelPairs.length; i += 2){
+            labels.put(labelPairs[i], labelPairs[i + 1]);
+        }
+        samples.add(new MetricSample(source, name, help, type, labels, value));
+    }
+
+    List<MetricSample> getSamples(){
+        return samples;
+    }
+}
@@ -0,0 +1,92 @@
+package J_LLD_Concurrency_Problems.Monitoring;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+// Scrape endpoint for a MetricsRegistry on the JDK's built-in HttpServer (no dependency).
+/* GET /metrics -> every registered source in Prometheus text format
+   GET /health  -> "ok"
+
+   Bound to the loopback address only: the metrics show internals (key distribution, queue depths) and the server has
+   no authentication, so it is meant for load tests and local debugging (curl, a local Prometheus), not for exposure.
+   Scrapes are served one at a time by a single daemon thread, so a slow source can't pile up threads.
+*/
+public class MetricsHttpServer {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final MetricsRegistry registry;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    // port 0 picks a free port, see getPort()
+    public MetricsHttpServer(MetricsRegistry registry, int port) throws IOException {
+        this.registry = registry;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "metrics-http");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(executor);
+        server.createContext("/metrics", exchange -> respond(exchange, () -> this.registry.toPrometheusFormat()));
+        server.createContext("/health", exchange -> respond(exchange, () -> "ok\n"));
+    }
+
+    public void start(){
+        server.start();
+    }
+
+    public void stop(){
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public int getPort(){
+        return server.getAddress().getPort();
+    }
+
+    public String getUrl(){
+        return "http://" + server.getAddress().getHostString() + ":" + getPort() + "/metrics";
+    }
+
+    private interface Body {
+        String render() throws Exception;
+    }
+
+    private static void respond(HttpExchange exchange, Body body) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            if(!method.equals("GET") && !method.equals("HEAD")){
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                send(exchange, 405, "Method not allowed\n");
+                return;
+            }
+            send(exchange, 200, body.render());
+        } catch (Exception e) {
+            send(exchange, 500, "Metrics collection failed: " + e + "\n");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+        boolean head = exchange.getRequestMethod().equals("HEAD");
+        exchange.sendResponseHeaders(status, head ? -1 : bytes.length);
+        if(!head){
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package J_LLD_Concurrency_Problems.Monitoring;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+// One place that knows every component worth watching (caches, rate limiters, pub/sub, executors).
+/* Pull model: components keep their own counters (LongAdder, histograms) as they do today, the registry only asks
+   them for their values when someone collects - the HTTP endpoint on a scrape, a PeriodicReporter on its timer.
+   Nothing is recorded twice and an idle registry costs nothing.
+
+   Every source is registered under a unique name with a set of labels, e.g.
+        registry.register("users-cache", Map.of("cache", "users"), MetricsSources.enhancedCache(cache));
+   so the same metric name (cache_hits_total, executor_queue_depth ...) from several components stays apart.
+
+   A source that throws is skipped for that collection and counted in metrics_source_errors_total, the other
+   sources are still reported.
+*/
+public class MetricsRegistry {
+
+    private final List<Registration> registrations = new CopyOnWriteArrayList<>();
+    private final Map<String, LongAdder> sourceErrors = new ConcurrentHashMap<>();
+
+    public void register(String name, Map<String, String> labels, MetricsSource source){
+        synchronized(registrations){
+            for(Registration registration : registrations){
+                if(registration.name.equals(name)){
+                    throw new IllegalArgumentException("Metrics source already registered: " + name);
+                }
+            }
+            registrations.add(new Registration(name, new LinkedHashMap<>(labels), source));
+        }
+    }
+
+    public void register(String name, MetricsSource source){
+        register(name, Map.of(), source);
+    }
+
+    public void unregister(String name){
+        registrations.removeIf(registration -> registration.name.equals(name));
+        sourceErrors.remove(name);
+    }
+
+    // Current value of every metric of every source, in registration order
+    public List<MetricSample> collect(){
+        List<MetricSample> samples = new ArrayList<>();
+        for(Registration registration : registrations){
+            MetricsCollector collector = new MetricsCollector(registration.name, registration.labels);
+            try {
+                registration.source.collect(collector);
+                samples.addAll(collector.getSamples());
+            } catch (Exception e) {
+                sourceErrors.computeIfAbsent(registration.name, n -> new LongAdder()).increment();
+            }
+        }
+        for(Map.Entry<String, LongAdder> errors : sourceErrors.entrySet()){
+            MetricsCollector collector = new MetricsCollector("metrics", Map.of("source", errors.getKey()));
+            collector.counter("metrics_source_errors_total", "Collections that failed for a source", errors.getValue().sum());
+            samples.addAll(collector.getSamples());
+        }
+        return samples;
+    }
+
+    // Prometheus text exposition format (version 0.0.4): samples of the same name are grouped under one HELP / TYPE
+    public String toPrometheusFormat(){
+        Map<String, List<MetricSample>> byName = new LinkedHashMap<>();
+        for(MetricSample sample : collect()){
+            byName.computeIfAbsent(sample.getName(), n -> new ArrayList<>()).add(sample);
+        }
+        StringBuilder sb = new StringBuilder();
+        for(Map.Entry<String, List<MetricSample>> metric : byName.entrySet()){
+            MetricSample first = metric.getValue().get(0);
+            sb.append("# HELP ").append(metric.getKey()).append(' ').append(first.getHelp()).append('\n');
+            sb.append("# TYPE ").append(metric.getKey()).append(' ')
+                    .append(first.getType() == MetricSample.Type.COUNTER ? "counter" : "gauge").append('\n');
+            for(MetricSample sample : metric.getValue()){
+                sb.append(sample.seriesKey()).append(' ').append(formatValue(sample.getValue())).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    static String formatValue(double value){
+        if(Double.isNaN(value)){
+            return "NaN";
+        }
+        if(Double.isInfinite(value)){
+            return value > 0 ? "+Inf" : "-Inf";
+        }
+        if(value == Math.rint(value) && Math.abs(value) < 1e15){
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    private static final class Registration {
+        final String name;
+        final Map<String, String> labels;
+        final MetricsSource source;
+
+        Registration(String name, Map<String, String> labels, MetricsSource source){
+            this.name = name;
+            this.labels = labels;
+            this.source = source;
+        }
+    }
+}
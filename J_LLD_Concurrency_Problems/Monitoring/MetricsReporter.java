@@ -0,0 +1,9 @@
+package J_LLD_Concurrency_Problems.Monitoring;
+
+// Destination of a PeriodicReporter: console, log file, a push gateway ... (ConsoleReporter is the built-in one)
+@FunctionalInterface
+public interface MetricsReporter {
+
+    void report(MetricsWindow window) throws Exception;
+
+}
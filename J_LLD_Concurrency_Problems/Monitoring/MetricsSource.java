@@ -0,0 +1,11 @@
+package J_LLD_Concurrency_Problems.Monitoring;
+
+// Anything that can report its current metrics. Called on every scrape / report, from the collecting thread, so it
+// should only read counters and gauges (no locks held for long, no I/O).
+// Ready-made sources for the caches, rate limiters, pub/sub and executors are in MetricsSources.
+@FunctionalInterface
+public interface MetricsSource {
+
+    void collect(MetricsCollector collector) throws Exception;
+
+}
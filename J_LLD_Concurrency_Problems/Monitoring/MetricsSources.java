@@ -0,0 +1,180 @@
+package J_LLD_Concurrency_Problems.Monitoring;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_100K.PrometheusMetrics;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_100K.StampedeProtectedCache;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_10K.CacheMetrics;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_10K.EnhancedCache;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.UtilityClasses.LatencyHistogram;
+import J_LLD_Concurrency_Problems.B_Design_Pub_Sub.Controller.KafkaController;
+import J_LLD_Concurrency_Problems.B_Design_Pub_Sub.Core.Topic;
+import J_LLD_Concurrency_Problems.B_Design_Pub_Sub.Core.TopicSubscriber;
+import J_LLD_Concurrency_Problems.C_Design_Rate_Limiter.Controller.RateLimiterController;
+import J_LLD_Concurrency_Problems.C_Design_Rate_Limiter.Controller.RateLimiterControllerSingleThreadedExecutor;
+
+// MetricsSource adapters for the components of this repo. They only read the getters the components already expose,
+// the components don't know about the registry.
+/* Metric names are shared between components of the same kind, the registration labels tell them apart:
+    cache_*         hits, misses, evictions, writes (counters), size, hit ratio, latency percentiles (gauges)
+    executor_*      queue depth (per executor / partition for key-partitioned executors), busy threads, saturation
+    rate_limiter_*  decisions by result
+    pubsub_*        published messages, messages per topic, lag per subscription
+
+   executor_saturation = busy threads / threads. Near 1 with a growing executor_queued_tasks means the executor is
+   the bottleneck; a deep executor_queue_depth on ONE executor of a key-partitioned executor means a hot key.
+*/
+public final class MetricsSources {
+
+    private static final double[] PERCENTILES = { 50, 99, 99.9 };
+    private static final String[] QUANTILES = { "0.5", "0.99", "0.999" };
+
+    private MetricsSources(){
+    }
+
+    // EnhancedCache: its CacheMetrics plus its per-key executors
+    public static MetricsSource enhancedCache(EnhancedCache<?, ?> cache){
+        MetricsSource metrics = cacheMetrics(cache.getMetrics());
+        return collector -> {
+            metrics.collect(collector);
+            partitionedExecutor(collector, "executor", cache.getQueueDepthPerExecutor(), cache.getBusyExecutorCount());
+        };
+    }
+
+    public static MetricsSource cacheMetrics(CacheMetrics metrics){
+        return collector -> {
+            collector.counter("cache_hits_total", "Cache hits", metrics.getHits());
+            collector.counter("cache_misses_total", "Cache misses", metrics.getMisses());
+            collector.counter("cache_evictions_total", "Entries evicted", metrics.getEvictions());
+            collector.counter("cache_writes_total", "Cache writes", metrics.getWrites());
+            collector.gauge("cache_size", "Entries cached", metrics.getSize());
+            collector.gauge("cache_weight", "Summed weight of the cached entries", metrics.getWeight());
+            collector.gauge("cache_max_weight", "Weight capacity", metrics.getMaxWeight());
+            collector.gauge("cache_hit_ratio", "Hits / lookups since start or the last reset", metrics.getHitRate() / 100);
+            LatencyHistogram.Snapshot latency = metrics.getLatencySnapshot();
+            for(int i = 0; i < PERCENTILES.length; i++){
+                collector.gauge("cache_latency_ms", "Operation latency percentiles since start or the last reset",
+                        latency.valueAtPercentile(PERCENTILES[i]) / 1_000_000.0, "quantile", QUANTILES[i]);
+            }
+            collector.gauge("cache_latency_max_ms", "Slowest operation since start or the last reset",
+                    latency.getMax() / 1_000_000.0);
+        };
+    }
+
+    public static MetricsSource prometheusMetrics(PrometheusMetrics metrics){
+        return collector -> {
+            collector.counter("cache_hits_total", "Cache hits", metrics.getHitsTotal());
+            collector.counter("cache_misses_total", "Cache misses", metrics.getMissesTotal());
+            collector.counter("cache_evictions_total", "Entries evicted", metrics.getEvictionsTotal());
+            collector.counter("cache_writes_total", "Cache writes", metrics.getWritesTotal());
+            collector.counter("cache_errors_total", "Failed cache operations", metrics.getErrorsTotal());
+            collector.gauge("cache_size", "Entries cached", metrics.getCacheSize());
+            collector.gauge("cache_capacity", "Cache capacity", metrics.getCacheCapacity());
+            for(PrometheusMetrics.Operation operation : PrometheusMetrics.Operation.values()){
+                LatencyHistogram.Snapshot latency = metrics.getLatencySnapshot(operation);
+                if(latency.getCount() == 0){
+                    continue;
+                }
+                String name = operation.name().toLowerCase();
+                for(int i = 0; i < PERCENTILES.length; i++){
+                    collector.gauge("cache_operation_latency_ms", "Latency percentiles per operation since start",
+                            latency.valueAtPercentile(PERCENTILES[i]) / 1_000_000.0,
+                            "operation", name, "quantile", QUANTILES[i]);
+                }
+                collector.counter("cache_operations_total", "Operations timed per operation", latency.getCount(),
+                        "operation", name);
+            }
+        };
+    }
+
+    // StampedeProtectedCache: its PrometheusMetrics (null if metrics were not enabled) plus the refresh-ahead loader pool
+    public static MetricsSource stampedeProtectedCache(StampedeProtectedCache<?, ?> cache, PrometheusMetrics metrics){
+        MetricsSource cacheMetrics = metrics == null ? null : prometheusMetrics(metrics);
+        return collector -> {
+            if(cacheMetrics != null){
+                // The cache doesn't push its size gauges, they are refreshed when collected
+                metrics.setCacheSize(cache.size());
+                metrics.setCacheCapacity(cache.getCapacity());
+                cacheMetrics.collect(collector);
+            } else {
+                collector.gauge("cache_size", "Entries cached", cache.size());
+            }
+            collector.counter("cache_refreshes_total", "Background reloads started", cache.getRefreshCount());
+            collector.counter("cache_rejected_refreshes_total", "Reloads skipped because the loader pool was full",
+                    cache.getRejectedRefreshCount());
+            collector.counter("cache_short_circuited_misses_total", "Misses answered by the Bloom filter or negative cache",
+                    cache.getShortCircuitedMisses());
+            collector.gauge("cache_inflight_loads", "Keys being loaded", cache.getInFlightLoadCount());
+            int threads = cache.getLoaderThreads();
+            if(threads > 0){
+                collector.gauge("executor_queued_tasks", "Tasks waiting for a thread", cache.getLoaderQueueDepth(),
+                        "executor", "loader");
+                collector.gauge("executor_busy_threads", "Threads running a task", cache.getActiveLoaderCount(),
+                        "executor", "loader");
+                collector.gauge("executor_saturation", "Busy threads / threads",
+                        (double) cache.getActiveLoaderCount() / threads, "executor", "loader");
+            }
+        };
+    }
+
+    public static MetricsSource rateLimiter(RateLimiterController controller){
+        return collector -> decisions(collector, controller.getAllowedCount(), controller.getBlockedCount());
+    }
+
+    public static MetricsSource rateLimiter(RateLimiterControllerSingleThreadedExecutor controller){
+        return collector -> {
+            decisions(collector, controller.getAllowedCount(), controller.getBlockedCount());
+            partitionedExecutor(collector, "partition", controller.getQueueDepthPerPartition(),
+                    controller.getBusyPartitionCount());
+        };
+    }
+
+    public static MetricsSource pubSub(KafkaController controller){
+        return collector -> {
+            collector.counter("pubsub_published_total", "Messages published", controller.getPublishedCount());
+            collector.gauge("pubsub_subscriber_threads", "Subscriber loops running", controller.getSubscriberThreadCount());
+            for(Topic topic : controller.getTopics()){
+                int messages = topic.getMessageCount();
+                collector.gauge("pubsub_topic_messages", "Messages stored in the topic", messages,
+                        "topic", topic.getTopicName());
+                for(TopicSubscriber subscription : controller.getSubscriptions(topic.getTopicId())){
+                    collector.gauge("pubsub_subscriber_lag", "Messages of the topic the subscriber has not taken yet",
+                            Math.max(0, messages - subscription.getOffset().get()),
+                            "topic", topic.getTopicName(), "subscriber", subscription.getSubsciber().getId());
+                }
+            }
+        };
+    }
+
+    // Any ThreadPoolExecutor (the rate limiter's shared pool, an application pool ...)
+    public static MetricsSource executor(ThreadPoolExecutor executor){
+        return collector -> {
+            int active = executor.getActiveCount();
+            collector.gauge("executor_queued_tasks", "Tasks waiting for a thread", executor.getQueue().size());
+            collector.gauge("executor_busy_threads", "Threads running a task", active);
+            collector.gauge("executor_threads", "Threads in the pool", executor.getPoolSize());
+            collector.gauge("executor_max_threads", "Maximum threads of the pool", executor.getMaximumPoolSize());
+            collector.gauge("executor_saturation", "Busy threads / maximum threads",
+                    (double) active / executor.getMaximumPoolSize());
+            collector.counter("executor_completed_tasks_total", "Tasks completed", executor.getCompletedTaskCount());
+        };
+    }
+
+    private static void decisions(MetricsCollector collector, long allowed, long blocked){
+        collector.counter("rate_limiter_requests_total", "Requests by decision", allowed, "result", "allowed");
+        collector.counter("rate_limiter_requests_total", "Requests by decision", blocked, "result", "blocked");
+    }
+
+    // One single-threaded executor per key partition: per-partition depth shows hot keys, the totals show saturation
+    private static void partitionedExecutor(MetricsCollector collector, String label, int[] depths, int busy){
+        long queued = 0;
+        for(int i = 0; i < depths.length; i++){
+            queued += depths[i];
+            collector.gauge("executor_queue_depth", "Tasks waiting per single-threaded executor", depths[i],
+                    label, String.valueOf(i));
+        }
+        collector.gauge("executor_queued_tasks", "Tasks waiting for a thread", queued);
+        collector.gauge("executor_busy_threads", "Threads running a task", busy);
+        collector.gauge("executor_saturation", "Busy threads / threads", depths.length == 0 ? 0 : (double) busy / depths.length);
+    }
+}
@@ -0,0 +1,51 @@
+package J_LLD_Concurrency_Problems.Monitoring;
+
+import java.util.List;
+import java.util.Map;
+
+// What a MetricsReporter gets on every tick: the samples collected now, plus the counter values of the previous tick
+// so it can show what happened during the interval (rates, interval hit ratio) instead of totals since start.
+public class MetricsWindow {
+
+    private final List<MetricSample> samples;
+    private final Map<String, Double> previousCounters;   // seriesKey -> value at the previous tick
+    private final long startMillis;
+    private final long endMillis;
+
+    MetricsWindow(List<MetricSample> samples, Map<String, Double> previousCounters, long startMillis, long endMillis){
+        this.samples = samples;
+        this.previousCounters = previousCounters;
+        this.startMillis = startMillis;
+        this.endMillis = endMillis;
+    }
+
+    public List<MetricSample> getSamples(){
+        return samples;
+    }
+
+    // Wall-clock time of this tick
+    public long getEndMillis(){
+        return endMillis;
+    }
+
+    public double getIntervalSeconds(){
+        return Math.max(1, endMillis - startMillis) / 1000.0;
+    }
+
+    // Increase of a counter during the window (its whole value on the first tick, the value itself for a gauge)
+    public double delta(MetricSample sample){
+        if(sample.getType() != MetricSample.Type.COUNTER){
+            return sample.getValue();
+        }
+        Double previous = previousCounters.get(sample.seriesKey());
+        if(previous == null || previous > sample.getValue()){
+            return sample.getValue(); // new series, or the component was restarted / reset
+        }
+        return sample.getValue() - previous;
+    }
+
+    // Per second increase of a counter during the window
+    public double rate(MetricSample sample){
+        return delta(sample) / getIntervalSeconds();
+    }
+}
@@ -0,0 +1,165 @@
+package J_LLD_Concurrency_Problems.Monitoring;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_100K.PrometheusMetrics;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_100K.StampedeProtectedCache;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_10K.ConcurrentLRUEvictionAlgorithm;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.Advanced_Cache_10K.EnhancedCache;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.ConcreteStorages.ConcreteCacheStorage.InMemoryCacheStorage;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.StorageMechanisms.ConcreteStorages.ConcreteDBStorage.SimpleDBStorage;
+import J_LLD_Concurrency_Problems.A_Deisgn_Cache.WritePolicies.ConcreteWritePolicies.WriteThroughPolicy;
+import J_LLD_Concurrency_Problems.B_Design_Pub_Sub.Controller.KafkaController;
+import J_LLD_Concurrency_Problems.B_Design_Pub_Sub.Core.Message;
+import J_LLD_Concurrency_Problems.B_Design_Pub_Sub.Core.Topic;
+import J_LLD_Concurrency_Problems.B_Design_Pub_Sub.Publisher.ConcretePublisher.SimplePublisher;
+import J_LLD_Concurrency_Problems.B_Design_Pub_Sub.Subscriber.SubscriberInterface;
+import J_LLD_Concurrency_Problems.C_Design_Rate_Limiter.CommonEnums.RateLimiterType;
+import J_LLD_Concurrency_Problems.C_Design_Rate_Limiter.Controller.RateLimiterControllerSingleThreadedExecutor;
+
+// Load test with live metrics: two caches, a rate limiter and a pub/sub broker are registered in one MetricsRegistry,
+// served on http://127.0.0.1:<port>/metrics and printed every second by a ConsoleReporter.
+/* While it runs: curl -s http://127.0.0.1:9464/metrics
+   Halfway through, the key space of the EnhancedCache load doubles: its hit ratio drops in the console output.
+
+   Usage: java ...Monitoring.MonitoringDemo [port (0 = any free port)] [seconds] [threads]
+*/
+public class MonitoringDemo {
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 9464;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+
+        // Components under test
+        SimpleDBStorage<Integer, String> db = new SimpleDBStorage<>();
+        for(int i = 0; i < 20_000; i++){
+            db.write(i, "value-" + i);
+        }
+        EnhancedCache<Integer, String> users = new EnhancedCache<>(new InMemoryCacheStorage<>(5_000), db,
+                new WriteThroughPolicy<>(), new ConcurrentLRUEvictionAlgorithm<>(), 4);
+        PrometheusMetrics productMetrics = new PrometheusMetrics("products");
+        StampedeProtectedCache<Integer, String> products = new StampedeProtectedCache<>(new InMemoryCacheStorage<>(20_000), db);
+        products.enableMetrics(productMetrics);
+
+        Map<String, Object> limits = new HashMap<>();
+        limits.put("capacity", 100);
+        limits.put("refreshRate", 1_000);
+        RateLimiterControllerSingleThreadedExecutor limiter =
+                new RateLimiterControllerSingleThreadedExecutor(RateLimiterType.TOKEN_BUCKET, limits);
+
+        KafkaController broker = new KafkaController();
+        Topic orders = broker.createTopic("orders");
+        broker.subscribe(slowSubscriber("billing", 100), orders.getTopicId());
+
+        // One registry, labels tell the components apart
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.register("users-cache", Map.of("cache", "users"), MetricsSources.enhancedCache(users));
+        registry.register("products-cache", Map.of("cache", "products"),
+                MetricsSources.stampedeProtectedCache(products, productMetrics));
+        registry.register("api-limiter", Map.of("limiter", "api"), MetricsSources.rateLimiter(limiter));
+        registry.register("broker", Map.of("broker", "local"), MetricsSources.pubSub(broker));
+
+        MetricsHttpServer server = new MetricsHttpServer(registry, port);
+        server.start();
+        System.out.println("Serving metrics on " + server.getUrl());
+        PeriodicReporter reporter = new PeriodicReporter(registry,
+                new ConsoleReporter("cache_hits", "cache_misses", "cache_size", "executor_queued", "executor_saturation",
+                        "rate_limiter", "pubsub_subscriber_lag"), 1, TimeUnit.SECONDS);
+        reporter.start();
+
+        // 20 messages, consumed at 10/s: the lag drains during the run
+        SimplePublisher publisher = new SimplePublisher("orders-service", broker);
+        for(int i = 0; i < 20; i++){
+            publisher.publish(orders.getTopicId(), new Message("order-" + i));
+        }
+
+        AtomicBoolean stop = new AtomicBoolean();
+        long halfway = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds) / 2;
+        List<Thread> workers = new ArrayList<>();
+        for(int t = 0; t < threads; t++){
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while(!stop.get()){
+                    int keySpace = System.nanoTime() < halfway ? 5_000 : 10_000;
+                    int key = random.nextInt(keySpace);
+                    try {
+                        try {
+                            users.accessData(key).join();
+                        } catch (Exception miss) {
+                            users.updateData(key, "value-" + key).join();
+                        }
+                        products.find(random.nextInt(20_000));
+                        limiter.processRequest("user-" + random.nextInt(100)).join();
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            }, "load-" + t);
+            worker.start();
+            workers.add(worker);
+        }
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        stop.set(true);
+        for(Thread worker : workers){
+            worker.join();
+        }
+        reporter.stop();
+
+        // What a scraper gets
+        String body = fetch(server.getUrl());
+        String[] lines = body.split("\n");
+        System.out.printf("GET %s: %d lines, e.g.%n", server.getUrl(), lines.length);
+        for(String line : lines){
+            if(line.startsWith("cache_hit_ratio") || line.startsWith("cache_operation_latency_ms{")
+                    && line.contains("quantile=\"0.99\"")){
+                System.out.println("  " + line);
+            }
+        }
+
+        server.stop();
+        users.shutDown();
+        products.shutdown();
+        broker.shutdown();
+        limiter.shutdown();
+    }
+
+    private static SubscriberInterface slowSubscriber(String id, long millisPerMessage){
+        return new SubscriberInterface() {
+            @Override
+            public String getId(){
+                return id;
+            }
+
+            @Override
+            public void OnMessage(Message message) throws InterruptedException {
+                Thread.sleep(millisPerMessage);
+            }
+        };
+    }
+
+    private static String fetch(String url) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        StringBuilder body = new StringBuilder();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while((line = in.readLine()) != null){
+                body.append(line).append('\n');
+            }
+        } finally {
+            connection.disconnect();
+        }
+        return body.toString();
+    }
+}
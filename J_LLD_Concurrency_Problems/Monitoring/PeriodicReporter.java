@@ -0,0 +1,70 @@
+package J_LLD_Concurrency_Problems.Monitoring;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Collects a MetricsRegistry at a fixed rate and hands every window to a MetricsReporter.
+/* Runs on its own daemon thread, so a reporter never slows down the components it watches. A reporter that throws is
+   logged and the schedule keeps going (a ScheduledExecutorService silently cancels a task that throws otherwise).
+   stop() reports one last window, so the end of a load test is not lost.
+*/
+public class PeriodicReporter {
+
+    private final MetricsRegistry registry;
+    private final MetricsReporter reporter;
+    private final long periodMillis;
+    private final ScheduledExecutorService scheduler;
+
+    // Guarded by this: reportNow() may run on the scheduler and on the caller of stop() at the same time
+    private Map<String, Double> previousCounters = new HashMap<>();
+    private long previousMillis = System.currentTimeMillis();
+
+    public PeriodicReporter(MetricsRegistry registry, MetricsReporter reporter, long period, TimeUnit unit){
+        if(period <= 0){
+            throw new IllegalArgumentException("Period must be positive");
+        }
+        this.registry = registry;
+        this.reporter = reporter;
+        this.periodMillis = unit.toMillis(period);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-reporter");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public void start(){
+        synchronized(this){
+            previousMillis = System.currentTimeMillis();
+        }
+        scheduler.scheduleAtFixedRate(this::reportNow, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop(){
+        scheduler.shutdownNow();
+        reportNow();
+    }
+
+    // Report the window since the previous report right away
+    public synchronized void reportNow(){
+        long now = System.currentTimeMillis();
+        List<MetricSample> samples = registry.collect();
+        try {
+            reporter.report(new MetricsWindow(samples, previousCounters, previousMillis, now));
+        } catch (Exception e) {
+            System.err.println("Metrics reporter failed: " + e);
+        }
+        Map<String, Double> counters = new HashMap<>();
+        for(MetricSample sample : samples){
+            if(sample.getType() == MetricSample.Type.COUNTER){
+                counters.put(sample.seriesKey(), sample.getValue());
+            }
+        }
+        previousCounters = counters;
+        previousMillis = now;
+    }
+}